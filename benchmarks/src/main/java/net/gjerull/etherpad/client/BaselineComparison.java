@@ -0,0 +1,117 @@
+package net.gjerull.etherpad.client;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+
+import java.io.FileInputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compares two JMH JSON result files, e.g. of the last release and of a change, and exits with
+ * status 1 if a benchmark got slower or allocates more by more than the allowed percentage.<br />
+ * <br />
+ * Example:<br />
+ * <br />
+ * <code>
+ * java -cp target/benchmarks.jar net.gjerull.etherpad.client.BaselineComparison baseline.json jmh-result.json 10
+ * </code>
+ */
+public final class BaselineComparison {
+    private static final String ALLOCATION = "gc.alloc.rate.norm";
+
+    /**
+     * Allocation changes smaller than this are noise, whatever their percentage.
+     */
+    private static final double ALLOCATION_NOISE_BYTES = 16.0;
+
+    private BaselineComparison() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("Usage: BaselineComparison <baseline.json> <result.json> [allowed % worse, default 10]");
+            System.exit(2);
+        }
+        Map<String, Result> baseline = read(args[0]);
+        Map<String, Result> current = read(args[1]);
+        double allowed = (args.length > 2) ? Double.parseDouble(args[2]) : 10.0;
+
+        boolean regressed = false;
+        System.out.println(String.format("%-70s %14s %14s %8s %12s %12s %8s", "Benchmark", "Baseline",
+                "Current", "Change", "B/op before", "B/op after", "Change"));
+        for (Map.Entry<String, Result> entry : current.entrySet()) {
+            Result now = entry.getValue();
+            Result before = baseline.get(entry.getKey());
+            if (before == null) {
+                System.out.println(String.format("%-70s %14s %14.3f %8s", entry.getKey(), "-", now.score, "new"));
+                continue;
+            }
+            double scoreChange = improvement(before.score, now.score, now.higherIsBetter);
+            double allocationChange = improvement(before.allocation, now.allocation, false);
+            boolean worse = -scoreChange > allowed || (-allocationChange > allowed
+                    && now.allocation - before.allocation > ALLOCATION_NOISE_BYTES);
+            regressed |= worse;
+            System.out.println(String.format("%-70s %14.3f %14.3f %7.1f%% %12.0f %12.0f %7.1f%%%s", entry.getKey(),
+                    before.score, now.score, scoreChange, before.allocation, now.allocation, allocationChange,
+                    worse ? "  REGRESSION" : ""));
+        }
+        System.exit(regressed ? 1 : 0);
+    }
+
+    /**
+     * Returns how much better the current score is, in percent of the baseline. Lower is better
+     * for times and allocations, higher for throughput.
+     */
+    private static double improvement(double baseline, double current, boolean higherIsBetter) {
+        if (baseline == 0.0) {
+            return (current == 0.0) ? 0.0 : (higherIsBetter ? 100.0 : -100.0);
+        }
+        double change = (current - baseline) / baseline * 100.0;
+        return higherIsBetter ? change : -change;
+    }
+
+    private static Map<String, Result> read(String file) throws Exception {
+        Map<String, Result> results = new TreeMap<>();
+        Reader reader = new InputStreamReader(new FileInputStream(file), "UTF-8");
+        try {
+            for (Object item : (JSONArray) new JSONParser().parse(reader)) {
+                JSONObject benchmark = (JSONObject) item;
+                String name = (String) benchmark.get("benchmark");
+                Map params = (Map) benchmark.get("params");
+                if (params != null && !params.isEmpty()) {
+                    name += new TreeMap<Object, Object>(params);
+                }
+                JSONObject primary = (JSONObject) benchmark.get("primaryMetric");
+                Result result = new Result();
+                result.score = ((Number) primary.get("score")).doubleValue();
+                result.higherIsBetter = "thrpt".equals(benchmark.get("mode"));
+                Map<String, Object> secondary = new LinkedHashMap<>();
+                if (benchmark.get("secondaryMetrics") != null) {
+                    for (Object key : ((Map) benchmark.get("secondaryMetrics")).keySet()) {
+                        // Older JMH versions prefix the profiler metrics with a dot
+                        secondary.put(key.toString().replace("·", ""),
+                                ((Map) benchmark.get("secondaryMetrics")).get(key));
+                    }
+                }
+                if (secondary.get(ALLOCATION) != null) {
+                    result.allocation = ((Number) ((Map) secondary.get(ALLOCATION)).get("score")).doubleValue();
+                }
+                results.put(name + " " + benchmark.get("mode"), result);
+            }
+        } finally {
+            reader.close();
+        }
+        return results;
+    }
+
+    private static final class Result {
+        double score;
+        double allocation;
+        boolean higherIsBetter;
+    }
+}
@@ -0,0 +1,70 @@
+package net.gjerull.etherpad.client;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building the URL or body of a call from its arguments.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EncodingBenchmark {
+    /**
+     * The text argument: plain ASCII, or text that needs quoting and multi-byte characters.
+     */
+    @Param({"ascii", "unicode"})
+    public String text;
+
+    private EPLiteConnection connection;
+    private Map<String, Object> args;
+
+    @Setup
+    public void setUp() {
+        this.connection = new EPLiteConnection("http://localhost:9001", "a04f17343b51afaa036a7428171dd873",
+                "1.2.13", "UTF-8");
+        this.args = new HashMap<>();
+        this.args.put("padID", "g.s8oes9dhwrvt0zif$benchmark");
+        this.args.put("rev", 42);
+        this.args.put("text", this.text.equals("ascii")
+                ? "The quick brown fox jumps over the lazy dog"
+                : "Grüße & “quotes” = 100% 日本語 😀 ?a=b");
+    }
+
+    @Benchmark
+    public String queryString() {
+        return this.connection.queryString(this.args, true);
+    }
+
+    @Benchmark
+    public URL apiUrl() {
+        return this.connection.apiUrl(this.connection.apiPath("getText"), "padID=benchmark");
+    }
+
+    @Benchmark
+    public URL getRequest() {
+        return this.connection.getRequest("getText", this.args).getUrl();
+    }
+
+    @Benchmark
+    public POSTRequest postRequest() {
+        return this.connection.postRequest("setText", this.args);
+    }
+}
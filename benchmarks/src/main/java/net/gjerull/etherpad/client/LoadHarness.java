@@ -0,0 +1,333 @@
+package net.gjerull.etherpad.client;
+
+import java.io.PrintStream;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Puts load on an Etherpad Lite instance, or on the fake one in the same JVM, and reports throughput,
+ * errors and latency percentiles per API call.<br />
+ * <br />
+ * In the closed model each thread makes its next call when the previous one returns. In the
+ * open model calls are started at a constant rate whether or not earlier calls have returned,
+ * and each call's latency is measured from when it should have started, so a stalled server
+ * shows up in the percentiles instead of just slowing the harness down (coordinated omission).
+ * Closed runs can be corrected the same way with --expected-interval-ms.<br />
+ * <br />
+ * Example:<br />
+ * <br />
+ * <code>
+ * java -cp target/benchmarks.jar net.gjerull.etherpad.client.LoadHarness --stub --mode=open --rate=2000<br />
+ * java -cp target/benchmarks.jar net.gjerull.etherpad.client.LoadHarness --url=http://localhost:9001
+ * --apikey=... --mix=createSession=10,getText=60,setText=20,listPads=10 --threads=16 --duration=120
+ * </code>
+ */
+public final class LoadHarness {
+    private static final String USAGE = "Options:\n"
+            + "  --url=URL                   Etherpad Lite to load, or\n"
+            + "  --stub                      answer from a fake Etherpad in this JVM\n"
+            + "  --apikey=KEY                API key\n"
+            + "  --api-version=VERSION       API version, default 1.2.13\n"
+            + "  --mode=closed|open          default closed\n"
+            + "  --threads=N                 threads making calls, default 8\n"
+            + "  --rate=N                    calls per second started in open mode, default 1000\n"
+            + "  --expected-interval-ms=N    corrects closed mode latencies for this interval\n"
+            + "  --duration=SECONDS          measured time, default 30\n"
+            + "  --warmup=SECONDS            unmeasured time before, default 10\n"
+            + "  --mix=METHOD=WEIGHT,...     default getText=60,setText=20,appendChatMessage=10,"
+            + "listPads=5,createSession=5\n"
+            + "  --pads=N                    pads the calls are spread over, default 100\n"
+            + "  --text-size=N               characters written by setText, default 1000\n";
+
+    private String url;
+    private boolean stub;
+    private String apiKey = "";
+    private String apiVersion = "1.2.13";
+    private boolean open;
+    private int threads = 8;
+    private double rate = 1000;
+    private long expectedIntervalNanos;
+    private long durationNanos = TimeUnit.SECONDS.toNanos(30);
+    private long warmupNanos = TimeUnit.SECONDS.toNanos(10);
+    private String mix = "getText=60,setText=20,appendChatMessage=10,listPads=5,createSession=5";
+    private int pads = 100;
+    private int textSize = 1000;
+
+    private LoadHarness() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadHarness harness;
+        try {
+            harness = parse(args);
+        } catch (IllegalArgumentException ex) {
+            System.err.println(ex.getMessage() + "\n\n" + USAGE);
+            System.exit(2);
+            return;
+        }
+        harness.run(System.out);
+    }
+
+    static LoadHarness parse(String[] args) {
+        LoadHarness harness = new LoadHarness();
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            String name = (equals > 0) ? arg.substring(0, equals) : arg;
+            String value = (equals > 0) ? arg.substring(equals + 1) : "";
+            switch (name) {
+                case "--url": harness.url = value; break;
+                case "--stub": harness.stub = true; break;
+                case "--apikey": harness.apiKey = value; break;
+                case "--api-version": harness.apiVersion = value; break;
+                case "--mode": harness.open = parseMode(value); break;
+                case "--threads": harness.threads = Integer.parseInt(value); break;
+                case "--rate": harness.rate = Double.parseDouble(value); break;
+                case "--expected-interval-ms":
+                    harness.expectedIntervalNanos = (long) (Double.parseDouble(value) * 1e6);
+                    break;
+                case "--duration": harness.durationNanos = seconds(value); break;
+                case "--warmup": harness.warmupNanos = seconds(value); break;
+                case "--mix": harness.mix = value; break;
+                case "--pads": harness.pads = Integer.parseInt(value); break;
+                case "--text-size": harness.textSize = Integer.parseInt(value); break;
+                default: throw new IllegalArgumentException("Unknown option " + arg);
+            }
+        }
+        if (harness.url == null && !harness.stub) {
+            throw new IllegalArgumentException("Either --url or --stub is needed");
+        }
+        return harness;
+    }
+
+    void run(PrintStream out) throws Exception {
+        FakeEtherpadServer stubServer = null;
+        String target = this.url;
+        if (this.stub) {
+            stubServer = new FakeEtherpadServer(this.apiKey, Math.max(4, this.threads));
+            target = stubServer.getUrl();
+        }
+        try {
+            EPLiteClient client = new EPLiteClient(target, this.apiKey, this.apiVersion, "UTF-8");
+            Workload workload = new Workload(this.mix, this.pads, this.textSize);
+            workload.setUp(client);
+
+            out.println(String.format("Target %s, %s, %d threads, mix %s", target,
+                    this.open ? String.format("open model at %.0f calls/s", this.rate) : "closed model",
+                    this.threads, workload));
+            if (this.warmupNanos > 0) {
+                out.println(String.format("Warming up for %d s", TimeUnit.NANOSECONDS.toSeconds(this.warmupNanos)));
+                drive(client, workload, new Results(workload), this.warmupNanos);
+            }
+            out.println(String.format("Measuring for %d s", TimeUnit.NANOSECONDS.toSeconds(this.durationNanos)));
+            Results results = new Results(workload);
+            long elapsed = drive(client, workload, results, this.durationNanos);
+            results.print(out, elapsed, this.open || this.expectedIntervalNanos > 0);
+        } finally {
+            if (stubServer != null) {
+                stubServer.stop();
+            }
+        }
+    }
+
+    /**
+     * Makes calls for the given time and waits for them to return.
+     *
+     * @return the time until the last call returned
+     */
+    private long drive(final EPLiteClient client, final Workload workload, final Results results,
+                       final long duration) throws InterruptedException {
+        final long start = System.nanoTime();
+        final long end = start + duration;
+        final long intervalNanos = (long) (1e9 / this.rate);
+        final AtomicLong scheduled = new AtomicLong();
+        final CountDownLatch done = new CountDownLatch(this.threads);
+        for (int i = 0; i < this.threads; i++) {
+            Thread thread = new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        Random random = new Random();
+                        if (open) {
+                            runOpen(client, workload, results, random, scheduled, start, end, intervalNanos);
+                        } else {
+                            runClosed(client, workload, results, random, end);
+                        }
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }, "load-harness-" + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+        done.await();
+        return System.nanoTime() - start;
+    }
+
+    private void runClosed(EPLiteClient client, Workload workload, Results results, Random random, long end) {
+        long start;
+        while ((start = System.nanoTime()) < end) {
+            Workload.Operation operation = workload.next(random);
+            int code = call(client, workload, operation, random);
+            results.record(operation, code, start, start, System.nanoTime(), this.expectedIntervalNanos);
+        }
+    }
+
+    private void runOpen(EPLiteClient client, Workload workload, Results results, Random random,
+                         AtomicLong scheduled, long start, long end, long intervalNanos) {
+        while (true) {
+            // Calls are due at fixed times; a thread that is late starts the next one at once
+            long intended = start + scheduled.getAndIncrement() * intervalNanos;
+            if (intended >= end) {
+                return;
+            }
+            long wait;
+            while ((wait = intended - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            long actual = System.nanoTime();
+            Workload.Operation operation = workload.next(random);
+            int code = call(client, workload, operation, random);
+            results.record(operation, code, intended, actual, System.nanoTime(), 0L);
+        }
+    }
+
+    private static int call(EPLiteClient client, Workload workload, Workload.Operation operation, Random random) {
+        try {
+            operation.run(client, workload, random);
+            return EPLiteConnection.CODE_OK;
+        } catch (EPLiteApiException ex) {
+            return ex.getCode();
+        } catch (EPLiteException ex) {
+            return EPLiteConnection.CODE_CLIENT_ERROR;
+        }
+    }
+
+    private static boolean parseMode(String mode) {
+        if (mode.equals("open")) {
+            return true;
+        } else if (mode.equals("closed")) {
+            return false;
+        }
+        throw new IllegalArgumentException("Unknown mode " + mode);
+    }
+
+    private static long seconds(String value) {
+        return (long) (Double.parseDouble(value) * 1e9);
+    }
+
+    /**
+     * The latencies and errors of one run, by operation.
+     */
+    private static final class Results {
+        private final Map<Workload.Operation, Stats> stats = new EnumMap<>(Workload.Operation.class);
+        private final Stats total = new Stats();
+
+        Results(Workload workload) {
+            for (Workload.Operation operation : workload.getOperations()) {
+                this.stats.put(operation, new Stats());
+            }
+        }
+
+        void record(Workload.Operation operation, int code, long intended, long started, long finished,
+                    long expectedIntervalNanos) {
+            this.stats.get(operation).record(code, finished - intended, finished - started, expectedIntervalNanos);
+            this.total.record(code, finished - intended, finished - started, expectedIntervalNanos);
+        }
+
+        void print(PrintStream out, long elapsedNanos, boolean corrected) {
+            double seconds = elapsedNanos / 1e9;
+            out.println();
+            out.println(corrected
+                    ? "Response time, from when each call should have started (corrected for coordinated omission)"
+                    : "Response time (not corrected for coordinated omission, see --expected-interval-ms)");
+            printHeader(out);
+            for (Map.Entry<Workload.Operation, Stats> entry : this.stats.entrySet()) {
+                printRow(out, entry.getKey().apiMethod, entry.getValue(), entry.getValue().response, seconds);
+            }
+            printRow(out, "all", this.total, this.total.response, seconds);
+            if (corrected) {
+                out.println();
+                out.println("Service time, from when each call actually started");
+                printHeader(out);
+                for (Map.Entry<Workload.Operation, Stats> entry : this.stats.entrySet()) {
+                    printRow(out, entry.getKey().apiMethod, entry.getValue(), entry.getValue().service, seconds);
+                }
+                printRow(out, "all", this.total, this.total.service, seconds);
+            }
+            if (!this.total.errors.isEmpty()) {
+                out.println();
+                out.println("Errors by code (-1: no valid response)");
+                for (Map.Entry<Workload.Operation, Stats> entry : this.stats.entrySet()) {
+                    for (Map.Entry<Integer, AtomicLong> error : new TreeMap<>(entry.getValue().errors).entrySet()) {
+                        out.println(String.format("  %-20s code %3d: %d", entry.getKey().apiMethod,
+                                error.getKey(), error.getValue().get()));
+                    }
+                }
+            }
+        }
+
+        private static void printHeader(PrintStream out) {
+            out.println(String.format("%-20s %9s %8s %10s %9s %9s %9s %9s %9s", "operation", "calls", "errors",
+                    "calls/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms"));
+        }
+
+        private static void printRow(PrintStream out, String name, Stats stats, LatencyHistogram latency,
+                                     double seconds) {
+            out.println(String.format("%-20s %9d %8d %10.1f %9.2f %9.2f %9.2f %9.2f %9.2f", name, stats.calls.get(),
+                    stats.errorCount(), stats.calls.get() / seconds, millis(latency.getValueAtPercentile(50)),
+                    millis(latency.getValueAtPercentile(90)), millis(latency.getValueAtPercentile(99)),
+                    millis(latency.getValueAtPercentile(99.9)), millis(latency.getMax(TimeUnit.NANOSECONDS))));
+        }
+
+        private static double millis(long nanos) {
+            return nanos / 1e6;
+        }
+    }
+
+    private static final class Stats {
+        final LatencyHistogram response = new LatencyHistogram();
+        final LatencyHistogram service = new LatencyHistogram();
+        final AtomicLong calls = new AtomicLong();
+        final ConcurrentMap<Integer, AtomicLong> errors = new ConcurrentHashMap<>();
+
+        void record(int code, long responseNanos, long serviceNanos, long expectedIntervalNanos) {
+            this.calls.incrementAndGet();
+            this.response.record(responseNanos);
+            this.service.record(serviceNanos);
+            if (expectedIntervalNanos > 0) {
+                // The calls a closed loop would have started while this one was stalled
+                for (long missed = responseNanos - expectedIntervalNanos; missed >= expectedIntervalNanos;
+                     missed -= expectedIntervalNanos) {
+                    this.response.record(missed);
+                }
+            }
+            if (code != EPLiteConnection.CODE_OK) {
+                AtomicLong count = this.errors.get(code);
+                if (count == null) {
+                    AtomicLong created = new AtomicLong();
+                    count = this.errors.putIfAbsent(code, created);
+                    if (count == null) {
+                        count = created;
+                    }
+                }
+                count.incrementAndGet();
+            }
+        }
+
+        long errorCount() {
+            long count = 0;
+            for (AtomicLong errors : this.errors.values()) {
+                count += errors.get();
+            }
+            return count;
+        }
+    }
+}
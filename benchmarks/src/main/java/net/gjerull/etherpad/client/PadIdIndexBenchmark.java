@@ -0,0 +1,168 @@
+package net.gjerull.etherpad.client;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jol.info.GraphLayout;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PadIdIndex against a HashSet and a TreeSet of the same group pad ids: contains for known and
+ * unknown pads, and listing the pads of a group. The retained size of each set, measured with
+ * JOL, is printed when the trial starts.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PadIdIndexBenchmark {
+    private static final int LOOKUPS = 1024;
+
+    /**
+     * The set holding the pad ids.
+     */
+    @Param({"PadIdIndex", "HashSet", "TreeSet"})
+    public String structure;
+
+    /**
+     * The number of group pads, spread over a twentieth as many groups.
+     */
+    @Param({"200000"})
+    public int pads;
+
+    private PadSet set;
+    private String[] known;
+    private String[] unknown;
+    private String[] groups;
+    private int next;
+
+    /**
+     * The operations measured, on each of the structures.
+     */
+    private interface PadSet {
+        boolean contains(String padId);
+
+        List<String> padsOfGroup(String groupID);
+    }
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        List<String> groupIDs = new ArrayList<>();
+        for (int g = 0; g < Math.max(1, this.pads / 20); g++) {
+            groupIDs.add("g." + randomId(random, 16));
+        }
+        List<String> padIds = new ArrayList<>();
+        for (int p = 0; p < this.pads; p++) {
+            padIds.add(groupIDs.get(random.nextInt(groupIDs.size())) + "$" + randomId(random, 8));
+        }
+        this.known = new String[LOOKUPS];
+        this.unknown = new String[LOOKUPS];
+        this.groups = new String[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++) {
+            this.known[i] = padIds.get(random.nextInt(padIds.size()));
+            this.unknown[i] = groupIDs.get(random.nextInt(groupIDs.size())) + "$" + randomId(random, 9);
+            this.groups[i] = groupIDs.get(random.nextInt(groupIDs.size()));
+        }
+
+        Object retained;
+        if (this.structure.equals("PadIdIndex")) {
+            final PadIdIndex index = PadIdIndex.build(padIds.iterator());
+            retained = index;
+            this.set = new PadSet() {
+                public boolean contains(String padId) {
+                    return index.contains(padId);
+                }
+
+                public List<String> padsOfGroup(String groupID) {
+                    return index.padsOfGroup(groupID);
+                }
+            };
+        } else if (this.structure.equals("HashSet")) {
+            final HashSet<String> hashSet = new HashSet<>(padIds);
+            retained = hashSet;
+            this.set = new PadSet() {
+                public boolean contains(String padId) {
+                    return hashSet.contains(padId);
+                }
+
+                public List<String> padsOfGroup(String groupID) {
+                    // No order to use, every pad is looked at
+                    return sorted(hashSet, groupID + "$");
+                }
+            };
+        } else if (this.structure.equals("TreeSet")) {
+            final TreeSet<String> treeSet = new TreeSet<>(padIds);
+            retained = treeSet;
+            this.set = new PadSet() {
+                public boolean contains(String padId) {
+                    return treeSet.contains(padId);
+                }
+
+                public List<String> padsOfGroup(String groupID) {
+                    return new ArrayList<>(treeSet.subSet(groupID + "$", groupID + "%"));
+                }
+            };
+        } else {
+            throw new IllegalArgumentException("Unknown structure " + this.structure);
+        }
+        System.out.println(this.structure + " of " + this.pads + " pads retains "
+                + GraphLayout.parseInstance(retained).totalSize() + " bytes");
+    }
+
+    @Benchmark
+    public boolean containsKnown() {
+        return this.set.contains(this.known[this.next++ & (LOOKUPS - 1)]);
+    }
+
+    @Benchmark
+    public boolean containsUnknown() {
+        return this.set.contains(this.unknown[this.next++ & (LOOKUPS - 1)]);
+    }
+
+    @Benchmark
+    public List<String> padsOfGroup() {
+        return this.set.padsOfGroup(this.groups[this.next++ & (LOOKUPS - 1)]);
+    }
+
+    private static List<String> sorted(Collection<String> padIds, String prefix) {
+        List<String> matching = new ArrayList<>();
+        for (String padId : padIds) {
+            if (padId.startsWith(prefix)) {
+                matching.add(padId);
+            }
+        }
+        Collections.sort(matching);
+        return matching;
+    }
+
+    /**
+     * Returns a random id of lower case letters and digits, like those Etherpad generates.
+     */
+    private static String randomId(Random random, int length) {
+        String chars = "abcdefghijklmnopqrstuvwxyz0123456789";
+        StringBuilder id = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            id.append(chars.charAt(random.nextInt(chars.length())));
+        }
+        return id.toString();
+    }
+}
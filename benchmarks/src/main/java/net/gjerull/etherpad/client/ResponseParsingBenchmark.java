@@ -0,0 +1,152 @@
+package net.gjerull.etherpad.client;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding realistic responses with the default codec, with the JSON.simple codec, and into the
+ * typed responses: getText of a small pad and of a pad of several megabytes, getHTML of a
+ * formatted pad, and listAllPads of a server with many group pads. Run with the GC profiler for
+ * the allocation per response.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResponseParsingBenchmark {
+    /**
+     * The response decoded.
+     */
+    @Param({"getText-100", "getText-4000000", "getHTML", "listAllPads"})
+    public String payload;
+
+    /**
+     * The number of pads in the listAllPads response.
+     */
+    @Param({"50000"})
+    public int padCount;
+
+    private String response;
+    private EPLiteConnection defaultConnection;
+    private EPLiteConnection jsonSimpleConnection;
+
+    @Setup
+    public void setUp() {
+        if (this.payload.startsWith("getText-")) {
+            int textLength = Integer.parseInt(this.payload.substring("getText-".length()));
+            this.response = envelope("{\"text\":\"" + padText(textLength) + "\"}");
+        } else if (this.payload.equals("getHTML")) {
+            this.response = envelope("{\"html\":\"" + padHtml(200000) + "\"}");
+        } else if (this.payload.equals("listAllPads")) {
+            this.response = envelope("{\"padIDs\":" + padIds(this.padCount) + "}");
+        } else {
+            throw new IllegalArgumentException("Unknown payload " + this.payload);
+        }
+        this.defaultConnection = new EPLiteConnection("http://localhost:9001", "apikey", "1.2.13", "UTF-8");
+        this.jsonSimpleConnection = new EPLiteConnection("http://localhost:9001", "apikey", "1.2.13", "UTF-8",
+                new JsonSimpleCodec());
+    }
+
+    @Benchmark
+    public Object defaultCodec() {
+        return this.defaultConnection.handleResponse(this.response);
+    }
+
+    @Benchmark
+    public Object jsonSimpleCodec() {
+        return this.jsonSimpleConnection.handleResponse(this.response);
+    }
+
+    @Benchmark
+    public Object typedResponse() {
+        ResponseData data = ResponseData.parse(this.response);
+        if (this.payload.equals("getHTML")) {
+            return data.string("html");
+        }
+        if (this.payload.equals("listAllPads")) {
+            return new PadList(data).getPadIDs();
+        }
+        return new PadText(data).getText();
+    }
+
+    private static String envelope(String data) {
+        return "{\"code\":0,\"message\":\"ok\",\"data\":" + data + "}";
+    }
+
+    /**
+     * Returns JSON string content of the given length, with the escapes and non-ASCII text of
+     * a real pad.
+     */
+    static String padText(int length) {
+        String line = "Meeting notes: \\\"Grüße\\\" from the café, 10% done \\u2713\\n";
+        StringBuilder text = new StringBuilder(length);
+        while (text.length() + line.length() <= length) {
+            text.append(line);
+        }
+        // Whole lines only, so no escape is cut in half
+        while (text.length() < length) {
+            text.append('.');
+        }
+        return text.toString();
+    }
+
+    /**
+     * Returns the JSON string content of a getHTML response of about the given length: the
+     * paragraphs, lists and inline formatting Etherpad exports, with escaped quotes.
+     */
+    static String padHtml(int length) {
+        String line = "<strong>Action item</strong>: review the <em>caf\\u00e9</em> budget"
+                + " <a href=\\\"https://example.com/budget?q=1&amp;r=2\\\" rel=\\\"noreferrer noopener\\\">"
+                + "sheet</a><br><ul class=\\\"bullet\\\"><li>10% done &gt; planned</li></ul><br>";
+        StringBuilder html = new StringBuilder(length + line.length());
+        html.append("<!DOCTYPE HTML><html><body>");
+        while (html.length() < length) {
+            html.append(line);
+        }
+        html.append("</body></html>");
+        return html.toString();
+    }
+
+    /**
+     * Returns a JSON array of group pad ids, twenty pads per group.
+     */
+    static String padIds(int count) {
+        Random random = new Random(42);
+        StringBuilder json = new StringBuilder(count * 32);
+        json.append('[');
+        String groupID = null;
+        for (int i = 0; i < count; i++) {
+            if (i % 20 == 0) {
+                groupID = "g." + randomId(random, 16);
+            }
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append('"').append(groupID).append('$').append("pad-").append(randomId(random, 6)).append('"');
+        }
+        return json.append(']').toString();
+    }
+
+    private static String randomId(Random random, int length) {
+        String chars = "abcdefghijklmnopqrstuvwxyz0123456789";
+        StringBuilder id = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            id.append(chars.charAt(random.nextInt(chars.length())));
+        }
+        return id.toString();
+    }
+}
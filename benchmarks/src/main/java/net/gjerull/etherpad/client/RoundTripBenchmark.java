@@ -0,0 +1,102 @@
+package net.gjerull.etherpad.client;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Whole calls through EPLiteClient, against an HTTP stub in the same JVM that answers every
+ * request with the same response. Measures the client's share of a call: building the
+ * request, the HTTP exchange over loopback and decoding the response.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RoundTripBenchmark {
+    static {
+        // Without it the JDK server's small writes wait for delayed ACKs, about 40 ms a call
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    /**
+     * The size of the pad text returned by getText, in characters.
+     */
+    @Param({"100", "100000"})
+    public int textLength;
+
+    private HttpServer server;
+    private ExecutorService executor;
+    private EPLiteClient client;
+
+    @Setup
+    public void setUp() throws IOException {
+        final byte[] text = ("{\"code\":0,\"message\":\"ok\",\"data\":{\"text\":\""
+                + ResponseParsingBenchmark.padText(this.textLength) + "\"}}").getBytes(Charset.forName("UTF-8"));
+        final byte[] ok = "{\"code\":0,\"message\":\"ok\",\"data\":null}".getBytes(Charset.forName("UTF-8"));
+        this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        this.server.createContext("/", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                InputStream in = exchange.getRequestBody();
+                byte[] skip = new byte[4096];
+                while (in.read(skip) != -1) {
+                    // Read the whole body so the connection can be reused
+                }
+                byte[] body = exchange.getRequestURI().getPath().endsWith("/getText") ? text : ok;
+                exchange.sendResponseHeaders(200, body.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(body);
+                out.close();
+            }
+        });
+        this.executor = Executors.newFixedThreadPool(4);
+        this.server.setExecutor(this.executor);
+        this.server.start();
+        this.client = new EPLiteClient("http://localhost:" + this.server.getAddress().getPort(), "apikey");
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.server.stop(0);
+        this.executor.shutdown();
+    }
+
+    @Benchmark
+    public Map getText() {
+        return this.client.getText("benchmark");
+    }
+
+    @Benchmark
+    public String fetchText() {
+        return this.client.fetchText("benchmark").getText();
+    }
+
+    @Benchmark
+    public void setText() {
+        this.client.setText("benchmark", "The quick brown fox jumps over the lazy dog");
+    }
+}
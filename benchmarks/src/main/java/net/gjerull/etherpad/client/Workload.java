@@ -0,0 +1,182 @@
+package net.gjerull.etherpad.client;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A weighted mix of API calls on a set of pads, e.g. "getText=60,setText=20,listPads=20".<br />
+ * <br />
+ * setUp() creates the group, author and pads the calls use; they are reused across runs.
+ */
+final class Workload {
+    /**
+     * The API calls the harness can make.
+     */
+    enum Operation {
+        CREATE_SESSION("createSession") {
+            void run(EPLiteClient client, Workload workload, Random random) {
+                client.createSession(workload.groupID, workload.authorID, 1);
+            }
+        },
+        GET_TEXT("getText") {
+            void run(EPLiteClient client, Workload workload, Random random) {
+                client.getText(workload.pad(random));
+            }
+        },
+        SET_TEXT("setText") {
+            void run(EPLiteClient client, Workload workload, Random random) {
+                client.setText(workload.pad(random), workload.text);
+            }
+        },
+        APPEND_TEXT("appendText") {
+            void run(EPLiteClient client, Workload workload, Random random) {
+                client.appendText(workload.pad(random), "appended by the load harness\n");
+            }
+        },
+        GET_HTML("getHTML") {
+            void run(EPLiteClient client, Workload workload, Random random) {
+                client.getHTML(workload.pad(random));
+            }
+        },
+        GET_REVISIONS_COUNT("getRevisionsCount") {
+            void run(EPLiteClient client, Workload workload, Random random) {
+                client.getRevisionsCount(workload.pad(random));
+            }
+        },
+        APPEND_CHAT_MESSAGE("appendChatMessage") {
+            void run(EPLiteClient client, Workload workload, Random random) {
+                client.appendChatMessage(workload.pad(random), "load harness message", workload.authorID);
+            }
+        },
+        GET_CHAT_HISTORY("getChatHistory") {
+            void run(EPLiteClient client, Workload workload, Random random) {
+                client.getChatHistory(workload.pad(random));
+            }
+        },
+        LIST_PADS("listPads") {
+            void run(EPLiteClient client, Workload workload, Random random) {
+                client.listPads(workload.groupID);
+            }
+        };
+
+        final String apiMethod;
+
+        Operation(String apiMethod) {
+            this.apiMethod = apiMethod;
+        }
+
+        abstract void run(EPLiteClient client, Workload workload, Random random);
+
+        static Operation forApiMethod(String apiMethod) {
+            for (Operation operation : values()) {
+                if (operation.apiMethod.equals(apiMethod)) {
+                    return operation;
+                }
+            }
+            throw new IllegalArgumentException("Unknown operation '" + apiMethod + "', known are "
+                    + Arrays.toString(apiMethods()));
+        }
+
+        static String[] apiMethods() {
+            String[] names = new String[values().length];
+            for (int i = 0; i < names.length; i++) {
+                names[i] = values()[i].apiMethod;
+            }
+            return names;
+        }
+    }
+
+    private final Operation[] operations;
+    private final int[] cumulativeWeights;
+    private final int padCount;
+    private final String text;
+    private String groupID;
+    private String authorID;
+    private String[] padIDs;
+
+    /**
+     * Instantiates a Workload.
+     *
+     * @param mix the operations and their weights, e.g. "getText=60,setText=20"
+     * @param padCount the number of pads the calls are spread over
+     * @param textSize the length of the text written by setText
+     */
+    Workload(String mix, int padCount, int textSize) {
+        List<Operation> operations = new ArrayList<>();
+        List<Integer> weights = new ArrayList<>();
+        int total = 0;
+        for (String part : mix.split(",")) {
+            String[] entry = part.trim().split("=");
+            int weight = (entry.length > 1) ? Integer.parseInt(entry[1].trim()) : 1;
+            if (weight <= 0) {
+                continue;
+            }
+            total += weight;
+            operations.add(Operation.forApiMethod(entry[0].trim()));
+            weights.add(total);
+        }
+        if (operations.isEmpty()) {
+            throw new IllegalArgumentException("The mix '" + mix + "' has no operations");
+        }
+        this.operations = operations.toArray(new Operation[operations.size()]);
+        this.cumulativeWeights = new int[weights.size()];
+        for (int i = 0; i < this.cumulativeWeights.length; i++) {
+            this.cumulativeWeights[i] = weights.get(i);
+        }
+        this.padCount = padCount;
+        StringBuilder text = new StringBuilder(textSize);
+        while (text.length() < textSize) {
+            text.append("The quick brown fox jumps over the lazy dog.\n");
+        }
+        this.text = text.substring(0, textSize);
+    }
+
+    /**
+     * Creates the group, author and pads, or finds them if they exist.
+     *
+     * @param client the client
+     */
+    void setUp(EPLiteClient client) {
+        this.groupID = (String) client.createGroupIfNotExistsFor("load-harness").get("groupID");
+        this.authorID = (String) client.createAuthorIfNotExistsFor("load-harness", "Load Harness").get("authorID");
+        this.padIDs = new String[this.padCount];
+        for (int i = 0; i < this.padCount; i++) {
+            String padName = "load-" + i;
+            // The pad is left from an earlier run if this fails
+            client.tryCreateGroupPad(this.groupID, padName);
+            this.padIDs[i] = this.groupID + "$" + padName;
+        }
+    }
+
+    /**
+     * Picks the next operation by weight.
+     *
+     * @param random the random generator of the calling thread
+     * @return Operation
+     */
+    Operation next(Random random) {
+        int pick = random.nextInt(this.cumulativeWeights[this.cumulativeWeights.length - 1]);
+        int index = Arrays.binarySearch(this.cumulativeWeights, pick + 1);
+        return this.operations[(index >= 0) ? index : -index - 1];
+    }
+
+    Operation[] getOperations() {
+        return this.operations.clone();
+    }
+
+    private String pad(Random random) {
+        return this.padIDs[random.nextInt(this.padIDs.length)];
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder mix = new StringBuilder();
+        for (int i = 0; i < this.operations.length; i++) {
+            int weight = this.cumulativeWeights[i] - ((i > 0) ? this.cumulativeWeights[i - 1] : 0);
+            mix.append((i > 0) ? "," : "").append(this.operations[i].apiMethod).append('=').append(weight);
+        }
+        return mix.toString();
+    }
+}
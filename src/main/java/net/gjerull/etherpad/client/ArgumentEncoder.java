@@ -0,0 +1,283 @@
+package net.gjerull.etherpad.client;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Encodes API arguments straight into a reusable byte buffer.<br />
+ * <br />
+ * Each thread has its own encoder, so building a request allocates no intermediate Strings,
+ * only the finished URL or body. Arguments are read from the caller's map, which is never
+ * changed.
+ */
+final class ArgumentEncoder {
+    /**
+     * Arguments written as given, as in the query strings of earlier versions.
+     */
+    static final int RAW = 0;
+
+    /**
+     * Arguments quoted for the query of a URL, non-ASCII characters as UTF-8.
+     */
+    static final int QUERY = 1;
+
+    /**
+     * Values encoded as application/x-www-form-urlencoded, as URLEncoder does, keys as given.
+     */
+    static final int FORM = 2;
+
+    static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final int INITIAL_CAPACITY = 512;
+    private static final int MAX_RETAINED_CAPACITY = 64 * 1024;
+    private static final byte[] HEX = {
+        '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'A', 'B', 'C', 'D', 'E', 'F'
+    };
+
+    /**
+     * The characters URLEncoder leaves as they are.
+     */
+    private static final boolean[] FORM_SAFE = new boolean[128];
+
+    /**
+     * The characters a URI query may contain without quoting, see java.net.URI.
+     */
+    private static final boolean[] QUERY_SAFE = new boolean[128];
+
+    static {
+        for (char c = 'a'; c <= 'z'; c++) {
+            FORM_SAFE[c] = true;
+            FORM_SAFE[c - 'a' + 'A'] = true;
+        }
+        for (char c = '0'; c <= '9'; c++) {
+            FORM_SAFE[c] = true;
+        }
+        for (char c : ".-*_".toCharArray()) {
+            FORM_SAFE[c] = true;
+        }
+        System.arraycopy(FORM_SAFE, 0, QUERY_SAFE, 0, 128);
+        for (char c : "!~'();/?:@&=+$,[]".toCharArray()) {
+            QUERY_SAFE[c] = true;
+        }
+    }
+
+    private static final ThreadLocal<ArgumentEncoder> ENCODERS = new ThreadLocal<ArgumentEncoder>() {
+        @Override
+        protected ArgumentEncoder initialValue() {
+            return new ArgumentEncoder();
+        }
+    };
+
+    private byte[] buffer = new byte[INITIAL_CAPACITY];
+    private int length;
+
+    /**
+     * Returns the encoder of the current thread.
+     *
+     * @return ArgumentEncoder
+     */
+    static ArgumentEncoder get() {
+        return ENCODERS.get();
+    }
+
+    /**
+     * Empties the buffer and starts it with the given bytes.
+     *
+     * @param prefix the bytes to start with
+     * @return this encoder
+     */
+    ArgumentEncoder reset(byte[] prefix) {
+        if (this.buffer.length > MAX_RETAINED_CAPACITY) {
+            // Don't keep the buffer of one very large request for the life of the thread
+            this.buffer = new byte[INITIAL_CAPACITY];
+        }
+        this.length = 0;
+        ensureCapacity(prefix.length);
+        System.arraycopy(prefix, 0, this.buffer, 0, prefix.length);
+        this.length = prefix.length;
+        return this;
+    }
+
+    /**
+     * Appends "&amp;key=value" for each argument.
+     *
+     * @param args the arguments
+     * @param mode RAW, QUERY or FORM
+     * @param charset the charset of FORM values
+     */
+    void writeArgs(Map<String, Object> args, int mode, Charset charset) {
+        for (Map.Entry<String, Object> entry : args.entrySet()) {
+            writeByte('&');
+            writeString(String.valueOf(entry.getKey()), (mode == QUERY) ? QUERY : RAW, charset);
+            writeByte('=');
+            writeValue(entry.getValue(), mode, charset);
+        }
+    }
+
+    /**
+     * Appends a single value.
+     *
+     * @param value the value, written with String.valueOf() unless it is an integer
+     * @param mode RAW, QUERY or FORM
+     * @param charset the charset of FORM values
+     */
+    void writeValue(Object value, int mode, Charset charset) {
+        if (value instanceof Long || value instanceof Integer || value instanceof Short
+                || value instanceof Byte) {
+            writeLong(((Number) value).longValue());
+        } else if (value instanceof String || mode != FORM) {
+            writeString(String.valueOf(value), mode, charset);
+        } else {
+            // Only Strings were URL encoded by earlier versions
+            writeString(String.valueOf(value), RAW, charset);
+        }
+    }
+
+    /**
+     * Returns the content as a String, decoded as UTF-8.
+     *
+     * @return String
+     */
+    String toUtf8String() {
+        return new String(this.buffer, 0, this.length, UTF_8);
+    }
+
+    /**
+     * Returns a copy of the content.
+     *
+     * @return byte[]
+     */
+    byte[] toBytes() {
+        return Arrays.copyOf(this.buffer, this.length);
+    }
+
+    int length() {
+        return this.length;
+    }
+
+    private void writeString(String s, int mode, Charset charset) {
+        if (mode == FORM && !UTF_8.equals(charset)) {
+            writeFormString(s, charset);
+            return;
+        }
+        ensureCapacity(s.length());
+        int n = s.length();
+        for (int i = 0; i < n; i++) {
+            char c = s.charAt(i);
+            if (c < 128) {
+                if (mode == RAW || (mode == QUERY ? QUERY_SAFE[c] : FORM_SAFE[c])) {
+                    writeByte(c);
+                } else if (mode == FORM && c == ' ') {
+                    writeByte('+');
+                } else {
+                    writeEscaped(c);
+                }
+                continue;
+            }
+            int codePoint = c;
+            if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(s.charAt(i + 1))) {
+                codePoint = Character.toCodePoint(c, s.charAt(++i));
+            } else if (Character.isSurrogate(c)) {
+                // Unpaired surrogates are encoded as '?', like String.getBytes() does
+                codePoint = '?';
+            }
+            writeUtf8(codePoint, mode != RAW);
+        }
+    }
+
+    /**
+     * Encodes like URLEncoder in a charset other than UTF-8.
+     */
+    private void writeFormString(String s, Charset charset) {
+        int n = s.length();
+        int i = 0;
+        while (i < n) {
+            char c = s.charAt(i);
+            if (c < 128 && FORM_SAFE[c]) {
+                writeByte(c);
+                i++;
+            } else if (c == ' ') {
+                writeByte('+');
+                i++;
+            } else {
+                int start = i;
+                while (i < n && !((s.charAt(i) < 128 && FORM_SAFE[s.charAt(i)]) || s.charAt(i) == ' ')) {
+                    i++;
+                }
+                for (byte b : s.substring(start, i).getBytes(charset)) {
+                    writeEscaped(b & 0xFF);
+                }
+            }
+        }
+    }
+
+    private void writeUtf8(int codePoint, boolean escape) {
+        if (codePoint < 0x80) {
+            writeByte(codePoint, escape);
+        } else if (codePoint < 0x800) {
+            writeByte(0xC0 | (codePoint >> 6), escape);
+            writeByte(0x80 | (codePoint & 0x3F), escape);
+        } else if (codePoint < 0x10000) {
+            writeByte(0xE0 | (codePoint >> 12), escape);
+            writeByte(0x80 | ((codePoint >> 6) & 0x3F), escape);
+            writeByte(0x80 | (codePoint & 0x3F), escape);
+        } else {
+            writeByte(0xF0 | (codePoint >> 18), escape);
+            writeByte(0x80 | ((codePoint >> 12) & 0x3F), escape);
+            writeByte(0x80 | ((codePoint >> 6) & 0x3F), escape);
+            writeByte(0x80 | (codePoint & 0x3F), escape);
+        }
+    }
+
+    private void writeByte(int b, boolean escape) {
+        if (escape) {
+            writeEscaped(b);
+        } else {
+            writeByte(b);
+        }
+    }
+
+    private void writeEscaped(int b) {
+        ensureCapacity(3);
+        this.buffer[this.length++] = '%';
+        this.buffer[this.length++] = HEX[(b >> 4) & 0xF];
+        this.buffer[this.length++] = HEX[b & 0xF];
+    }
+
+    private void writeLong(long value) {
+        if (value == Long.MIN_VALUE) {
+            writeString(Long.toString(value), RAW, null);
+            return;
+        }
+        ensureCapacity(20);
+        if (value < 0) {
+            this.buffer[this.length++] = '-';
+            value = -value;
+        }
+        int start = this.length;
+        do {
+            this.buffer[this.length++] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        // The digits were written backwards
+        for (int i = start, j = this.length - 1; i < j; i++, j--) {
+            byte b = this.buffer[i];
+            this.buffer[i] = this.buffer[j];
+            this.buffer[j] = b;
+        }
+    }
+
+    private void writeByte(int b) {
+        if (this.length == this.buffer.length) {
+            ensureCapacity(1);
+        }
+        this.buffer[this.length++] = (byte) b;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (this.length + extra > this.buffer.length) {
+            this.buffer = Arrays.copyOf(this.buffer, Math.max(this.buffer.length * 2, this.length + extra));
+        }
+    }
+}
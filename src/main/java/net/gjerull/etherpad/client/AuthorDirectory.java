@@ -0,0 +1,290 @@
+package net.gjerull.etherpad.client;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Resolves author ids to names, many at a time and mostly without asking the server.<br />
+ * <br />
+ * Names are looked up with getAuthorName in parallel and kept for a time to live. Authors
+ * already being looked up, by this or another caller, are waited for instead of looked up
+ * again. Authors whose name couldn't be looked up are left out of the results and tried again
+ * the next time.<br />
+ * <br />
+ * Example:<br />
+ * <br />
+ * <code>
+ * AuthorDirectory authors = new AuthorDirectory(client, 16, 600000);<br />
+ * Map&lt;String, Map&lt;String, String&gt;&gt; contributors = authors.getAuthorsOfPads(padIds);<br />
+ * ...<br />
+ * authors.shutdown();
+ * </code>
+ */
+public class AuthorDirectory {
+    private final EPLiteClient client;
+    private final ExecutorService executor;
+    private final long ttlNanos;
+    private final ConcurrentMap<String, Entry> names = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong lookups = new AtomicLong();
+
+    /**
+     * A name looked up, or being looked up.
+     */
+    private static final class Entry extends FutureTask<String> {
+        private final long ttlNanos;
+        private volatile long expiresNanos;
+
+        Entry(Callable<String> lookup, long ttlNanos) {
+            super(lookup);
+            this.ttlNanos = ttlNanos;
+        }
+
+        @Override
+        protected void set(String name) {
+            // Before the name is visible, so no caller sees it done without an expiry
+            this.expiresNanos = System.nanoTime() + this.ttlNanos;
+            super.set(name);
+        }
+
+        boolean isUsable(long now) {
+            return !isDone() || this.expiresNanos - now > 0;
+        }
+    }
+
+    /**
+     * Initializes a new AuthorDirectory.
+     *
+     * @param client the client to look names up with
+     * @param parallelism the maximum number of lookups in flight at the same time
+     * @param ttlMillis how long a name is kept
+     */
+    public AuthorDirectory(EPLiteClient client, int parallelism, long ttlMillis) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1");
+        }
+        this.client = client;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.executor = Executors.newFixedThreadPool(parallelism, new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "etherpad-authors-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Returns the name of an author.
+     *
+     * @param authorID string
+     * @return the name, null if the author has none
+     */
+    public String getName(String authorID) {
+        Entry entry = lookup(authorID);
+        return await(authorID, entry, true);
+    }
+
+    /**
+     * Returns the names of the given authors, looking up those not known in parallel.
+     *
+     * @param authorIDs the authors
+     * @return a Map of author ids to names, in the order given, without the authors that
+     *         couldn't be looked up
+     */
+    public Map<String, String> getNames(Collection<String> authorIDs) {
+        Map<String, Entry> entries = new LinkedHashMap<>();
+        for (String authorID : authorIDs) {
+            if (!entries.containsKey(authorID)) {
+                entries.put(authorID, lookup(authorID));
+            }
+        }
+        Map<String, String> result = new LinkedHashMap<>();
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            String name = await(entry.getKey(), entry.getValue(), false);
+            if (name != null || isSuccess(entry.getValue())) {
+                result.put(entry.getKey(), name);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the authors of a pad and their names.
+     *
+     * @param padId the pad's id string
+     * @return a Map of author ids to names
+     */
+    public Map<String, String> getAuthorsOfPad(String padId) {
+        return getNames(authorsOf(this.client.listAuthorsOfPad(padId)));
+    }
+
+    /**
+     * Returns the authors of the given pads and their names. The pads are listed in parallel,
+     * then the names of all their authors are looked up in parallel.
+     *
+     * @param padIds the pads
+     * @return a Map of pad ids to Maps of author ids to names, without the pads that couldn't be listed
+     */
+    public Map<String, Map<String, String>> getAuthorsOfPads(Collection<String> padIds) {
+        Map<String, Future<Map>> listings = new LinkedHashMap<>();
+        for (final String padId : padIds) {
+            if (!listings.containsKey(padId)) {
+                listings.put(padId, this.executor.submit(TraceContext.wrap(new Callable<Map>() {
+                    public Map call() {
+                        return client.listAuthorsOfPad(padId);
+                    }
+                })));
+            }
+        }
+        Map<String, List<String>> authorsOfPads = new LinkedHashMap<>();
+        Set<String> allAuthors = new LinkedHashSet<>();
+        for (Map.Entry<String, Future<Map>> listing : listings.entrySet()) {
+            try {
+                List<String> authors = authorsOf(listing.getValue().get());
+                authorsOfPads.put(listing.getKey(), authors);
+                allAuthors.addAll(authors);
+            } catch (ExecutionException ex) {
+                // Left out of the result
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new EPLiteException("Interrupted while listing authors", ex);
+            }
+        }
+
+        Map<String, String> allNames = getNames(allAuthors);
+        Map<String, Map<String, String>> result = new LinkedHashMap<>();
+        for (Map.Entry<String, List<String>> pad : authorsOfPads.entrySet()) {
+            Map<String, String> names = new LinkedHashMap<>();
+            for (String authorID : pad.getValue()) {
+                if (allNames.containsKey(authorID)) {
+                    names.put(authorID, allNames.get(authorID));
+                }
+            }
+            result.put(pad.getKey(), names);
+        }
+        return result;
+    }
+
+    /**
+     * Forgets the name of an author, e.g. after it was changed.
+     *
+     * @param authorID string
+     */
+    public void forget(String authorID) {
+        this.names.remove(authorID);
+    }
+
+    /**
+     * Returns the number of names found known or already being looked up.
+     *
+     * @return long
+     */
+    public long getHits() {
+        return this.hits.get();
+    }
+
+    /**
+     * Returns the number of getAuthorName calls made.
+     *
+     * @return long
+     */
+    public long getLookups() {
+        return this.lookups.get();
+    }
+
+    /**
+     * Stops the worker threads.
+     */
+    public void shutdown() {
+        this.executor.shutdown();
+    }
+
+    private Entry lookup(final String authorID) {
+        long now = System.nanoTime();
+        while (true) {
+            Entry current = this.names.get(authorID);
+            if (current != null && current.isUsable(now)) {
+                this.hits.incrementAndGet();
+                return current;
+            }
+            Entry next = new Entry(new Callable<String>() {
+                public String call() {
+                    return client.getAuthorName(authorID);
+                }
+            }, this.ttlNanos);
+            boolean won = (current == null) ? this.names.putIfAbsent(authorID, next) == null
+                    : this.names.replace(authorID, current, next);
+            if (won) {
+                this.lookups.incrementAndGet();
+                this.executor.execute(TraceContext.wrap(next));
+                return next;
+            }
+        }
+    }
+
+    /**
+     * Waits for a name. A failed lookup is forgotten, so the next one tries again, and thrown
+     * if asked to.
+     */
+    private String await(String authorID, Entry entry, boolean throwFailure) {
+        try {
+            return entry.get();
+        } catch (ExecutionException ex) {
+            this.names.remove(authorID, entry);
+            if (!throwFailure) {
+                return null;
+            }
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw new EPLiteException("Unable to look up author " + authorID, ex.getCause());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new EPLiteException("Interrupted while looking up author " + authorID, ex);
+        }
+    }
+
+    private static boolean isSuccess(Entry entry) {
+        try {
+            entry.get();
+            return true;
+        } catch (ExecutionException ex) {
+            return false;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static List<String> authorsOf(Map listing) {
+        List<String> authors = new ArrayList<>();
+        Object ids = listing.get("authorIDs");
+        if (ids instanceof List) {
+            for (Object id : (List) ids) {
+                authors.add((String) id);
+            }
+        }
+        return authors;
+    }
+}
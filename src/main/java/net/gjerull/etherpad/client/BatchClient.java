@@ -0,0 +1,209 @@
+package net.gjerull.etherpad.client;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs large numbers of pad, group and author write calls against an {@link EPLiteClient} with
+ * bounded parallelism and an optional rate limit.<br />
+ * <br />
+ * Example:<br />
+ * <br />
+ * <code>
+ * BatchClient batch = new BatchClient(client, 8, 200);<br />
+ * BatchOperation op = batch.createGroupPads(groupID, padNames);<br />
+ * op.await();<br />
+ * System.out.println(op.getSucceeded() + " pads created, " + op.getFailed() + " failed");<br />
+ * batch.shutdown();
+ * </code>
+ */
+public class BatchClient {
+    private final EPLiteClient client;
+    private final ExecutorService executor;
+    private final RateLimiter rateLimiter;
+
+    /**
+     * A single API call made for one item of a batch.
+     */
+    private interface Call {
+        Map call(EPLiteClient client, String key);
+    }
+
+    /**
+     * Initializes a new BatchClient.
+     *
+     * @param client the client the calls are made with
+     * @param parallelism the maximum number of calls in flight at the same time
+     * @param callsPerSecond the maximum number of calls started per second, zero or less for no limit
+     */
+    public BatchClient(EPLiteClient client, int parallelism, double callsPerSecond) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1");
+        }
+        this.client = client;
+        this.executor = Executors.newFixedThreadPool(parallelism, new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "etherpad-batch-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.rateLimiter = new RateLimiter(callsPerSecond);
+    }
+
+    /**
+     * Creates the given pads.
+     *
+     * @param padIds the ids of the pads to create
+     * @return the running batch, keyed by pad id
+     */
+    public BatchOperation createPads(Collection<String> padIds) {
+        return submit(padIds, new Call() {
+            public Map call(EPLiteClient client, String padId) {
+                client.createPad(padId);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Creates the given pads in a group.
+     *
+     * @param groupID the group the pads belong to
+     * @param padNames the names of the pads to create
+     * @return the running batch, keyed by pad name
+     */
+    public BatchOperation createGroupPads(final String groupID, Collection<String> padNames) {
+        return submit(padNames, new Call() {
+            public Map call(EPLiteClient client, String padName) {
+                return client.createGroupPad(groupID, padName);
+            }
+        });
+    }
+
+    /**
+     * Deletes the given pads.
+     *
+     * @param padIds the ids of the pads to delete
+     * @return the running batch, keyed by pad id
+     */
+    public BatchOperation deletePads(Collection<String> padIds) {
+        return submit(padIds, new Call() {
+            public Map call(EPLiteClient client, String padId) {
+                client.deletePad(padId);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Deletes the given groups.
+     *
+     * @param groupIDs the ids of the groups to delete
+     * @return the running batch, keyed by group id
+     */
+    public BatchOperation deleteGroups(Collection<String> groupIDs) {
+        return submit(groupIDs, new Call() {
+            public Map call(EPLiteClient client, String groupID) {
+                client.deleteGroup(groupID);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Deletes the given sessions.
+     *
+     * @param sessionIDs the ids of the sessions to delete
+     * @return the running batch, keyed by session id
+     */
+    public BatchOperation deleteSessions(Collection<String> sessionIDs) {
+        return submit(sessionIDs, new Call() {
+            public Map call(EPLiteClient client, String sessionID) {
+                client.deleteSession(sessionID);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Creates authors for the given author mappers if they don't already exist.
+     *
+     * @param authorMappers a Map of author mappers to author names, a null name creates the author
+     *                      without a name
+     * @return the running batch, keyed by author mapper
+     */
+    public BatchOperation createAuthorsIfNotExistsFor(final Map<String, String> authorMappers) {
+        return submit(authorMappers.keySet(), new Call() {
+            public Map call(EPLiteClient client, String authorMapper) {
+                String name = authorMappers.get(authorMapper);
+                return (name != null)
+                        ? client.createAuthorIfNotExistsFor(authorMapper, name)
+                        : client.createAuthorIfNotExistsFor(authorMapper);
+            }
+        });
+    }
+
+    /**
+     * Stops the worker threads. Batches already submitted are still completed.
+     */
+    public void shutdown() {
+        this.executor.shutdown();
+    }
+
+    /**
+     * Stops the worker threads and waits for the submitted batches to complete.
+     *
+     * @param timeout the maximum time to wait
+     * @param unit the unit of the timeout
+     * @return true if all batches completed
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        this.executor.shutdown();
+        return this.executor.awaitTermination(timeout, unit);
+    }
+
+    private BatchOperation submit(Collection<String> keys, final Call call) {
+        // Copy the keys, the caller may reuse the collection while the batch is running
+        List<String> snapshot = new ArrayList<>(keys);
+        final BatchOperation operation = new BatchOperation(snapshot.size());
+        for (final String key : snapshot) {
+            // The calls belong to the trace of the caller
+            this.executor.execute(TraceContext.wrap(new Runnable() {
+                public void run() {
+                    execute(operation, key, call);
+                }
+            }));
+        }
+        return operation;
+    }
+
+    private void execute(BatchOperation operation, String key, Call call) {
+        if (operation.isCancelled()) {
+            operation.failed(key, new EPLiteException("The batch was cancelled"));
+            return;
+        }
+        try {
+            this.rateLimiter.acquire();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            operation.failed(key, new EPLiteException("Interrupted while waiting to be sent", ex));
+            return;
+        }
+        try {
+            operation.succeeded(key, call.call(this.client, key));
+        } catch (RuntimeException ex) {
+            operation.failed(key, ex);
+        }
+    }
+}
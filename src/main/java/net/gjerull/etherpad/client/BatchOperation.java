@@ -0,0 +1,268 @@
+package net.gjerull.etherpad.client;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A running or finished batch of API calls started by a {@link BatchClient}.<br />
+ * <br />
+ * Every item of the batch is reported on its own, a failing item never aborts the rest of the
+ * batch. Progress and throughput can be read while the batch is running.<br />
+ * <br />
+ * Example:<br />
+ * <br />
+ * <code>
+ * BatchOperation op = batch.deletePads(padIds);<br />
+ * op.await();<br />
+ * List&lt;String&gt; retry = op.getFailedKeys();
+ * </code>
+ */
+public class BatchOperation {
+    private final int total;
+    private final long startNanos;
+    private final AtomicInteger succeeded = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    private final ConcurrentLinkedQueue<Item> items = new ConcurrentLinkedQueue<>();
+    private final CountDownLatch done;
+    private volatile long endNanos;
+    private volatile boolean cancelled;
+
+    /**
+     * The outcome of a single item in the batch.
+     */
+    public static final class Item {
+        private final String key;
+        private final Map result;
+        private final RuntimeException error;
+
+        Item(String key, Map result, RuntimeException error) {
+            this.key = key;
+            this.result = result;
+            this.error = error;
+        }
+
+        /**
+         * Returns the key the item was submitted with (pad id, pad name, group id or mapper).
+         *
+         * @return String
+         */
+        public String getKey() {
+            return this.key;
+        }
+
+        /**
+         * Returns the response of the API call, or null if the call failed or has no response.
+         *
+         * @return Map
+         */
+        public Map getResult() {
+            return this.result;
+        }
+
+        /**
+         * Returns the error of a failed call, or null on success.
+         *
+         * @return RuntimeException
+         */
+        public RuntimeException getError() {
+            return this.error;
+        }
+
+        /**
+         * Returns true if the API call succeeded.
+         *
+         * @return boolean
+         */
+        public boolean isSuccess() {
+            return this.error == null;
+        }
+    }
+
+    BatchOperation(int total) {
+        this.total = total;
+        this.startNanos = System.nanoTime();
+        this.done = new CountDownLatch(total);
+        if (total == 0) {
+            this.endNanos = this.startNanos;
+        }
+    }
+
+    void succeeded(String key, Map result) {
+        this.succeeded.incrementAndGet();
+        complete(new Item(key, result, null));
+    }
+
+    void failed(String key, RuntimeException error) {
+        this.failed.incrementAndGet();
+        complete(new Item(key, null, error));
+    }
+
+    private void complete(Item item) {
+        this.items.add(item);
+        if (getCompleted() == this.total) {
+            this.endNanos = System.nanoTime();
+        }
+        this.done.countDown();
+    }
+
+    /**
+     * Returns true if the batch has been cancelled.
+     *
+     * @return boolean
+     */
+    public boolean isCancelled() {
+        return this.cancelled;
+    }
+
+    /**
+     * Cancels the batch. Items not yet started are reported as failed.
+     */
+    public void cancel() {
+        this.cancelled = true;
+    }
+
+    /**
+     * Blocks until every item of the batch has completed.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void await() throws InterruptedException {
+        this.done.await();
+    }
+
+    /**
+     * Blocks until every item of the batch has completed, or the timeout expires.
+     *
+     * @param timeout the maximum time to wait
+     * @param unit the unit of the timeout
+     * @return true if the batch completed
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+        return this.done.await(timeout, unit);
+    }
+
+    /**
+     * Returns true if every item of the batch has completed.
+     *
+     * @return boolean
+     */
+    public boolean isDone() {
+        return this.done.getCount() == 0;
+    }
+
+    /**
+     * Returns the number of items in the batch.
+     *
+     * @return int
+     */
+    public int getTotal() {
+        return this.total;
+    }
+
+    /**
+     * Returns the number of completed items, successful or not.
+     *
+     * @return int
+     */
+    public int getCompleted() {
+        return this.succeeded.get() + this.failed.get();
+    }
+
+    /**
+     * Returns the number of successful items.
+     *
+     * @return int
+     */
+    public int getSucceeded() {
+        return this.succeeded.get();
+    }
+
+    /**
+     * Returns the number of failed items.
+     *
+     * @return int
+     */
+    public int getFailed() {
+        return this.failed.get();
+    }
+
+    /**
+     * Returns the time spent on the batch so far, or in total once it is done.
+     *
+     * @return elapsed time in milliseconds
+     */
+    public long getElapsedMillis() {
+        long end = isDone() ? this.endNanos : System.nanoTime();
+        return TimeUnit.NANOSECONDS.toMillis(end - this.startNanos);
+    }
+
+    /**
+     * Returns the number of completed items per second.
+     *
+     * @return double
+     */
+    public double getThroughput() {
+        long end = isDone() ? this.endNanos : System.nanoTime();
+        long elapsed = end - this.startNanos;
+        return (elapsed > 0) ? getCompleted() * (double) TimeUnit.SECONDS.toNanos(1) / elapsed : 0.0;
+    }
+
+    /**
+     * Returns the completed items in order of completion.
+     *
+     * @return List of items
+     */
+    public List<Item> getItems() {
+        return Collections.unmodifiableList(new ArrayList<>(this.items));
+    }
+
+    /**
+     * Returns the failed items in order of completion.
+     *
+     * @return List of items
+     */
+    public List<Item> getFailures() {
+        List<Item> failures = new ArrayList<>();
+        for (Item item : this.items) {
+            if (!item.isSuccess()) {
+                failures.add(item);
+            }
+        }
+        return failures;
+    }
+
+    /**
+     * Returns the keys of the failed items, ready to be submitted to a new batch.
+     *
+     * @return List of keys
+     */
+    public List<String> getFailedKeys() {
+        List<String> keys = new ArrayList<>();
+        for (Item item : getFailures()) {
+            keys.add(item.getKey());
+        }
+        return keys;
+    }
+
+    /**
+     * Writes the failed items, one per line, as the key and the error message separated by a tab.
+     *
+     * @param out where to write the failed items
+     * @throws IOException if writing fails
+     */
+    public void exportFailures(Appendable out) throws IOException {
+        for (Item item : getFailures()) {
+            String message = String.valueOf(item.getError().getMessage());
+            out.append(item.getKey()).append('\t')
+                    .append(message.replace('\n', ' ').replace('\t', ' ')).append('\n');
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package net.gjerull.etherpad.client;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A thread-safe Bloom filter of Strings.<br />
+ * <br />
+ * mightContain() never returns false for a String that was put, and returns true for a String
+ * that was not put with about the false positive probability the filter was sized for.
+ */
+final class BloomFilter {
+    private final AtomicLongArray bits;
+    private final long bitCount;
+    private final int hashCount;
+
+    /**
+     * Instantiates a new BloomFilter.
+     *
+     * @param expectedInsertions the number of Strings the filter is sized for
+     * @param falsePositiveRate the wanted false positive probability, between 0 and 1
+     */
+    BloomFilter(long expectedInsertions, double falsePositiveRate) {
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("falsePositiveRate must be between 0 and 1");
+        }
+        long n = Math.max(expectedInsertions, 1);
+        long m = (long) Math.ceil(-n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        m = Math.max(64, m);
+        this.bits = new AtomicLongArray((int) Math.min((m + 63) / 64, Integer.MAX_VALUE));
+        this.bitCount = this.bits.length() * 64L;
+        this.hashCount = Math.max(1, (int) Math.round((double) this.bitCount / n * Math.log(2)));
+    }
+
+    /**
+     * Adds a String to the filter.
+     *
+     * @param value the String
+     */
+    void put(String value) {
+        long hash1 = hash(value, 0x9E3779B97F4A7C15L);
+        long hash2 = hash(value, 0xC2B2AE3D27D4EB4FL);
+        for (int i = 0; i < this.hashCount; i++) {
+            long bit = ((hash1 + i * hash2) & Long.MAX_VALUE) % this.bitCount;
+            int index = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long word;
+            do {
+                word = this.bits.get(index);
+                if ((word & mask) != 0) {
+                    break;
+                }
+            } while (!this.bits.compareAndSet(index, word, word | mask));
+        }
+    }
+
+    /**
+     * Returns false if the String was certainly never put, true if it might have been.
+     *
+     * @param value the String
+     * @return boolean
+     */
+    boolean mightContain(String value) {
+        long hash1 = hash(value, 0x9E3779B97F4A7C15L);
+        long hash2 = hash(value, 0xC2B2AE3D27D4EB4FL);
+        for (int i = 0; i < this.hashCount; i++) {
+            long bit = ((hash1 + i * hash2) & Long.MAX_VALUE) % this.bitCount;
+            if ((this.bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * A 64 bit hash of the characters, mixed with the seed.
+     */
+    private static long hash(String value, long seed) {
+        long h = seed ^ value.length();
+        for (int i = 0; i < value.length(); i++) {
+            h = (h ^ value.charAt(i)) * 0x100000001B3L;
+        }
+        // Final avalanche so that similar pad ids spread over the whole bit array
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,253 @@
+package net.gjerull.etherpad.client;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded pool of the byte and char buffers used to read responses.<br />
+ * <br />
+ * Each thread keeps a few buffers of its own, so taking and returning one needs no locking.
+ * Buffers that had to grow for a large response are kept up to a size limit, larger ones are
+ * left to the garbage collector. The counters show how much allocation the pool saves.<br />
+ * <br />
+ * Example:<br />
+ * <br />
+ * <code>
+ * BufferPool pool = BufferPool.getDefault();<br />
+ * double hitRate = (double) pool.getHits() / (pool.getHits() + pool.getMisses());
+ * </code>
+ */
+public final class BufferPool {
+    /**
+     * The size of new buffers.
+     */
+    static final int BUFFER_SIZE = 8192;
+
+    private static final BufferPool DEFAULT = new BufferPool(BUFFER_SIZE, 64 * 1024, 2);
+
+    private final int bufferSize;
+    private final int maxRetainedSize;
+    private final int buffersPerThread;
+    private final ThreadLocal<byte[][]> byteBuffers = new ThreadLocal<>();
+    private final ThreadLocal<char[][]> charBuffers = new ThreadLocal<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong discarded = new AtomicLong();
+    private final AtomicLong reusedBytes = new AtomicLong();
+    private final AtomicLong allocatedBytes = new AtomicLong();
+
+    /**
+     * Instantiates a new BufferPool.
+     *
+     * @param bufferSize the size of new buffers
+     * @param maxRetainedSize the largest buffer kept for reuse
+     * @param buffersPerThread the number of buffers of each kind a thread keeps
+     */
+    BufferPool(int bufferSize, int maxRetainedSize, int buffersPerThread) {
+        this.bufferSize = bufferSize;
+        this.maxRetainedSize = maxRetainedSize;
+        this.buffersPerThread = buffersPerThread;
+    }
+
+    /**
+     * Returns the pool used by the requests of all clients.
+     *
+     * @return BufferPool
+     */
+    public static BufferPool getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Takes a byte buffer of at least the pool's buffer size.
+     *
+     * @return byte[]
+     */
+    byte[] acquireBytes() {
+        byte[][] slots = this.byteBuffers.get();
+        if (slots != null) {
+            for (int i = 0; i < slots.length; i++) {
+                byte[] buffer = slots[i];
+                if (buffer != null) {
+                    slots[i] = null;
+                    hit(buffer.length);
+                    return buffer;
+                }
+            }
+        }
+        miss(this.bufferSize);
+        return new byte[this.bufferSize];
+    }
+
+    /**
+     * Returns a byte buffer to the pool. The caller must not use it afterwards.
+     *
+     * @param buffer the buffer, may be null
+     */
+    void release(byte[] buffer) {
+        if (buffer == null || !retainable(buffer.length, buffer.length)) {
+            return;
+        }
+        byte[][] slots = this.byteBuffers.get();
+        if (slots == null) {
+            slots = new byte[this.buffersPerThread][];
+            this.byteBuffers.set(slots);
+        }
+        for (int i = 0; i < slots.length; i++) {
+            if (slots[i] == null) {
+                slots[i] = buffer;
+                return;
+            }
+        }
+        this.discarded.incrementAndGet();
+    }
+
+    /**
+     * Takes a char buffer of at least the pool's buffer size.
+     *
+     * @return char[]
+     */
+    char[] acquireChars() {
+        char[][] slots = this.charBuffers.get();
+        if (slots != null) {
+            for (int i = 0; i < slots.length; i++) {
+                char[] buffer = slots[i];
+                if (buffer != null) {
+                    slots[i] = null;
+                    hit(2L * buffer.length);
+                    return buffer;
+                }
+            }
+        }
+        miss(2L * this.bufferSize);
+        return new char[this.bufferSize];
+    }
+
+    /**
+     * Returns a char buffer to the pool. The caller must not use it afterwards.
+     *
+     * @param buffer the buffer, may be null
+     */
+    void release(char[] buffer) {
+        if (buffer == null || !retainable(buffer.length, 2L * buffer.length)) {
+            return;
+        }
+        char[][] slots = this.charBuffers.get();
+        if (slots == null) {
+            slots = new char[this.buffersPerThread][];
+            this.charBuffers.set(slots);
+        }
+        for (int i = 0; i < slots.length; i++) {
+            if (slots[i] == null) {
+                slots[i] = buffer;
+                return;
+            }
+        }
+        this.discarded.incrementAndGet();
+    }
+
+    /**
+     * Reads a stream to its end into a pooled buffer and decodes it. The stream is closed.
+     *
+     * @param in the stream
+     * @param charset the charset of the content
+     * @return String
+     * @throws IOException if reading fails
+     */
+    String read(InputStream in, Charset charset) throws IOException {
+        byte[] buffer = acquireBytes();
+        try {
+            int length = 0;
+            int count;
+            while ((count = in.read(buffer, length, buffer.length - length)) != -1) {
+                length += count;
+                if (length == buffer.length) {
+                    byte[] larger = Arrays.copyOf(buffer, buffer.length * 2);
+                    miss(larger.length);
+                    release(buffer);
+                    buffer = larger;
+                }
+            }
+            return new String(buffer, 0, length, charset);
+        } finally {
+            release(buffer);
+            in.close();
+        }
+    }
+
+    /**
+     * Returns the number of buffers taken from the pool.
+     *
+     * @return long
+     */
+    public long getHits() {
+        return this.hits.get();
+    }
+
+    /**
+     * Returns the number of buffers that had to be allocated, including grown ones.
+     *
+     * @return long
+     */
+    public long getMisses() {
+        return this.misses.get();
+    }
+
+    /**
+     * Returns the number of buffers left to the garbage collector because they were too large
+     * or the thread already kept enough.
+     *
+     * @return long
+     */
+    public long getDiscarded() {
+        return this.discarded.get();
+    }
+
+    /**
+     * Returns the bytes of buffers reused instead of allocated.
+     *
+     * @return long
+     */
+    public long getReusedBytes() {
+        return this.reusedBytes.get();
+    }
+
+    /**
+     * Returns the bytes of buffers allocated.
+     *
+     * @return long
+     */
+    public long getAllocatedBytes() {
+        return this.allocatedBytes.get();
+    }
+
+    @Override
+    public String toString() {
+        return "BufferPool[hits=" + getHits() + ", misses=" + getMisses() + ", discarded="
+                + getDiscarded() + ", reusedBytes=" + getReusedBytes() + ", allocatedBytes="
+                + getAllocatedBytes() + "]";
+    }
+
+    private boolean retainable(int length, long bytes) {
+        if (bytes > this.maxRetainedSize) {
+            this.discarded.incrementAndGet();
+            return false;
+        }
+        // Smaller buffers weren't handed out by the pool
+        return length >= this.bufferSize;
+    }
+
+    private void hit(long bytes) {
+        this.hits.incrementAndGet();
+        this.reusedBytes.addAndGet(bytes);
+    }
+
+    private void miss(long bytes) {
+        this.misses.incrementAndGet();
+        this.allocatedBytes.addAndGet(bytes);
+    }
+}
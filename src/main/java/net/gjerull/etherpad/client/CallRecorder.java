@@ -0,0 +1,70 @@
+package net.gjerull.etherpad.client;
+
+import java.util.Map;
+
+/**
+ * Records API calls as Java Flight Recorder events when the running JVM has JFR.<br />
+ * <br />
+ * The event class needs the jdk.jfr API, so it lives in {@link JfrCallRecorder} and is only
+ * loaded when that API exists. Elsewhere, and whenever no recording is running, begin() returns
+ * null and nothing else is done.
+ */
+abstract class CallRecorder {
+    /**
+     * The recorder of the running JVM.
+     */
+    static final CallRecorder INSTANCE = load();
+
+    /**
+     * Starts an event for a call.
+     *
+     * @return the event, or null if the event isn't being recorded
+     */
+    abstract Object begin();
+
+    /**
+     * Ends and commits an event.
+     *
+     * @param event the event returned by begin()
+     * @param endpoint the url of the Etherpad Lite instance
+     * @param apiMethod the name of the API method
+     * @param apiArgs the arguments of the call
+     * @param code the Etherpad Lite code of the response, or CODE_CLIENT_ERROR
+     * @param request the request sent
+     * @param parseNanos the time taken to decode the response
+     */
+    abstract void commit(Object event, String endpoint, String apiMethod,
+                         Map<String, Object> apiArgs, int code, MeasuredRequest request,
+                         long parseNanos);
+
+    /**
+     * Returns the pad or group the call is about, or null.
+     */
+    static String target(Map<String, Object> apiArgs) {
+        Object target = apiArgs.get("padID");
+        if (target == null) {
+            target = apiArgs.get("groupID");
+        }
+        return (target != null) ? target.toString() : null;
+    }
+
+    private static CallRecorder load() {
+        try {
+            Class.forName("jdk.jfr.Event");
+            return (CallRecorder) Class.forName(CallRecorder.class.getPackage().getName()
+                    + ".JfrCallRecorder").getDeclaredConstructor().newInstance();
+        } catch (Exception | LinkageError ex) {
+            // Java 7, or a Java 8 build without JFR; covers the reflective exceptions too
+            return new CallRecorder() {
+                Object begin() {
+                    return null;
+                }
+
+                void commit(Object event, String endpoint, String apiMethod,
+                            Map<String, Object> apiArgs, int code, MeasuredRequest request,
+                            long parseNanos) {
+                }
+            };
+        }
+    }
+}
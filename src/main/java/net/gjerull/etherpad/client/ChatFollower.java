@@ -0,0 +1,248 @@
+package net.gjerull.etherpad.client;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Follows the chats of many pads and delivers only the new messages to {@link ChatListener}s.<br />
+ * <br />
+ * Each followed pad is polled with getChatHead, which is cheap, and only when the head moved
+ * past the last message seen is the new range fetched with getChatHistory(padId, start, end),
+ * in windows of at most maxWindow messages. The pads share a small pool of threads; their
+ * polls are spread over the interval so they don't all run at once.<br />
+ * <br />
+ * Example:<br />
+ * <br />
+ * <code>
+ * ChatFollower follower = new ChatFollower(client, 4, 5000, 500);<br />
+ * follower.addListener(moderation);<br />
+ * for (String padId : monitoredPads) {<br />
+ * &nbsp;&nbsp;follower.follow(padId);<br />
+ * }<br />
+ * ...<br />
+ * follower.shutdown();
+ * </code>
+ */
+public class ChatFollower {
+    private static final long UNKNOWN = Long.MIN_VALUE;
+
+    private final EPLiteClient client;
+    private final ScheduledThreadPoolExecutor scheduler;
+    private final long intervalMillis;
+    private final int maxWindow;
+    private final ConcurrentMap<String, Followed> pads = new ConcurrentHashMap<>();
+    private final List<ChatListener> listeners = new CopyOnWriteArrayList<>();
+
+    private final AtomicLong polls = new AtomicLong();
+    private final AtomicLong fetches = new AtomicLong();
+    private final AtomicLong delivered = new AtomicLong();
+
+    /**
+     * A followed pad.
+     */
+    private final class Followed implements Runnable {
+        final String padId;
+        volatile long lastSeen;
+        volatile ScheduledFuture<?> future;
+
+        Followed(String padId, long lastSeen) {
+            this.padId = padId;
+            this.lastSeen = lastSeen;
+        }
+
+        public void run() {
+            try {
+                poll(this);
+            } catch (EPLiteException ex) {
+                for (ChatListener listener : listeners) {
+                    try {
+                        listener.pollFailed(this.padId, ex);
+                    } catch (RuntimeException listenerError) {
+                        // A failing listener mustn't keep the others from being told
+                    }
+                }
+            } catch (RuntimeException ex) {
+                // An unexpected failure mustn't stop the polls of the pad
+            }
+        }
+    }
+
+    /**
+     * Initializes a new ChatFollower.
+     *
+     * @param client the client to poll with
+     * @param threads the number of threads polling the pads
+     * @param intervalMillis the time between two polls of a pad
+     * @param maxWindow the maximum number of messages fetched by one getChatHistory call
+     */
+    public ChatFollower(EPLiteClient client, int threads, long intervalMillis, int maxWindow) {
+        if (maxWindow < 1) {
+            throw new IllegalArgumentException("maxWindow must be at least 1");
+        }
+        this.client = client;
+        this.intervalMillis = intervalMillis;
+        this.maxWindow = maxWindow;
+        this.scheduler = new ScheduledThreadPoolExecutor(threads, new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "etherpad-chat-follower-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.scheduler.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * Adds a listener for the new messages of all followed pads.
+     *
+     * @param listener the listener
+     */
+    public void addListener(ChatListener listener) {
+        this.listeners.add(listener);
+    }
+
+    /**
+     * Removes a listener.
+     *
+     * @param listener the listener
+     */
+    public void removeListener(ChatListener listener) {
+        this.listeners.remove(listener);
+    }
+
+    /**
+     * Follows a pad from its current chat head; only messages added after the first poll are
+     * delivered.
+     *
+     * @param padId the pad's id string
+     */
+    public void follow(String padId) {
+        follow(padId, UNKNOWN);
+    }
+
+    /**
+     * Follows a pad from a chat head seen before, e.g. by an earlier process; messages after it
+     * are delivered.
+     *
+     * @param padId the pad's id string
+     * @param lastSeenHead the index of the last message seen, -1 to deliver the whole chat
+     */
+    public void follow(String padId, long lastSeenHead) {
+        Followed followed = new Followed(padId, lastSeenHead);
+        if (this.pads.putIfAbsent(padId, followed) != null) {
+            return;
+        }
+        // Spread the first polls over the interval
+        long delay = ThreadLocalRandom.current().nextLong(Math.max(1, this.intervalMillis));
+        followed.future = this.scheduler.scheduleWithFixedDelay(followed, delay, this.intervalMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops following a pad.
+     *
+     * @param padId the pad's id string
+     */
+    public void unfollow(String padId) {
+        Followed followed = this.pads.remove(padId);
+        if (followed != null && followed.future != null) {
+            followed.future.cancel(false);
+        }
+    }
+
+    /**
+     * Returns the index of the last message delivered for a pad, or seen by its first poll.
+     *
+     * @param padId the pad's id string
+     * @return the index, -1 for an empty chat, or null if the pad isn't followed or polled yet
+     */
+    public Long getLastSeenHead(String padId) {
+        Followed followed = this.pads.get(padId);
+        return (followed == null || followed.lastSeen == UNKNOWN) ? null : followed.lastSeen;
+    }
+
+    /**
+     * Returns the number of pads followed.
+     *
+     * @return int
+     */
+    public int getFollowedCount() {
+        return this.pads.size();
+    }
+
+    /**
+     * Returns the number of getChatHead polls made.
+     *
+     * @return long
+     */
+    public long getPolls() {
+        return this.polls.get();
+    }
+
+    /**
+     * Returns the number of getChatHistory calls made.
+     *
+     * @return long
+     */
+    public long getFetches() {
+        return this.fetches.get();
+    }
+
+    /**
+     * Returns the number of messages delivered.
+     *
+     * @return long
+     */
+    public long getDelivered() {
+        return this.delivered.get();
+    }
+
+    /**
+     * Stops polling all pads.
+     */
+    public void shutdown() {
+        this.scheduler.shutdown();
+    }
+
+    private void poll(Followed followed) {
+        this.polls.incrementAndGet();
+        Object chatHead = this.client.getChatHead(followed.padId).get("chatHead");
+        long head = (chatHead instanceof Number) ? ((Number) chatHead).longValue() : -1;
+        if (followed.lastSeen == UNKNOWN || head < followed.lastSeen) {
+            // The first poll, or the pad was deleted and created again
+            followed.lastSeen = head;
+            return;
+        }
+        while (followed.lastSeen < head && !this.scheduler.isShutdown()) {
+            long start = followed.lastSeen + 1;
+            long end = Math.min(head, start + this.maxWindow - 1);
+            this.fetches.incrementAndGet();
+            List<ChatHistory.Message> messages = this.client.fetchChatHistory(followed.padId, start, end)
+                    .getMessages();
+            if (messages.isEmpty()) {
+                return;
+            }
+            // Advance first, a failing listener must not make the others receive the messages twice
+            followed.lastSeen = start + messages.size() - 1;
+            this.delivered.addAndGet(messages.size());
+            for (ChatListener listener : this.listeners) {
+                try {
+                    listener.messagesReceived(followed.padId, start, messages);
+                } catch (RuntimeException ex) {
+                    // Each listener gets every message once, even if another one fails
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package net.gjerull.etherpad.client;
+
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The chat messages of a pad, returned by {@link EPLiteClient#fetchChatHistory(String)}.<br />
+ * <br />
+ * The first access only finds where each message starts and ends in the response text, a
+ * message is decoded when it is read.
+ */
+public final class ChatHistory extends EPLiteResponse {
+    private static final int[] NO_BOUNDS = new int[0];
+
+    private volatile int[] bounds;
+    private volatile Message[] messages;
+
+    ChatHistory(ResponseData data) {
+        super(data);
+    }
+
+    /**
+     * Returns the number of messages.
+     *
+     * @return int
+     */
+    public int size() {
+        return bounds().length / 2;
+    }
+
+    /**
+     * Returns a message.
+     *
+     * @param index the index of the message in this response, from 0
+     * @return Message
+     * @throws IndexOutOfBoundsException if there is no such message
+     */
+    public Message get(int index) {
+        int[] b = bounds();
+        if (index < 0 || index >= b.length / 2) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + b.length / 2);
+        }
+        Message[] decoded = this.messages;
+        Message message = decoded[index];
+        if (message == null) {
+            message = decode(b[2 * index], b[2 * index + 1]);
+            // Messages are immutable, decoding one twice in a race is harmless
+            decoded[index] = message;
+        }
+        return message;
+    }
+
+    /**
+     * Returns the messages as a List decoding each message when it is read.
+     *
+     * @return an unmodifiable List
+     */
+    public List<Message> getMessages() {
+        return new AbstractList<Message>() {
+            @Override
+            public Message get(int index) {
+                return ChatHistory.this.get(index);
+            }
+
+            @Override
+            public int size() {
+                return ChatHistory.this.size();
+            }
+        };
+    }
+
+    private int[] bounds() {
+        int[] b = this.bounds;
+        if (b == null) {
+            b = NO_BOUNDS;
+            int count = 0;
+            JsonReader reader = null;
+            try {
+                reader = this.data.field("messages");
+                if (reader != null && reader.peek() == JsonReader.BEGIN_ARRAY) {
+                    reader.beginArray();
+                    b = new int[32];
+                    while (reader.hasNext()) {
+                        if (2 * count + 2 > b.length) {
+                            b = Arrays.copyOf(b, b.length * 2);
+                        }
+                        b[2 * count] = reader.valueStart();
+                        reader.skipValue();
+                        b[2 * count + 1] = reader.position();
+                        count++;
+                    }
+                    b = Arrays.copyOf(b, 2 * count);
+                }
+            } catch (IOException ex) {
+                throw this.data.malformed(ex);
+            } finally {
+                ResponseData.closeQuietly(reader);
+            }
+            this.messages = new Message[count];
+            this.bounds = b;
+        }
+        return b;
+    }
+
+    private Message decode(int start, int end) {
+        String text = null;
+        String userId = null;
+        String userName = null;
+        long time = 0;
+        JsonReader reader = this.data.open(start, end);
+        try {
+            if (reader.peek() == JsonReader.BEGIN_OBJECT) {
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    String name = reader.nextName();
+                    if ("text".equals(name)) {
+                        text = ResponseData.readString(reader);
+                    } else if ("userId".equals(name)) {
+                        userId = ResponseData.readString(reader);
+                    } else if ("userName".equals(name)) {
+                        userName = ResponseData.readString(reader);
+                    } else if ("time".equals(name)) {
+                        time = ResponseData.readLong(reader, 0);
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+            } else {
+                reader.skipValue();
+            }
+        } catch (IOException ex) {
+            throw this.data.malformed(ex);
+        } finally {
+            ResponseData.closeQuietly(reader);
+        }
+        return new Message(text, userId, time, userName);
+    }
+
+    /**
+     * A chat message.
+     */
+    public static final class Message {
+        private final String text;
+        private final String userId;
+        private final long time;
+        private final String userName;
+
+        Message(String text, String userId, long time, String userName) {
+            this.text = text;
+            this.userId = userId;
+            this.time = time;
+            this.userName = userName;
+        }
+
+        /**
+         * Returns the text of the message.
+         *
+         * @return String
+         */
+        public String getText() {
+            return this.text;
+        }
+
+        /**
+         * Returns the author id of the sender.
+         *
+         * @return String
+         */
+        public String getUserId() {
+            return this.userId;
+        }
+
+        /**
+         * Returns when the message was sent, in milliseconds since the epoch.
+         *
+         * @return long
+         */
+        public long getTime() {
+            return this.time;
+        }
+
+        /**
+         * Returns the name of the sender, or null if the author has no name.
+         *
+         * @return String
+         */
+        public String getUserName() {
+            return this.userName;
+        }
+
+        @Override
+        public String toString() {
+            return "Message[" + this.userId + " at " + this.time + ": " + this.text + "]";
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package net.gjerull.etherpad.client;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Iterates over the chat messages of a pad a window at a time, oldest or newest first.<br />
+ * <br />
+ * The chat head is read once, when the iterator is created, so messages added later are not
+ * returned. Each window is fetched with getChatHistory(padId, start, end), and the next window
+ * is fetched in the background while the current one is read, so at most two windows are held
+ * in memory. Close the iterator when stopping early.<br />
+ * <br />
+ * Example:<br />
+ * <br />
+ * <code>
+ * ChatHistoryIterator messages = new ChatHistoryIterator(client, padId, 500, true);<br />
+ * try {<br />
+ * &nbsp;&nbsp;while (messages.hasNext()) {<br />
+ * &nbsp;&nbsp;&nbsp;&nbsp;ChatHistory.Message message = messages.next();<br />
+ * &nbsp;&nbsp;}<br />
+ * } finally {<br />
+ * &nbsp;&nbsp;messages.close();<br />
+ * }
+ * </code>
+ */
+public class ChatHistoryIterator implements Iterator<ChatHistory.Message>, Closeable {
+    /**
+     * Fetches windows for iterators created without an executor, on one thread per processor (at
+     * least two); a window still queued when it is needed is fetched by the reading thread instead.
+     */
+    private static final class Prefetcher {
+        static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(
+                Math.max(2, Runtime.getRuntime().availableProcessors()), new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "etherpad-chat-prefetch-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    private final EPLiteClient client;
+    private final String padId;
+    private final int windowSize;
+    private final boolean newestFirst;
+    private final Executor executor;
+    private final long head;
+
+    private ChatHistory window;
+    private long windowStart;
+    private int position;
+    private long nextIndex;
+    private long lastIndex = -1;
+    private FutureTask<ChatHistory> prefetch;
+    private long prefetchStart;
+    private boolean closed;
+
+    /**
+     * Instantiates a new ChatHistoryIterator, prefetching on a shared, fixed-size pool of daemon
+     * threads.
+     *
+     * @param client the client to read the chat with
+     * @param padId the pad's id string
+     * @param windowSize the number of messages fetched at a time
+     * @param newestFirst true to return the newest message first, false for the oldest
+     */
+    public ChatHistoryIterator(EPLiteClient client, String padId, int windowSize, boolean newestFirst) {
+        this(client, padId, windowSize, newestFirst, Prefetcher.EXECUTOR);
+    }
+
+    /**
+     * Instantiates a new ChatHistoryIterator, reads the chat head and starts fetching the first
+     * window.
+     *
+     * @param client the client to read the chat with
+     * @param padId the pad's id string
+     * @param windowSize the number of messages fetched at a time
+     * @param newestFirst true to return the newest message first, false for the oldest
+     * @param executor runs the prefetches
+     */
+    public ChatHistoryIterator(EPLiteClient client, String padId, int windowSize, boolean newestFirst,
+                               Executor executor) {
+        if (windowSize < 1) {
+            throw new IllegalArgumentException("windowSize must be at least 1");
+        }
+        this.client = client;
+        this.padId = padId;
+        this.windowSize = windowSize;
+        this.newestFirst = newestFirst;
+        this.executor = executor;
+        Object chatHead = client.getChatHead(padId).get("chatHead");
+        // An empty chat has head -1
+        this.head = (chatHead instanceof Number) ? ((Number) chatHead).longValue() : -1;
+        this.nextIndex = newestFirst ? this.head : 0;
+        startPrefetch();
+    }
+
+    /**
+     * Returns the chat head read when the iterator was created, the index of the newest message,
+     * or -1 if the chat was empty.
+     *
+     * @return long
+     */
+    public long getHead() {
+        return this.head;
+    }
+
+    /**
+     * Returns the index in the chat of the message last returned by next(), or -1 before the first.
+     *
+     * @return long
+     */
+    public long getLastIndex() {
+        return this.lastIndex;
+    }
+
+    /**
+     * Returns true if there are more messages.
+     *
+     * @return boolean
+     */
+    public boolean hasNext() {
+        return !this.closed && this.nextIndex >= 0 && this.nextIndex <= this.head;
+    }
+
+    /**
+     * Returns the next message, waiting for its window if it is still being fetched.
+     *
+     * @return ChatHistory.Message
+     */
+    public ChatHistory.Message next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        if (this.window == null || this.position < 0 || this.position >= this.window.size()) {
+            takePrefetch();
+        }
+        ChatHistory.Message message = this.window.get(this.position);
+        this.lastIndex = this.nextIndex;
+        if (this.newestFirst) {
+            this.position--;
+            this.nextIndex--;
+        } else {
+            this.position++;
+            this.nextIndex++;
+        }
+        return message;
+    }
+
+    /**
+     * Not supported, the chat is read-only.
+     */
+    public void remove() {
+        throw new UnsupportedOperationException("remove");
+    }
+
+    /**
+     * Stops the iteration and cancels a prefetch in progress.
+     */
+    public void close() {
+        this.closed = true;
+        this.window = null;
+        if (this.prefetch != null) {
+            this.prefetch.cancel(true);
+            this.prefetch = null;
+        }
+    }
+
+    /**
+     * Makes the prefetched window current and starts fetching the one after it.
+     */
+    private void takePrefetch() {
+        ChatHistory next;
+        try {
+            // Fetch here if the executor hasn't started it yet; a no-op if it is running or done
+            this.prefetch.run();
+            next = this.prefetch.get();
+        } catch (ExecutionException ex) {
+            close();
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw new EPLiteException("Unable to read the chat of " + this.padId, ex.getCause());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new EPLiteException("Interrupted while reading the chat of " + this.padId, ex);
+        }
+        this.window = next;
+        this.windowStart = this.prefetchStart;
+        this.position = (int) (this.nextIndex - this.windowStart);
+        if (this.position < 0 || this.position >= next.size()) {
+            close();
+            throw new EPLiteException("The chat of " + this.padId + " changed while it was read");
+        }
+        startPrefetch();
+    }
+
+    /**
+     * Starts fetching the window after the one holding nextIndex, or the first window.
+     */
+    private void startPrefetch() {
+        long start;
+        long end;
+        if (this.window == null) {
+            if (this.head < 0) {
+                return;
+            }
+            start = this.newestFirst ? Math.max(0, this.head - this.windowSize + 1) : 0;
+            end = this.newestFirst ? this.head : Math.min(this.head, this.windowSize - 1);
+        } else if (this.newestFirst) {
+            end = this.windowStart - 1;
+            start = Math.max(0, end - this.windowSize + 1);
+            if (end < 0) {
+                this.prefetch = null;
+                return;
+            }
+        } else {
+            start = this.windowStart + this.window.size();
+            end = Math.min(this.head, start + this.windowSize - 1);
+            if (start > this.head) {
+                this.prefetch = null;
+                return;
+            }
+        }
+        final long from = start;
+        final long to = end;
+        this.prefetchStart = start;
+        this.prefetch = new FutureTask<>(new Callable<ChatHistory>() {
+            public ChatHistory call() {
+                return client.fetchChatHistory(padId, from, to);
+            }
+        });
+        this.executor.execute(TraceContext.wrap(this.prefetch));
+    }
+}
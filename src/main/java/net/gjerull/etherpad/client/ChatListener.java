@@ -0,0 +1,30 @@
+package net.gjerull.etherpad.client;
+
+import java.util.List;
+
+/**
+ * Receives the new chat messages of the pads a {@link ChatFollower} follows.<br />
+ * <br />
+ * The messages of a pad are delivered in order, never by two threads at the same time, on the
+ * follower's threads; a listener that blocks delays the pads polled after it. An exception
+ * thrown by a listener is ignored: the messages count as delivered and the other listeners still
+ * receive them.
+ */
+public interface ChatListener {
+    /**
+     * Called with messages added to a pad since the last delivery.
+     *
+     * @param padId the pad's id string
+     * @param firstIndex the index in the chat of the first message
+     * @param messages the new messages, oldest first
+     */
+    void messagesReceived(String padId, long firstIndex, List<ChatHistory.Message> messages);
+
+    /**
+     * Called when a poll of a pad failed. The pad is polled again at the next interval.
+     *
+     * @param padId the pad's id string
+     * @param error the error
+     */
+    void pollFailed(String padId, EPLiteException error);
+}
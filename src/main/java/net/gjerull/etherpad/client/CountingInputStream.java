@@ -0,0 +1,60 @@
+package net.gjerull.etherpad.client;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * An InputStream that counts the bytes read through it.
+ */
+final class CountingInputStream extends FilterInputStream {
+    private long count;
+
+    /**
+     * Instantiates a new CountingInputStream.
+     *
+     * @param in the stream to read from
+     */
+    CountingInputStream(InputStream in) {
+        super(in);
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b != -1) {
+            this.count++;
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int n = super.read(b, off, len);
+        if (n > 0) {
+            this.count += n;
+        }
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = super.skip(n);
+        this.count += skipped;
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    /**
+     * Returns the number of bytes read so far.
+     *
+     * @return long
+     */
+    long getCount() {
+        return this.count;
+    }
+}
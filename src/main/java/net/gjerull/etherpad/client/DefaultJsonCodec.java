@@ -0,0 +1,106 @@
+package net.gjerull.etherpad.client;
+
+import java.io.IOException;
+import java.text.ParseException;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+
+/**
+ * The default {@link JsonCodec}, decoding with a streaming tokenizer.<br />
+ * <br />
+ * Unlike a JSON.simple JSONParser, which allocates a new 16K character lexer buffer for every
+ * response, it reuses a read buffer per thread and copies each string once. Objects and arrays
+ * are still decoded into JSONObjects and JSONArrays, so the Maps returned by the client keep
+ * their types.
+ */
+public final class DefaultJsonCodec implements JsonCodec {
+    /**
+     * The shared instance, the codec has no state.
+     */
+    public static final DefaultJsonCodec INSTANCE = new DefaultJsonCodec();
+
+    private static final int CACHED_LONGS = 1024;
+    private static final Long[] LONGS = new Long[CACHED_LONGS];
+
+    static {
+        for (int i = 0; i < CACHED_LONGS; i++) {
+            LONGS[i] = (long) i;
+        }
+    }
+
+    public Object decode(String json) throws ParseException {
+        JsonReader reader = new JsonReader(json);
+        try {
+            Object value = read(reader);
+            if (reader.peek() != JsonReader.END_DOCUMENT) {
+                throw new ParseException("Expected the end of the document", reader.position());
+            }
+            return value;
+        } catch (JsonReader.MalformedJsonException ex) {
+            ParseException parseException = new ParseException(ex.getMessage(), ex.getOffset());
+            parseException.initCause(ex);
+            throw parseException;
+        } catch (IOException ex) {
+            // Reading from a String does not fail
+            throw new IllegalStateException(ex);
+        } finally {
+            closeQuietly(reader);
+        }
+    }
+
+    /**
+     * Reads the next value, including nested arrays and objects.
+     */
+    @SuppressWarnings("unchecked")
+    static Object read(JsonReader reader) throws IOException {
+        switch (reader.peek()) {
+            case JsonReader.BEGIN_OBJECT:
+                JSONObject object = new JSONObject();
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    String name = reader.nextName();
+                    object.put(name, read(reader));
+                }
+                reader.endObject();
+                return object;
+            case JsonReader.BEGIN_ARRAY:
+                JSONArray array = new JSONArray();
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    array.add(read(reader));
+                }
+                reader.endArray();
+                return array;
+            case JsonReader.STRING:
+                return reader.nextString();
+            case JsonReader.NUMBER:
+                Number number = reader.nextNumber();
+                if (number instanceof Long) {
+                    long value = number.longValue();
+                    // Revisions, counts and small timestamps share the same Long objects
+                    if (value >= 0 && value < CACHED_LONGS) {
+                        return LONGS[(int) value];
+                    }
+                }
+                return number;
+            case JsonReader.BOOLEAN:
+                return reader.nextBoolean() ? Boolean.TRUE : Boolean.FALSE;
+            case JsonReader.NULL:
+                reader.nextNull();
+                return null;
+            default:
+                // Let the reader report the unexpected token
+                reader.skipValue();
+                throw new IllegalStateException("Unexpected token");
+        }
+    }
+
+    private static void closeQuietly(JsonReader reader) {
+        try {
+            reader.close();
+        } catch (IOException ex) {
+            // Reading from a String, nothing to close
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package net.gjerull.etherpad.client;
+
+/**
+ * An error reported by the Etherpad Lite API in the "code" and "message" of its response.<br />
+ * <br />
+ * API errors are expected outcomes such as "padID does not exist", so they don't fill in a stack
+ * trace. Catch one of the subclasses to handle a single error code.
+ */
+public class EPLiteApiException extends EPLiteException {
+    private final int code;
+
+    /**
+     * Instantiates a new EPLiteApiException.
+     *
+     * @param code the Etherpad Lite error code
+     * @param message the error message
+     */
+    public EPLiteApiException(int code, String message) {
+        super(message, null, false, false);
+        this.code = code;
+    }
+
+    /**
+     * Returns the Etherpad Lite error code.
+     *
+     * @return int
+     */
+    public int getCode() {
+        return this.code;
+    }
+
+    /**
+     * Returns the exception for an error code and message, using the subclass of known codes.
+     *
+     * @param code the Etherpad Lite error code
+     * @param message the error message
+     * @return EPLiteApiException
+     */
+    public static EPLiteApiException forCode(int code, String message) {
+        switch (code) {
+            case EPLiteConnection.CODE_INVALID_PARAMETERS:
+                return new EPLiteInvalidParametersException(message);
+            case EPLiteConnection.CODE_INTERNAL_ERROR:
+                return new EPLiteInternalErrorException(message);
+            case EPLiteConnection.CODE_INVALID_METHOD:
+                return new EPLiteInvalidMethodException(message);
+            case EPLiteConnection.CODE_INVALID_API_KEY:
+                return new EPLiteInvalidApiKeyException(message);
+            default:
+                return new EPLiteApiException(code, message);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package net.gjerull.etherpad.client;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * An API call as seen by {@link EPLiteInterceptor}s.<br />
+ * <br />
+ * Interceptors may add request headers before the call is sent, and keep their own state, e.g.
+ * a span, in the attributes of the call.
+ */
+public final class EPLiteCall {
+    private final String endpoint;
+    private final String apiMethod;
+    private final Map<String, Object> arguments;
+    private final Map<String, String> headers = new LinkedHashMap<>();
+    private Map<String, Object> attributes;
+    private int code = EPLiteConnection.CODE_CLIENT_ERROR;
+    private long durationNanos;
+
+    // Kept for the end of the call by the connection
+    final EPLiteMetricsListener listener;
+    final EPLiteInterceptor[] interceptors;
+    final Object event;
+    long start;
+
+    EPLiteCall(String endpoint, String apiMethod, Map<String, Object> arguments,
+               EPLiteMetricsListener listener, EPLiteInterceptor[] interceptors, Object event) {
+        this.endpoint = endpoint;
+        this.apiMethod = apiMethod;
+        this.arguments = Collections.unmodifiableMap(arguments);
+        this.listener = listener;
+        this.interceptors = interceptors;
+        this.event = event;
+    }
+
+    /**
+     * Returns the url of the Etherpad Lite instance.
+     *
+     * @return String
+     */
+    public String getEndpoint() {
+        return this.endpoint;
+    }
+
+    /**
+     * Returns the name of the API method.
+     *
+     * @return String
+     */
+    public String getApiMethod() {
+        return this.apiMethod;
+    }
+
+    /**
+     * Returns the arguments of the call, without the API key.
+     *
+     * @return an unmodifiable Map
+     */
+    public Map<String, Object> getArguments() {
+        return this.arguments;
+    }
+
+    /**
+     * Returns the headers sent with the request. Changes made after before() have no effect.
+     *
+     * @return Map
+     */
+    public Map<String, String> getHeaders() {
+        return this.headers;
+    }
+
+    /**
+     * Sets a header sent with the request.
+     *
+     * @param name the header name, e.g. "traceparent"
+     * @param value the header value
+     */
+    public void setHeader(String name, String value) {
+        this.headers.put(name, value);
+    }
+
+    /**
+     * Returns an attribute set by an interceptor.
+     *
+     * @param name the attribute name
+     * @return Object, or null
+     */
+    public Object getAttribute(String name) {
+        return (this.attributes != null) ? this.attributes.get(name) : null;
+    }
+
+    /**
+     * Keeps a value with the call, e.g. from before() for after().
+     *
+     * @param name the attribute name
+     * @param value the value
+     */
+    public void setAttribute(String name, Object value) {
+        if (this.attributes == null) {
+            this.attributes = new HashMap<>();
+        }
+        this.attributes.put(name, value);
+    }
+
+    /**
+     * Returns the Etherpad Lite code of the response, CODE_CLIENT_ERROR before the call ended or
+     * if there was no valid response.
+     *
+     * @return int
+     */
+    public int getCode() {
+        return this.code;
+    }
+
+    /**
+     * Returns the time from sending the request until the response was handled, 0 before the
+     * call ended.
+     *
+     * @return long nanoseconds
+     */
+    public long getDurationNanos() {
+        return this.durationNanos;
+    }
+
+    void ended(int code, long durationNanos) {
+        this.code = code;
+        this.durationNanos = durationNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "EPLiteCall[" + this.endpoint + " " + this.apiMethod + ", code=" + this.code + "]";
+    }
+}
@@ -43,6 +43,62 @@ public class EPLiteClient {
         this.connection = new EPLiteConnection(url, apiKey, apiVersion, encoding);
     }
 
+    /**
+     * Initializes a new net.gjerull.etherpad.client.EPLiteClient object.
+     * The specified Etherpad Lite API version will be used, and responses are decoded with the
+     * given codec.
+     *
+     * @param url an absolute url, including protocol, to the EPL api
+     * @param apiKey the API Key
+     * @param apiVersion the API version
+     * @param jsonCodec the codec decoding the JSON responses
+     */
+    public EPLiteClient(String url, String apiKey, String apiVersion, String encoding,
+                        JsonCodec jsonCodec) {
+        this.connection = new EPLiteConnection(url, apiKey, apiVersion, encoding, jsonCodec);
+    }
+
+    /**
+     * Reports the latency, status and size of every call to the given listener.<br />
+     * <br />
+     * Example:<br />
+     * <br />
+     * <code>
+     * MetricsRegistry metrics = new MetricsRegistry();<br />
+     * client.setMetricsListener(metrics);<br />
+     * new PrometheusExporter(metrics, 9464);
+     * </code>
+     *
+     * @param metricsListener the listener, or null to stop reporting
+     */
+    public void setMetricsListener(EPLiteMetricsListener metricsListener) {
+        this.connection.setMetricsListener(metricsListener);
+    }
+
+    /**
+     * Adds an interceptor called around every call, e.g. to propagate traces.<br />
+     * <br />
+     * Example:<br />
+     * <br />
+     * <code>
+     * client.addInterceptor(new TracingInterceptor());
+     * </code>
+     *
+     * @param interceptor the interceptor
+     */
+    public void addInterceptor(EPLiteInterceptor interceptor) {
+        this.connection.addInterceptor(interceptor);
+    }
+
+    /**
+     * Removes an interceptor.
+     *
+     * @param interceptor the interceptor
+     */
+    public void removeInterceptor(EPLiteInterceptor interceptor) {
+        this.connection.removeInterceptor(interceptor);
+    }
+
     // Groups
     // Pads may belong to a group. These pads are not considered "public", and won't be available
     // through the Web UI without a session.
@@ -81,6 +137,18 @@ public class EPLiteClient {
         this.connection.post("deleteGroup", args);
     }
 
+    /**
+     * Delete group, returning the outcome instead of throwing on errors.
+     *
+     * @param groupID string
+     * @return EPLiteResult, e.g. an error if the group does not exist
+     */
+    public EPLiteResult<Map> tryDeleteGroup(String groupID) {
+        Map<String, Object> args = new HashMap<>();
+        args.put("groupID", groupID);
+        return asMap(this.connection.postResult("deleteGroup", args));
+    }
+
     /**
      * List all the padIDs in a group. They will be in an array inside "padIDs".
      *
@@ -93,6 +161,31 @@ public class EPLiteClient {
         return this.connection.get("listPads", args);
     }
 
+    /**
+     * Iterates over the padIDs in a group while they are read from the server.
+     * Close the iterator if you stop before the last id.
+     *
+     * @param groupID string
+     * @return IdIterator over the pad ids
+     */
+    public IdIterator iteratePads(String groupID) {
+        Map<String, Object> args = new HashMap<>();
+        args.put("groupID", groupID);
+        return this.connection.getIds("listPads", args, "padIDs");
+    }
+
+    /**
+     * List all the padIDs in a group as a typed response.
+     *
+     * @param groupID string
+     * @return PadList
+     */
+    public PadList fetchPads(String groupID) {
+        Map<String, Object> args = new HashMap<>();
+        args.put("groupID", groupID);
+        return new PadList(this.connection.getData("listPads", args));
+    }
+
     /**
      * Create a pad in this group.
      *
@@ -106,6 +199,20 @@ public class EPLiteClient {
         return this.connection.post("createGroupPad", args);
     }
 
+    /**
+     * Create a pad in this group, returning the outcome instead of throwing on errors.
+     *
+     * @param groupID the group the pad belongs to
+     * @param padName name of the pad
+     * @return EPLiteResult with padID, or an error e.g. if the pad already exists
+     */
+    public EPLiteResult<Map> tryCreateGroupPad(String groupID, String padName) {
+        Map<String, Object> args = new HashMap<>();
+        args.put("groupID", groupID);
+        args.put("padName", padName);
+        return asMap(this.connection.postResult("createGroupPad", args));
+    }
+
     /**
      * Create a pad in this group, with initial text.
      *
@@ -130,6 +237,16 @@ public class EPLiteClient {
         return this.connection.get("listAllGroups");
     }
 
+    /**
+     * Iterates over all existing group ids while they are read from the server, without holding
+     * the whole list in memory. Close the iterator if you stop before the last id.
+     *
+     * @return IdIterator over the group ids
+     */
+    public IdIterator iterateAllGroups() {
+        return this.connection.getIds("listAllGroups", new HashMap<String, Object>(), "groupIDs");
+    }
+
     // Authors
     // These authors are bound to the attributes the users choose (color and name).
     // The author id is returned in "authorID".
@@ -316,6 +433,18 @@ public class EPLiteClient {
         return this.connection.get("getSessionInfo", args);
     }
 
+    /**
+     * Returns information about a session as a typed response.
+     *
+     * @param sessionID string
+     * @return SessionInfo
+     */
+    public SessionInfo fetchSessionInfo(String sessionID) {
+        Map<String, Object> args = new HashMap<>();
+        args.put("sessionID", sessionID);
+        return new SessionInfo(this.connection.getData("getSessionInfo", args));
+    }
+
     /**
      * List all the sessions IDs in a group. Returned as a Map of sessionIDs keys, with values of
      * Maps containing groupID, authorID, and validUntil.
@@ -357,6 +486,19 @@ public class EPLiteClient {
         return this.connection.get("getText", args);
     }
 
+    /**
+     * Returns the latest revision of the pad's text, returning the outcome instead of throwing on
+     * errors.
+     *
+     * @param padId the pad's id string
+     * @return EPLiteResult with the text content of pad, or an error e.g. if the pad does not exist
+     */
+    public EPLiteResult<Map> tryGetText(String padId) {
+        Map<String, Object> args = new HashMap<>();
+        args.put("padID", padId);
+        return asMap(this.connection.getResult("getText", args));
+    }
+
     /**
      * Returns a Map containing the a specific revision of the pad's text.
      * The text is stored under "text".
@@ -372,6 +514,32 @@ public class EPLiteClient {
         return this.connection.get("getText", args);
     }
 
+    /**
+     * Returns the text of the pad as a typed response.
+     *
+     * @param padId the pad's id string
+     * @return PadText
+     */
+    public PadText fetchText(String padId) {
+        Map<String, Object> args = new HashMap<>();
+        args.put("padID", padId);
+        return new PadText(this.connection.getData("getText", args));
+    }
+
+    /**
+     * Returns the text of the pad at the specified revision as a typed response.
+     *
+     * @param padId the pad's id string
+     * @param rev the revision to retrieve
+     * @return PadText
+     */
+    public PadText fetchText(String padId, long rev) {
+        Map<String, Object> args = new HashMap<>();
+        args.put("padID", padId);
+        args.put("rev", rev);
+        return new PadText(this.connection.getData("getText", args));
+    }
+
     /**
      * Creates a new revision with the given text.
      *
@@ -537,6 +705,38 @@ public class EPLiteClient {
         return this.connection.get("getChatHistory", args);
     }
 
+    /**
+     * Returns the complete chat history of pad as a typed response.
+     * <br/>
+     * API >= 1.2.7
+     *
+     * @param padId the pad's id string
+     * @return ChatHistory
+     */
+    public ChatHistory fetchChatHistory(String padId) {
+        Map<String, Object> args = new HashMap<>();
+        args.put("padID", padId);
+        return new ChatHistory(this.connection.getData("getChatHistory", args));
+    }
+
+    /**
+     * Returns the chat history of pad with index between start and end as a typed response.
+     * <br/>
+     * API >= 1.2.7
+     *
+     * @param padId the pad's id string
+     * @param start the start index
+     * @param end the end index
+     * @return ChatHistory
+     */
+    public ChatHistory fetchChatHistory(String padId, long start, long end) {
+        Map<String, Object> args = new HashMap<>();
+        args.put("padID", padId);
+        args.put("start", start);
+        args.put("end", end);
+        return new ChatHistory(this.connection.getData("getChatHistory", args));
+    }
+
     /**
      * Returns the chatHead (last number of the last chat-message) of the pad.
      * <br/>
@@ -602,6 +802,25 @@ public class EPLiteClient {
         return this.connection.get("listAllPads");
     }
 
+    /**
+     * Iterates over all pad ids while they are read from the server, without holding the whole
+     * list in memory. Close the iterator if you stop before the last id.
+     *
+     * @return IdIterator over the pad ids
+     */
+    public IdIterator iterateAllPads() {
+        return this.connection.getIds("listAllPads", new HashMap<String, Object>(), "padIDs");
+    }
+
+    /**
+     * Lists all pads on this epl instance as a typed response.
+     *
+     * @return PadList
+     */
+    public PadList fetchAllPads() {
+        return new PadList(this.connection.getData("listAllPads", new HashMap<String, Object>()));
+    }
+
     /**
      * Create a new pad.
      *
@@ -613,6 +832,18 @@ public class EPLiteClient {
         this.connection.post("createPad", args);
     }
 
+    /**
+     * Create a new pad, returning the outcome instead of throwing on errors.
+     *
+     * @param padId the pad's id string
+     * @return EPLiteResult, e.g. an error if the pad already exists
+     */
+    public EPLiteResult<Map> tryCreatePad(String padId) {
+        Map<String, Object> args = new HashMap<>();
+        args.put("padID", padId);
+        return asMap(this.connection.postResult("createPad", args));
+    }
+
     /**
      * Create a new pad with the given initial text.
      *
@@ -638,6 +869,31 @@ public class EPLiteClient {
         return this.connection.get("getRevisionsCount", args);
     }
 
+    /**
+     * Returns the number of revisions of this pad, returning the outcome instead of throwing on
+     * errors. A cheap way to check if a pad exists.
+     *
+     * @param padId the pad's id string
+     * @return EPLiteResult with the number of revisions, or an error e.g. if the pad does not exist
+     */
+    public EPLiteResult<Map> tryGetRevisionsCount(String padId) {
+        Map<String, Object> args = new HashMap<>();
+        args.put("padID", padId);
+        return asMap(this.connection.getResult("getRevisionsCount", args));
+    }
+
+    /**
+     * Get the number of revisions of a pad as a typed response.
+     *
+     * @param padId the pad's id string
+     * @return RevisionCount
+     */
+    public RevisionCount fetchRevisionsCount(String padId) {
+        Map<String, Object> args = new HashMap<>();
+        args.put("padID", padId);
+        return new RevisionCount(this.connection.getData("getRevisionsCount", args));
+    }
+
     /**
      * Returns the number of saved revisions of this pad.
      * <br/>
@@ -730,6 +986,18 @@ public class EPLiteClient {
         this.connection.post("deletePad", args);
     }
 
+    /**
+     * Deletes a pad, returning the outcome instead of throwing on errors.
+     *
+     * @param padId the pad's id string
+     * @return EPLiteResult, e.g. an error if the pad does not exist
+     */
+    public EPLiteResult<Map> tryDeletePad(String padId) {
+        Map<String, Object> args = new HashMap<>();
+        args.put("padID", padId);
+        return asMap(this.connection.postResult("deletePad", args));
+    }
+
     /**
      * Copies a pad with full history and chat. If the destination exists the copy will fail.
      * <br/>
@@ -919,4 +1187,9 @@ public class EPLiteClient {
     public boolean isSecure() {
         return (this.connection.uri.getPort() == 443);
     }
+
+    @SuppressWarnings("unchecked")
+    private static EPLiteResult<Map> asMap(EPLiteResult<Object> result) {
+        return (EPLiteResult<Map>) (EPLiteResult<?>) result;
+    }
 }
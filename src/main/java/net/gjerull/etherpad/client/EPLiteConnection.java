@@ -1,16 +1,23 @@
 package net.gjerull.etherpad.client;
 
-import java.io.UnsupportedEncodingException;
+import java.io.IOException;
+import java.io.InputStreamReader;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
-import java.net.URLEncoder;
+import java.nio.charset.Charset;
 import java.security.KeyManagementException;
 import java.security.NoSuchAlgorithmException;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.net.ssl.HostnameVerifier;
 import javax.net.ssl.HttpsURLConnection;
@@ -19,9 +26,6 @@ import javax.net.ssl.SSLSession;
 import javax.net.ssl.TrustManager;
 import javax.net.ssl.X509TrustManager;
 
-import org.json.simple.parser.JSONParser;
-import org.json.simple.parser.ParseException;
-
 /**
  * Connection object for talking to and parsing responses from the Etherpad Lite Server.
  */
@@ -31,6 +35,15 @@ public class EPLiteConnection {
     public static final int CODE_INTERNAL_ERROR = 2;
     public static final int CODE_INVALID_METHOD = 3;
     public static final int CODE_INVALID_API_KEY = 4;
+    /**
+     * The code of results for calls that failed in the client, before the server answered.
+     */
+    public static final int CODE_CLIENT_ERROR = -1;
+
+    /**
+     * The maximum number of characters of a response included in an exception message.
+     */
+    private static final int MAX_RESPONSE_IN_MESSAGE = 200;
 
     /**
      * The url of the API.
@@ -52,6 +65,36 @@ public class EPLiteConnection {
      */
     public final String encoding;
 
+    /**
+     * The codec decoding the JSON responses.
+     */
+    private final JsonCodec jsonCodec;
+
+    /**
+     * The charset of the encoding, or null if it isn't supported.
+     */
+    private final Charset charset;
+
+    /**
+     * The endpoints of the API methods called so far.
+     */
+    private final ConcurrentMap<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+
+    /**
+     * The url of the instance, without credentials, reported to the metrics listener.
+     */
+    private final String endpointName;
+
+    /**
+     * The listener told about every call, or null.
+     */
+    private volatile EPLiteMetricsListener metricsListener;
+
+    /**
+     * The interceptors called around every call, replaced as a whole when one is added.
+     */
+    private volatile EPLiteInterceptor[] interceptors = new EPLiteInterceptor[0];
+
     /**
      * Initializes a new net.gjerull.etherpad.client.EPLiteConnection object.
      *
@@ -60,6 +103,20 @@ public class EPLiteConnection {
      * @param apiVersion the API version
      */
     public EPLiteConnection(String url, String apiKey, String apiVersion, String encoding) {
+        this(url, apiKey, apiVersion, encoding, DefaultJsonCodec.INSTANCE);
+    }
+
+    /**
+     * Initializes a new net.gjerull.etherpad.client.EPLiteConnection object decoding the
+     * responses with the given codec.
+     *
+     * @param url an absolute url, including protocol, to the EPL api
+     * @param apiKey the API Key
+     * @param apiVersion the API version
+     * @param jsonCodec the codec decoding the JSON responses
+     */
+    public EPLiteConnection(String url, String apiKey, String apiVersion, String encoding,
+                            JsonCodec jsonCodec) {
         if (url.endsWith("/")) {
             url = url.substring(0, url.length() - 1);
         }
@@ -67,6 +124,51 @@ public class EPLiteConnection {
         this.apiKey = apiKey;
         this.apiVersion = apiVersion;
         this.encoding = encoding;
+        this.jsonCodec = jsonCodec;
+        Charset resolved;
+        try {
+            resolved = Charset.forName(encoding);
+        } catch (IllegalArgumentException ex) {
+            // Reported when arguments are encoded, as before
+            resolved = null;
+        }
+        this.charset = resolved;
+        this.endpointName = this.uri.getScheme() + "://" + this.uri.getHost()
+                + ((this.uri.getPort() != -1) ? ":" + this.uri.getPort() : "") + this.uri.getPath();
+    }
+
+    /**
+     * Sets the listener told about every call, e.g. a {@link MetricsRegistry}.
+     *
+     * @param metricsListener the listener, or null for none
+     */
+    public void setMetricsListener(EPLiteMetricsListener metricsListener) {
+        this.metricsListener = metricsListener;
+    }
+
+    /**
+     * Adds an interceptor called around every call, after those added before.
+     *
+     * @param interceptor the interceptor
+     */
+    public synchronized void addInterceptor(EPLiteInterceptor interceptor) {
+        if (interceptor == null) {
+            throw new IllegalArgumentException("interceptor must not be null");
+        }
+        EPLiteInterceptor[] added = Arrays.copyOf(this.interceptors, this.interceptors.length + 1);
+        added[added.length - 1] = interceptor;
+        this.interceptors = added;
+    }
+
+    /**
+     * Removes an interceptor.
+     *
+     * @param interceptor the interceptor
+     */
+    public synchronized void removeInterceptor(EPLiteInterceptor interceptor) {
+        List<EPLiteInterceptor> remaining = new ArrayList<>(Arrays.asList(this.interceptors));
+        remaining.remove(interceptor);
+        this.interceptors = remaining.toArray(new EPLiteInterceptor[remaining.size()]);
     }
 
     /**
@@ -87,11 +189,7 @@ public class EPLiteConnection {
      * @return Object
      */
     public Object getObject(String apiMethod, Map<String, Object> apiArgs) {
-        String path = this.apiPath(apiMethod);
-        String query = this.queryString(apiArgs, false);
-        URL url = apiUrl(path, query);
-        Request request = new GETRequest(url);
-        return this.call(request);
+        return this.call(apiMethod, apiArgs, this.getRequest(apiMethod, apiArgs));
     }
 
     /**
@@ -117,6 +215,75 @@ public class EPLiteConnection {
         return (response != null) ? response : new HashMap();
     }
 
+    /**
+     * GETs from the HTTP JSON API and iterates over an array of ids in the response data while
+     * the response is being read.
+     *
+     * @param apiMethod the name of the API method to call
+     * @param apiArgs a HashMap of url/form parameters. apikey will be set automatically
+     * @param field the name of the id array inside "data"
+     * @return IdIterator
+     */
+    public IdIterator getIds(String apiMethod, Map<String, Object> apiArgs, String field) {
+        GETRequest request = this.getRequest(apiMethod, apiArgs);
+        trustServerAndCertificate();
+
+        // The call ends when the response code has been read, usually before the ids
+        final EPLiteCall call = this.begin(apiMethod, apiArgs, request);
+        InputStreamReader reader;
+        try {
+            reader = new InputStreamReader(request.openStream(), "UTF-8");
+        } catch (IOException ex) {
+            EPLiteException failure = new EPLiteException("Unable to connect to Etherpad Lite instance ("
+                    + ex.getClass() + "): " + ex.getMessage());
+            this.end(call, request, CODE_CLIENT_ERROR, failure, 0L);
+            throw failure;
+        }
+        IdIterator.Outcome outcome = null;
+        if (call != null) {
+            final GETRequest sent = request;
+            outcome = new IdIterator.Outcome() {
+                public void ended(int code, EPLiteException failure) {
+                    end(call, sent, code, failure, 0L);
+                }
+            };
+        }
+        return new IdIterator(new JsonReader(reader), field, outcome);
+    }
+
+    /**
+     * GETs from the HTTP JSON API and checks the response, leaving the data undecoded for the
+     * typed responses.
+     *
+     * @param apiMethod the name of the API method to call
+     * @param apiArgs a HashMap of url/form parameters. apikey will be set automatically
+     * @return ResponseData
+     */
+    ResponseData getData(String apiMethod, Map<String, Object> apiArgs) {
+        GETRequest request = this.getRequest(apiMethod, apiArgs);
+        EPLiteCall call = this.begin(apiMethod, apiArgs, request);
+        int code = CODE_CLIENT_ERROR;
+        EPLiteException failure = null;
+        long parseNanos = 0L;
+        try {
+            String response = this.send(request);
+            long parseStart = System.nanoTime();
+            ResponseData data = ResponseData.parse(response);
+            parseNanos = System.nanoTime() - parseStart;
+            code = CODE_OK;
+            return data;
+        } catch (EPLiteApiException ex) {
+            code = ex.getCode();
+            failure = ex;
+            throw ex;
+        } catch (EPLiteException ex) {
+            failure = ex;
+            throw ex;
+        } finally {
+            this.end(call, request, code, failure, parseNanos);
+        }
+    }
+
     /**
      * POSTs to the HTTP JSON API.
      *
@@ -135,11 +302,7 @@ public class EPLiteConnection {
      * @return Object
      */
     public Object postObject(String apiMethod, Map<String, Object> apiArgs) {
-        String path = this.apiPath(apiMethod);
-        String query = this.queryString(apiArgs, true);
-        URL url = apiUrl(path, null);
-        Request request = new POSTRequest(url, query);
-        return this.call(request);
+        return this.call(apiMethod, apiArgs, this.postRequest(apiMethod, apiArgs));
     }
 
     /**
@@ -165,6 +328,36 @@ public class EPLiteConnection {
         return (response != null) ? response : new HashMap();
     }
 
+    /**
+     * GETs from the HTTP JSON API without throwing on errors.
+     *
+     * @param apiMethod the name of the API method to call
+     * @param apiArgs a HashMap of url/form parameters. apikey will be set automatically
+     * @return EPLiteResult with the response data or the error
+     */
+    public EPLiteResult<Object> getResult(String apiMethod, Map<String, Object> apiArgs) {
+        try {
+            return this.callResult(apiMethod, apiArgs, this.getRequest(apiMethod, apiArgs));
+        } catch (EPLiteException ex) {
+            return EPLiteResult.failure(ex);
+        }
+    }
+
+    /**
+     * POSTs to the HTTP JSON API without throwing on errors.
+     *
+     * @param apiMethod the name of the API method to call
+     * @param apiArgs a HashMap of url/form parameters. apikey will be set automatically
+     * @return EPLiteResult with the response data or the error
+     */
+    public EPLiteResult<Object> postResult(String apiMethod, Map<String, Object> apiArgs) {
+        try {
+            return this.callResult(apiMethod, apiArgs, this.postRequest(apiMethod, apiArgs));
+        } catch (EPLiteException ex) {
+            return EPLiteResult.failure(ex);
+        }
+    }
+
     /**
      * Handle error condition and returns the parsed content.
      *
@@ -172,34 +365,60 @@ public class EPLiteConnection {
      * @return Object
      */
     protected Object handleResponse(String jsonString) {
+        return this.decodeResponse(jsonString).getOrThrow();
+    }
+
+    /**
+     * Parses the response into a result, without throwing on errors.
+     *
+     * @param jsonString a valid JSON string
+     * @return EPLiteResult
+     */
+    protected EPLiteResult<Object> decodeResponse(String jsonString) {
+        Map response;
         try {
-            JSONParser parser = new JSONParser();
-            Map response = (Map) parser.parse(jsonString);
-            if (response.get("code") != null)  {
-                // Act on the response code
-                int code = ((Long) response.get("code")).intValue();
-                switch (code) {
-                    // Valid code, parse the response
-                    case CODE_OK:
-                        return response.get("data");
-                    // Invalid code, throw an exception with the message
-                    case CODE_INVALID_PARAMETERS:
-                    case CODE_INTERNAL_ERROR:
-                    case CODE_INVALID_METHOD:
-                    case CODE_INVALID_API_KEY:
-                        throw new EPLiteException((String) response.get("message"));
-                    default:
-                        throw new EPLiteException(
-                                "An unknown error has occurred while handling the response: "
-                                        + jsonString);
-                }
-            } else {
-                // No response code, something's really wrong
-                throw new EPLiteException("An unexpected response from the server: " + jsonString);
+            response = (Map) this.jsonCodec.decode(jsonString);
+        } catch (ParseException | ClassCastException ex) {
+            return EPLiteResult.failure(new EPLiteException(
+                    "Unable to parse JSON response (" + truncate(jsonString) + ")", ex));
+        }
+        if (response.get("code") != null)  {
+            // Act on the response code
+            int code = ((Number) response.get("code")).intValue();
+            switch (code) {
+                // Valid code, parse the response
+                case CODE_OK:
+                    return EPLiteResult.ok(response.get("data"));
+                // Invalid code, return the error with the message
+                case CODE_INVALID_PARAMETERS:
+                case CODE_INTERNAL_ERROR:
+                case CODE_INVALID_METHOD:
+                case CODE_INVALID_API_KEY:
+                    return EPLiteResult.error(code, (String) response.get("message"));
+                default:
+                    return EPLiteResult.error(code,
+                            "An unknown error has occurred while handling the response: "
+                                    + truncate(jsonString));
             }
-        } catch (ParseException ex) {
-            throw new EPLiteException("Unable to parse JSON response (" + jsonString + ")", ex);
+        } else {
+            // No response code, something's really wrong
+            return EPLiteResult.failure(new EPLiteException(
+                    "An unexpected response from the server: " + truncate(jsonString)));
+        }
+    }
+
+    /**
+     * Shortens a response for use in an exception message.
+     *
+     * @param response the response
+     * @return String
+     */
+    static String truncate(String response) {
+        if (response == null || response.length() <= MAX_RESPONSE_IN_MESSAGE) {
+            return response;
         }
+        return response.substring(0, MAX_RESPONSE_IN_MESSAGE) + "... (" + response.length()
+                + " characters)";
     }
 
     /**
@@ -230,52 +449,198 @@ public class EPLiteConnection {
     }
 
     /**
-     * Returns a query string made from HashMap keys and values.
+     * Returns a query string made from HashMap keys and values, starting with the API key.
+     * The map is not changed.
      *
      * @param apiArgs the api arguments in a HashMap
      * @return String
      */
     protected String queryString(Map<String, Object> apiArgs, boolean urlEncode) {
-        StringBuilder strArgs = new StringBuilder();
-        apiArgs.put("apikey", this.apiKey);
-        Iterator it = apiArgs.entrySet().iterator();
-        while (it.hasNext()) {
-            Map.Entry entry = (Map.Entry) it.next();
-            Object key = entry.getKey();
-            Object value = entry.getValue();
-            if (urlEncode) {
-                try {
-                    if (key instanceof String) {
-                        URLEncoder.encode((String) key, this.encoding);
-                    }
-                    if (value instanceof String) {
-                        value = URLEncoder.encode((String) value, this.encoding);
-                    }
-                } catch (UnsupportedEncodingException ex) {
-                    throw new EPLiteException(String.format(
-                            "Unable to URLEncode using encoding '%s'", this.encoding), ex);
-                }
-            }
-            strArgs.append(key).append("=").append(value);
-            if (it.hasNext()) {
-                strArgs.append("&");
+        int mode = urlEncode ? ArgumentEncoder.FORM : ArgumentEncoder.RAW;
+        Charset argCharset = urlEncode ? this.charset() : null;
+        ArgumentEncoder encoder = ArgumentEncoder.get().reset(new byte[] {'a', 'p', 'i', 'k', 'e', 'y', '='});
+        encoder.writeValue(this.apiKey, mode, argCharset);
+        encoder.writeArgs(apiArgs, mode, argCharset);
+        return encoder.toUtf8String();
+    }
+
+    /**
+     * Returns the precompiled endpoint of an API method.
+     *
+     * @param apiMethod the api method
+     * @return Endpoint
+     */
+    Endpoint endpoint(String apiMethod) {
+        Endpoint endpoint = this.endpoints.get(apiMethod);
+        if (endpoint == null) {
+            endpoint = new Endpoint(apiUrl(apiPath(apiMethod), null), this.apiKey);
+            Endpoint existing = this.endpoints.putIfAbsent(apiMethod, endpoint);
+            if (existing != null) {
+                endpoint = existing;
             }
         }
-        return strArgs.toString();
+        return endpoint;
+    }
+
+    /**
+     * Builds a GET request, with the arguments in the query after the API key.
+     *
+     * @param apiMethod the name of the API method to call
+     * @param apiArgs a HashMap of url parameters
+     * @return GETRequest
+     */
+    GETRequest getRequest(String apiMethod, Map<String, Object> apiArgs) {
+        ArgumentEncoder encoder = ArgumentEncoder.get().reset(this.endpoint(apiMethod).queryPrefix);
+        encoder.writeArgs(apiArgs, ArgumentEncoder.QUERY, null);
+        try {
+            return new GETRequest(new URL(encoder.toUtf8String()));
+        } catch (MalformedURLException ex) {
+            throw new EPLiteException("Error in the URL to the Etherpad Lite instance ("
+                    + ex.getClass() + "): " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Builds a POST request, with the arguments in the body after the API key.
+     *
+     * @param apiMethod the name of the API method to call
+     * @param apiArgs a HashMap of form parameters
+     * @return POSTRequest
+     */
+    POSTRequest postRequest(String apiMethod, Map<String, Object> apiArgs) {
+        Endpoint endpoint = this.endpoint(apiMethod);
+        Charset charset = this.charset();
+        ArgumentEncoder encoder = ArgumentEncoder.get().reset(endpoint.bodyPrefix(charset));
+        encoder.writeArgs(apiArgs, ArgumentEncoder.FORM, charset);
+        return new POSTRequest(endpoint.url, encoder.toBytes());
+    }
+
+    private Charset charset() {
+        if (this.charset == null) {
+            throw new EPLiteException(String.format(
+                    "Unable to URLEncode using encoding '%s'", this.encoding));
+        }
+        return this.charset;
     }
 
     /**
      * Calls the HTTP JSON API.
      *
+     * @param apiMethod the name of the API method called
+     * @param apiArgs the arguments of the call
      * @param request the request object to send
      * @return HashMap
      */
-    private Object call(Request request) {
-        trustServerAndCertificate();
+    private Object call(String apiMethod, Map<String, Object> apiArgs, MeasuredRequest request) {
+        return this.callResult(apiMethod, apiArgs, request).getOrThrow();
+    }
+
+    /**
+     * Calls the HTTP JSON API without throwing on errors.
+     *
+     * @param apiMethod the name of the API method called
+     * @param apiArgs the arguments of the call
+     * @param request the request object to send
+     * @return EPLiteResult
+     */
+    private EPLiteResult<Object> callResult(String apiMethod, Map<String, Object> apiArgs,
+                                            MeasuredRequest request) {
+        EPLiteCall call = this.begin(apiMethod, apiArgs, request);
+        EPLiteResult<Object> result = null;
+        long parseNanos = 0L;
+        try {
+            try {
+                String response = this.send(request);
+                long parseStart = System.nanoTime();
+                result = this.decodeResponse(response);
+                parseNanos = System.nanoTime() - parseStart;
+            } catch (EPLiteException ex) {
+                result = EPLiteResult.failure(ex);
+            }
+            return result;
+        } finally {
+            if (result == null) {
+                // decodeResponse() threw something other than an EPLiteException
+                this.end(call, request, CODE_CLIENT_ERROR,
+                        new EPLiteException("Unable to handle the response"), parseNanos);
+            } else {
+                this.end(call, request, result.getCode(),
+                        result.isOk() ? null : result.toException(), parseNanos);
+            }
+        }
+    }
+
+    /**
+     * Starts observing a call: runs the interceptors, tells the metrics listener and starts the
+     * flight recorder event.
+     *
+     * @return the call, or null if nothing observes calls
+     */
+    private EPLiteCall begin(String apiMethod, Map<String, Object> apiArgs,
+                             MeasuredRequest request) {
+        EPLiteMetricsListener listener = this.metricsListener;
+        EPLiteInterceptor[] interceptors = this.interceptors;
+        Object event = CallRecorder.INSTANCE.begin();
+        if (listener == null && interceptors.length == 0 && event == null) {
+            return null;
+        }
+        EPLiteCall call = new EPLiteCall(this.endpointName, apiMethod, apiArgs, listener,
+                interceptors, event);
+        for (EPLiteInterceptor interceptor : interceptors) {
+            interceptor.before(call);
+        }
+        if (!call.getHeaders().isEmpty()) {
+            request.setHeaders(new LinkedHashMap<>(call.getHeaders()));
+        }
+        if (listener != null) {
+            listener.callStarted(this.endpointName, apiMethod);
+        }
+        call.start = System.nanoTime();
+        return call;
+    }
+
+    /**
+     * Ends observing a call.
+     *
+     * @param call the call returned by begin(), may be null
+     * @param request the request sent
+     * @param code the Etherpad Lite code of the response, or CODE_CLIENT_ERROR
+     * @param failure the error if the call failed, or null
+     * @param parseNanos the time taken to decode the response
+     */
+    private void end(EPLiteCall call, MeasuredRequest request, int code, EPLiteException failure,
+                     long parseNanos) {
+        if (call == null) {
+            return;
+        }
+        call.ended(code, System.nanoTime() - call.start);
+        if (call.listener != null) {
+            call.listener.callFinished(this.endpointName, call.getApiMethod(), code,
+                    call.getDurationNanos(), request.getRequestBytes(), request.getResponseBytes());
+        }
+        if (call.event != null) {
+            CallRecorder.INSTANCE.commit(call.event, this.endpointName, call.getApiMethod(),
+                    call.getArguments(), code, request, parseNanos);
+        }
+        for (int i = call.interceptors.length - 1; i >= 0; i--) {
+            if (failure == null) {
+                call.interceptors[i].after(call);
+            } else {
+                call.interceptors[i].error(call, failure);
+            }
+        }
+    }
 
+    /**
+     * Sends the request and returns the response text.
+     *
+     * @param request the request object to send
+     * @return String
+     */
+    private String send(Request request) {
         try {
-            String response = request.send();
-            return this.handleResponse(response);
+            trustServerAndCertificate();
+            return request.send();
         } catch (EPLiteException ex) {
             throw ex;
         } catch (Exception ex) {
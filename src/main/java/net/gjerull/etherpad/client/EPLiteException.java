@@ -8,4 +8,9 @@ public class EPLiteException extends RuntimeException {
     public EPLiteException(String message, Throwable cause) {
         super(message, cause);
     }
+
+    protected EPLiteException(String message, Throwable cause, boolean enableSuppression,
+                              boolean writableStackTrace) {
+        super(message, cause, enableSuppression, writableStackTrace);
+    }
 }
@@ -0,0 +1,39 @@
+package net.gjerull.etherpad.client;
+
+/**
+ * Hooks called around every API call of a connection, e.g. to trace calls.<br />
+ * <br />
+ * before() is called in the order the interceptors were added, after() and error() in the
+ * reverse order. Interceptors are called on the calling thread, so they should be quick and
+ * must not throw.<br />
+ * <br />
+ * Example:<br />
+ * <br />
+ * <code>
+ * client.addInterceptor(new TracingInterceptor());
+ * </code>
+ */
+public interface EPLiteInterceptor {
+    /**
+     * Called before the request is sent. Headers set on the call are sent with the request.
+     *
+     * @param call the call
+     */
+    void before(EPLiteCall call);
+
+    /**
+     * Called after a successful response has been handled.
+     *
+     * @param call the call
+     */
+    void after(EPLiteCall call);
+
+    /**
+     * Called when the call failed, because there was no valid response or Etherpad Lite
+     * returned an error.
+     *
+     * @param call the call, with the Etherpad Lite code or CODE_CLIENT_ERROR
+     * @param error the error
+     */
+    void error(EPLiteCall call, EPLiteException error);
+}
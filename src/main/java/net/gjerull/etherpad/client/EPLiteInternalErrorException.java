@@ -0,0 +1,10 @@
+package net.gjerull.etherpad.client;
+
+/**
+ * The Etherpad Lite server failed with an internal error.
+ */
+public class EPLiteInternalErrorException extends EPLiteApiException {
+    public EPLiteInternalErrorException(String message) {
+        super(EPLiteConnection.CODE_INTERNAL_ERROR, message);
+    }
+}
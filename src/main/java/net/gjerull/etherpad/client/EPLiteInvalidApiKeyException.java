@@ -0,0 +1,10 @@
+package net.gjerull.etherpad.client;
+
+/**
+ * The API key is missing or wrong.
+ */
+public class EPLiteInvalidApiKeyException extends EPLiteApiException {
+    public EPLiteInvalidApiKeyException(String message) {
+        super(EPLiteConnection.CODE_INVALID_API_KEY, message);
+    }
+}
@@ -0,0 +1,10 @@
+package net.gjerull.etherpad.client;
+
+/**
+ * The API method does not exist in the called API version.
+ */
+public class EPLiteInvalidMethodException extends EPLiteApiException {
+    public EPLiteInvalidMethodException(String message) {
+        super(EPLiteConnection.CODE_INVALID_METHOD, message);
+    }
+}
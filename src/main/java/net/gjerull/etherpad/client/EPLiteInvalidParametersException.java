@@ -0,0 +1,10 @@
+package net.gjerull.etherpad.client;
+
+/**
+ * The API was called with invalid parameters, e.g. a pad or group that does not exist.
+ */
+public class EPLiteInvalidParametersException extends EPLiteApiException {
+    public EPLiteInvalidParametersException(String message) {
+        super(EPLiteConnection.CODE_INVALID_PARAMETERS, message);
+    }
+}
@@ -0,0 +1,31 @@
+package net.gjerull.etherpad.client;
+
+/**
+ * Receives a notification before and after every API call of a connection.<br />
+ * <br />
+ * Implement it to feed another metrics library, or use {@link MetricsRegistry}. Listeners are
+ * called on the calling thread, so they should be quick and must not throw.
+ */
+public interface EPLiteMetricsListener {
+    /**
+     * Called before the request is sent.
+     *
+     * @param endpoint the url of the Etherpad Lite instance
+     * @param apiMethod the name of the API method
+     */
+    void callStarted(String endpoint, String apiMethod);
+
+    /**
+     * Called once the response has been handled, or the call has failed.
+     *
+     * @param endpoint the url of the Etherpad Lite instance
+     * @param apiMethod the name of the API method
+     * @param code the Etherpad Lite code of the response, or
+     *             {@link EPLiteConnection#CODE_CLIENT_ERROR} if there was no valid response
+     * @param durationNanos the time from sending the request until the response was handled
+     * @param requestBytes the size of the query or body sent
+     * @param responseBytes the size of the response read, 0 if unknown
+     */
+    void callFinished(String endpoint, String apiMethod, int code, long durationNanos,
+                      long requestBytes, long responseBytes);
+}
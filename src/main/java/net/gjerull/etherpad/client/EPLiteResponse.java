@@ -0,0 +1,30 @@
+package net.gjerull.etherpad.client;
+
+/**
+ * Base class of the typed API responses.<br />
+ * <br />
+ * A typed response keeps the text of the response and decodes each field from it the first time
+ * it is asked for, so reading one field of a large response doesn't build the rest of it.
+ * Numbers are kept as primitives. Typed responses are safe to share between threads.
+ */
+public abstract class EPLiteResponse {
+    final ResponseData data;
+
+    EPLiteResponse(ResponseData data) {
+        this.data = data;
+    }
+
+    /**
+     * Returns the "data" of the response as JSON text, or null if there was none.
+     *
+     * @return String
+     */
+    public String getRawData() {
+        return this.data.text();
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + this.data.text();
+    }
+}
@@ -0,0 +1,144 @@
+package net.gjerull.etherpad.client;
+
+/**
+ * The outcome of an API call, returned instead of throwing an exception.<br />
+ * <br />
+ * An error result carries the Etherpad Lite error code and message, or
+ * {@link EPLiteConnection#CODE_CLIENT_ERROR} if the call failed before the server answered.<br />
+ * <br />
+ * Example:<br />
+ * <br />
+ * <code>
+ * EPLiteResult&lt;Map&gt; result = client.tryGetRevisionsCount(padId);<br />
+ * if (result.isOk()) {<br />
+ * &nbsp;&nbsp;Long revisions = (Long) result.getValue().get("revisions");<br />
+ * }
+ * </code>
+ *
+ * @param <T> the type of the response data
+ */
+public final class EPLiteResult<T> {
+    private final int code;
+    private final String message;
+    private final T value;
+    private final EPLiteException failure;
+
+    private EPLiteResult(int code, String message, T value, EPLiteException failure) {
+        this.code = code;
+        this.message = message;
+        this.value = value;
+        this.failure = failure;
+    }
+
+    /**
+     * Returns a successful result.
+     *
+     * @param value the response data, may be null
+     * @param <T> the type of the response data
+     * @return EPLiteResult
+     */
+    public static <T> EPLiteResult<T> ok(T value) {
+        return new EPLiteResult<>(EPLiteConnection.CODE_OK, "ok", value, null);
+    }
+
+    /**
+     * Returns the result of an error reported by the API.
+     *
+     * @param code the Etherpad Lite error code
+     * @param message the error message
+     * @param <T> the type of the response data
+     * @return EPLiteResult
+     */
+    public static <T> EPLiteResult<T> error(int code, String message) {
+        return new EPLiteResult<>(code, message, null, null);
+    }
+
+    /**
+     * Returns the result of a call that failed in the client, e.g. when the server is unreachable.
+     *
+     * @param failure the cause
+     * @param <T> the type of the response data
+     * @return EPLiteResult
+     */
+    public static <T> EPLiteResult<T> failure(EPLiteException failure) {
+        return new EPLiteResult<>(EPLiteConnection.CODE_CLIENT_ERROR, failure.getMessage(), null, failure);
+    }
+
+    /**
+     * Returns true if the call succeeded.
+     *
+     * @return boolean
+     */
+    public boolean isOk() {
+        return this.code == EPLiteConnection.CODE_OK;
+    }
+
+    /**
+     * Returns the Etherpad Lite code, CODE_OK on success.
+     *
+     * @return int
+     */
+    public int getCode() {
+        return this.code;
+    }
+
+    /**
+     * Returns the message of the response, or of the client failure.
+     *
+     * @return String
+     */
+    public String getMessage() {
+        return this.message;
+    }
+
+    /**
+     * Returns the response data, or null on error.
+     *
+     * @return T
+     */
+    public T getValue() {
+        return this.value;
+    }
+
+    /**
+     * Returns true if the call failed with the given code and message, e.g.
+     * <code>is(CODE_INVALID_PARAMETERS, "padID does not exist")</code>.
+     *
+     * @param code the Etherpad Lite error code
+     * @param message the error message
+     * @return boolean
+     */
+    public boolean is(int code, String message) {
+        return this.code == code && message.equals(this.message);
+    }
+
+    /**
+     * Returns the response data, or throws the error as an exception.
+     *
+     * @return T
+     * @throws EPLiteException on error
+     */
+    public T getOrThrow() {
+        if (isOk()) {
+            return this.value;
+        }
+        throw toException();
+    }
+
+    /**
+     * Returns the error as an exception, or null on success.
+     *
+     * @return EPLiteException
+     */
+    public EPLiteException toException() {
+        if (isOk()) {
+            return null;
+        }
+        return (this.failure != null) ? this.failure : EPLiteApiException.forCode(this.code, this.message);
+    }
+
+    @Override
+    public String toString() {
+        return isOk() ? "EPLiteResult[ok]" : "EPLiteResult[" + this.code + ": " + this.message + "]";
+    }
+}
@@ -0,0 +1,63 @@
+package net.gjerull.etherpad.client;
+
+import java.net.URL;
+import java.nio.charset.Charset;
+
+/**
+ * The precompiled URL and argument prefixes of one API method of a connection.<br />
+ * <br />
+ * The API key is encoded once, when the endpoint is compiled, and copied in front of the
+ * arguments of every call. The POST body prefix is only encoded by the first POST, as it needs
+ * the connection's charset, which GET requests don't.
+ */
+final class Endpoint {
+    /**
+     * The URL POST requests are sent to.
+     */
+    final URL url;
+
+    /**
+     * The start of GET URLs, "&lt;url&gt;?apikey=&lt;key&gt;", as UTF-8.
+     */
+    final byte[] queryPrefix;
+
+    private final String apiKey;
+
+    /**
+     * The start of POST bodies, "apikey=&lt;key&gt;", or null until the first POST.
+     */
+    private volatile byte[] bodyPrefix;
+
+    /**
+     * Compiles an endpoint.
+     *
+     * @param url the URL of the API method
+     * @param apiKey the API key
+     */
+    Endpoint(URL url, String apiKey) {
+        this.url = url;
+        this.apiKey = apiKey;
+        ArgumentEncoder encoder = new ArgumentEncoder();
+        encoder.reset((url.toString() + "?apikey=").getBytes(ArgumentEncoder.UTF_8));
+        encoder.writeValue(apiKey, ArgumentEncoder.QUERY, null);
+        this.queryPrefix = encoder.toBytes();
+    }
+
+    /**
+     * Returns the start of POST bodies, "apikey=&lt;key&gt;".
+     *
+     * @param charset the charset POST arguments are encoded in
+     * @return byte[]
+     */
+    byte[] bodyPrefix(Charset charset) {
+        byte[] prefix = this.bodyPrefix;
+        if (prefix == null) {
+            ArgumentEncoder encoder = new ArgumentEncoder();
+            encoder.reset(new byte[] {'a', 'p', 'i', 'k', 'e', 'y', '='});
+            encoder.writeValue(this.apiKey, ArgumentEncoder.FORM, charset);
+            prefix = encoder.toBytes();
+            this.bodyPrefix = prefix;
+        }
+        return prefix;
+    }
+}
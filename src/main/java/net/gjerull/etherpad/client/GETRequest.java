@@ -1,8 +1,10 @@
 package net.gjerull.etherpad.client;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.URL;
+import java.net.URLConnection;
+import java.util.Map;
 
 /**
  * A class for easily executing an HTTP GET request.<br />
@@ -14,8 +16,13 @@ import java.net.URL;
  * String resp = req.send();<br />
  * </code>
  */
-public class GETRequest implements Request {
+public class GETRequest implements MeasuredRequest {
     private final URL url;
+    private long responseBytes;
+    private long connectNanos;
+    private long firstByteNanos;
+    private long readNanos;
+    private Map<String, String> headers;
 
     /**
      * Instantiates a new GETRequest.
@@ -32,13 +39,78 @@ public class GETRequest implements Request {
      * @return String
      */
     public String send() throws Exception {
-        BufferedReader in = new BufferedReader(new InputStreamReader(url.openStream(), "UTF-8"));
-        StringBuilder response = new StringBuilder();
-        String buffer;
-        while ((buffer = in.readLine()) != null) {
-            response.append(buffer);
+        long start = System.nanoTime();
+        URLConnection con = this.openConnection();
+        con.connect();
+        long connected = System.nanoTime();
+        CountingInputStream in = new CountingInputStream(con.getInputStream());
+        long firstByte = System.nanoTime();
+        try {
+            return BufferPool.getDefault().read(in, ArgumentEncoder.UTF_8);
+        } finally {
+            this.responseBytes = in.getCount();
+            this.connectNanos = connected - start;
+            this.firstByteNanos = firstByte - connected;
+            this.readNanos = System.nanoTime() - firstByte;
         }
-        in.close();
-        return response.toString();
+    }
+
+    @Override
+    public void setHeaders(Map<String, String> headers) {
+        this.headers = headers;
+    }
+
+    @Override
+    public long getRequestBytes() {
+        return this.url.getFile().length();
+    }
+
+    @Override
+    public long getResponseBytes() {
+        return this.responseBytes;
+    }
+
+    @Override
+    public long getConnectNanos() {
+        return this.connectNanos;
+    }
+
+    @Override
+    public long getFirstByteNanos() {
+        return this.firstByteNanos;
+    }
+
+    @Override
+    public long getReadNanos() {
+        return this.readNanos;
+    }
+
+    /**
+     * Returns the URL of the request.
+     *
+     * @return URL
+     */
+    URL getUrl() {
+        return this.url;
+    }
+
+    /**
+     * Sends the request and returns the response body as a stream. The caller must close it.
+     *
+     * @return InputStream
+     * @throws IOException if the request fails
+     */
+    public InputStream openStream() throws IOException {
+        return this.openConnection().getInputStream();
+    }
+
+    private URLConnection openConnection() throws IOException {
+        URLConnection con = this.url.openConnection();
+        if (this.headers != null) {
+            for (Map.Entry<String, String> header : this.headers.entrySet()) {
+                con.setRequestProperty(header.getKey(), header.getValue());
+            }
+        }
+        return con;
     }
 }
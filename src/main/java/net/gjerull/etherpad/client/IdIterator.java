@@ -0,0 +1,257 @@
+package net.gjerull.etherpad.client;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Iterates over an array of ids in an API response while it is being read from the server.<br />
+ * <br />
+ * Only the id being returned is held in memory, so iterating over every pad on a large instance
+ * takes constant memory. The response is closed once the last id has been read, or when the
+ * iterator is closed; close it when stopping early.<br />
+ * <br />
+ * Example:<br />
+ * <br />
+ * <code>
+ * IdIterator padIds = client.iterateAllPads();<br />
+ * try {<br />
+ * &nbsp;&nbsp;while (padIds.hasNext()) {<br />
+ * &nbsp;&nbsp;&nbsp;&nbsp;String padId = padIds.next();<br />
+ * &nbsp;&nbsp;}<br />
+ * } finally {<br />
+ * &nbsp;&nbsp;padIds.close();<br />
+ * }
+ * </code>
+ */
+public class IdIterator implements Iterator<String>, Closeable {
+    /**
+     * Told the outcome of the call once the response code has been read, or the response failed.
+     */
+    interface Outcome {
+        void ended(int code, EPLiteException failure);
+    }
+
+    private final JsonReader reader;
+    private final String field;
+    private Outcome outcome;
+    private String next;
+    private boolean done;
+    private Long code;
+    private String message;
+
+    /**
+     * Instantiates a new IdIterator and reads the response up to the first id.
+     *
+     * @param reader the reader positioned at the start of the response
+     * @param field the name of the id array inside "data"
+     */
+    IdIterator(JsonReader reader, String field) {
+        this(reader, field, null);
+    }
+
+    /**
+     * Instantiates a new IdIterator and reads the response up to the first id.
+     *
+     * @param reader the reader positioned at the start of the response
+     * @param field the name of the id array inside "data"
+     * @param outcome told the outcome of the call, may be null
+     */
+    IdIterator(JsonReader reader, String field, Outcome outcome) {
+        this.reader = reader;
+        this.field = field;
+        this.outcome = outcome;
+        try {
+            openArray();
+            advance();
+        } catch (IOException ex) {
+            throw failure(ex);
+        } catch (EPLiteException ex) {
+            closeQuietly();
+            report(EPLiteConnection.CODE_CLIENT_ERROR, ex);
+            throw ex;
+        } catch (RuntimeException ex) {
+            closeQuietly();
+            report(EPLiteConnection.CODE_CLIENT_ERROR, new EPLiteException("Unable to handle the response", ex));
+            throw ex;
+        }
+    }
+
+    /**
+     * Returns true if there are more ids.
+     *
+     * @return boolean
+     */
+    public boolean hasNext() {
+        return this.next != null;
+    }
+
+    /**
+     * Returns the next id.
+     *
+     * @return String
+     */
+    public String next() {
+        if (this.next == null) {
+            throw new NoSuchElementException();
+        }
+        String id = this.next;
+        try {
+            advance();
+        } catch (IOException ex) {
+            throw failure(ex);
+        }
+        return id;
+    }
+
+    /**
+     * Not supported, the ids are read-only.
+     */
+    public void remove() {
+        throw new UnsupportedOperationException("remove");
+    }
+
+    /**
+     * Closes the response. Further calls to hasNext() return false.
+     */
+    public void close() {
+        this.next = null;
+        this.done = true;
+        closeQuietly();
+        report(EPLiteConnection.CODE_CLIENT_ERROR,
+                new EPLiteException("The response was closed before its code was read"));
+    }
+
+    /**
+     * Reads the response envelope up to the start of the id array.
+     */
+    private void openArray() throws IOException {
+        this.reader.beginObject();
+        while (this.reader.hasNext()) {
+            String name = this.reader.nextName();
+            if (readEnvelopeField(name)) {
+                continue;
+            }
+            if ("data".equals(name) && (this.code == null || this.code == EPLiteConnection.CODE_OK)
+                    && this.reader.peek() == JsonReader.BEGIN_OBJECT) {
+                this.reader.beginObject();
+                while (this.reader.hasNext()) {
+                    if (this.reader.nextNameEquals(this.field)
+                            && this.reader.peek() == JsonReader.BEGIN_ARRAY) {
+                        this.reader.beginArray();
+                        return;
+                    }
+                    this.reader.skipValue();
+                }
+                this.reader.endObject();
+            } else {
+                this.reader.skipValue();
+            }
+        }
+        this.reader.endObject();
+        this.done = true;
+        checkCode();
+    }
+
+    private void advance() throws IOException {
+        if (this.done) {
+            this.next = null;
+            return;
+        }
+        if (this.reader.hasNext()) {
+            this.next = this.reader.nextString();
+            return;
+        }
+        this.next = null;
+        this.done = true;
+        this.reader.endArray();
+        // Read the rest of the envelope, the code may follow the data
+        while (this.reader.hasNext()) {
+            this.reader.nextName();
+            this.reader.skipValue();
+        }
+        this.reader.endObject();
+        while (this.reader.hasNext()) {
+            if (!readEnvelopeField(this.reader.nextName())) {
+                this.reader.skipValue();
+            }
+        }
+        this.reader.endObject();
+        closeQuietly();
+        checkCode();
+    }
+
+    /**
+     * Reads the value of "code" or "message".
+     *
+     * @return false if the name is not one of them and the value was left unread
+     */
+    private boolean readEnvelopeField(String name) throws IOException {
+        if ("code".equals(name)) {
+            this.code = this.reader.nextLong();
+            if (this.code == EPLiteConnection.CODE_OK) {
+                // Usually the first field, the ids are read after the call is over
+                report(EPLiteConnection.CODE_OK, null);
+            }
+            return true;
+        } else if ("message".equals(name)) {
+            if (this.reader.peek() == JsonReader.STRING) {
+                this.message = this.reader.nextString();
+            } else {
+                this.reader.skipValue();
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private void checkCode() {
+        if (this.code == null) {
+            closeQuietly();
+            EPLiteException failure = new EPLiteException("An unexpected response from the server: no response code");
+            report(EPLiteConnection.CODE_CLIENT_ERROR, failure);
+            throw failure;
+        }
+        if (this.code != EPLiteConnection.CODE_OK) {
+            closeQuietly();
+            EPLiteException failure = EPLiteApiException.forCode(this.code.intValue(), (this.message != null)
+                    ? this.message
+                    : "An unknown error has occurred while handling the response: code " + this.code);
+            report(this.code.intValue(), failure);
+            throw failure;
+        }
+    }
+
+    private EPLiteException failure(IOException ex) {
+        EPLiteException failure;
+        if (ex instanceof JsonReader.MalformedJsonException) {
+            failure = new EPLiteException("Unable to parse JSON response (" + ex.getMessage() + ")", ex);
+        } else {
+            failure = new EPLiteException("Unable to read the response from the Etherpad Lite instance ("
+                    + ex.getClass() + "): " + ex.getMessage(), ex);
+        }
+        report(EPLiteConnection.CODE_CLIENT_ERROR, failure);
+        close();
+        return failure;
+    }
+
+    /**
+     * Tells the outcome of the call, the first time only.
+     */
+    private void report(int code, EPLiteException failure) {
+        Outcome current = this.outcome;
+        if (current != null) {
+            this.outcome = null;
+            current.ended(code, failure);
+        }
+    }
+
+    private void closeQuietly() {
+        try {
+            this.reader.close();
+        } catch (IOException ex) {
+            // Nothing more to read
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package net.gjerull.etherpad.client;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+import java.util.Map;
+
+/**
+ * Records API calls as "net.gjerull.etherpad.ApiCall" events. Only loaded by {@link CallRecorder}
+ * when the jdk.jfr API exists.<br />
+ * <br />
+ * Example:<br />
+ * <br />
+ * <code>
+ * java -XX:StartFlightRecording=filename=app.jfr ...<br />
+ * jfr print --events net.gjerull.etherpad.ApiCall app.jfr
+ * </code>
+ */
+final class JfrCallRecorder extends CallRecorder {
+    private static final EventType TYPE = EventType.getEventType(ApiCallEvent.class);
+
+    @Override
+    Object begin() {
+        if (!TYPE.isEnabled()) {
+            return null;
+        }
+        ApiCallEvent event = new ApiCallEvent();
+        event.begin();
+        return event;
+    }
+
+    @Override
+    void commit(Object event, String endpoint, String apiMethod, Map<String, Object> apiArgs,
+                int code, MeasuredRequest request, long parseNanos) {
+        ApiCallEvent call = (ApiCallEvent) event;
+        call.end();
+        if (!call.shouldCommit()) {
+            // Shorter than the threshold of the recording
+            return;
+        }
+        call.apiMethod = apiMethod;
+        call.target = target(apiArgs);
+        call.endpoint = endpoint;
+        call.code = code;
+        call.requestBytes = request.getRequestBytes();
+        call.responseBytes = request.getResponseBytes();
+        call.connect = request.getConnectNanos();
+        call.firstByte = request.getFirstByteNanos();
+        call.read = request.getReadNanos();
+        call.parse = parseNanos;
+        call.commit();
+    }
+
+    @Name("net.gjerull.etherpad.ApiCall")
+    @Label("Etherpad API Call")
+    @Category("Etherpad Lite Client")
+    @Description("A call of the Etherpad Lite HTTP API")
+    static final class ApiCallEvent extends Event {
+        @Label("Method")
+        String apiMethod;
+
+        @Label("Pad or Group")
+        String target;
+
+        @Label("Endpoint")
+        String endpoint;
+
+        @Label("Code")
+        @Description("The Etherpad Lite code of the response, -1 if there was no valid response")
+        int code;
+
+        @Label("Bytes Sent")
+        @DataAmount
+        long requestBytes;
+
+        @Label("Bytes Received")
+        @DataAmount
+        long responseBytes;
+
+        @Label("Connect")
+        @Description("Time to connect, including the TLS handshake of https urls")
+        @Timespan
+        long connect;
+
+        @Label("First Byte")
+        @Description("Time from being connected until the response headers arrived")
+        @Timespan
+        long firstByte;
+
+        @Label("Read")
+        @Timespan
+        long read;
+
+        @Label("Parse")
+        @Timespan
+        long parse;
+    }
+}
@@ -0,0 +1,22 @@
+package net.gjerull.etherpad.client;
+
+import java.text.ParseException;
+
+/**
+ * Decodes the JSON responses of the Etherpad Lite API.<br />
+ * <br />
+ * Implementations must be thread-safe and decode JSON objects into Maps, arrays into Lists,
+ * integers into Longs, other numbers into Doubles, and strings, booleans and null into Strings,
+ * Booleans and null. {@link DefaultJsonCodec} is used unless another codec is given to the
+ * {@link EPLiteConnection}, and {@link JsonSimpleCodec} decodes with JSON.simple.
+ */
+public interface JsonCodec {
+    /**
+     * Decodes a JSON text.
+     *
+     * @param json the JSON text
+     * @return the decoded value
+     * @throws ParseException if the text is not valid JSON
+     */
+    Object decode(String json) throws ParseException;
+}
@@ -0,0 +1,617 @@
+package net.gjerull.etherpad.client;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * A pull parser reading JSON one token at a time, either from a String or straight off a
+ * response stream.<br />
+ * <br />
+ * Strings without escapes are copied once from the read buffer, integers are parsed without an
+ * intermediate String, and the read buffer is kept per thread and reused across readers.
+ */
+final class JsonReader implements Closeable {
+    static final int BEGIN_OBJECT = 1;
+    static final int END_OBJECT = 2;
+    static final int BEGIN_ARRAY = 3;
+    static final int END_ARRAY = 4;
+    static final int NAME = 5;
+    static final int STRING = 6;
+    static final int NUMBER = 7;
+    static final int BOOLEAN = 8;
+    static final int NULL = 9;
+    static final int END_DOCUMENT = 10;
+
+    private static final int NONE = 0;
+
+    private static final int EMPTY_DOCUMENT = 1;
+    private static final int NONEMPTY_DOCUMENT = 2;
+    private static final int EMPTY_ARRAY = 3;
+    private static final int NONEMPTY_ARRAY = 4;
+    private static final int EMPTY_OBJECT = 5;
+    private static final int DANGLING_NAME = 6;
+    private static final int NONEMPTY_OBJECT = 7;
+
+
+    private final Reader in;
+    private final String source;
+    private int sourcePos;
+    private final int sourceEnd;
+
+    private char[] buffer;
+    private int pos;
+    private int limit;
+    private int consumed;
+
+    private int peeked = NONE;
+    private boolean peekedBoolean;
+    private int[] stack = new int[32];
+    private int stackSize;
+    private final StringBuilder builder = new StringBuilder();
+
+    /**
+     * Thrown when the input is not valid JSON.
+     */
+    static final class MalformedJsonException extends IOException {
+        private final int offset;
+
+        MalformedJsonException(String message, int offset) {
+            super(message + " at position " + offset);
+            this.offset = offset;
+        }
+
+        int getOffset() {
+            return this.offset;
+        }
+    }
+
+    /**
+     * Instantiates a new JsonReader reading from a stream. The stream is closed with the reader.
+     *
+     * @param in the reader to read JSON from
+     */
+    JsonReader(Reader in) {
+        this(in, null, 0, 0);
+    }
+
+    /**
+     * Instantiates a new JsonReader reading from a String.
+     *
+     * @param source the JSON text
+     */
+    JsonReader(String source) {
+        this(null, source, 0, source.length());
+    }
+
+    /**
+     * Instantiates a new JsonReader reading a single value from a range of a String. Positions
+     * stay relative to the start of the String.
+     *
+     * @param source the JSON text
+     * @param start the position of the first character of the value
+     * @param end the position after the last character of the value
+     */
+    JsonReader(String source, int start, int end) {
+        this(null, source, start, end);
+    }
+
+    private JsonReader(Reader in, String source, int start, int end) {
+        this.in = in;
+        this.source = source;
+        this.sourcePos = start;
+        this.sourceEnd = end;
+        this.consumed = start;
+        this.buffer = BufferPool.getDefault().acquireChars();
+        this.stack[this.stackSize++] = EMPTY_DOCUMENT;
+    }
+
+    /**
+     * Returns the type of the next token without consuming it.
+     *
+     * @return one of the token constants
+     * @throws IOException if reading fails or the input is malformed
+     */
+    int peek() throws IOException {
+        if (this.peeked != NONE) {
+            return this.peeked;
+        }
+        int scope = this.stack[this.stackSize - 1];
+        if (scope == EMPTY_ARRAY) {
+            this.stack[this.stackSize - 1] = NONEMPTY_ARRAY;
+        } else if (scope == NONEMPTY_ARRAY) {
+            int c = nextNonWhitespace();
+            if (c == ']') {
+                this.pos++;
+                return this.peeked = END_ARRAY;
+            } else if (c == ',') {
+                this.pos++;
+            } else {
+                throw syntaxError("Expected ',' or ']'");
+            }
+        } else if (scope == EMPTY_OBJECT || scope == NONEMPTY_OBJECT) {
+            this.stack[this.stackSize - 1] = DANGLING_NAME;
+            int c = nextNonWhitespace();
+            if (scope == NONEMPTY_OBJECT) {
+                if (c == '}') {
+                    this.pos++;
+                    return this.peeked = END_OBJECT;
+                } else if (c != ',') {
+                    throw syntaxError("Expected ',' or '}'");
+                }
+                this.pos++;
+                c = nextNonWhitespace();
+            }
+            if (c == '"') {
+                this.pos++;
+                return this.peeked = NAME;
+            } else if (c == '}' && scope == EMPTY_OBJECT) {
+                this.pos++;
+                return this.peeked = END_OBJECT;
+            }
+            throw syntaxError("Expected a name");
+        } else if (scope == DANGLING_NAME) {
+            this.stack[this.stackSize - 1] = NONEMPTY_OBJECT;
+            if (nextNonWhitespace() != ':') {
+                throw syntaxError("Expected ':'");
+            }
+            this.pos++;
+        } else if (scope == EMPTY_DOCUMENT) {
+            this.stack[this.stackSize - 1] = NONEMPTY_DOCUMENT;
+        } else if (scope == NONEMPTY_DOCUMENT) {
+            if (skipWhitespace() == -1) {
+                return this.peeked = END_DOCUMENT;
+            }
+            throw syntaxError("Expected the end of the document");
+        }
+
+        int c = nextNonWhitespace();
+        switch (c) {
+            case ']':
+                if (scope == EMPTY_ARRAY) {
+                    this.pos++;
+                    return this.peeked = END_ARRAY;
+                }
+                throw syntaxError("Unexpected ']'");
+            case '[':
+                this.pos++;
+                return this.peeked = BEGIN_ARRAY;
+            case '{':
+                this.pos++;
+                return this.peeked = BEGIN_OBJECT;
+            case '"':
+                this.pos++;
+                return this.peeked = STRING;
+            case 't':
+                expectLiteral("true");
+                this.peekedBoolean = true;
+                return this.peeked = BOOLEAN;
+            case 'f':
+                expectLiteral("false");
+                this.peekedBoolean = false;
+                return this.peeked = BOOLEAN;
+            case 'n':
+                expectLiteral("null");
+                return this.peeked = NULL;
+            default:
+                if (c == '-' || (c >= '0' && c <= '9')) {
+                    return this.peeked = NUMBER;
+                }
+                throw syntaxError("Unexpected character '" + (char) c + "'");
+        }
+    }
+
+    /**
+     * Returns true if the current array or object has another element.
+     *
+     * @return boolean
+     * @throws IOException if reading fails or the input is malformed
+     */
+    boolean hasNext() throws IOException {
+        int p = peek();
+        return p != END_OBJECT && p != END_ARRAY && p != END_DOCUMENT;
+    }
+
+    void beginObject() throws IOException {
+        expect(BEGIN_OBJECT);
+        push(EMPTY_OBJECT);
+    }
+
+    void endObject() throws IOException {
+        expect(END_OBJECT);
+        this.stackSize--;
+    }
+
+    void beginArray() throws IOException {
+        expect(BEGIN_ARRAY);
+        push(EMPTY_ARRAY);
+    }
+
+    void endArray() throws IOException {
+        expect(END_ARRAY);
+        this.stackSize--;
+    }
+
+    String nextName() throws IOException {
+        expect(NAME);
+        return readString();
+    }
+
+    /**
+     * Returns true if the next name equals the given one, consuming the name either way.
+     *
+     * @param name the name to compare with
+     * @return boolean
+     * @throws IOException if reading fails or the input is malformed
+     */
+    boolean nextNameEquals(String name) throws IOException {
+        return name.equals(nextName());
+    }
+
+    String nextString() throws IOException {
+        expect(STRING);
+        return readString();
+    }
+
+    boolean nextBoolean() throws IOException {
+        expect(BOOLEAN);
+        return this.peekedBoolean;
+    }
+
+    void nextNull() throws IOException {
+        expect(NULL);
+    }
+
+    /**
+     * Returns the next number as a Long if it is an integer that fits, or else as a Double.
+     *
+     * @return Long or Double
+     * @throws IOException if reading fails or the input is malformed
+     */
+    Number nextNumber() throws IOException {
+        expect(NUMBER);
+        return readNumber();
+    }
+
+    long nextLong() throws IOException {
+        Number number = nextNumber();
+        if (number instanceof Long) {
+            return number.longValue();
+        }
+        double value = number.doubleValue();
+        if (value != (long) value) {
+            throw syntaxError("Expected an integer but was " + value);
+        }
+        return (long) value;
+    }
+
+    /**
+     * Returns the absolute position of the next character to be read.
+     *
+     * @return int
+     */
+    int position() {
+        return this.consumed + this.pos;
+    }
+
+    /**
+     * Returns the absolute position of the first character of the next value.
+     *
+     * @return int
+     * @throws IOException if reading fails or the input is malformed
+     */
+    int valueStart() throws IOException {
+        switch (peek()) {
+            case BEGIN_OBJECT:
+            case BEGIN_ARRAY:
+            case STRING:
+                return position() - 1;
+            case BOOLEAN:
+                return position() - (this.peekedBoolean ? 4 : 5);
+            case NULL:
+                return position() - 4;
+            case NUMBER:
+                return position();
+            default:
+                throw syntaxError("Expected a value but was " + tokenName(this.peeked));
+        }
+    }
+
+    /**
+     * Skips the next value, including nested arrays and objects.
+     *
+     * @throws IOException if reading fails or the input is malformed
+     */
+    void skipValue() throws IOException {
+        int depth = 0;
+        do {
+            switch (peek()) {
+                case BEGIN_OBJECT:
+                    beginObject();
+                    depth++;
+                    break;
+                case BEGIN_ARRAY:
+                    beginArray();
+                    depth++;
+                    break;
+                case END_OBJECT:
+                    endObject();
+                    depth--;
+                    break;
+                case END_ARRAY:
+                    endArray();
+                    depth--;
+                    break;
+                case NAME:
+                case STRING:
+                    this.peeked = NONE;
+                    skipString();
+                    break;
+                case NUMBER:
+                    nextNumber();
+                    break;
+                case END_DOCUMENT:
+                    throw syntaxError("Unexpected end of the document");
+                default:
+                    this.peeked = NONE;
+                    break;
+            }
+        } while (depth > 0);
+    }
+
+    /**
+     * Closes the underlying stream and returns the read buffer to the pool.
+     *
+     * @throws IOException if closing the stream fails
+     */
+    public void close() throws IOException {
+        BufferPool.getDefault().release(this.buffer);
+        this.buffer = null;
+        if (this.in != null) {
+            this.in.close();
+        }
+    }
+
+    private void expect(int token) throws IOException {
+        if (peek() != token) {
+            throw syntaxError("Expected " + tokenName(token) + " but was " + tokenName(peek()));
+        }
+        this.peeked = NONE;
+    }
+
+    private void push(int scope) {
+        if (this.stackSize == this.stack.length) {
+            int[] grown = new int[this.stackSize * 2];
+            System.arraycopy(this.stack, 0, grown, 0, this.stackSize);
+            this.stack = grown;
+        }
+        this.stack[this.stackSize++] = scope;
+    }
+
+    private String readString() throws IOException {
+        StringBuilder sb = null;
+        while (true) {
+            int start = this.pos;
+            char[] buf = this.buffer;
+            int p = this.pos;
+            int l = this.limit;
+            while (p < l) {
+                char c = buf[p++];
+                if (c == '"') {
+                    this.pos = p;
+                    if (sb == null) {
+                        return new String(buf, start, p - start - 1);
+                    }
+                    sb.append(buf, start, p - start - 1);
+                    return sb.toString();
+                } else if (c == '\\') {
+                    if (sb == null) {
+                        sb = this.builder;
+                        sb.setLength(0);
+                    }
+                    sb.append(buf, start, p - start - 1);
+                    this.pos = p;
+                    sb.append(readEscape());
+                    buf = this.buffer;
+                    p = this.pos;
+                    l = this.limit;
+                    start = p;
+                }
+            }
+            if (sb == null) {
+                sb = this.builder;
+                sb.setLength(0);
+            }
+            sb.append(buf, start, p - start);
+            this.pos = p;
+            if (!fill()) {
+                throw syntaxError("Unterminated string");
+            }
+        }
+    }
+
+    private void skipString() throws IOException {
+        while (true) {
+            while (this.pos < this.limit) {
+                char c = this.buffer[this.pos++];
+                if (c == '"') {
+                    return;
+                } else if (c == '\\') {
+                    readEscape();
+                }
+            }
+            if (!fill()) {
+                throw syntaxError("Unterminated string");
+            }
+        }
+    }
+
+    private char readEscape() throws IOException {
+        if (this.pos == this.limit && !fill()) {
+            throw syntaxError("Unterminated escape sequence");
+        }
+        char escaped = this.buffer[this.pos++];
+        switch (escaped) {
+            case 'u':
+                int value = 0;
+                for (int i = 0; i < 4; i++) {
+                    if (this.pos == this.limit && !fill()) {
+                        throw syntaxError("Unterminated escape sequence");
+                    }
+                    int digit = Character.digit(this.buffer[this.pos++], 16);
+                    if (digit < 0) {
+                        throw syntaxError("Invalid unicode escape");
+                    }
+                    value = (value << 4) | digit;
+                }
+                return (char) value;
+            case 't':
+                return '\t';
+            case 'b':
+                return '\b';
+            case 'n':
+                return '\n';
+            case 'r':
+                return '\r';
+            case 'f':
+                return '\f';
+            case '"':
+            case '\\':
+            case '/':
+                return escaped;
+            default:
+                throw syntaxError("Invalid escape sequence");
+        }
+    }
+
+    private Number readNumber() throws IOException {
+        boolean negative = false;
+        boolean integral = true;
+        long value = 0;
+        int digits = 0;
+        StringBuilder sb = this.builder;
+        sb.setLength(0);
+        while (true) {
+            if (this.pos == this.limit && !fill()) {
+                break;
+            }
+            char c = this.buffer[this.pos];
+            if (c >= '0' && c <= '9') {
+                if (integral && value > (Long.MAX_VALUE - 9) / 10) {
+                    integral = false;
+                }
+                value = value * 10 + (c - '0');
+                digits++;
+            } else if (c == '-' && sb.length() == 0) {
+                negative = true;
+            } else if (c == '.' || c == 'e' || c == 'E' || c == '+' || c == '-') {
+                integral = false;
+            } else {
+                break;
+            }
+            sb.append(c);
+            this.pos++;
+        }
+        if (digits == 0) {
+            throw syntaxError("Invalid number");
+        }
+        if (integral) {
+            return Long.valueOf(negative ? -value : value);
+        }
+        try {
+            return Double.valueOf(sb.toString());
+        } catch (NumberFormatException ex) {
+            throw syntaxError("Invalid number '" + sb + "'");
+        }
+    }
+
+    private void expectLiteral(String literal) throws IOException {
+        for (int i = 0; i < literal.length(); i++) {
+            if (this.pos == this.limit && !fill()) {
+                throw syntaxError("Unexpected end of the document");
+            }
+            if (this.buffer[this.pos] != literal.charAt(i)) {
+                throw syntaxError("Unexpected character '" + this.buffer[this.pos] + "'");
+            }
+            this.pos++;
+        }
+    }
+
+    private int nextNonWhitespace() throws IOException {
+        int c = skipWhitespace();
+        if (c == -1) {
+            throw syntaxError("Unexpected end of the document");
+        }
+        return c;
+    }
+
+    /**
+     * Skips whitespace and returns the next character without consuming it, or -1 at the end.
+     */
+    private int skipWhitespace() throws IOException {
+        while (true) {
+            while (this.pos < this.limit) {
+                char c = this.buffer[this.pos];
+                if (c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+                    return c;
+                }
+                this.pos++;
+            }
+            if (!fill()) {
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * Refills the buffer once everything in it has been consumed.
+     *
+     * @return false at the end of the input
+     */
+    private boolean fill() throws IOException {
+        if (this.buffer == null) {
+            throw new IOException("The reader is closed");
+        }
+        this.consumed += this.limit;
+        this.pos = 0;
+        this.limit = 0;
+        if (this.source != null) {
+            int count = Math.min(this.buffer.length, this.sourceEnd - this.sourcePos);
+            if (count <= 0) {
+                return false;
+            }
+            this.source.getChars(this.sourcePos, this.sourcePos + count, this.buffer, 0);
+            this.sourcePos += count;
+            this.limit = count;
+            return true;
+        }
+        int count;
+        while ((count = this.in.read(this.buffer, 0, this.buffer.length)) == 0) {
+            // Keep reading until data or the end of the stream
+        }
+        if (count < 0) {
+            return false;
+        }
+        this.limit = count;
+        return true;
+    }
+
+    private MalformedJsonException syntaxError(String message) {
+        return new MalformedJsonException(message, position());
+    }
+
+    private static String tokenName(int token) {
+        switch (token) {
+            case BEGIN_OBJECT: return "'{'";
+            case END_OBJECT: return "'}'";
+            case BEGIN_ARRAY: return "'['";
+            case END_ARRAY: return "']'";
+            case NAME: return "a name";
+            case STRING: return "a string";
+            case NUMBER: return "a number";
+            case BOOLEAN: return "a boolean";
+            case NULL: return "null";
+            default: return "the end of the document";
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package net.gjerull.etherpad.client;
+
+import java.text.ParseException;
+
+import org.json.simple.parser.JSONParser;
+
+/**
+ * A {@link JsonCodec} decoding with JSON.simple, as the client did before the codec was pluggable.
+ */
+public final class JsonSimpleCodec implements JsonCodec {
+    public Object decode(String json) throws ParseException {
+        try {
+            return new JSONParser().parse(json);
+        } catch (org.json.simple.parser.ParseException ex) {
+            ParseException parseException = new ParseException(ex.toString(), ex.getPosition());
+            parseException.initCause(ex);
+            throw parseException;
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package net.gjerull.etherpad.client;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free histogram of durations.<br />
+ * <br />
+ * Durations are counted in log-linear buckets in the manner of HdrHistogram: each power of two
+ * is split into 16 buckets, so any recorded value is known to within about 6%, from a
+ * nanosecond up to more than an hour. Recording is a few array operations without locking and
+ * without allocation. Longer durations are counted as the longest one.
+ */
+public final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+    /**
+     * The longest duration told apart, about 73 minutes.
+     */
+    private static final long MAX_VALUE = (1L << 42) - 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(index(MAX_VALUE) + 1);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records a duration.
+     *
+     * @param nanos the duration in nanoseconds, negative values count as zero
+     */
+    public void record(long nanos) {
+        long value = Math.min(Math.max(nanos, 0L), MAX_VALUE);
+        this.counts.incrementAndGet(index(value));
+        this.count.incrementAndGet();
+        this.sum.addAndGet(value);
+        long current;
+        while (value > (current = this.max.get()) && !this.max.compareAndSet(current, value)) {
+            // Another thread recorded a new maximum, compare again
+        }
+    }
+
+    /**
+     * Returns the number of recorded durations.
+     *
+     * @return long
+     */
+    public long getCount() {
+        return this.count.get();
+    }
+
+    /**
+     * Returns the sum of the recorded durations.
+     *
+     * @param unit the unit of the result
+     * @return long
+     */
+    public long getSum(TimeUnit unit) {
+        return unit.convert(this.sum.get(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns the longest recorded duration.
+     *
+     * @param unit the unit of the result
+     * @return long
+     */
+    public long getMax(TimeUnit unit) {
+        return unit.convert(this.max.get(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns the mean of the recorded durations in nanoseconds, 0 if there are none.
+     *
+     * @return double
+     */
+    public double getMeanNanos() {
+        long n = this.count.get();
+        return (n == 0) ? 0.0 : (double) this.sum.get() / n;
+    }
+
+    /**
+     * Returns the duration that the given percentage of recorded durations don't exceed, in
+     * nanoseconds, e.g. <code>getValueAtPercentile(99.9)</code>.
+     *
+     * @param percentile between 0 and 100
+     * @return long, 0 if nothing was recorded
+     */
+    public long getValueAtPercentile(double percentile) {
+        long total = 0;
+        for (int i = 0; i < this.counts.length(); i++) {
+            total += this.counts.get(i);
+        }
+        if (total == 0) {
+            return 0L;
+        }
+        long wanted = Math.max(1L, (long) Math.ceil(Math.min(percentile, 100.0) / 100.0 * total));
+        long seen = 0;
+        for (int i = 0; i < this.counts.length(); i++) {
+            seen += this.counts.get(i);
+            if (seen >= wanted) {
+                return Math.min(highestValue(i), this.max.get());
+            }
+        }
+        return this.max.get();
+    }
+
+    /**
+     * Returns the number of recorded durations in buckets that end at or below the given
+     * duration, for cumulative histogram buckets.
+     *
+     * @param nanos the bucket boundary in nanoseconds
+     * @return long
+     */
+    public long getCountAtOrBelow(long nanos) {
+        long seen = 0;
+        for (int i = 0; i < this.counts.length() && highestValue(i) <= nanos; i++) {
+            seen += this.counts.get(i);
+        }
+        return seen;
+    }
+
+    /**
+     * Returns the bucket of a value, see the class comment.
+     */
+    static int index(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int shift = 64 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift << (SUB_BUCKET_BITS - 1)) + (int) (value >>> shift);
+    }
+
+    /**
+     * Returns the largest value counted in a bucket.
+     */
+    static long highestValue(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int shift = (index >> (SUB_BUCKET_BITS - 1)) - 1;
+        long top = index - ((long) shift << (SUB_BUCKET_BITS - 1));
+        return ((top + 1) << shift) - 1;
+    }
+
+    @Override
+    public String toString() {
+        return "LatencyHistogram[count=" + getCount() + ", p50=" + getValueAtPercentile(50)
+                + "ns, p99=" + getValueAtPercentile(99) + "ns, max=" + this.max.get() + "ns]";
+    }
+}
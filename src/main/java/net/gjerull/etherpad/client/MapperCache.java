@@ -0,0 +1,337 @@
+package net.gjerull.etherpad.client;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Remembers the groups and authors created for mappers, so createGroupIfNotExistsFor and
+ * createAuthorIfNotExistsFor are only called once per mapper.<br />
+ * <br />
+ * Etherpad Lite never changes the id of a mapper, so it is kept for as long as the cache
+ * lives. Concurrent lookups of an unknown mapper wait for one call. With a file the mappings
+ * are also appended to it and read back when the next cache starts, so a restarted application
+ * makes no mapping calls for the mappers it has seen before. Forgotten mappers and unreadable
+ * lines are dropped from the file when the next cache reads it.<br />
+ * <br />
+ * Example:<br />
+ * <br />
+ * <code>
+ * MapperCache mappers = new MapperCache(client, new File("etherpad-mappers.txt"));<br />
+ * String groupID = mappers.getGroupID(courseId);<br />
+ * String authorID = mappers.getAuthorID(userId, userName);
+ * </code>
+ */
+public class MapperCache {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final String GROUP = "group";
+    private static final String AUTHOR = "author";
+    private static final String FORGET = "-";
+
+    private final EPLiteClient client;
+    private final File file;
+    private final ConcurrentMap<String, FutureTask<String>> ids = new ConcurrentHashMap<>();
+    private Writer writer;
+    private boolean closed;
+    private boolean brokenLine;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong calls = new AtomicLong();
+
+    /**
+     * Initializes a new MapperCache kept in memory only.
+     *
+     * @param client the client to map with
+     */
+    public MapperCache(EPLiteClient client) {
+        this.client = client;
+        this.file = null;
+    }
+
+    /**
+     * Initializes a new MapperCache kept in the given file too, and reads the mappings already in
+     * it. The file is created with the first new mapping if it doesn't exist.
+     *
+     * @param client the client to map with
+     * @param file the file to keep the mappings in
+     * @throws EPLiteException if the file can't be read
+     */
+    public MapperCache(EPLiteClient client, File file) {
+        this.client = client;
+        this.file = file;
+        if (file.exists()) {
+            load();
+        }
+    }
+
+    /**
+     * Returns the group of a group mapper, creating it if it doesn't exist.
+     *
+     * @param groupMapper string
+     * @return the groupID
+     */
+    public String getGroupID(final String groupMapper) {
+        return lookup(GROUP, groupMapper, new Callable<String>() {
+            public String call() {
+                return (String) client.createGroupIfNotExistsFor(groupMapper).get("groupID");
+            }
+        });
+    }
+
+    /**
+     * Returns the author of an author mapper, creating it with the given name if it doesn't
+     * exist. The name of an author already known isn't changed.
+     *
+     * @param authorMapper string
+     * @param name the name of a new author, or null for none
+     * @return the authorID
+     */
+    public String getAuthorID(final String authorMapper, final String name) {
+        return lookup(AUTHOR, authorMapper, new Callable<String>() {
+            public String call() {
+                Map response = (name != null) ? client.createAuthorIfNotExistsFor(authorMapper, name)
+                        : client.createAuthorIfNotExistsFor(authorMapper);
+                return (String) response.get("authorID");
+            }
+        });
+    }
+
+    /**
+     * Forgets the group of a group mapper, e.g. after the group was deleted.
+     *
+     * @param groupMapper string
+     */
+    public void forgetGroup(String groupMapper) {
+        forget(GROUP, groupMapper);
+    }
+
+    /**
+     * Forgets the author of an author mapper.
+     *
+     * @param authorMapper string
+     */
+    public void forgetAuthor(String authorMapper) {
+        forget(AUTHOR, authorMapper);
+    }
+
+    /**
+     * Returns the number of lookups answered without a call.
+     *
+     * @return long
+     */
+    public long getHits() {
+        return this.hits.get();
+    }
+
+    /**
+     * Returns the number of mapping calls made.
+     *
+     * @return long
+     */
+    public long getCalls() {
+        return this.calls.get();
+    }
+
+    /**
+     * Closes the file, if any. Mappings made afterwards are kept in memory only.
+     */
+    public synchronized void close() {
+        this.closed = true;
+        if (this.writer != null) {
+            try {
+                this.writer.close();
+            } catch (IOException e) {
+                // Every line was flushed when it was written
+            }
+            this.writer = null;
+        }
+    }
+
+    private String lookup(String kind, String mapper, Callable<String> create) {
+        String key = kind + ' ' + mapper;
+        FutureTask<String> task = this.ids.get(key);
+        if (task == null) {
+            FutureTask<String> next = new FutureTask<>(create);
+            task = this.ids.putIfAbsent(key, next);
+            if (task == null) {
+                task = next;
+                this.calls.incrementAndGet();
+                next.run();
+                String id = get(key, next);
+                append(kind, mapper, id);
+                return id;
+            }
+        }
+        this.hits.incrementAndGet();
+        return get(key, task);
+    }
+
+    /**
+     * Returns the id a task looked up, removing the task if the lookup failed, so the next lookup
+     * tries again.
+     */
+    private String get(String key, FutureTask<String> task) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return task.get();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    this.ids.remove(key, task);
+                    if (e.getCause() instanceof RuntimeException) {
+                        throw (RuntimeException) e.getCause();
+                    }
+                    throw new EPLiteException("Unable to map " + key, e.getCause());
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void forget(String kind, String mapper) {
+        if (this.ids.remove(kind + ' ' + mapper) != null) {
+            append(FORGET + kind, mapper, "");
+        }
+    }
+
+    /**
+     * Reads the mappings in the file. A last line without its new line, cut short by a crash, is
+     * skipped, and so are lines that can't be parsed. The file is then compacted if it holds more
+     * lines than mappings.
+     */
+    private void load() {
+        int lines = 0;
+        try {
+            Reader reader = new BufferedReader(new InputStreamReader(new FileInputStream(this.file), UTF_8));
+            try {
+                StringBuilder line = new StringBuilder();
+                int c;
+                while ((c = reader.read()) != -1) {
+                    if (c != '\n') {
+                        line.append((char) c);
+                        continue;
+                    }
+                    lines++;
+                    String[] fields = line.toString().split(" ", -1);
+                    line.setLength(0);
+                    if (fields.length != 3) {
+                        continue;
+                    }
+                    String mapper;
+                    try {
+                        mapper = URLDecoder.decode(fields[1], "UTF-8");
+                    } catch (IllegalArgumentException e) {
+                        // A malformed escape, the line is corrupt
+                        continue;
+                    }
+                    if (fields[0].startsWith(FORGET)) {
+                        this.ids.remove(fields[0].substring(FORGET.length()) + ' ' + mapper);
+                    } else if (!fields[2].isEmpty()) {
+                        this.ids.put(fields[0] + ' ' + mapper, known(fields[2]));
+                    }
+                }
+                // Start the next line on a line of its own
+                this.brokenLine = line.length() > 0;
+            } finally {
+                reader.close();
+            }
+        } catch (IOException e) {
+            throw new EPLiteException("Unable to read the mappers in " + this.file, e);
+        }
+        if (lines > this.ids.size() || this.brokenLine) {
+            compact();
+        }
+    }
+
+    /**
+     * Rewrites the file with only the mappings known, replacing it in one move. If that fails the
+     * file is left as it was.
+     */
+    private void compact() {
+        File compacted = new File(this.file.getPath() + ".tmp");
+        try {
+            Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(compacted), UTF_8));
+            try {
+                for (Map.Entry<String, FutureTask<String>> entry : this.ids.entrySet()) {
+                    int space = entry.getKey().indexOf(' ');
+                    out.write(entry.getKey().substring(0, space) + ' '
+                            + encode(entry.getKey().substring(space + 1)) + ' ' + entry.getValue().get() + '\n');
+                }
+            } finally {
+                out.close();
+            }
+            try {
+                Files.move(compacted.toPath(), this.file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(compacted.toPath(), this.file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            this.brokenLine = false;
+        } catch (IOException | InterruptedException | ExecutionException e) {
+            // Still readable as it is, the next cache tries again
+            compacted.delete();
+        }
+    }
+
+    private synchronized void append(String kind, String mapper, String id) {
+        if (this.file == null || this.closed) {
+            return;
+        }
+        try {
+            if (this.writer == null) {
+                this.writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(this.file, true), UTF_8));
+            }
+            if (this.brokenLine) {
+                this.writer.write('\n');
+                this.brokenLine = false;
+            }
+            this.writer.write(kind + ' ' + encode(mapper) + ' ' + id + '\n');
+            this.writer.flush();
+        } catch (IOException e) {
+            // The mapping is still kept in memory; the next cache makes the call again
+            close();
+        }
+    }
+
+    private static FutureTask<String> known(String id) {
+        FutureTask<String> task = new FutureTask<>(new Runnable() {
+            public void run() {
+            }
+        }, id);
+        task.run();
+        return task;
+    }
+
+    private static String encode(String mapper) {
+        try {
+            return URLEncoder.encode(mapper, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package net.gjerull.etherpad.client;
+
+import java.util.Map;
+
+/**
+ * A request that knows how many bytes it sent and received and how long each phase took, for
+ * metrics and flight recordings. All values are 0 until send() returns.
+ */
+interface MeasuredRequest extends Request {
+    /**
+     * Sets headers sent with the request, e.g. by interceptors.
+     *
+     * @param headers the headers, by name
+     */
+    void setHeaders(Map<String, String> headers);
+
+    /**
+     * Returns the size of the request line and body in bytes.
+     *
+     * @return long
+     */
+    long getRequestBytes();
+
+    /**
+     * Returns the size of the response body in bytes.
+     *
+     * @return long
+     */
+    long getResponseBytes();
+
+    /**
+     * Returns the time taken to connect, including the TLS handshake of https urls.
+     *
+     * @return long nanoseconds
+     */
+    long getConnectNanos();
+
+    /**
+     * Returns the time from being connected until the response headers arrived, including
+     * sending the body.
+     *
+     * @return long nanoseconds
+     */
+    long getFirstByteNanos();
+
+    /**
+     * Returns the time taken to read the response body.
+     *
+     * @return long nanoseconds
+     */
+    long getReadNanos();
+}
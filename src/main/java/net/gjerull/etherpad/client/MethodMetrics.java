@@ -0,0 +1,137 @@
+package net.gjerull.etherpad.client;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The metrics of one API method on one Etherpad Lite instance, kept by {@link MetricsRegistry}.
+ */
+public final class MethodMetrics {
+    private final String endpoint;
+    private final String apiMethod;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final ConcurrentMap<Integer, AtomicLong> callsByCode = new ConcurrentHashMap<>();
+    private final AtomicLong requestBytes = new AtomicLong();
+    private final AtomicLong responseBytes = new AtomicLong();
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    MethodMetrics(String endpoint, String apiMethod) {
+        this.endpoint = endpoint;
+        this.apiMethod = apiMethod;
+    }
+
+    void started() {
+        this.inFlight.incrementAndGet();
+    }
+
+    void finished(int code, long durationNanos, long requestBytes, long responseBytes) {
+        this.inFlight.decrementAndGet();
+        this.latency.record(durationNanos);
+        AtomicLong calls = this.callsByCode.get(code);
+        if (calls == null) {
+            AtomicLong created = new AtomicLong();
+            calls = this.callsByCode.putIfAbsent(code, created);
+            if (calls == null) {
+                calls = created;
+            }
+        }
+        calls.incrementAndGet();
+        this.requestBytes.addAndGet(requestBytes);
+        this.responseBytes.addAndGet(responseBytes);
+    }
+
+    /**
+     * Returns the url of the Etherpad Lite instance.
+     *
+     * @return String
+     */
+    public String getEndpoint() {
+        return this.endpoint;
+    }
+
+    /**
+     * Returns the name of the API method.
+     *
+     * @return String
+     */
+    public String getApiMethod() {
+        return this.apiMethod;
+    }
+
+    /**
+     * Returns the latencies of finished calls.
+     *
+     * @return LatencyHistogram
+     */
+    public LatencyHistogram getLatency() {
+        return this.latency;
+    }
+
+    /**
+     * Returns the number of finished calls.
+     *
+     * @return long
+     */
+    public long getCalls() {
+        long calls = 0;
+        for (AtomicLong count : this.callsByCode.values()) {
+            calls += count.get();
+        }
+        return calls;
+    }
+
+    /**
+     * Returns the number of finished calls that didn't succeed.
+     *
+     * @return long
+     */
+    public long getErrors() {
+        AtomicLong ok = this.callsByCode.get(EPLiteConnection.CODE_OK);
+        return getCalls() - ((ok != null) ? ok.get() : 0L);
+    }
+
+    /**
+     * Returns the number of finished calls by Etherpad Lite code, CODE_OK for successful calls
+     * and CODE_CLIENT_ERROR for calls without a valid response.
+     *
+     * @return Map sorted by code
+     */
+    public Map<Integer, Long> getCallsByCode() {
+        Map<Integer, Long> calls = new TreeMap<>();
+        for (Map.Entry<Integer, AtomicLong> entry : this.callsByCode.entrySet()) {
+            calls.put(entry.getKey(), entry.getValue().get());
+        }
+        return calls;
+    }
+
+    /**
+     * Returns the total size of the requests sent.
+     *
+     * @return long
+     */
+    public long getRequestBytes() {
+        return this.requestBytes.get();
+    }
+
+    /**
+     * Returns the total size of the responses read.
+     *
+     * @return long
+     */
+    public long getResponseBytes() {
+        return this.responseBytes.get();
+    }
+
+    /**
+     * Returns the number of calls started and not yet finished.
+     *
+     * @return int
+     */
+    public int getInFlight() {
+        return this.inFlight.get();
+    }
+}
@@ -0,0 +1,172 @@
+package net.gjerull.etherpad.client;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps {@link MethodMetrics} for every API method called, by Etherpad Lite instance, and writes
+ * them in the Prometheus text format.<br />
+ * <br />
+ * Example:<br />
+ * <br />
+ * <code>
+ * MetricsRegistry metrics = new MetricsRegistry();<br />
+ * client.setMetricsListener(metrics);<br />
+ * ...<br />
+ * long p99 = metrics.get(url, "getText").getLatency().getValueAtPercentile(99);
+ * </code>
+ */
+public class MetricsRegistry implements EPLiteMetricsListener {
+    /**
+     * The upper bounds of the Prometheus latency buckets, in seconds.
+     */
+    private static final double[] BUCKETS = {
+        0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10
+    };
+
+    private final ConcurrentMap<String, ConcurrentMap<String, MethodMetrics>> endpoints =
+            new ConcurrentHashMap<>();
+
+    public void callStarted(String endpoint, String apiMethod) {
+        metrics(endpoint, apiMethod).started();
+    }
+
+    public void callFinished(String endpoint, String apiMethod, int code, long durationNanos,
+                             long requestBytes, long responseBytes) {
+        metrics(endpoint, apiMethod).finished(code, durationNanos, requestBytes, responseBytes);
+    }
+
+    /**
+     * Returns the metrics of an API method, or null if it hasn't been called.
+     *
+     * @param endpoint the url of the Etherpad Lite instance
+     * @param apiMethod the name of the API method
+     * @return MethodMetrics
+     */
+    public MethodMetrics get(String endpoint, String apiMethod) {
+        Map<String, MethodMetrics> methods = this.endpoints.get(endpoint);
+        return (methods != null) ? methods.get(apiMethod) : null;
+    }
+
+    /**
+     * Returns the metrics of all API methods called, sorted by endpoint and method.
+     *
+     * @return List
+     */
+    public List<MethodMetrics> getAll() {
+        List<MethodMetrics> all = new ArrayList<>();
+        for (Map<String, MethodMetrics> methods : this.endpoints.values()) {
+            all.addAll(methods.values());
+        }
+        Collections.sort(all, new Comparator<MethodMetrics>() {
+            public int compare(MethodMetrics a, MethodMetrics b) {
+                int byEndpoint = a.getEndpoint().compareTo(b.getEndpoint());
+                return (byEndpoint != 0) ? byEndpoint : a.getApiMethod().compareTo(b.getApiMethod());
+            }
+        });
+        return all;
+    }
+
+    /**
+     * Writes all metrics in the Prometheus text exposition format.
+     *
+     * @param out where to write
+     * @throws IOException if writing fails
+     */
+    public void writePrometheus(Appendable out) throws IOException {
+        List<MethodMetrics> all = getAll();
+
+        out.append("# HELP etherpad_client_request_duration_seconds Duration of Etherpad Lite API calls.\n");
+        out.append("# TYPE etherpad_client_request_duration_seconds histogram\n");
+        for (MethodMetrics metrics : all) {
+            LatencyHistogram latency = metrics.getLatency();
+            String labels = labels(metrics);
+            for (double bucket : BUCKETS) {
+                out.append("etherpad_client_request_duration_seconds_bucket{").append(labels)
+                        .append(",le=\"").append(Double.toString(bucket)).append("\"} ")
+                        .append(Long.toString(latency.getCountAtOrBelow((long) (bucket * 1e9))))
+                        .append('\n');
+            }
+            out.append("etherpad_client_request_duration_seconds_bucket{").append(labels)
+                    .append(",le=\"+Inf\"} ").append(Long.toString(latency.getCount())).append('\n');
+            out.append("etherpad_client_request_duration_seconds_sum{").append(labels).append("} ")
+                    .append(Double.toString(latency.getSum(TimeUnit.NANOSECONDS) / 1e9)).append('\n');
+            out.append("etherpad_client_request_duration_seconds_count{").append(labels).append("} ")
+                    .append(Long.toString(latency.getCount())).append('\n');
+        }
+
+        out.append("# HELP etherpad_client_requests_total Etherpad Lite API calls by response code, -1 for calls without a valid response.\n");
+        out.append("# TYPE etherpad_client_requests_total counter\n");
+        for (MethodMetrics metrics : all) {
+            for (Map.Entry<Integer, Long> entry : metrics.getCallsByCode().entrySet()) {
+                out.append("etherpad_client_requests_total{").append(labels(metrics))
+                        .append(",code=\"").append(entry.getKey().toString()).append("\"} ")
+                        .append(entry.getValue().toString()).append('\n');
+            }
+        }
+
+        writeHeader(out, "etherpad_client_request_bytes_total", "counter",
+                "Bytes of queries and bodies sent to Etherpad Lite.");
+        for (MethodMetrics metrics : all) {
+            writeSample(out, "etherpad_client_request_bytes_total", metrics, metrics.getRequestBytes());
+        }
+        writeHeader(out, "etherpad_client_response_bytes_total", "counter",
+                "Bytes of responses read from Etherpad Lite.");
+        for (MethodMetrics metrics : all) {
+            writeSample(out, "etherpad_client_response_bytes_total", metrics, metrics.getResponseBytes());
+        }
+        writeHeader(out, "etherpad_client_requests_in_flight", "gauge",
+                "Etherpad Lite API calls waiting for a response.");
+        for (MethodMetrics metrics : all) {
+            writeSample(out, "etherpad_client_requests_in_flight", metrics, metrics.getInFlight());
+        }
+    }
+
+    private static void writeHeader(Appendable out, String name, String type, String help)
+            throws IOException {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void writeSample(Appendable out, String name, MethodMetrics metrics, long value)
+            throws IOException {
+        out.append(name).append('{').append(labels(metrics)).append("} ")
+                .append(Long.toString(value)).append('\n');
+    }
+
+    private static String labels(MethodMetrics metrics) {
+        return "endpoint=\"" + escape(metrics.getEndpoint()) + "\",method=\""
+                + escape(metrics.getApiMethod()) + "\"";
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private MethodMetrics metrics(String endpoint, String apiMethod) {
+        ConcurrentMap<String, MethodMetrics> methods = this.endpoints.get(endpoint);
+        if (methods == null) {
+            ConcurrentMap<String, MethodMetrics> created = new ConcurrentHashMap<>();
+            methods = this.endpoints.putIfAbsent(endpoint, created);
+            if (methods == null) {
+                methods = created;
+            }
+        }
+        MethodMetrics metrics = methods.get(apiMethod);
+        if (metrics == null) {
+            MethodMetrics created = new MethodMetrics(endpoint, apiMethod);
+            metrics = methods.putIfAbsent(apiMethod, created);
+            if (metrics == null) {
+                metrics = created;
+            }
+        }
+        return metrics;
+    }
+}
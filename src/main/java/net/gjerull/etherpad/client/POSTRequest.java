@@ -1,10 +1,10 @@
 package net.gjerull.etherpad.client;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.net.URL;
 import java.net.URLConnection;
+import java.util.Map;
 
 /**
  * A class for easily executing an HTTP POST request.<br />
@@ -16,9 +16,14 @@ import java.net.URLConnection;
  * String resp = req.send();<br />
  * </code>
  */
-public class POSTRequest implements Request {
+public class POSTRequest implements MeasuredRequest {
     private final URL url;
-    private final String body;
+    private final byte[] body;
+    private long responseBytes;
+    private long connectNanos;
+    private long firstByteNanos;
+    private long readNanos;
+    private Map<String, String> headers;
 
     /**
      * Instantiates a new POSTRequest.
@@ -27,6 +32,16 @@ public class POSTRequest implements Request {
      * @param body url-encoded (application/x-www-form-urlencoded) request body
      */
     public POSTRequest(URL url, String body) {
+        this(url, body.getBytes(ArgumentEncoder.UTF_8));
+    }
+
+    /**
+     * Instantiates a new POSTRequest with an already encoded body.
+     *
+     * @param url the URL object
+     * @param body url-encoded (application/x-www-form-urlencoded) request body as UTF-8
+     */
+    POSTRequest(URL url, byte[] body) {
         this.url = url;
         this.body = body;
     }
@@ -37,21 +52,65 @@ public class POSTRequest implements Request {
      * @return String
      */
     public String send() throws Exception {
-        URLConnection con = this.url.openConnection();
+        long start = System.nanoTime();
+        URLConnection con = this.openConnection();
         con.setDoOutput(true);
+        con.connect();
+        long connected = System.nanoTime();
 
-        OutputStreamWriter out = new OutputStreamWriter(con.getOutputStream(), "UTF-8");
+        OutputStream out = con.getOutputStream();
         out.write(this.body);
         out.close();
 
-        BufferedReader in = new BufferedReader(new InputStreamReader(con.getInputStream(),
-                "UTF-8"));
-        StringBuilder response = new StringBuilder();
-        String buffer;
-        while ((buffer = in.readLine()) != null) {
-            response.append(buffer);
+        CountingInputStream in = new CountingInputStream(con.getInputStream());
+        long firstByte = System.nanoTime();
+        try {
+            return BufferPool.getDefault().read(in, ArgumentEncoder.UTF_8);
+        } finally {
+            this.responseBytes = in.getCount();
+            this.connectNanos = connected - start;
+            this.firstByteNanos = firstByte - connected;
+            this.readNanos = System.nanoTime() - firstByte;
+        }
+    }
+
+    @Override
+    public void setHeaders(Map<String, String> headers) {
+        this.headers = headers;
+    }
+
+    @Override
+    public long getRequestBytes() {
+        return this.url.getFile().length() + this.body.length;
+    }
+
+    @Override
+    public long getResponseBytes() {
+        return this.responseBytes;
+    }
+
+    @Override
+    public long getConnectNanos() {
+        return this.connectNanos;
+    }
+
+    @Override
+    public long getFirstByteNanos() {
+        return this.firstByteNanos;
+    }
+
+    @Override
+    public long getReadNanos() {
+        return this.readNanos;
+    }
+
+    private URLConnection openConnection() throws IOException {
+        URLConnection con = this.url.openConnection();
+        if (this.headers != null) {
+            for (Map.Entry<String, String> header : this.headers.entrySet()) {
+                con.setRequestProperty(header.getKey(), header.getValue());
+            }
         }
-        in.close();
-        return response.toString();
+        return con;
     }
 }
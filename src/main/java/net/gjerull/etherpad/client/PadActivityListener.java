@@ -0,0 +1,28 @@
+package net.gjerull.etherpad.client;
+
+/**
+ * Receives the changes a {@link PadWatcher} sees on the pads it watches.<br />
+ * <br />
+ * Events are delivered on the watcher's threads, never for the same pad by two threads at the
+ * same time. An exception thrown by a listener is ignored and doesn't keep the other listeners
+ * from being told.
+ */
+public interface PadActivityListener {
+    /**
+     * Called when a pad was edited or its number of connected users changed since the last poll.
+     *
+     * @param padId the pad's id string
+     * @param lastEdited the time of the pad's last edit, in milliseconds since the epoch
+     * @param userCount the number of users connected to the pad
+     */
+    void padChanged(String padId, long lastEdited, int userCount);
+
+    /**
+     * Called when a poll of a pad failed. The pad is polled again later, backing off like an
+     * idle pad.
+     *
+     * @param padId the pad's id string
+     * @param error the error
+     */
+    void pollFailed(String padId, EPLiteException error);
+}
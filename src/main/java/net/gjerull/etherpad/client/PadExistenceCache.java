@@ -0,0 +1,386 @@
+package net.gjerull.etherpad.client;
+
+import java.io.Closeable;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Answers whether pads exist, mostly without asking the Etherpad Lite server.<br />
+ * <br />
+ * A Bloom filter of the known pad ids is filled from listAllPads and kept up to date by every pad
+ * write the client makes, through this class or not: createPad, createGroupPad, copyPad, movePad
+ * and deletePad calls are watched with an interceptor. A pad the filter has never seen does not
+ * exist, and neither
+ * does a pad recently found missing or deleted, which is remembered in a short-lived negative
+ * cache. Only pads the filter might contain are checked against the server.<br />
+ * <br />
+ * A miss is only as fresh as the last refresh: a pad created by another process since then is
+ * reported as missing until the filter is older than the maximum filter age, a minute unless
+ * set otherwise, after which misses are confirmed with the server until the next refresh.
+ * Close the cache to stop watching the client's calls.<br />
+ * <br />
+ * Example:<br />
+ * <br />
+ * <code>
+ * PadExistenceCache pads = new PadExistenceCache(client, 500000, 0.01, 30000);<br />
+ * pads.refresh();<br />
+ * if (pads.padExists(padId)) {<br />
+ * &nbsp;&nbsp;...<br />
+ * }
+ * </code>
+ */
+public class PadExistenceCache implements Closeable {
+    private static final String PAD_DOES_NOT_EXIST = "padID does not exist";
+    private static final long DEFAULT_MAX_FILTER_AGE_MILLIS = 60000;
+    private static final int MAX_NEGATIVE_ENTRIES = 100000;
+
+    private final EPLiteClient client;
+    private final int expectedPads;
+    private final double falsePositiveRate;
+    private final long negativeTtlNanos;
+    private final Map<String, Long> negative = new ConcurrentHashMap<>();
+    // Guards the filter swap against the pads added to the filter meanwhile
+    private final Object filterLock = new Object();
+    private volatile BloomFilter filter;
+    private volatile long filterBuiltNanos;
+    private Set<String> addedDuringRefresh;
+    private volatile long maxFilterAgeNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_MAX_FILTER_AGE_MILLIS);
+    private final EPLiteInterceptor padWrites = new EPLiteInterceptor() {
+        public void before(EPLiteCall call) {
+        }
+
+        public void after(EPLiteCall call) {
+            padWritten(call.getApiMethod(), call.getArguments());
+        }
+
+        public void error(EPLiteCall call, EPLiteException error) {
+        }
+    };
+    private volatile boolean verifyPositives = true;
+    private volatile int lastPadCount;
+
+    private final AtomicLong filterMisses = new AtomicLong();
+    private final AtomicLong negativeHits = new AtomicLong();
+    private final AtomicLong serverChecks = new AtomicLong();
+
+    /**
+     * Initializes a new PadExistenceCache. Until refresh() is called every check goes to the server.
+     *
+     * @param client the client to check and write pads with
+     * @param expectedPads the number of pads the Bloom filter is sized for
+     * @param falsePositiveRate the false positive probability of the Bloom filter, e.g. 0.01
+     * @param negativeTtlMillis how long a missing pad is remembered
+     */
+    public PadExistenceCache(EPLiteClient client, int expectedPads, double falsePositiveRate,
+                             long negativeTtlMillis) {
+        this.client = client;
+        this.expectedPads = expectedPads;
+        this.falsePositiveRate = falsePositiveRate;
+        this.negativeTtlNanos = TimeUnit.MILLISECONDS.toNanos(negativeTtlMillis);
+        // Fail early on an invalid false positive rate
+        new BloomFilter(1, falsePositiveRate);
+        client.addInterceptor(this.padWrites);
+    }
+
+    /**
+     * Sets whether pads the Bloom filter might contain are confirmed with the server, which is the
+     * default. Without it such pads are reported as existing, which is wrong for about the false
+     * positive rate of the pads that don't, and for pads deleted by other clients.
+     *
+     * @param verifyPositives boolean
+     */
+    public void setVerifyPositives(boolean verifyPositives) {
+        this.verifyPositives = verifyPositives;
+    }
+
+    /**
+     * Sets the age after which the Bloom filter's misses are confirmed with the server, to find
+     * pads created by other processes since the last refresh. The default is a minute; zero or
+     * less trusts misses until the next refresh.
+     *
+     * @param maxFilterAgeMillis the age in milliseconds
+     */
+    public void setMaxFilterAge(long maxFilterAgeMillis) {
+        this.maxFilterAgeNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, maxFilterAgeMillis));
+    }
+
+    /**
+     * Fills a new Bloom filter from listAllPads, read as a stream.
+     */
+    public void refresh() {
+        IdIterator padIds = this.client.iterateAllPads();
+        try {
+            refresh(padIds);
+        } finally {
+            padIds.close();
+        }
+    }
+
+    /**
+     * Fills a new Bloom filter with the given pad ids. Pads recorded as created while the ids are
+     * read are added to the new filter too.
+     *
+     * @param padIds all current pad ids
+     */
+    public synchronized void refresh(Iterator<String> padIds) {
+        // Size for the pads seen last time plus some growth, if more than expected
+        BloomFilter next = new BloomFilter(Math.max(this.expectedPads, this.lastPadCount + this.lastPadCount / 4),
+                this.falsePositiveRate);
+        synchronized (this.filterLock) {
+            this.addedDuringRefresh = new HashSet<>();
+        }
+        int count = 0;
+        try {
+            while (padIds.hasNext()) {
+                next.put(padIds.next());
+                count++;
+            }
+        } catch (RuntimeException ex) {
+            synchronized (this.filterLock) {
+                this.addedDuringRefresh = null;
+            }
+            throw ex;
+        }
+        synchronized (this.filterLock) {
+            for (String padId : this.addedDuringRefresh) {
+                next.put(padId);
+            }
+            this.addedDuringRefresh = null;
+            this.lastPadCount = count;
+            this.filter = next;
+            this.filterBuiltNanos = System.nanoTime();
+        }
+        this.negative.clear();
+    }
+
+    /**
+     * Returns true if the pad exists.
+     *
+     * @param padId the pad's id string
+     * @return boolean
+     */
+    public boolean padExists(String padId) {
+        Long expiry = this.negative.get(padId);
+        if (expiry != null) {
+            if (expiry - System.nanoTime() > 0) {
+                this.negativeHits.incrementAndGet();
+                return false;
+            }
+            this.negative.remove(padId);
+        }
+        BloomFilter current = this.filter;
+        if (current != null) {
+            if (!current.mightContain(padId)) {
+                long maxAge = this.maxFilterAgeNanos;
+                if (maxAge <= 0 || System.nanoTime() - this.filterBuiltNanos < maxAge) {
+                    this.filterMisses.incrementAndGet();
+                    return false;
+                }
+                return checkServer(padId);
+            }
+            if (!this.verifyPositives) {
+                return true;
+            }
+        }
+        return checkServer(padId);
+    }
+
+    /**
+     * Records a pad created by another client or process.
+     *
+     * @param padId the pad's id string
+     */
+    public void padCreated(String padId) {
+        this.negative.remove(padId);
+        addToFilter(padId);
+    }
+
+    /**
+     * Records a pad deleted by another client or process.
+     *
+     * @param padId the pad's id string
+     */
+    public void padDeleted(String padId) {
+        rememberMissing(padId);
+    }
+
+    /**
+     * Creates a new pad and records it.
+     *
+     * @param padId the pad's id string
+     */
+    public void createPad(String padId) {
+        this.client.createPad(padId);
+        padCreated(padId);
+    }
+
+    /**
+     * Creates a new pad with the given initial text and records it.
+     *
+     * @param padId the pad's id string
+     * @param text the initial text string
+     */
+    public void createPad(String padId, String text) {
+        this.client.createPad(padId, text);
+        padCreated(padId);
+    }
+
+    /**
+     * Creates a pad in a group and records it.
+     *
+     * @param groupID the group the pad belongs to
+     * @param padName name of the pad
+     * @return Map with padID
+     */
+    public Map createGroupPad(String groupID, String padName) {
+        Map response = this.client.createGroupPad(groupID, padName);
+        padCreated(groupID + "$" + padName);
+        return response;
+    }
+
+    /**
+     * Creates a pad in a group, with initial text, and records it.
+     *
+     * @param groupID the group the pad belongs to
+     * @param padName name of the pad
+     * @param text Initial text in the pad
+     * @return Map with padID
+     */
+    public Map createGroupPad(String groupID, String padName, String text) {
+        Map response = this.client.createGroupPad(groupID, padName, text);
+        padCreated(groupID + "$" + padName);
+        return response;
+    }
+
+    /**
+     * Deletes a pad and records it as missing.
+     *
+     * @param padId the pad's id string
+     */
+    public void deletePad(String padId) {
+        this.client.deletePad(padId);
+        padDeleted(padId);
+    }
+
+    /**
+     * Moves a pad and records the source as missing and the destination as existing.
+     *
+     * @param sourcePadId the id of the source pad
+     * @param destinationPadId the id of the destination pad
+     * @param force if force is true and the destination pad exists, it will be overwritten.
+     */
+    public void movePad(String sourcePadId, String destinationPadId, boolean force) {
+        this.client.movePad(sourcePadId, destinationPadId, force);
+        padDeleted(sourcePadId);
+        padCreated(destinationPadId);
+    }
+
+    /**
+     * Stops watching the pad writes of the client.
+     */
+    public void close() {
+        this.client.removeInterceptor(this.padWrites);
+    }
+
+    /**
+     * Returns the number of checks answered by the Bloom filter alone.
+     *
+     * @return long
+     */
+    public long getFilterMisses() {
+        return this.filterMisses.get();
+    }
+
+    /**
+     * Returns the number of checks answered by the negative cache.
+     *
+     * @return long
+     */
+    public long getNegativeHits() {
+        return this.negativeHits.get();
+    }
+
+    /**
+     * Returns the number of checks that went to the server.
+     *
+     * @return long
+     */
+    public long getServerChecks() {
+        return this.serverChecks.get();
+    }
+
+    private boolean checkServer(String padId) {
+        this.serverChecks.incrementAndGet();
+        EPLiteResult<Map> result = this.client.tryGetRevisionsCount(padId);
+        if (result.is(EPLiteConnection.CODE_INVALID_PARAMETERS, PAD_DOES_NOT_EXIST)) {
+            rememberMissing(padId);
+            return false;
+        }
+        result.getOrThrow();
+        // Possibly created by another client since the last refresh
+        addToFilter(padId);
+        return true;
+    }
+
+    /**
+     * Adds a pad to the current filter, and to the one being filled by a refresh, if any.
+     */
+    private void addToFilter(String padId) {
+        synchronized (this.filterLock) {
+            if (this.filter != null) {
+                this.filter.put(padId);
+            }
+            if (this.addedDuringRefresh != null) {
+                this.addedDuringRefresh.add(padId);
+            }
+        }
+    }
+
+    /**
+     * Records a successful pad write made with the client.
+     */
+    private void padWritten(String apiMethod, Map<String, Object> apiArgs) {
+        switch (apiMethod) {
+            case "createPad":
+                padCreated(String.valueOf(apiArgs.get("padID")));
+                break;
+            case "createGroupPad":
+                padCreated(apiArgs.get("groupID") + "$" + apiArgs.get("padName"));
+                break;
+            case "copyPad":
+            case "copyPadWithoutHistory":
+                padCreated(String.valueOf(apiArgs.get("destinationID")));
+                break;
+            case "movePad":
+                padDeleted(String.valueOf(apiArgs.get("sourceID")));
+                padCreated(String.valueOf(apiArgs.get("destinationID")));
+                break;
+            case "deletePad":
+                padDeleted(String.valueOf(apiArgs.get("padID")));
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void rememberMissing(String padId) {
+        if (this.negative.size() >= MAX_NEGATIVE_ENTRIES) {
+            long now = System.nanoTime();
+            Iterator<Long> expiries = this.negative.values().iterator();
+            while (expiries.hasNext()) {
+                if (expiries.next() - now <= 0) {
+                    expiries.remove();
+                }
+            }
+            if (this.negative.size() >= MAX_NEGATIVE_ENTRIES) {
+                this.negative.clear();
+            }
+        }
+        this.negative.put(padId, System.nanoTime() + this.negativeTtlNanos);
+    }
+}
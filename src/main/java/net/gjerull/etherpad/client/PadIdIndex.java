@@ -0,0 +1,637 @@
+package net.gjerull.etherpad.client;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * A compact, read-optimized set of pad ids.<br />
+ * <br />
+ * The ids are kept sorted in blocks of 16. The first id of each block is stored as a String, the
+ * following ones only as the number of characters shared with the previous id plus the remaining
+ * characters as bytes. Group pads (<code>g.&lt;16 chars&gt;$name</code>) sharing a group then cost
+ * little more than their names.<br />
+ * <br />
+ * Ids added or removed after the index was built are kept in a small overlay, and merged into the
+ * compact blocks once the overlay grows. The index is safe for concurrent use.<br />
+ * <br />
+ * Example:<br />
+ * <br />
+ * <code>
+ * PadIdIndex index = PadIdIndex.fromClient(client);<br />
+ * boolean known = index.contains("g.oln5fzaE8qfv4gdE$notes");<br />
+ * List&lt;String&gt; groupPads = index.padsOfGroup("g.oln5fzaE8qfv4gdE");
+ * </code>
+ */
+public class PadIdIndex implements Iterable<String> {
+    private static final int BLOCK_SIZE = 16;
+    private static final int MIN_COMPACT_SIZE = 1024;
+
+    private volatile Blocks blocks;
+    private final ConcurrentSkipListSet<String> added = new ConcurrentSkipListSet<>();
+    private final Set<String> removed = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    private PadIdIndex(Blocks blocks) {
+        this.blocks = blocks;
+    }
+
+    /**
+     * Builds an index of the given pad ids, in any order.
+     *
+     * @param padIds the pad ids
+     * @return PadIdIndex
+     */
+    public static PadIdIndex build(Iterator<String> padIds) {
+        List<String> ids = new ArrayList<>();
+        while (padIds.hasNext()) {
+            ids.add(padIds.next());
+        }
+        String[] sorted = ids.toArray(new String[ids.size()]);
+        Arrays.sort(sorted);
+        return new PadIdIndex(Blocks.encode(new DistinctIterator(Arrays.asList(sorted).iterator())));
+    }
+
+    /**
+     * Builds an index of all pads on the server, reading listAllPads as a stream.
+     *
+     * @param client the client to list the pads with
+     * @return PadIdIndex
+     */
+    public static PadIdIndex fromClient(EPLiteClient client) {
+        IdIterator padIds = client.iterateAllPads();
+        try {
+            return build(padIds);
+        } finally {
+            padIds.close();
+        }
+    }
+
+    /**
+     * Returns true if the pad id is in the index.
+     *
+     * @param padId the pad's id string
+     * @return boolean
+     */
+    public boolean contains(String padId) {
+        if (this.added.contains(padId)) {
+            return true;
+        }
+        return !this.removed.contains(padId) && this.blocks.indexOf(padId) >= 0;
+    }
+
+    /**
+     * Adds a pad id, e.g. after the pad was created.
+     *
+     * @param padId the pad's id string
+     */
+    public synchronized void add(String padId) {
+        this.removed.remove(padId);
+        if (this.blocks.indexOf(padId) < 0) {
+            this.added.add(padId);
+        }
+        compactIfNeeded();
+    }
+
+    /**
+     * Removes a pad id, e.g. after the pad was deleted.
+     *
+     * @param padId the pad's id string
+     */
+    public synchronized void remove(String padId) {
+        this.added.remove(padId);
+        if (this.blocks.indexOf(padId) >= 0) {
+            this.removed.add(padId);
+        }
+        compactIfNeeded();
+    }
+
+    /**
+     * Brings the index up to date with the current pad ids, in any order. Only the differences are
+     * applied, the index is not rebuilt unless many ids changed.
+     *
+     * @param padIds all current pad ids
+     */
+    public synchronized void refresh(Iterator<String> padIds) {
+        Blocks current = this.blocks;
+        BitSet seen = new BitSet(current.size);
+        Set<String> seenAdded = new HashSet<>();
+        while (padIds.hasNext()) {
+            String padId = padIds.next();
+            int index = current.indexOf(padId);
+            if (index >= 0) {
+                seen.set(index);
+                this.removed.remove(padId);
+            } else {
+                this.added.add(padId);
+                seenAdded.add(padId);
+            }
+        }
+        this.added.retainAll(seenAdded);
+        if (seen.cardinality() < current.size) {
+            Iterator<String> it = current.iterator(null);
+            for (int i = 0; it.hasNext(); i++) {
+                String padId = it.next();
+                if (!seen.get(i)) {
+                    this.removed.add(padId);
+                }
+            }
+        }
+        compactIfNeeded();
+    }
+
+    /**
+     * Brings the index up to date with all pads on the server, reading listAllPads as a stream.
+     *
+     * @param client the client to list the pads with
+     */
+    public void refresh(EPLiteClient client) {
+        IdIterator padIds = client.iterateAllPads();
+        try {
+            refresh(padIds);
+        } finally {
+            padIds.close();
+        }
+    }
+
+    /**
+     * Merges added and removed ids into the compact blocks.
+     */
+    public synchronized void compact() {
+        if (this.added.isEmpty() && this.removed.isEmpty()) {
+            return;
+        }
+        this.blocks = Blocks.encode(iterator(null));
+        this.added.clear();
+        this.removed.clear();
+    }
+
+    /**
+     * Returns the number of pad ids in the index.
+     *
+     * @return int
+     */
+    public int size() {
+        return this.blocks.size + this.added.size() - this.removed.size();
+    }
+
+    /**
+     * Returns the pad ids in a group, in sorted order.
+     *
+     * @param groupID the group's id string
+     * @return List of pad ids
+     */
+    public List<String> padsOfGroup(String groupID) {
+        List<String> padIds = new ArrayList<>();
+        Iterator<String> it = iterator(groupID + "$");
+        while (it.hasNext()) {
+            padIds.add(it.next());
+        }
+        return padIds;
+    }
+
+    /**
+     * Iterates over the pad ids in sorted order.
+     *
+     * @return Iterator
+     */
+    public Iterator<String> iterator() {
+        return iterator(null);
+    }
+
+    /**
+     * Iterates over the pad ids starting with the given prefix, in sorted order.
+     *
+     * @param prefix the prefix, or null for all pad ids
+     * @return Iterator
+     */
+    public Iterator<String> iterator(String prefix) {
+        Iterator<String> base = this.blocks.iterator(prefix);
+        Iterator<String> overlay = (prefix == null)
+                ? this.added.iterator()
+                : this.added.tailSet(prefix).iterator();
+        return new MergingIterator(base, overlay, this.removed, prefix);
+    }
+
+    /**
+     * Returns an estimate of the memory used by the index in bytes.
+     *
+     * @return long
+     */
+    public long estimatedBytes() {
+        // The overlay is estimated at 64 bytes per entry plus the characters
+        long overlay = 0;
+        for (String padId : this.added) {
+            overlay += 64 + 2L * padId.length();
+        }
+        for (String padId : this.removed) {
+            overlay += 64 + 2L * padId.length();
+        }
+        return this.blocks.estimatedBytes() + overlay;
+    }
+
+    private void compactIfNeeded() {
+        int changes = this.added.size() + this.removed.size();
+        if (changes >= MIN_COMPACT_SIZE && changes * 8 >= this.blocks.size) {
+            compact();
+        }
+    }
+
+    /**
+     * The immutable front-coded blocks.
+     */
+    private static final class Blocks {
+        private final String[] heads;
+        private final int[] offsets;
+        private final byte[] data;
+        private final int size;
+        private final int maxLength;
+
+        private Blocks(String[] heads, int[] offsets, byte[] data, int size, int maxLength) {
+            this.heads = heads;
+            this.offsets = offsets;
+            this.data = data;
+            this.size = size;
+            this.maxLength = maxLength;
+        }
+
+        /**
+         * Encodes distinct, sorted ids.
+         */
+        static Blocks encode(Iterator<String> sorted) {
+            List<String> heads = new ArrayList<>();
+            int[] offsets = new int[16];
+            byte[] data = new byte[1024];
+            int length = 0;
+            int size = 0;
+            int maxLength = 0;
+            String previous = null;
+            while (sorted.hasNext()) {
+                String id = sorted.next();
+                maxLength = Math.max(maxLength, id.length());
+                if (size % BLOCK_SIZE == 0) {
+                    int block = heads.size();
+                    if (block == offsets.length) {
+                        offsets = Arrays.copyOf(offsets, block * 2);
+                    }
+                    heads.add(id);
+                    offsets[block] = length;
+                } else {
+                    int prefix = commonPrefix(previous, id);
+                    int suffix = id.length() - prefix;
+                    if (length + 10 + 3 * suffix > data.length) {
+                        data = Arrays.copyOf(data, Math.max(data.length * 2, length + 10 + 3 * suffix));
+                    }
+                    length = writeVarInt(data, length, prefix);
+                    length = writeVarInt(data, length, suffix);
+                    for (int i = prefix; i < id.length(); i++) {
+                        length = writeChar(data, length, id.charAt(i));
+                    }
+                }
+                previous = id;
+                size++;
+            }
+            return new Blocks(heads.toArray(new String[heads.size()]),
+                    Arrays.copyOf(offsets, heads.size()), Arrays.copyOf(data, length), size, maxLength);
+        }
+
+        /**
+         * Returns the position of the id in sorted order, or -1 if it is not present.
+         */
+        int indexOf(String id) {
+            int block = findBlock(id);
+            if (block < 0) {
+                return -1;
+            }
+            Cursor cursor = new Cursor(this, block);
+            while (cursor.hasNext(block)) {
+                int cmp = cursor.advanceAndCompare(id);
+                if (cmp == 0) {
+                    return cursor.position();
+                } else if (cmp > 0) {
+                    return -1;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Iterates from the first id starting with the prefix, stopping after the last one.
+         */
+        Iterator<String> iterator(final String prefix) {
+            final Cursor cursor = new Cursor(this, (prefix == null) ? 0 : Math.max(findBlock(prefix), 0));
+            return new Iterator<String>() {
+                private String next = advance();
+
+                public boolean hasNext() {
+                    return this.next != null;
+                }
+
+                public String next() {
+                    if (this.next == null) {
+                        throw new NoSuchElementException();
+                    }
+                    String result = this.next;
+                    this.next = advance();
+                    return result;
+                }
+
+                public void remove() {
+                    throw new UnsupportedOperationException("remove");
+                }
+
+                private String advance() {
+                    while (cursor.hasNext(-1)) {
+                        if (prefix == null) {
+                            cursor.advance();
+                            return cursor.current();
+                        }
+                        int cmp = cursor.advanceAndCompare(prefix);
+                        if (cmp >= 0) {
+                            String id = cursor.current();
+                            if (id.startsWith(prefix)) {
+                                return id;
+                            }
+                            return null;
+                        }
+                    }
+                    return null;
+                }
+            };
+        }
+
+        long estimatedBytes() {
+            long bytes = 16 + this.data.length + 4L * this.offsets.length + 4L * this.heads.length;
+            for (String head : this.heads) {
+                bytes += 40 + 2L * head.length();
+            }
+            return bytes;
+        }
+
+        /**
+         * Returns the block whose head is the greatest one not after the id, or -1.
+         */
+        private int findBlock(String id) {
+            int low = 0;
+            int high = this.heads.length - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int cmp = this.heads[mid].compareTo(id);
+                if (cmp < 0) {
+                    low = mid + 1;
+                } else if (cmp > 0) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return high;
+        }
+    }
+
+    /**
+     * Decodes the ids of the blocks one after the other into a private buffer.
+     */
+    private static final class Cursor {
+        private final Blocks blocks;
+        private final char[] chars;
+        private int length;
+        private int position;
+        private int pos;
+
+        Cursor(Blocks blocks, int block) {
+            this.blocks = blocks;
+            this.chars = new char[blocks.maxLength];
+            this.position = block * BLOCK_SIZE - 1;
+        }
+
+        /**
+         * Returns true if there is another id, only within the given block unless it is -1.
+         */
+        boolean hasNext(int block) {
+            int next = this.position + 1;
+            return next < this.blocks.size && (block < 0 || next / BLOCK_SIZE == block);
+        }
+
+        void advance() {
+            int next = ++this.position;
+            int block = next / BLOCK_SIZE;
+            if (next % BLOCK_SIZE == 0) {
+                String head = this.blocks.heads[block];
+                head.getChars(0, head.length(), this.chars, 0);
+                this.length = head.length();
+                this.pos = this.blocks.offsets[block];
+                return;
+            }
+            byte[] data = this.blocks.data;
+            int prefix = readVarInt(data);
+            int suffix = readVarInt(data);
+            int p = this.pos;
+            for (int i = prefix; i < prefix + suffix; i++) {
+                int b = data[p++] & 0xFF;
+                if (b < 0x80) {
+                    this.chars[i] = (char) b;
+                } else if (b < 0xE0) {
+                    this.chars[i] = (char) (((b & 0x1F) << 6) | (data[p++] & 0x3F));
+                } else {
+                    this.chars[i] = (char) (((b & 0x0F) << 12) | ((data[p++] & 0x3F) << 6)
+                            | (data[p++] & 0x3F));
+                }
+            }
+            this.pos = p;
+            this.length = prefix + suffix;
+        }
+
+        int advanceAndCompare(String id) {
+            advance();
+            int max = Math.min(this.length, id.length());
+            for (int i = 0; i < max; i++) {
+                int diff = this.chars[i] - id.charAt(i);
+                if (diff != 0) {
+                    return diff;
+                }
+            }
+            return this.length - id.length();
+        }
+
+        int position() {
+            return this.position;
+        }
+
+        String current() {
+            return new String(this.chars, 0, this.length);
+        }
+
+        private int readVarInt(byte[] data) {
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = data[this.pos++];
+                value |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            return value;
+        }
+    }
+
+    private static int writeVarInt(byte[] data, int pos, int value) {
+        while ((value & ~0x7F) != 0) {
+            data[pos++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        data[pos++] = (byte) value;
+        return pos;
+    }
+
+    /**
+     * Writes a char as one to three bytes, encoding surrogates separately so any prefix split
+     * round-trips.
+     */
+    private static int writeChar(byte[] data, int pos, char c) {
+        if (c < 0x80) {
+            data[pos++] = (byte) c;
+        } else if (c < 0x800) {
+            data[pos++] = (byte) (0xC0 | (c >> 6));
+            data[pos++] = (byte) (0x80 | (c & 0x3F));
+        } else {
+            data[pos++] = (byte) (0xE0 | (c >> 12));
+            data[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+            data[pos++] = (byte) (0x80 | (c & 0x3F));
+        }
+        return pos;
+    }
+
+    private static int commonPrefix(String a, String b) {
+        int max = Math.min(a.length(), b.length());
+        int i = 0;
+        while (i < max && a.charAt(i) == b.charAt(i)) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Skips consecutive duplicates in a sorted iteration.
+     */
+    private static final class DistinctIterator implements Iterator<String> {
+        private final Iterator<String> sorted;
+        private String next;
+
+        DistinctIterator(Iterator<String> sorted) {
+            this.sorted = sorted;
+            this.next = sorted.hasNext() ? sorted.next() : null;
+        }
+
+        public boolean hasNext() {
+            return this.next != null;
+        }
+
+        public String next() {
+            String result = this.next;
+            if (result == null) {
+                throw new NoSuchElementException();
+            }
+            this.next = null;
+            while (this.sorted.hasNext()) {
+                String candidate = this.sorted.next();
+                if (!candidate.equals(result)) {
+                    this.next = candidate;
+                    break;
+                }
+            }
+            return result;
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException("remove");
+        }
+    }
+
+    /**
+     * Merges the compact blocks with the added ids, leaving out removed ones.
+     */
+    private static final class MergingIterator implements Iterator<String> {
+        private final Iterator<String> base;
+        private final Iterator<String> overlay;
+        private final Set<String> removed;
+        private final String prefix;
+        private String nextBase;
+        private String nextOverlay;
+        private String next;
+
+        MergingIterator(Iterator<String> base, Iterator<String> overlay, Set<String> removed,
+                        String prefix) {
+            this.base = base;
+            this.overlay = overlay;
+            this.removed = removed;
+            this.prefix = prefix;
+            this.nextBase = advanceBase();
+            this.nextOverlay = advanceOverlay();
+            this.next = advance();
+        }
+
+        public boolean hasNext() {
+            return this.next != null;
+        }
+
+        public String next() {
+            if (this.next == null) {
+                throw new NoSuchElementException();
+            }
+            String result = this.next;
+            this.next = advance();
+            return result;
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException("remove");
+        }
+
+        private String advance() {
+            if (this.nextBase == null && this.nextOverlay == null) {
+                return null;
+            }
+            String result;
+            if (this.nextOverlay == null
+                    || (this.nextBase != null && this.nextBase.compareTo(this.nextOverlay) < 0)) {
+                result = this.nextBase;
+                this.nextBase = advanceBase();
+            } else {
+                result = this.nextOverlay;
+                if (result.equals(this.nextBase)) {
+                    this.nextBase = advanceBase();
+                }
+                this.nextOverlay = advanceOverlay();
+            }
+            return result;
+        }
+
+        private String advanceBase() {
+            while (this.base.hasNext()) {
+                String id = this.base.next();
+                if (!this.removed.contains(id)) {
+                    return id;
+                }
+            }
+            return null;
+        }
+
+        private String advanceOverlay() {
+            if (this.overlay.hasNext()) {
+                String id = this.overlay.next();
+                if (this.prefix == null || id.startsWith(this.prefix)) {
+                    return id;
+                }
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package net.gjerull.etherpad.client;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * A list of pad ids, returned by {@link EPLiteClient#fetchPads(String)} and
+ * {@link EPLiteClient#fetchAllPads()}.<br />
+ * <br />
+ * Iterating reads the ids one by one from the response text, getPadIDs() decodes them all once.
+ */
+public final class PadList extends EPLiteResponse implements Iterable<String> {
+    private static final String FIELD = "padIDs";
+
+    private volatile List<String> padIDs;
+    private volatile int size = -1;
+
+    PadList(ResponseData data) {
+        super(data);
+    }
+
+    /**
+     * Returns the number of pads, counted without decoding the ids.
+     *
+     * @return int
+     */
+    public int size() {
+        if (this.size < 0) {
+            List<String> decoded = this.padIDs;
+            if (decoded != null) {
+                this.size = decoded.size();
+            } else {
+                int count = 0;
+                JsonReader reader = null;
+                try {
+                    reader = openArray();
+                    if (reader != null) {
+                        while (reader.hasNext()) {
+                            reader.skipValue();
+                            count++;
+                        }
+                    }
+                } catch (IOException ex) {
+                    throw this.data.malformed(ex);
+                } finally {
+                    ResponseData.closeQuietly(reader);
+                }
+                this.size = count;
+            }
+        }
+        return this.size;
+    }
+
+    /**
+     * Returns the pad ids.
+     *
+     * @return an unmodifiable List
+     */
+    public List<String> getPadIDs() {
+        List<String> decoded = this.padIDs;
+        if (decoded == null) {
+            List<String> ids = new ArrayList<>();
+            for (String id : this) {
+                ids.add(id);
+            }
+            decoded = Collections.unmodifiableList(ids);
+            this.padIDs = decoded;
+        }
+        return decoded;
+    }
+
+    /**
+     * Iterates over the pad ids.
+     *
+     * @return Iterator
+     */
+    public Iterator<String> iterator() {
+        List<String> decoded = this.padIDs;
+        if (decoded != null) {
+            return decoded.iterator();
+        }
+        try {
+            return new Ids(openArray());
+        } catch (IOException ex) {
+            throw this.data.malformed(ex);
+        }
+    }
+
+    /**
+     * Returns a reader inside the id array, or null if there is none.
+     */
+    private JsonReader openArray() throws IOException {
+        JsonReader reader = this.data.field(FIELD);
+        if (reader != null && reader.peek() != JsonReader.BEGIN_ARRAY) {
+            ResponseData.closeQuietly(reader);
+            return null;
+        }
+        if (reader != null) {
+            reader.beginArray();
+        }
+        return reader;
+    }
+
+    /**
+     * Reads the ids from the response text, closing the reader after the last one.
+     */
+    private final class Ids implements Iterator<String> {
+        private JsonReader reader;
+
+        Ids(JsonReader reader) {
+            this.reader = reader;
+        }
+
+        public boolean hasNext() {
+            if (this.reader == null) {
+                return false;
+            }
+            try {
+                if (this.reader.hasNext()) {
+                    return true;
+                }
+            } catch (IOException ex) {
+                throw PadList.this.data.malformed(ex);
+            }
+            ResponseData.closeQuietly(this.reader);
+            this.reader = null;
+            return false;
+        }
+
+        public String next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            try {
+                return ResponseData.readString(this.reader);
+            } catch (IOException ex) {
+                throw PadList.this.data.malformed(ex);
+            }
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException("remove");
+        }
+    }
+}
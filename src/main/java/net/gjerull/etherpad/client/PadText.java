@@ -0,0 +1,26 @@
+package net.gjerull.etherpad.client;
+
+/**
+ * The text of a pad, returned by {@link EPLiteClient#fetchText(String)}.
+ */
+public final class PadText extends EPLiteResponse {
+    private String text;
+    private volatile boolean textDecoded;
+
+    PadText(ResponseData data) {
+        super(data);
+    }
+
+    /**
+     * Returns the text of the pad.
+     *
+     * @return String
+     */
+    public String getText() {
+        if (!this.textDecoded) {
+            this.text = this.data.string("text");
+            this.textDecoded = true;
+        }
+        return this.text;
+    }
+}
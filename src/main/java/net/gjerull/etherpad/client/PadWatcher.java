@@ -0,0 +1,262 @@
+package net.gjerull.etherpad.client;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Watches many pads for edits and connected users, polling each at an interval that follows
+ * its activity.<br />
+ * <br />
+ * A pad is polled with getLastEdited and padUsersCount. A pad that changed is polled again
+ * after minIntervalMillis; a pad with users connected keeps its interval; an idle pad doubles
+ * its interval, up to maxIntervalMillis. Every delay is jittered by up to a fifth either way so
+ * pads watched at the same time drift apart instead of being polled together. The polls run on
+ * a fixed number of threads and share a budget of requests per second for all pads.<br />
+ * <br />
+ * Example:<br />
+ * <br />
+ * <code>
+ * PadWatcher watcher = new PadWatcher(client, 4, 50, 1000, 300000);<br />
+ * watcher.addListener(dashboard);<br />
+ * for (String padId : padIds) {<br />
+ * &nbsp;&nbsp;watcher.watch(padId);<br />
+ * }<br />
+ * ...<br />
+ * watcher.shutdown();
+ * </code>
+ */
+public class PadWatcher {
+    private static final long UNKNOWN = Long.MIN_VALUE;
+
+    private final EPLiteClient client;
+    private final ScheduledThreadPoolExecutor scheduler;
+    private final RateLimiter rateLimiter;
+    private final long minIntervalMillis;
+    private final long maxIntervalMillis;
+    private final ConcurrentMap<String, Watched> pads = new ConcurrentHashMap<>();
+    private final List<PadActivityListener> listeners = new CopyOnWriteArrayList<>();
+
+    private final AtomicLong polls = new AtomicLong();
+    private final AtomicLong changes = new AtomicLong();
+
+    /**
+     * A watched pad, rescheduling itself after each poll.
+     */
+    private final class Watched implements Runnable {
+        final String padId;
+        long lastEdited = UNKNOWN;
+        int userCount;
+        volatile long intervalMillis;
+
+        Watched(String padId) {
+            this.padId = padId;
+            this.intervalMillis = minIntervalMillis;
+        }
+
+        public void run() {
+            if (pads.get(this.padId) != this) {
+                return;
+            }
+            boolean active;
+            try {
+                active = poll(this);
+            } catch (EPLiteException ex) {
+                active = false;
+                for (PadActivityListener listener : listeners) {
+                    try {
+                        listener.pollFailed(this.padId, ex);
+                    } catch (RuntimeException listenerError) {
+                        // A failing listener mustn't keep the others from being told
+                    }
+                }
+            } catch (InterruptedException ex) {
+                return;
+            } catch (RuntimeException ex) {
+                // An unexpected failure mustn't stop the polls of the pad
+                active = false;
+            }
+            if (active) {
+                this.intervalMillis = minIntervalMillis;
+            } else if (this.userCount == 0) {
+                this.intervalMillis = Math.min(maxIntervalMillis, 2 * this.intervalMillis);
+            }
+            schedule(this, jitter(this.intervalMillis));
+        }
+    }
+
+    /**
+     * Initializes a new PadWatcher.
+     *
+     * @param client the client to poll with
+     * @param threads the number of threads polling the pads
+     * @param requestsPerSecond the maximum number of requests per second for all pads, zero or less for no limit
+     * @param minIntervalMillis the time between two polls of an active pad
+     * @param maxIntervalMillis the longest time between two polls of an idle pad
+     */
+    public PadWatcher(EPLiteClient client, int threads, double requestsPerSecond, long minIntervalMillis,
+                      long maxIntervalMillis) {
+        if (minIntervalMillis < 1 || maxIntervalMillis < minIntervalMillis) {
+            throw new IllegalArgumentException("Intervals must satisfy 1 <= minIntervalMillis <= maxIntervalMillis");
+        }
+        this.client = client;
+        this.rateLimiter = new RateLimiter(requestsPerSecond);
+        this.minIntervalMillis = minIntervalMillis;
+        this.maxIntervalMillis = maxIntervalMillis;
+        this.scheduler = new ScheduledThreadPoolExecutor(threads, new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "etherpad-pad-watcher-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Adds a listener for the changes of all watched pads.
+     *
+     * @param listener the listener
+     */
+    public void addListener(PadActivityListener listener) {
+        this.listeners.add(listener);
+    }
+
+    /**
+     * Removes a listener.
+     *
+     * @param listener the listener
+     */
+    public void removeListener(PadActivityListener listener) {
+        this.listeners.remove(listener);
+    }
+
+    /**
+     * Starts watching a pad. The first poll, at a random time within minIntervalMillis, only
+     * records the pad's state; changes after it are reported.
+     *
+     * @param padId the pad's id string
+     */
+    public void watch(String padId) {
+        Watched watched = new Watched(padId);
+        if (this.pads.putIfAbsent(padId, watched) == null) {
+            schedule(watched, ThreadLocalRandom.current().nextLong(this.minIntervalMillis));
+        }
+    }
+
+    /**
+     * Stops watching a pad. A poll already running finishes.
+     *
+     * @param padId the pad's id string
+     */
+    public void unwatch(String padId) {
+        this.pads.remove(padId);
+    }
+
+    /**
+     * Returns the current polling interval of a pad, before jitter.
+     *
+     * @param padId the pad's id string
+     * @return the interval in milliseconds, or null if the pad isn't watched
+     */
+    public Long getIntervalMillis(String padId) {
+        Watched watched = this.pads.get(padId);
+        return (watched == null) ? null : watched.intervalMillis;
+    }
+
+    /**
+     * Returns the number of pads watched.
+     *
+     * @return int
+     */
+    public int getWatchedCount() {
+        return this.pads.size();
+    }
+
+    /**
+     * Returns the number of polls completed, each being a getLastEdited and a padUsersCount call.
+     *
+     * @return long
+     */
+    public long getPolls() {
+        return this.polls.get();
+    }
+
+    /**
+     * Returns the number of changes reported.
+     *
+     * @return long
+     */
+    public long getChanges() {
+        return this.changes.get();
+    }
+
+    /**
+     * Stops polling all pads.
+     */
+    public void shutdown() {
+        this.pads.clear();
+        this.scheduler.shutdownNow();
+    }
+
+    /**
+     * Polls a pad and reports a change.
+     *
+     * @return true if the pad changed
+     */
+    private boolean poll(Watched watched) throws InterruptedException {
+        this.rateLimiter.acquire();
+        long lastEdited = number(this.client.getLastEdited(watched.padId).get("lastEdited"));
+        this.rateLimiter.acquire();
+        int userCount = (int) number(this.client.padUsersCount(watched.padId).get("padUsersCount"));
+        this.polls.incrementAndGet();
+
+        boolean first = watched.lastEdited == UNKNOWN;
+        boolean changed = !first && (lastEdited != watched.lastEdited || userCount != watched.userCount);
+        watched.lastEdited = lastEdited;
+        watched.userCount = userCount;
+        if (changed) {
+            this.changes.incrementAndGet();
+            for (PadActivityListener listener : this.listeners) {
+                try {
+                    listener.padChanged(watched.padId, lastEdited, userCount);
+                } catch (RuntimeException ex) {
+                    // Each listener is told of every change, even if another one fails
+                }
+            }
+        }
+        return changed;
+    }
+
+    private void schedule(Watched watched, long delayMillis) {
+        try {
+            this.scheduler.schedule(watched, delayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException ex) {
+            // Shut down
+        }
+    }
+
+    /**
+     * Spreads a delay by up to a fifth either way.
+     */
+    private static long jitter(long delayMillis) {
+        long spread = delayMillis / 5;
+        if (spread == 0) {
+            return delayMillis;
+        }
+        return delayMillis - spread + ThreadLocalRandom.current().nextLong(2 * spread + 1);
+    }
+
+    private static long number(Object value) {
+        return (value instanceof Number) ? ((Number) value).longValue() : 0L;
+    }
+}
@@ -0,0 +1,98 @@
+package net.gjerull.etherpad.client;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Serves a {@link MetricsRegistry} at /metrics for Prometheus to scrape, from the HTTP server
+ * built into the JDK.<br />
+ * <br />
+ * Example:<br />
+ * <br />
+ * <code>
+ * PrometheusExporter exporter = new PrometheusExporter(metrics, 9400);<br />
+ * ...<br />
+ * exporter.stop();
+ * </code>
+ */
+public class PrometheusExporter {
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    /**
+     * Starts serving the metrics on all interfaces.
+     *
+     * @param registry the metrics to serve
+     * @param port the port to listen on, 0 for any free port
+     */
+    public PrometheusExporter(MetricsRegistry registry, int port) {
+        this(registry, new InetSocketAddress(port));
+    }
+
+    /**
+     * Starts serving the metrics.
+     *
+     * @param registry the metrics to serve
+     * @param address the address to listen on
+     */
+    public PrometheusExporter(final MetricsRegistry registry, InetSocketAddress address) {
+        try {
+            this.server = HttpServer.create(address, 0);
+        } catch (IOException ex) {
+            throw new EPLiteException("Unable to start the metrics endpoint on " + address, ex);
+        }
+        this.server.createContext("/metrics", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                try {
+                    StringBuilder text = new StringBuilder(4096);
+                    registry.writePrometheus(text);
+                    byte[] body = text.toString().getBytes(ArgumentEncoder.UTF_8);
+                    exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+                    exchange.sendResponseHeaders(200, body.length);
+                    OutputStream out = exchange.getResponseBody();
+                    out.write(body);
+                    out.close();
+                } finally {
+                    exchange.close();
+                }
+            }
+        });
+        // One thread is plenty for a scrape every few seconds
+        this.executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "etherpad-metrics");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.server.setExecutor(this.executor);
+        this.server.start();
+    }
+
+    /**
+     * Returns the port the metrics are served on.
+     *
+     * @return int
+     */
+    public int getPort() {
+        return this.server.getAddress().getPort();
+    }
+
+    /**
+     * Stops serving the metrics.
+     */
+    public void stop() {
+        this.server.stop(0);
+        this.executor.shutdown();
+    }
+}
@@ -0,0 +1,83 @@
+package net.gjerull.etherpad.client;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A simple rate limiter handing out permits at a fixed rate.<br />
+ * <br />
+ * Permits are spaced evenly in time, so a burst of callers is smoothed into a steady stream of
+ * calls instead of hitting the Etherpad Lite server all at once.
+ */
+final class RateLimiter {
+    private final long intervalNanos;
+    private long nextFreeNanos;
+
+    /**
+     * Instantiates a new RateLimiter.
+     *
+     * @param permitsPerSecond the number of permits handed out per second, zero or less for no limit
+     */
+    RateLimiter(double permitsPerSecond) {
+        this.intervalNanos = (permitsPerSecond > 0)
+                ? (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond)
+                : 0L;
+        this.nextFreeNanos = System.nanoTime();
+    }
+
+    /**
+     * Returns true if the limiter never blocks.
+     *
+     * @return boolean
+     */
+    boolean isUnlimited() {
+        return this.intervalNanos == 0L;
+    }
+
+    /**
+     * Blocks until a permit is available.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    void acquire() throws InterruptedException {
+        if (isUnlimited()) {
+            return;
+        }
+        long waitNanos = reserve();
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+
+    /**
+     * Takes a permit if one is available right now.
+     *
+     * @return true if a permit was taken
+     */
+    synchronized boolean tryAcquire() {
+        if (isUnlimited()) {
+            return true;
+        }
+        long now = System.nanoTime();
+        if (this.nextFreeNanos - now > 0) {
+            return false;
+        }
+        this.nextFreeNanos = now + this.intervalNanos;
+        return true;
+    }
+
+    /**
+     * Reserves the next permit and returns how long the caller has to wait for it.
+     *
+     * @return the wait in nanoseconds
+     */
+    private synchronized long reserve() {
+        long now = System.nanoTime();
+        long slot = this.nextFreeNanos;
+        if (slot - now < 0) {
+            // Idle for a while, don't let the unused permits pile up into a burst
+            slot = now;
+        }
+        this.nextFreeNanos = slot + this.intervalNanos;
+        return slot - now;
+    }
+}
@@ -0,0 +1,217 @@
+package net.gjerull.etherpad.client;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Remembers the read only ids of pads, in both directions, so getReadOnlyID and getPadID are
+ * only called once per pad.<br />
+ * <br />
+ * A pad keeps its read only id for as long as it exists, so a mapping learned from either call
+ * answers both. Pads deleted or moved through this class are forgotten; call padDeleted() for
+ * pads deleted by other means. A lookup still running when its pad is deleted doesn't put the
+ * deleted pad's mapping back. The least recently used pads are forgotten once maxEntries pads are
+ * known.<br />
+ * <br />
+ * Example:<br />
+ * <br />
+ * <code>
+ * ReadOnlyIdCache readOnlyIds = new ReadOnlyIdCache(client, 100000);<br />
+ * readOnlyIds.prefetchGroup(groupID);<br />
+ * String link = "/p/" + readOnlyIds.getReadOnlyID(padId);
+ * </code>
+ */
+public class ReadOnlyIdCache {
+    private final EPLiteClient client;
+    private final Map<String, String> readOnlyIds;
+    private final Map<String, String> padIds = new HashMap<>();
+    // The pads deleted while lookups were running, with the deletion they were, see endLookup()
+    private final Map<String, Long> deletedDuringLookups = new HashMap<>();
+    private long deletions;
+    private int lookupsRunning;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Initializes a new ReadOnlyIdCache.
+     *
+     * @param client the client to look the ids up with
+     * @param maxEntries the number of pads kept; the least recently used are forgotten beyond it
+     */
+    public ReadOnlyIdCache(EPLiteClient client, final int maxEntries) {
+        this.client = client;
+        // Access ordered, evicting from both directions
+        this.readOnlyIds = new LinkedHashMap<String, String>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                if (size() <= maxEntries) {
+                    return false;
+                }
+                padIds.remove(eldest.getValue());
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Returns the read only id of a pad.
+     *
+     * @param padId the pad's id string
+     * @return the readOnlyID
+     */
+    public String getReadOnlyID(String padId) {
+        long deletion;
+        synchronized (this) {
+            String readOnlyId = this.readOnlyIds.get(padId);
+            if (readOnlyId != null) {
+                this.hits.incrementAndGet();
+                return readOnlyId;
+            }
+            deletion = startLookup();
+        }
+        this.misses.incrementAndGet();
+        String readOnlyId = null;
+        try {
+            readOnlyId = (String) this.client.getReadOnlyID(padId).get("readOnlyID");
+        } finally {
+            endLookup(padId, readOnlyId, deletion);
+        }
+        return readOnlyId;
+    }
+
+    /**
+     * Returns the id of the pad with the given read only id.
+     *
+     * @param readOnlyPadId the read only id of the pad
+     * @return the padID
+     */
+    public String getPadID(String readOnlyPadId) {
+        long deletion;
+        synchronized (this) {
+            String padId = this.padIds.get(readOnlyPadId);
+            if (padId != null) {
+                // Keeps the pad recently used
+                this.readOnlyIds.get(padId);
+                this.hits.incrementAndGet();
+                return padId;
+            }
+            deletion = startLookup();
+        }
+        this.misses.incrementAndGet();
+        String padId = null;
+        try {
+            padId = (String) this.client.getPadID(readOnlyPadId).get("padID");
+        } finally {
+            endLookup(padId, readOnlyPadId, deletion);
+        }
+        return padId;
+    }
+
+    /**
+     * Looks up the read only ids of all pads of a group that aren't known yet.
+     *
+     * @param groupID the group
+     * @return the number of pads looked up
+     */
+    public int prefetchGroup(String groupID) {
+        int count = 0;
+        for (Object padId : (List) this.client.listPads(groupID).get("padIDs")) {
+            boolean known;
+            synchronized (this) {
+                known = this.readOnlyIds.containsKey(padId);
+            }
+            if (!known) {
+                getReadOnlyID((String) padId);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Forgets a pad deleted by other means than this class.
+     *
+     * @param padId the pad's id string
+     */
+    public synchronized void padDeleted(String padId) {
+        String readOnlyId = this.readOnlyIds.remove(padId);
+        if (readOnlyId != null) {
+            this.padIds.remove(readOnlyId);
+        }
+        this.deletions++;
+        if (this.lookupsRunning > 0) {
+            this.deletedDuringLookups.put(padId, this.deletions);
+        }
+    }
+
+    /**
+     * Deletes a pad and forgets it.
+     *
+     * @param padId the pad's id string
+     */
+    public void deletePad(String padId) {
+        this.client.deletePad(padId);
+        padDeleted(padId);
+    }
+
+    /**
+     * Moves a pad and forgets the source and the destination, which gets a read only id of its
+     * own.
+     *
+     * @param sourcePadId the id of the source pad
+     * @param destinationPadId the id of the destination pad
+     * @param force if force is true and the destination pad exists, it will be overwritten.
+     */
+    public void movePad(String sourcePadId, String destinationPadId, boolean force) {
+        this.client.movePad(sourcePadId, destinationPadId, force);
+        padDeleted(sourcePadId);
+        padDeleted(destinationPadId);
+    }
+
+    /**
+     * Returns the number of lookups answered without a call.
+     *
+     * @return long
+     */
+    public long getHits() {
+        return this.hits.get();
+    }
+
+    /**
+     * Returns the number of lookups that went to the server.
+     *
+     * @return long
+     */
+    public long getMisses() {
+        return this.misses.get();
+    }
+
+    /**
+     * Registers a lookup about to be made and returns the number of deletions before it.
+     */
+    private long startLookup() {
+        this.lookupsRunning++;
+        return this.deletions;
+    }
+
+    /**
+     * Ends a lookup and keeps its mapping, unless the lookup failed or its pad was deleted since
+     * the lookup started, in which case the mapping may be that of the deleted pad.
+     */
+    private synchronized void endLookup(String padId, String readOnlyId, long deletionBefore) {
+        if (padId != null && readOnlyId != null) {
+            Long deletion = this.deletedDuringLookups.get(padId);
+            if (deletion == null || deletion <= deletionBefore) {
+                this.readOnlyIds.put(padId, readOnlyId);
+                this.padIds.put(readOnlyId, padId);
+            }
+        }
+        if (--this.lookupsRunning == 0) {
+            this.deletedDuringLookups.clear();
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package net.gjerull.etherpad.client;
+
+import java.io.IOException;
+
+/**
+ * The raw text of a successful API response and the position of its "data" value.<br />
+ * <br />
+ * The envelope is checked when the response arrives, the data is only skipped over. Fields of
+ * the data are read from the text when asked for, so nothing is decoded that is never used.
+ */
+final class ResponseData {
+    private final String json;
+    private final int start;
+    private final int end;
+
+    private ResponseData(String json, int start, int end) {
+        this.json = json;
+        this.start = start;
+        this.end = end;
+    }
+
+    /**
+     * Checks the response code and locates the data.
+     *
+     * @param json the response text
+     * @return ResponseData
+     * @throws EPLiteException if the response is an error or can't be parsed
+     */
+    static ResponseData parse(String json) {
+        Long code = null;
+        String message = null;
+        int start = -1;
+        int end = -1;
+        JsonReader reader = new JsonReader(json);
+        try {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                int token = reader.peek();
+                if ("code".equals(name) && token == JsonReader.NUMBER) {
+                    code = reader.nextLong();
+                } else if ("message".equals(name) && token == JsonReader.STRING) {
+                    message = reader.nextString();
+                } else if ("data".equals(name) && token != JsonReader.NULL) {
+                    start = reader.valueStart();
+                    reader.skipValue();
+                    end = reader.position();
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+            reader.peek();
+        } catch (IOException ex) {
+            throw new EPLiteException("Unable to parse JSON response ("
+                    + EPLiteConnection.truncate(json) + ")", ex);
+        } finally {
+            closeQuietly(reader);
+        }
+        if (code == null) {
+            throw new EPLiteException("An unexpected response from the server: "
+                    + EPLiteConnection.truncate(json));
+        }
+        if (code != EPLiteConnection.CODE_OK) {
+            int value = code.intValue();
+            boolean known = value >= EPLiteConnection.CODE_INVALID_PARAMETERS
+                    && value <= EPLiteConnection.CODE_INVALID_API_KEY;
+            throw EPLiteApiException.forCode(value, known ? message
+                    : "An unknown error has occurred while handling the response: "
+                    + EPLiteConnection.truncate(json));
+        }
+        return new ResponseData(json, start, end);
+    }
+
+    /**
+     * Returns the data as JSON text, or null if the response had no data.
+     *
+     * @return String
+     */
+    String text() {
+        return (this.start < 0) ? null : this.json.substring(this.start, this.end);
+    }
+
+    /**
+     * Returns a reader over the data, or null if the response had no data.
+     *
+     * @return JsonReader
+     */
+    JsonReader open() {
+        return (this.start < 0) ? null : new JsonReader(this.json, this.start, this.end);
+    }
+
+    /**
+     * Returns a reader over part of the data.
+     *
+     * @param from the position of the first character of a value inside the data
+     * @param to the position after its last character
+     * @return JsonReader
+     */
+    JsonReader open(int from, int to) {
+        return new JsonReader(this.json, from, to);
+    }
+
+    /**
+     * Returns a reader positioned at the value of a field of the data object, or null if there is
+     * no such field. The reader must be closed.
+     *
+     * @param name the field name
+     * @return JsonReader
+     * @throws IOException if the data is malformed
+     */
+    JsonReader field(String name) throws IOException {
+        JsonReader reader = open();
+        if (reader == null) {
+            return null;
+        }
+        if (reader.peek() == JsonReader.BEGIN_OBJECT) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (reader.nextNameEquals(name)) {
+                    return reader;
+                }
+                reader.skipValue();
+            }
+        }
+        closeQuietly(reader);
+        return null;
+    }
+
+    /**
+     * Returns a String field of the data object, or null if it is missing or null. Numbers and
+     * booleans are returned as text.
+     *
+     * @param name the field name
+     * @return String
+     */
+    String string(String name) {
+        JsonReader reader = null;
+        try {
+            reader = field(name);
+            return (reader == null) ? null : readString(reader);
+        } catch (IOException ex) {
+            throw malformed(ex);
+        } finally {
+            closeQuietly(reader);
+        }
+    }
+
+    /**
+     * Returns an integer field of the data object, or the default if it is missing or null.
+     *
+     * @param name the field name
+     * @param missing the default
+     * @return long
+     */
+    long number(String name, long missing) {
+        JsonReader reader = null;
+        try {
+            reader = field(name);
+            return (reader == null) ? missing : readLong(reader, missing);
+        } catch (IOException ex) {
+            throw malformed(ex);
+        } finally {
+            closeQuietly(reader);
+        }
+    }
+
+    /**
+     * Reads a String, number or boolean as text, or null.
+     */
+    static String readString(JsonReader reader) throws IOException {
+        switch (reader.peek()) {
+            case JsonReader.STRING:
+                return reader.nextString();
+            case JsonReader.NUMBER:
+                return reader.nextNumber().toString();
+            case JsonReader.BOOLEAN:
+                return String.valueOf(reader.nextBoolean());
+            case JsonReader.NULL:
+                reader.nextNull();
+                return null;
+            default:
+                reader.skipValue();
+                return null;
+        }
+    }
+
+    /**
+     * Reads an integer, or returns the default for null.
+     */
+    static long readLong(JsonReader reader, long missing) throws IOException {
+        if (reader.peek() == JsonReader.NULL) {
+            reader.nextNull();
+            return missing;
+        }
+        return reader.nextLong();
+    }
+
+    EPLiteException malformed(IOException ex) {
+        return new EPLiteException("Unable to parse JSON response ("
+                + EPLiteConnection.truncate(this.json) + ")", ex);
+    }
+
+    static void closeQuietly(JsonReader reader) {
+        if (reader != null) {
+            try {
+                reader.close();
+            } catch (IOException ex) {
+                // A String reader has nothing to close
+            }
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package net.gjerull.etherpad.client;
+
+/**
+ * The number of revisions of a pad, returned by {@link EPLiteClient#fetchRevisionsCount(String)}.
+ */
+public final class RevisionCount extends EPLiteResponse {
+    private long revisions;
+    private volatile boolean revisionsDecoded;
+
+    RevisionCount(ResponseData data) {
+        super(data);
+    }
+
+    /**
+     * Returns the number of the latest revision of the pad.
+     *
+     * @return long
+     */
+    public long getRevisions() {
+        if (!this.revisionsDecoded) {
+            this.revisions = this.data.number("revisions", 0);
+            this.revisionsDecoded = true;
+        }
+        return this.revisions;
+    }
+}
@@ -0,0 +1,56 @@
+package net.gjerull.etherpad.client;
+
+/**
+ * A session, returned by {@link EPLiteClient#fetchSessionInfo(String)}.
+ */
+public final class SessionInfo extends EPLiteResponse {
+    private String groupID;
+    private volatile boolean groupIDDecoded;
+    private String authorID;
+    private volatile boolean authorIDDecoded;
+    private long validUntil;
+    private volatile boolean validUntilDecoded;
+
+    SessionInfo(ResponseData data) {
+        super(data);
+    }
+
+    /**
+     * Returns the group of the session.
+     *
+     * @return String
+     */
+    public String getGroupID() {
+        if (!this.groupIDDecoded) {
+            this.groupID = this.data.string("groupID");
+            this.groupIDDecoded = true;
+        }
+        return this.groupID;
+    }
+
+    /**
+     * Returns the author of the session.
+     *
+     * @return String
+     */
+    public String getAuthorID() {
+        if (!this.authorIDDecoded) {
+            this.authorID = this.data.string("authorID");
+            this.authorIDDecoded = true;
+        }
+        return this.authorID;
+    }
+
+    /**
+     * Returns when the session expires, in seconds since the epoch.
+     *
+     * @return long
+     */
+    public long getValidUntil() {
+        if (!this.validUntilDecoded) {
+            this.validUntil = this.data.number("validUntil", 0);
+            this.validUntilDecoded = true;
+        }
+        return this.validUntil;
+    }
+}
@@ -0,0 +1,267 @@
+package net.gjerull.etherpad.client;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reuses Etherpad Lite sessions, so opening a group pad doesn't create a new session every
+ * time.<br />
+ * <br />
+ * The session of a group and author is kept until shortly before it expires and handed out
+ * again without asking the server. Concurrent requests for a pair without a session wait for
+ * one createSession call. getSessionInfo is answered from the kept sessions where it can be.<br />
+ * <br />
+ * Example:<br />
+ * <br />
+ * <code>
+ * // Sessions of 12 hours, replaced when less than 10 minutes are left<br />
+ * SessionManager sessions = new SessionManager(client, 12 * 3600, 600);<br />
+ * String sessionID = sessions.getSessionID(groupID, authorID);
+ * </code>
+ */
+public class SessionManager {
+    private final EPLiteClient client;
+    private final long durationSeconds;
+    private final long renewBeforeSeconds;
+    private final ConcurrentMap<String, FutureTask<Session>> byPair = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Session> byId = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong infoHits = new AtomicLong();
+
+    /**
+     * Initializes a new SessionManager.
+     *
+     * @param client the client to create sessions with
+     * @param durationSeconds how long new sessions are valid
+     * @param renewBeforeSeconds how long before it expires a session is no longer handed out,
+     *        so users don't get one that ends right after they log in
+     */
+    public SessionManager(EPLiteClient client, long durationSeconds, long renewBeforeSeconds) {
+        if (renewBeforeSeconds >= durationSeconds) {
+            throw new IllegalArgumentException("renewBeforeSeconds must be less than durationSeconds");
+        }
+        this.client = client;
+        this.durationSeconds = durationSeconds;
+        this.renewBeforeSeconds = renewBeforeSeconds;
+    }
+
+    /**
+     * Returns a session of the author in the group, creating one if there is none or it expires
+     * soon.
+     *
+     * @param groupID string
+     * @param authorID string
+     * @return the sessionID
+     */
+    public String getSessionID(final String groupID, final String authorID) {
+        String key = groupID + '\u0000' + authorID;
+        while (true) {
+            FutureTask<Session> current = this.byPair.get(key);
+            if (current != null && (!current.isDone() || isFresh(current))) {
+                Session session = await(key, current);
+                if (session == null) {
+                    // Waited for a createSession that failed
+                    throw failure(current);
+                }
+                this.hits.incrementAndGet();
+                return session.id;
+            }
+            FutureTask<Session> next = new FutureTask<>(new Callable<Session>() {
+                public Session call() {
+                    long validUntil = System.currentTimeMillis() / 1000L + durationSeconds;
+                    Map response = client.createSession(groupID, authorID, validUntil);
+                    return new Session((String) response.get("sessionID"), groupID, authorID, validUntil);
+                }
+            });
+            boolean won = (current == null) ? this.byPair.putIfAbsent(key, next) == null
+                    : this.byPair.replace(key, current, next);
+            if (!won) {
+                continue;
+            }
+            if (current != null) {
+                Session stale = await(key, current);
+                if (stale != null) {
+                    this.byId.remove(stale.id, stale);
+                }
+            }
+            next.run();
+            Session session = await(key, next);
+            if (session == null) {
+                throw failure(next);
+            }
+            this.byId.put(session.id, session);
+            this.created.incrementAndGet();
+            return session.id;
+        }
+    }
+
+    /**
+     * Returns the group, author and expiry of a session, from this manager if it handed the
+     * session out and it hasn't expired, or else from the server.
+     *
+     * @param sessionID string
+     * @return Map with groupID, authorID and validUntil
+     */
+    public Map getSessionInfo(String sessionID) {
+        Session session = this.byId.get(sessionID);
+        if (session != null && session.validUntil > System.currentTimeMillis() / 1000L) {
+            this.infoHits.incrementAndGet();
+            Map<String, Object> info = new HashMap<>();
+            info.put("groupID", session.groupID);
+            info.put("authorID", session.authorID);
+            info.put("validUntil", session.validUntil);
+            return info;
+        }
+        return this.client.getSessionInfo(sessionID);
+    }
+
+    /**
+     * Deletes a session on the server and forgets it.
+     *
+     * @param sessionID string
+     */
+    public void deleteSession(String sessionID) {
+        this.client.deleteSession(sessionID);
+        forget(sessionID);
+    }
+
+    /**
+     * Forgets a session deleted by other means than this class, so it isn't handed out again.
+     *
+     * @param sessionID string
+     */
+    public void forget(String sessionID) {
+        Session session = this.byId.remove(sessionID);
+        if (session != null) {
+            String key = session.groupID + '\u0000' + session.authorID;
+            FutureTask<Session> task = this.byPair.get(key);
+            if (task != null && task.isDone() && result(task) == session) {
+                this.byPair.remove(key, task);
+            }
+        }
+    }
+
+    /**
+     * Forgets the sessions that have expired, which are otherwise only replaced when their pair
+     * asks for a session again.
+     */
+    public void purgeExpired() {
+        long now = System.currentTimeMillis() / 1000L;
+        for (Iterator<Map.Entry<String, FutureTask<Session>>> it = this.byPair.entrySet().iterator(); it.hasNext();) {
+            FutureTask<Session> task = it.next().getValue();
+            Session session = task.isDone() ? result(task) : null;
+            if (task.isDone() && (session == null || session.validUntil <= now)) {
+                it.remove();
+                if (session != null) {
+                    this.byId.remove(session.id, session);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the number of requests answered with a kept session or one created for a
+     * concurrent request, without a call of their own.
+     *
+     * @return long
+     */
+    public long getHits() {
+        return this.hits.get();
+    }
+
+    /**
+     * Returns the number of sessions created.
+     *
+     * @return long
+     */
+    public long getCreated() {
+        return this.created.get();
+    }
+
+    /**
+     * Returns the number of getSessionInfo calls answered without a call.
+     *
+     * @return long
+     */
+    public long getInfoHits() {
+        return this.infoHits.get();
+    }
+
+    private boolean isFresh(FutureTask<Session> task) {
+        Session session = result(task);
+        return session != null
+                && session.validUntil - this.renewBeforeSeconds > System.currentTimeMillis() / 1000L;
+    }
+
+    /**
+     * Waits for a session being created. Returns null if creating it failed; the failed task is
+     * then removed, so the next request tries again.
+     */
+    private Session await(String key, FutureTask<Session> task) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return task.get();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    this.byPair.remove(key, task);
+                    return null;
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static Session result(FutureTask<Session> task) {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            return null;
+        }
+    }
+
+    private static RuntimeException failure(FutureTask<Session> task) {
+        try {
+            task.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                return (RuntimeException) e.getCause();
+            }
+            return new EPLiteException("Unable to create a session", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return new EPLiteException("Unable to create a session");
+    }
+
+    private static final class Session {
+        final String id;
+        final String groupID;
+        final String authorID;
+        final long validUntil;
+
+        Session(String id, String groupID, String authorID, long validUntil) {
+            this.id = id;
+            this.groupID = groupID;
+            this.authorID = authorID;
+            this.validUntil = validUntil;
+        }
+    }
+}
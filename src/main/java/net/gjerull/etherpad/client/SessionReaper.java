@@ -0,0 +1,360 @@
+package net.gjerull.etherpad.client;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Deletes expired sessions, which Etherpad Lite keeps until they are deleted.<br />
+ * <br />
+ * Each run scans the sessions of a slice of the groups in parallel, with listSessionsOfGroup,
+ * and deletes those whose validUntil has passed through a rate limited {@link BatchClient}.
+ * Groups are taken in id order from a checkpoint, the last group scanned, so consecutive runs
+ * work through all groups and then start over. Store getCheckpoint() and give it to
+ * setCheckpoint() to resume after a restart.<br />
+ * <br />
+ * Example:<br />
+ * <br />
+ * <code>
+ * // 8 groups scanned and 8 sessions deleted at a time, at most 50 deletions a second<br />
+ * SessionReaper reaper = new SessionReaper(client, 8, 50, 1000);<br />
+ * reaper.start(60, TimeUnit.SECONDS);<br />
+ * ...<br />
+ * System.out.println(reaper.getLastReport());<br />
+ * reaper.shutdown();
+ * </code>
+ */
+public class SessionReaper {
+    private final EPLiteClient client;
+    private final BatchClient deleter;
+    private final ExecutorService scanners;
+    private final int groupsPerRun;
+    private volatile ScheduledExecutorService scheduler;
+    private volatile String checkpoint;
+    private volatile Report lastReport;
+
+    private final AtomicLong totalScanned = new AtomicLong();
+    private final AtomicLong totalDeleted = new AtomicLong();
+
+    /**
+     * The outcome of one run.
+     */
+    public static final class Report {
+        private final int groupsScanned;
+        private final int groupFailures;
+        private final int sessionsScanned;
+        private final int sessionsExpired;
+        private final int sessionsDeleted;
+        private final long elapsedMillis;
+        private final boolean passComplete;
+
+        Report(int groupsScanned, int groupFailures, int sessionsScanned, int sessionsExpired,
+               int sessionsDeleted, long elapsedMillis, boolean passComplete) {
+            this.groupsScanned = groupsScanned;
+            this.groupFailures = groupFailures;
+            this.sessionsScanned = sessionsScanned;
+            this.sessionsExpired = sessionsExpired;
+            this.sessionsDeleted = sessionsDeleted;
+            this.elapsedMillis = elapsedMillis;
+            this.passComplete = passComplete;
+        }
+
+        /**
+         * Returns the number of groups whose sessions were listed.
+         *
+         * @return int
+         */
+        public int getGroupsScanned() {
+            return this.groupsScanned;
+        }
+
+        /**
+         * Returns the number of groups whose sessions couldn't be listed. They are tried again in
+         * the next pass.
+         *
+         * @return int
+         */
+        public int getGroupFailures() {
+            return this.groupFailures;
+        }
+
+        /**
+         * Returns the number of sessions looked at.
+         *
+         * @return int
+         */
+        public int getSessionsScanned() {
+            return this.sessionsScanned;
+        }
+
+        /**
+         * Returns the number of expired sessions found.
+         *
+         * @return int
+         */
+        public int getSessionsExpired() {
+            return this.sessionsExpired;
+        }
+
+        /**
+         * Returns the number of expired sessions deleted.
+         *
+         * @return int
+         */
+        public int getSessionsDeleted() {
+            return this.sessionsDeleted;
+        }
+
+        /**
+         * Returns how long the run took.
+         *
+         * @return long
+         */
+        public long getElapsedMillis() {
+            return this.elapsedMillis;
+        }
+
+        /**
+         * Returns true if the run reached the last group, so the next run starts over.
+         *
+         * @return boolean
+         */
+        public boolean isPassComplete() {
+            return this.passComplete;
+        }
+
+        /**
+         * Returns the sessions scanned per second.
+         *
+         * @return double
+         */
+        public double getScannedPerSecond() {
+            return perSecond(this.sessionsScanned);
+        }
+
+        /**
+         * Returns the sessions deleted per second.
+         *
+         * @return double
+         */
+        public double getDeletedPerSecond() {
+            return perSecond(this.sessionsDeleted);
+        }
+
+        private double perSecond(int count) {
+            return (this.elapsedMillis > 0) ? count * 1000.0 / this.elapsedMillis : 0.0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d groups (%d failed), %d sessions scanned (%.1f/s), %d expired, "
+                    + "%d deleted (%.1f/s) in %d ms", this.groupsScanned, this.groupFailures,
+                    this.sessionsScanned, getScannedPerSecond(), this.sessionsExpired, this.sessionsDeleted,
+                    getDeletedPerSecond(), this.elapsedMillis);
+        }
+    }
+
+    /**
+     * Initializes a new SessionReaper.
+     *
+     * @param client the client to list and delete sessions with
+     * @param parallelism the maximum number of groups scanned, and of sessions deleted, at the same time
+     * @param deletesPerSecond the maximum number of deletions started per second, zero or less for no limit
+     * @param groupsPerRun the maximum number of groups scanned by one run
+     */
+    public SessionReaper(EPLiteClient client, int parallelism, double deletesPerSecond, int groupsPerRun) {
+        if (groupsPerRun < 1) {
+            throw new IllegalArgumentException("groupsPerRun must be at least 1");
+        }
+        this.client = client;
+        this.deleter = new BatchClient(client, parallelism, deletesPerSecond);
+        this.scanners = Executors.newFixedThreadPool(parallelism, threads("etherpad-reaper-scan-"));
+        this.groupsPerRun = groupsPerRun;
+    }
+
+    /**
+     * Runs every period, the first time right away, until shutdown() is called. A failed run is
+     * retried at the next period.
+     *
+     * @param period the time between the end of a run and the start of the next
+     * @param unit the unit of the period
+     */
+    public synchronized void start(long period, TimeUnit unit) {
+        if (this.scheduler != null) {
+            throw new IllegalStateException("The reaper is already started");
+        }
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(threads("etherpad-reaper-"));
+        this.scheduler.scheduleWithFixedDelay(new Runnable() {
+            public void run() {
+                try {
+                    runOnce();
+                } catch (RuntimeException ex) {
+                    // Keep the schedule, the next run tries again from the same checkpoint
+                }
+            }
+        }, 0, period, unit);
+    }
+
+    /**
+     * Scans the next groups after the checkpoint and deletes their expired sessions.
+     *
+     * @return what the run did
+     */
+    public synchronized Report runOnce() {
+        long start = System.nanoTime();
+        long now = System.currentTimeMillis() / 1000L;
+
+        // Keep only the groupsPerRun smallest ids after the checkpoint, not the whole list
+        String from = this.checkpoint;
+        TreeSet<String> next = new TreeSet<>();
+        boolean beyond = false;
+        IdIterator ids = this.client.iterateAllGroups();
+        try {
+            while (ids.hasNext()) {
+                String groupID = ids.next();
+                if (from != null && groupID.compareTo(from) <= 0) {
+                    continue;
+                }
+                if (next.add(groupID) && next.size() > this.groupsPerRun) {
+                    next.pollLast();
+                    beyond = true;
+                }
+            }
+        } finally {
+            ids.close();
+        }
+        List<String> slice = new ArrayList<>(next);
+        boolean passComplete = !beyond;
+
+        List<Future<Map>> scans = new ArrayList<>(slice.size());
+        for (final String groupID : slice) {
+            scans.add(this.scanners.submit(TraceContext.wrap(new Callable<Map>() {
+                public Map call() {
+                    return client.listSessionsOfGroup(groupID);
+                }
+            })));
+        }
+        int groupFailures = 0;
+        int scanned = 0;
+        List<String> expired = new ArrayList<>();
+        for (Future<Map> scan : scans) {
+            Map sessions;
+            try {
+                sessions = scan.get();
+            } catch (ExecutionException ex) {
+                groupFailures++;
+                continue;
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new EPLiteException("Interrupted while scanning sessions", ex);
+            }
+            for (Object entry : sessions.entrySet()) {
+                Map.Entry session = (Map.Entry) entry;
+                scanned++;
+                Object info = session.getValue();
+                Object validUntil = (info instanceof Map) ? ((Map) info).get("validUntil") : null;
+                if (validUntil instanceof Number && ((Number) validUntil).longValue() <= now) {
+                    expired.add((String) session.getKey());
+                }
+            }
+        }
+
+        BatchOperation deletions = this.deleter.deleteSessions(expired);
+        try {
+            deletions.await();
+        } catch (InterruptedException ex) {
+            deletions.cancel();
+            Thread.currentThread().interrupt();
+            throw new EPLiteException("Interrupted while deleting sessions", ex);
+        }
+
+        this.checkpoint = passComplete ? null : slice.get(slice.size() - 1);
+        this.totalScanned.addAndGet(scanned);
+        this.totalDeleted.addAndGet(deletions.getSucceeded());
+        Report report = new Report(slice.size() - groupFailures, groupFailures, scanned, expired.size(),
+                deletions.getSucceeded(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), passComplete);
+        this.lastReport = report;
+        return report;
+    }
+
+    /**
+     * Returns the last group scanned, or null at the start of a pass.
+     *
+     * @return String
+     */
+    public String getCheckpoint() {
+        return this.checkpoint;
+    }
+
+    /**
+     * Sets the group after which the next run starts, e.g. a checkpoint stored by an earlier
+     * process.
+     *
+     * @param groupID the last group scanned, null to start from the first group
+     */
+    public void setCheckpoint(String groupID) {
+        this.checkpoint = groupID;
+    }
+
+    /**
+     * Returns the report of the last run, or null before the first.
+     *
+     * @return Report
+     */
+    public Report getLastReport() {
+        return this.lastReport;
+    }
+
+    /**
+     * Returns the number of sessions scanned by all runs.
+     *
+     * @return long
+     */
+    public long getTotalScanned() {
+        return this.totalScanned.get();
+    }
+
+    /**
+     * Returns the number of sessions deleted by all runs.
+     *
+     * @return long
+     */
+    public long getTotalDeleted() {
+        return this.totalDeleted.get();
+    }
+
+    /**
+     * Stops the schedule and the worker threads; call it when no run is in progress.
+     */
+    public void shutdown() {
+        ScheduledExecutorService current = this.scheduler;
+        if (current != null) {
+            current.shutdown();
+        }
+        this.scanners.shutdown();
+        this.deleter.shutdown();
+    }
+
+    private static ThreadFactory threads(final String prefix) {
+        return new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, prefix + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+}
@@ -0,0 +1,280 @@
+package net.gjerull.etherpad.client;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Combines many appendText calls to the same pad into one.<br />
+ * <br />
+ * Text appended to a pad is buffered until windowMillis passed since the first buffered append,
+ * or until maxChars characters are buffered, and is then sent with a single appendText call.
+ * The text of a pad is always sent in the order it was appended. A size flush is made by the
+ * appending thread, a time flush by a background thread; a failed background flush is thrown by
+ * the next call for that pad, and its text is lost. The buffer of a pad is dropped once its text
+ * was sent and nothing new was appended, so appending to many short-lived pads doesn't keep a
+ * buffer for each. Close the appender to send what is left.<br />
+ * <br />
+ * Example:<br />
+ * <br />
+ * <code>
+ * TextAppender appender = new TextAppender(client, 200, 16384);<br />
+ * try {<br />
+ * &nbsp;&nbsp;for (String line : lines) {<br />
+ * &nbsp;&nbsp;&nbsp;&nbsp;appender.append(padId, line + "\n");<br />
+ * &nbsp;&nbsp;}<br />
+ * } finally {<br />
+ * &nbsp;&nbsp;appender.close();<br />
+ * }
+ * </code>
+ */
+public class TextAppender implements Closeable {
+    private final EPLiteClient client;
+    private final long windowMillis;
+    private final int maxChars;
+    private final ScheduledThreadPoolExecutor scheduler;
+    private final ConcurrentMap<String, Buffer> buffers = new ConcurrentHashMap<>();
+    private volatile boolean closed;
+
+    private final AtomicLong appends = new AtomicLong();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong calls = new AtomicLong();
+
+    /**
+     * The text waiting to be appended to a pad.
+     */
+    private final class Buffer implements Runnable {
+        final String padId;
+        // Held while a flush takes the text and sends it, so flushes of a pad keep their order
+        final ReentrantLock sending = new ReentrantLock();
+        final StringBuilder text = new StringBuilder();
+        int appends;
+        boolean scheduled;
+        // Set once the buffer was taken out of the map; appends then go to a new buffer
+        boolean removed;
+        EPLiteException error;
+
+        Buffer(String padId) {
+            this.padId = padId;
+        }
+
+        public void run() {
+            try {
+                flush(this);
+            } catch (EPLiteException ex) {
+                synchronized (this) {
+                    this.error = ex;
+                }
+            }
+        }
+    }
+
+    /**
+     * Initializes a new TextAppender.
+     *
+     * @param client the client to append with
+     * @param windowMillis the longest time text is buffered
+     * @param maxChars the number of buffered characters of a pad that makes it flush at once
+     */
+    public TextAppender(EPLiteClient client, long windowMillis, int maxChars) {
+        if (maxChars < 1) {
+            throw new IllegalArgumentException("maxChars must be at least 1");
+        }
+        this.client = client;
+        this.windowMillis = windowMillis;
+        this.maxChars = maxChars;
+        this.scheduler = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "etherpad-text-appender-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Appends text to a pad, after the text appended to it before.
+     *
+     * @param padId the pad's id string
+     * @param text the text to append
+     * @throws EPLiteException if the last background flush of the pad failed, or this flush
+     */
+    public void append(String padId, String text) {
+        if (this.closed) {
+            throw new IllegalStateException("TextAppender is closed");
+        }
+        while (true) {
+            Buffer buffer = this.buffers.get(padId);
+            if (buffer == null) {
+                Buffer created = new Buffer(padId);
+                buffer = this.buffers.putIfAbsent(padId, created);
+                if (buffer == null) {
+                    buffer = created;
+                }
+            }
+            boolean full;
+            synchronized (buffer) {
+                if (buffer.removed) {
+                    // Flushed and dropped since it was looked up
+                    continue;
+                }
+                throwError(buffer);
+                buffer.text.append(text);
+                buffer.appends++;
+                this.appends.incrementAndGet();
+                full = buffer.text.length() >= this.maxChars;
+                if (!full && !buffer.scheduled) {
+                    buffer.scheduled = true;
+                    this.scheduler.schedule(buffer, this.windowMillis, TimeUnit.MILLISECONDS);
+                }
+            }
+            if (full) {
+                flush(buffer);
+            }
+            return;
+        }
+    }
+
+    /**
+     * Sends the text buffered for a pad now.
+     *
+     * @param padId the pad's id string
+     * @throws EPLiteException if the last background flush of the pad failed, or this flush
+     */
+    public void flush(String padId) {
+        Buffer buffer = this.buffers.get(padId);
+        if (buffer != null) {
+            synchronized (buffer) {
+                throwError(buffer);
+            }
+            flush(buffer);
+        }
+    }
+
+    /**
+     * Sends the text buffered for all pads now. Every pad is flushed even if some fail.
+     *
+     * @throws EPLiteException with the first failure, the others added as suppressed
+     */
+    public void flush() {
+        List<EPLiteException> errors = new ArrayList<>();
+        for (String padId : this.buffers.keySet()) {
+            try {
+                flush(padId);
+            } catch (EPLiteException ex) {
+                errors.add(ex);
+            }
+        }
+        if (!errors.isEmpty()) {
+            EPLiteException first = errors.get(0);
+            for (int i = 1; i < errors.size(); i++) {
+                first.addSuppressed(errors.get(i));
+            }
+            throw first;
+        }
+    }
+
+    /**
+     * Returns the number of appends received.
+     *
+     * @return long
+     */
+    public long getAppends() {
+        return this.appends.get();
+    }
+
+    /**
+     * Returns the number of pads with a buffer, i.e. with text buffered or being sent.
+     *
+     * @return int
+     */
+    public int getBufferedPads() {
+        return this.buffers.size();
+    }
+
+    /**
+     * Returns the number of appendText calls made.
+     *
+     * @return long
+     */
+    public long getCalls() {
+        return this.calls.get();
+    }
+
+    /**
+     * Returns the number of appends sent as part of another append's call, i.e. the calls saved.
+     *
+     * @return long
+     */
+    public long getCombined() {
+        return this.sent.get() - this.calls.get();
+    }
+
+    /**
+     * Sends all buffered text and stops the background flushes. Appends after close are rejected.
+     *
+     * @throws EPLiteException if a flush failed
+     */
+    public void close() {
+        this.closed = true;
+        try {
+            flush();
+        } finally {
+            this.scheduler.shutdown();
+        }
+    }
+
+    private void flush(Buffer buffer) {
+        buffer.sending.lock();
+        try {
+            String text;
+            int appended;
+            synchronized (buffer) {
+                if (buffer.text.length() == 0) {
+                    dropIfIdle(buffer);
+                    return;
+                }
+                text = buffer.text.toString();
+                appended = buffer.appends;
+                buffer.text.setLength(0);
+                buffer.appends = 0;
+                buffer.scheduled = false;
+            }
+            this.calls.incrementAndGet();
+            this.sent.addAndGet(appended);
+            this.client.appendText(buffer.padId, text);
+            synchronized (buffer) {
+                dropIfIdle(buffer);
+            }
+        } finally {
+            buffer.sending.unlock();
+        }
+    }
+
+    private void dropIfIdle(Buffer buffer) {
+        // A failed flush keeps its buffer so the next append to the pad still throws the error
+        if (buffer.text.length() == 0 && !buffer.scheduled && buffer.error == null && !buffer.removed) {
+            buffer.removed = true;
+            this.buffers.remove(buffer.padId, buffer);
+        }
+    }
+
+    private void throwError(Buffer buffer) {
+        if (buffer.error != null) {
+            EPLiteException error = buffer.error;
+            buffer.error = null;
+            dropIfIdle(buffer);
+            throw new EPLiteException("Appending to " + buffer.padId + " failed: " + error.getMessage(), error);
+        }
+    }
+}
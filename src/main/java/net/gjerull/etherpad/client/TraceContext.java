@@ -0,0 +1,290 @@
+package net.gjerull.etherpad.client;
+
+import java.io.Closeable;
+import java.util.Random;
+import java.util.concurrent.Callable;
+
+/**
+ * A W3C Trace Context, the trace and span an API call belongs to.<br />
+ * <br />
+ * The current context of a thread is sent as the "traceparent" header of every call by
+ * {@link TracingInterceptor}. wrap() carries it over to tasks run on other threads, as
+ * {@link BatchClient} does for its calls.<br />
+ * <br />
+ * Example:<br />
+ * <br />
+ * <code>
+ * TraceContext.Scope scope = TraceContext.parse(incomingTraceparent).makeCurrent();<br />
+ * try {<br />
+ * &nbsp;&nbsp;client.createPad(padId);<br />
+ * } finally {<br />
+ * &nbsp;&nbsp;scope.close();<br />
+ * }
+ * </code>
+ */
+public final class TraceContext {
+    private static final ThreadLocal<TraceContext> CURRENT = new ThreadLocal<>();
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final int SAMPLED = 0x01;
+
+    private static final ThreadLocal<Random> RANDOM = new ThreadLocal<Random>() {
+        @Override
+        protected Random initialValue() {
+            return new Random();
+        }
+    };
+
+    private final String traceId;
+    private final String spanId;
+    private final int flags;
+    private final String traceState;
+
+    private TraceContext(String traceId, String spanId, int flags, String traceState) {
+        this.traceId = traceId;
+        this.spanId = spanId;
+        this.flags = flags;
+        this.traceState = traceState;
+    }
+
+    /**
+     * Starts a new sampled trace.
+     *
+     * @return TraceContext
+     */
+    public static TraceContext newRoot() {
+        return new TraceContext(randomHex(16), randomHex(8), SAMPLED, null);
+    }
+
+    /**
+     * Reads a "traceparent" header, e.g. "00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01".
+     *
+     * @param traceparent the header value
+     * @return TraceContext, or null if the value isn't valid
+     */
+    public static TraceContext parse(String traceparent) {
+        return parse(traceparent, null);
+    }
+
+    /**
+     * Reads the "traceparent" and "tracestate" headers.
+     *
+     * @param traceparent the traceparent header value
+     * @param traceState the tracestate header value, passed on as it is, may be null
+     * @return TraceContext, or null if traceparent isn't valid
+     */
+    public static TraceContext parse(String traceparent, String traceState) {
+        if (traceparent == null) {
+            return null;
+        }
+        String value = traceparent.trim();
+        // Later versions may add fields after the flags
+        if (value.length() < 55 || (value.length() > 55 && value.charAt(55) != '-')
+                || value.charAt(2) != '-' || value.charAt(35) != '-' || value.charAt(52) != '-') {
+            return null;
+        }
+        String version = value.substring(0, 2);
+        String traceId = value.substring(3, 35);
+        String spanId = value.substring(36, 52);
+        String flags = value.substring(53, 55);
+        if (!isHex(version) || version.equals("ff") || (version.equals("00") && value.length() != 55)
+                || !isHex(traceId) || isZero(traceId) || !isHex(spanId) || isZero(spanId)
+                || !isHex(flags)) {
+            return null;
+        }
+        return new TraceContext(traceId, spanId, Integer.parseInt(flags, 16), traceState);
+    }
+
+    /**
+     * Returns the context of the current thread.
+     *
+     * @return TraceContext, or null if there is none
+     */
+    public static TraceContext current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Makes this the context of the current thread until the scope is closed.
+     *
+     * @return Scope restoring the previous context when closed
+     */
+    public Scope makeCurrent() {
+        TraceContext previous = CURRENT.get();
+        CURRENT.set(this);
+        return new Scope(previous);
+    }
+
+    /**
+     * Returns a context for a call made within this one: same trace, new span.
+     *
+     * @return TraceContext
+     */
+    public TraceContext newChild() {
+        return new TraceContext(this.traceId, randomHex(8), this.flags, this.traceState);
+    }
+
+    /**
+     * Returns a task that runs with the current context of this thread, for tasks run on other
+     * threads.
+     *
+     * @param task the task
+     * @return Runnable, the task itself if there is no current context
+     */
+    public static Runnable wrap(final Runnable task) {
+        final TraceContext context = current();
+        if (context == null) {
+            return task;
+        }
+        return new Runnable() {
+            public void run() {
+                Scope scope = context.makeCurrent();
+                try {
+                    task.run();
+                } finally {
+                    scope.close();
+                }
+            }
+        };
+    }
+
+    /**
+     * Returns a task that runs with the current context of this thread, for tasks run on other
+     * threads.
+     *
+     * @param task the task
+     * @param <T> the result type
+     * @return Callable, the task itself if there is no current context
+     */
+    public static <T> Callable<T> wrap(final Callable<T> task) {
+        final TraceContext context = current();
+        if (context == null) {
+            return task;
+        }
+        return new Callable<T>() {
+            public T call() throws Exception {
+                Scope scope = context.makeCurrent();
+                try {
+                    return task.call();
+                } finally {
+                    scope.close();
+                }
+            }
+        };
+    }
+
+    /**
+     * Returns the trace id, 32 lowercase hex digits.
+     *
+     * @return String
+     */
+    public String getTraceId() {
+        return this.traceId;
+    }
+
+    /**
+     * Returns the span id, 16 lowercase hex digits.
+     *
+     * @return String
+     */
+    public String getSpanId() {
+        return this.spanId;
+    }
+
+    /**
+     * Returns whether the caller may have recorded the trace.
+     *
+     * @return boolean
+     */
+    public boolean isSampled() {
+        return (this.flags & SAMPLED) != 0;
+    }
+
+    /**
+     * Returns the vendor specific "tracestate" header value.
+     *
+     * @return String, or null
+     */
+    public String getTraceState() {
+        return this.traceState;
+    }
+
+    /**
+     * Returns the "traceparent" header value.
+     *
+     * @return String
+     */
+    public String toTraceparent() {
+        char[] flagDigits = {HEX[(this.flags >> 4) & 0xF], HEX[this.flags & 0xF]};
+        return "00-" + this.traceId + "-" + this.spanId + "-" + new String(flagDigits);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof TraceContext)) {
+            return false;
+        }
+        TraceContext other = (TraceContext) o;
+        return this.traceId.equals(other.traceId) && this.spanId.equals(other.spanId)
+                && this.flags == other.flags;
+    }
+
+    @Override
+    public int hashCode() {
+        return this.traceId.hashCode() * 31 + this.spanId.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return toTraceparent();
+    }
+
+    private static String randomHex(int bytes) {
+        Random random = RANDOM.get();
+        char[] digits = new char[2 * bytes];
+        do {
+            for (int i = 0; i < digits.length; i++) {
+                digits[i] = HEX[random.nextInt(16)];
+            }
+        } while (isZero(new String(digits)));
+        return new String(digits);
+    }
+
+    private static boolean isHex(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (!((c >= '0' && c <= '9') || (c >= 'a' && c <= 'f'))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isZero(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) != '0') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Restores the previous context of the thread when closed.
+     */
+    public static final class Scope implements Closeable {
+        private final TraceContext previous;
+
+        private Scope(TraceContext previous) {
+            this.previous = previous;
+        }
+
+        @Override
+        public void close() {
+            if (this.previous != null) {
+                CURRENT.set(this.previous);
+            } else {
+                CURRENT.remove();
+            }
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package net.gjerull.etherpad.client;
+
+/**
+ * Sends the current {@link TraceContext} with every call, as a new span of the trace, in the
+ * W3C "traceparent" and "tracestate" headers.<br />
+ * <br />
+ * Calls made without a current context are sent without headers, unless the interceptor was
+ * created to start a new trace for them.
+ */
+public class TracingInterceptor implements EPLiteInterceptor {
+    /**
+     * The attribute holding the context the call was sent with.
+     */
+    public static final String CONTEXT_ATTRIBUTE = "traceContext";
+
+    private final boolean startTraces;
+
+    /**
+     * Instantiates a TracingInterceptor that only propagates existing traces.
+     */
+    public TracingInterceptor() {
+        this(false);
+    }
+
+    /**
+     * Instantiates a TracingInterceptor.
+     *
+     * @param startTraces whether calls without a current context start a new trace
+     */
+    public TracingInterceptor(boolean startTraces) {
+        this.startTraces = startTraces;
+    }
+
+    public void before(EPLiteCall call) {
+        TraceContext parent = TraceContext.current();
+        TraceContext context;
+        if (parent != null) {
+            context = parent.newChild();
+        } else if (this.startTraces) {
+            context = TraceContext.newRoot();
+        } else {
+            return;
+        }
+        call.setAttribute(CONTEXT_ATTRIBUTE, context);
+        call.setHeader("traceparent", context.toTraceparent());
+        if (context.getTraceState() != null) {
+            call.setHeader("tracestate", context.getTraceState());
+        }
+    }
+
+    public void after(EPLiteCall call) {
+    }
+
+    public void error(EPLiteCall call, EPLiteException error) {
+    }
+}
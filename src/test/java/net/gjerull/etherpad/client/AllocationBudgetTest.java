@@ -0,0 +1,606 @@
+package net.gjerull.etherpad.client;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Checks the bytes each public EPLiteClient method allocates per call on the calling thread,
+ * against a FakeEtherpadServer, with the budgets in allocation-budgets.properties.<br />
+ * <br />
+ * After a change that allocates more or less on purpose, write new budgets with:<br />
+ * <br />
+ * <code>
+ * mvn test -Dtest=AllocationBudgetTest -Dallocation.budgets.write=src/test/resources/allocation-budgets.properties
+ * </code>
+ */
+public class AllocationBudgetTest {
+    private static final String BUDGETS = "/allocation-budgets.properties";
+    private static final int WARMUP_CALLS = 200;
+    private static final int MEASURED_CALLS = 100;
+
+    /**
+     * Headroom given to new budgets over the measured allocation, for noise between runs.
+     */
+    private static final double HEADROOM = 1.25;
+
+    /**
+     * Public methods that don't make calls.
+     */
+    private static final Set<String> NOT_CALLS = new HashSet<>(Arrays.asList(
+            "setMetricsListener", "addInterceptor", "removeInterceptor", "isSecure"));
+
+    private static com.sun.management.ThreadMXBean threads;
+    private static FakeEtherpadServer etherpad;
+    private static EPLiteClient client;
+    private static String groupID;
+    private static String authorID;
+    private static String sessionID;
+    private static String groupPadID;
+    private static String readOnlyID;
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        etherpad = new FakeEtherpadServer("apikey", 2);
+        client = new EPLiteClient(etherpad.getUrl(), "apikey");
+        StringBuilder text = new StringBuilder();
+        while (text.length() < 1000) {
+            text.append("The quick brown fox jumps over the lazy dog.\n");
+        }
+        client.createPad("read", text.toString());
+        client.createPad("write");
+        groupID = (String) client.createGroupIfNotExistsFor("budgets").get("groupID");
+        authorID = (String) client.createAuthorIfNotExistsFor("budgets", "Budgets").get("authorID");
+        sessionID = (String) client.createSession(groupID, authorID, 60).get("sessionID");
+        groupPadID = (String) client.createGroupPad(groupID, "read").get("padID");
+        readOnlyID = (String) client.getReadOnlyID("read").get("readOnlyID");
+        for (int i = 0; i < 10; i++) {
+            client.appendChatMessage("read", "message " + i, authorID);
+        }
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        if (etherpad != null) {
+            etherpad.stop();
+        }
+    }
+
+    @Test
+    public void every_call_has_a_budget() throws Exception {
+        Set<String> budgeted = operations().keySet();
+        Set<String> missing = new TreeSet<>();
+        for (Method method : EPLiteClient.class.getDeclaredMethods()) {
+            if (Modifier.isPublic(method.getModifiers()) && !NOT_CALLS.contains(method.getName())
+                    && !budgeted.contains(method.getName())) {
+                missing.add(method.getName());
+            }
+        }
+        assertTrue("No allocation budget for " + missing, missing.isEmpty());
+        Properties budgets = budgets();
+        missing.addAll(budgeted);
+        missing.removeAll(budgets.stringPropertyNames());
+        assertTrue("No allocation budget in " + BUDGETS + " for " + missing, missing.isEmpty());
+    }
+
+    @Test
+    public void calls_stay_within_their_allocation_budget() throws Exception {
+        Properties budgets = budgets();
+        Map<String, Long> measured = new TreeMap<>();
+        List<String> exceeded = new ArrayList<>();
+        long overhead = measure(new Operation() {
+            void call() {
+            }
+        });
+        for (Map.Entry<String, Operation> entry : operations().entrySet()) {
+            long bytes = Math.max(0, measure(entry.getValue()) - overhead);
+            measured.put(entry.getKey(), (long) Math.ceil(bytes * HEADROOM));
+            String budget = budgets.getProperty(entry.getKey());
+            if (budget != null && bytes > Long.parseLong(budget)) {
+                exceeded.add(entry.getKey() + " allocates " + bytes + " bytes a call, its budget is " + budget);
+            }
+        }
+
+        String write = System.getProperty("allocation.budgets.write");
+        if (write != null && !write.isEmpty()) {
+            Writer out = new OutputStreamWriter(new FileOutputStream(write), "ISO-8859-1");
+            try {
+                out.write("# Bytes allocated per call on the calling thread, see AllocationBudgetTest\n");
+                for (Map.Entry<String, Long> entry : measured.entrySet()) {
+                    out.write(entry.getKey() + "=" + entry.getValue() + "\n");
+                }
+            } finally {
+                out.close();
+            }
+            return;
+        }
+        assertTrue("Allocation budgets exceeded:\n" + join(exceeded), exceeded.isEmpty());
+    }
+
+    /**
+     * Returns the bytes the operation allocates per call on this thread, after warming it up.
+     */
+    private static long measure(Operation operation) throws Exception {
+        long threadId = Thread.currentThread().getId();
+        for (int i = 0; i < WARMUP_CALLS; i++) {
+            operation.prepare(i);
+            operation.call();
+            operation.cleanUp();
+        }
+        long total = 0;
+        for (int i = 0; i < MEASURED_CALLS; i++) {
+            operation.prepare(WARMUP_CALLS + i);
+            long before = threads.getThreadAllocatedBytes(threadId);
+            operation.call();
+            total += threads.getThreadAllocatedBytes(threadId) - before;
+            operation.cleanUp();
+        }
+        return total / MEASURED_CALLS;
+    }
+
+    private static Properties budgets() throws Exception {
+        Properties budgets = new Properties();
+        InputStream in = AllocationBudgetTest.class.getResourceAsStream(BUDGETS);
+        assertNotNull(BUDGETS + " is missing", in);
+        try {
+            budgets.load(in);
+        } finally {
+            in.close();
+        }
+        return budgets;
+    }
+
+    private static String join(List<String> lines) {
+        StringBuilder joined = new StringBuilder();
+        for (String line : lines) {
+            joined.append("  ").append(line).append('\n');
+        }
+        return joined.toString();
+    }
+
+    /**
+     * One call per public method, keyed by its name. Calls that create or delete get a fresh
+     * target from prepare() and clean up after themselves, outside the measurement, so the
+     * state the other calls see doesn't grow.
+     */
+    private static Map<String, Operation> operations() {
+        Map<String, Operation> operations = new LinkedHashMap<>();
+
+        // Groups
+        operations.put("createGroup", new Operation() {
+            void call() {
+                this.created = (String) client.createGroup().get("groupID");
+            }
+
+            void cleanUp() {
+                client.deleteGroup(this.created);
+            }
+        });
+        operations.put("createGroupIfNotExistsFor", new Operation() {
+            void call() {
+                client.createGroupIfNotExistsFor("budgets");
+            }
+        });
+        operations.put("deleteGroup", new Operation() {
+            void prepare(int i) {
+                this.target = (String) client.createGroup().get("groupID");
+            }
+
+            void call() {
+                client.deleteGroup(this.target);
+            }
+        });
+        operations.put("tryDeleteGroup", new Operation() {
+            void prepare(int i) {
+                this.target = (String) client.createGroup().get("groupID");
+            }
+
+            void call() {
+                client.tryDeleteGroup(this.target);
+            }
+        });
+        operations.put("listPads", new Operation() {
+            void call() {
+                client.listPads(groupID);
+            }
+        });
+        operations.put("iteratePads", new Operation() {
+            void call() {
+                IdIterator ids = client.iteratePads(groupID);
+                while (ids.hasNext()) {
+                    ids.next();
+                }
+            }
+        });
+        operations.put("fetchPads", new Operation() {
+            void call() {
+                client.fetchPads(groupID);
+            }
+        });
+        operations.put("createGroupPad", new Operation() {
+            void prepare(int i) {
+                this.target = "pad-" + i;
+            }
+
+            void call() {
+                this.created = (String) client.createGroupPad(groupID, this.target).get("padID");
+            }
+
+            void cleanUp() {
+                client.deletePad(this.created);
+            }
+        });
+        operations.put("tryCreateGroupPad", new Operation() {
+            void call() {
+                client.tryCreateGroupPad(groupID, "read");
+            }
+        });
+        operations.put("listAllGroups", new Operation() {
+            void call() {
+                client.listAllGroups();
+            }
+        });
+        operations.put("iterateAllGroups", new Operation() {
+            void call() {
+                IdIterator ids = client.iterateAllGroups();
+                while (ids.hasNext()) {
+                    ids.next();
+                }
+            }
+        });
+
+        // Authors
+        operations.put("createAuthor", new Operation() {
+            void call() {
+                client.createAuthor("Budgets");
+            }
+        });
+        operations.put("createAuthorIfNotExistsFor", new Operation() {
+            void call() {
+                client.createAuthorIfNotExistsFor("budgets", "Budgets");
+            }
+        });
+        operations.put("listPadsOfAuthor", new Operation() {
+            void call() {
+                client.listPadsOfAuthor(authorID);
+            }
+        });
+        operations.put("getAuthorName", new Operation() {
+            void call() {
+                client.getAuthorName(authorID);
+            }
+        });
+
+        // Sessions
+        operations.put("createSession", new Operation() {
+            void call() {
+                this.created = (String) client.createSession(groupID, authorID, 60).get("sessionID");
+            }
+
+            void cleanUp() {
+                client.deleteSession(this.created);
+            }
+        });
+        operations.put("deleteSession", new Operation() {
+            void prepare(int i) {
+                this.target = (String) client.createSession(groupID, authorID, 60).get("sessionID");
+            }
+
+            void call() {
+                client.deleteSession(this.target);
+            }
+        });
+        operations.put("getSessionInfo", new Operation() {
+            void call() {
+                client.getSessionInfo(sessionID);
+            }
+        });
+        operations.put("fetchSessionInfo", new Operation() {
+            void call() {
+                client.fetchSessionInfo(sessionID);
+            }
+        });
+        operations.put("listSessionsOfGroup", new Operation() {
+            void call() {
+                client.listSessionsOfGroup(groupID);
+            }
+        });
+        operations.put("listSessionsOfAuthor", new Operation() {
+            void call() {
+                client.listSessionsOfAuthor(authorID);
+            }
+        });
+
+        // Pad content
+        operations.put("getText", new Operation() {
+            void call() {
+                client.getText("read");
+            }
+        });
+        operations.put("tryGetText", new Operation() {
+            void call() {
+                client.tryGetText("read");
+            }
+        });
+        operations.put("fetchText", new Operation() {
+            void call() {
+                client.fetchText("read");
+            }
+        });
+        operations.put("setText", new Operation() {
+            void call() {
+                client.setText("write", "The quick brown fox jumps over the lazy dog.");
+            }
+        });
+        operations.put("appendText", new Operation() {
+            void call() {
+                client.appendText("write", "x");
+            }
+
+            void cleanUp() {
+                client.setText("write", "");
+            }
+        });
+        operations.put("getHTML", new Operation() {
+            void call() {
+                client.getHTML("read");
+            }
+        });
+        operations.put("setHTML", new Operation() {
+            void call() {
+                client.setHTML("write", "<html><body>The quick brown fox<br></body></html>");
+            }
+        });
+        operations.put("getAttributePool", new Operation() {
+            void call() {
+                client.getAttributePool("read");
+            }
+        });
+        operations.put("getRevisionChangeset", new Operation() {
+            void call() {
+                client.getRevisionChangeset("read", 0);
+            }
+        });
+        operations.put("createDiffHTML", new Operation() {
+            void call() {
+                client.createDiffHTML("read", 0, 0);
+            }
+        });
+
+        // Chat
+        operations.put("getChatHistory", new Operation() {
+            void call() {
+                client.getChatHistory("read");
+            }
+        });
+        operations.put("fetchChatHistory", new Operation() {
+            void call() {
+                client.fetchChatHistory("read");
+            }
+        });
+        operations.put("getChatHead", new Operation() {
+            void call() {
+                client.getChatHead("read");
+            }
+        });
+        operations.put("appendChatMessage", new Operation() {
+            void call() {
+                client.appendChatMessage("write", "hello", authorID, 1359199981000L);
+            }
+        });
+
+        // Pads
+        operations.put("listAllPads", new Operation() {
+            void call() {
+                client.listAllPads();
+            }
+        });
+        operations.put("iterateAllPads", new Operation() {
+            void call() {
+                IdIterator ids = client.iterateAllPads();
+                while (ids.hasNext()) {
+                    ids.next();
+                }
+            }
+        });
+        operations.put("fetchAllPads", new Operation() {
+            void call() {
+                client.fetchAllPads();
+            }
+        });
+        operations.put("createPad", new Operation() {
+            void prepare(int i) {
+                this.target = "created-" + i;
+            }
+
+            void call() {
+                client.createPad(this.target);
+            }
+
+            void cleanUp() {
+                client.deletePad(this.target);
+            }
+        });
+        operations.put("tryCreatePad", new Operation() {
+            void call() {
+                client.tryCreatePad("read");
+            }
+        });
+        operations.put("getRevisionsCount", new Operation() {
+            void call() {
+                client.getRevisionsCount("read");
+            }
+        });
+        operations.put("tryGetRevisionsCount", new Operation() {
+            void call() {
+                client.tryGetRevisionsCount("read");
+            }
+        });
+        operations.put("fetchRevisionsCount", new Operation() {
+            void call() {
+                client.fetchRevisionsCount("read");
+            }
+        });
+        operations.put("getSavedRevisionsCount", new Operation() {
+            void call() {
+                client.getSavedRevisionsCount("read");
+            }
+        });
+        operations.put("listSavedRevisions", new Operation() {
+            void call() {
+                client.listSavedRevisions("read");
+            }
+        });
+        operations.put("saveRevision", new Operation() {
+            void call() {
+                client.saveRevision("write");
+            }
+        });
+        operations.put("padUsersCount", new Operation() {
+            void call() {
+                client.padUsersCount("read");
+            }
+        });
+        operations.put("padUsers", new Operation() {
+            void call() {
+                client.padUsers("read");
+            }
+        });
+        operations.put("deletePad", new Operation() {
+            void prepare(int i) {
+                this.target = "deleted-" + i;
+                client.createPad(this.target);
+            }
+
+            void call() {
+                client.deletePad(this.target);
+            }
+        });
+        operations.put("tryDeletePad", new Operation() {
+            void prepare(int i) {
+                this.target = "deleted-" + i;
+                client.createPad(this.target);
+            }
+
+            void call() {
+                client.tryDeletePad(this.target);
+            }
+        });
+        operations.put("copyPad", new Operation() {
+            void prepare(int i) {
+                this.target = "copy-" + i;
+            }
+
+            void call() {
+                client.copyPad("read", this.target);
+            }
+
+            void cleanUp() {
+                client.deletePad(this.target);
+            }
+        });
+        operations.put("movePad", new Operation() {
+            void prepare(int i) {
+                this.target = "moved-" + i;
+            }
+
+            void call() {
+                client.movePad("read", this.target);
+            }
+
+            void cleanUp() {
+                // movePad copies, see EPLiteClient
+                client.tryDeletePad(this.target);
+            }
+        });
+        operations.put("getReadOnlyID", new Operation() {
+            void call() {
+                client.getReadOnlyID("read");
+            }
+        });
+        operations.put("getPadID", new Operation() {
+            void call() {
+                client.getPadID(readOnlyID);
+            }
+        });
+        operations.put("setPublicStatus", new Operation() {
+            void call() {
+                client.setPublicStatus(groupPadID, Boolean.TRUE);
+            }
+        });
+        operations.put("getPublicStatus", new Operation() {
+            void call() {
+                client.getPublicStatus(groupPadID);
+            }
+        });
+        operations.put("setPassword", new Operation() {
+            void call() {
+                client.setPassword(groupPadID, "secret");
+            }
+        });
+        operations.put("isPasswordProtected", new Operation() {
+            void call() {
+                client.isPasswordProtected(groupPadID);
+            }
+        });
+        operations.put("listAuthorsOfPad", new Operation() {
+            void call() {
+                client.listAuthorsOfPad("read");
+            }
+        });
+        operations.put("getLastEdited", new Operation() {
+            void call() {
+                client.getLastEdited("read");
+            }
+        });
+        operations.put("sendClientsMessage", new Operation() {
+            void call() {
+                client.sendClientsMessage("read", "hello");
+            }
+        });
+        operations.put("checkToken", new Operation() {
+            void call() {
+                client.checkToken();
+            }
+        });
+        return operations;
+    }
+
+    private abstract static class Operation {
+        String target;
+        String created;
+
+        void prepare(int i) {
+        }
+
+        abstract void call();
+
+        void cleanUp() {
+        }
+    }
+}
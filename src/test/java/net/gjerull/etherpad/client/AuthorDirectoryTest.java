@@ -0,0 +1,106 @@
+package net.gjerull.etherpad.client;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class AuthorDirectoryTest {
+    private FakeEtherpadServer etherpad;
+    private EPLiteClient client;
+    private AuthorDirectory authors;
+    private final List<String> authorIDs = new ArrayList<>();
+
+    @Before
+    public void setUp() throws Exception {
+        this.etherpad = new FakeEtherpadServer("apikey");
+        this.client = new EPLiteClient(this.etherpad.getUrl(), "apikey");
+        this.authors = new AuthorDirectory(this.client, 8, 60000);
+        for (int i = 0; i < 8; i++) {
+            this.authorIDs.add((String) this.client.createAuthor("Author " + i).get("authorID"));
+        }
+    }
+
+    @After
+    public void tearDown() {
+        this.authors.shutdown();
+        this.etherpad.stop();
+    }
+
+    @Test
+    public void names_are_looked_up_in_parallel_and_kept() throws Exception {
+        this.etherpad.setLatency("getAuthorName", 100);
+        long start = System.nanoTime();
+        Map<String, String> names = this.authors.getNames(this.authorIDs);
+        long elapsedMillis = (System.nanoTime() - start) / 1000000L;
+
+        assertEquals(8, names.size());
+        assertEquals("Author 3", names.get(this.authorIDs.get(3)));
+        assertTrue("8 lookups took " + elapsedMillis + " ms", elapsedMillis < 8 * 100);
+        assertEquals(8, this.authors.getLookups());
+
+        long requests = this.etherpad.getRequestCount();
+        assertEquals(names, this.authors.getNames(this.authorIDs));
+        assertEquals("Author 0", this.authors.getName(this.authorIDs.get(0)));
+        assertEquals(requests, this.etherpad.getRequestCount());
+    }
+
+    @Test
+    public void names_expire_after_their_time_to_live() throws Exception {
+        AuthorDirectory shortLived = new AuthorDirectory(this.client, 2, 50);
+        try {
+            shortLived.getName(this.authorIDs.get(0));
+            shortLived.getName(this.authorIDs.get(0));
+            assertEquals(1, shortLived.getLookups());
+            Thread.sleep(100);
+            shortLived.getName(this.authorIDs.get(0));
+            assertEquals(2, shortLived.getLookups());
+        } finally {
+            shortLived.shutdown();
+        }
+    }
+
+    @Test
+    public void duplicate_lookups_are_collapsed() throws Exception {
+        this.etherpad.setLatency("getAuthorName", 50);
+        List<String> repeated = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            repeated.addAll(this.authorIDs.subList(0, 2));
+        }
+        assertEquals(2, this.authors.getNames(repeated).size());
+        assertEquals(2, this.authors.getLookups());
+    }
+
+    @Test
+    public void authors_of_pads_are_resolved_in_one_wave() throws Exception {
+        List<String> padIds = new ArrayList<>();
+        for (int p = 0; p < 4; p++) {
+            String padId = "pad-" + p;
+            padIds.add(padId);
+            this.client.createPad(padId);
+            this.client.appendChatMessage(padId, "hello", this.authorIDs.get(p));
+            this.client.appendChatMessage(padId, "hello", this.authorIDs.get(p + 1));
+        }
+        this.etherpad.failNext("getAuthorName", 2, "internal error");
+
+        Map<String, Map<String, String>> contributors = this.authors.getAuthorsOfPads(padIds);
+        assertEquals(padIds, new ArrayList<>(contributors.keySet()));
+        int resolved = 0;
+        for (Map<String, String> names : contributors.values()) {
+            resolved += names.size();
+        }
+        // One of the five authors failed, it appears on one or two pads
+        assertTrue(resolved == 7 || resolved == 6);
+        assertEquals(5, this.authors.getLookups());
+
+        Map<String, String> names = this.authors.getAuthorsOfPad("pad-1");
+        assertEquals(Arrays.asList(this.authorIDs.get(1), this.authorIDs.get(2)), new ArrayList<>(names.keySet()));
+        assertEquals("Author 2", names.get(this.authorIDs.get(2)));
+    }
+}
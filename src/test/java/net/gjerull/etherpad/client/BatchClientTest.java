@@ -0,0 +1,161 @@
+package net.gjerull.etherpad.client;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class BatchClientTest {
+    private RecordingClient client;
+    private BatchClient batch;
+
+    private static class RecordingClient extends EPLiteClient {
+        final Set<String> calls = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+        RecordingClient() {
+            super("http://localhost:9001", "apikey");
+        }
+
+        @Override
+        public void createPad(String padId) {
+            if (padId.startsWith("bad")) {
+                throw new EPLiteException("padID does already exist");
+            }
+            calls.add("createPad:" + padId);
+        }
+
+        @Override
+        public Map createGroupPad(String groupID, String padName) {
+            calls.add("createGroupPad:" + groupID + "$" + padName);
+            Map<String, Object> result = new HashMap<>();
+            result.put("padID", groupID + "$" + padName);
+            return result;
+        }
+
+        @Override
+        public void deletePad(String padId) {
+            calls.add("deletePad:" + padId);
+        }
+
+        @Override
+        public void deleteGroup(String groupID) {
+            calls.add("deleteGroup:" + groupID);
+        }
+
+        @Override
+        public Map createAuthorIfNotExistsFor(String authorMapper) {
+            calls.add("createAuthor:" + authorMapper);
+            return new HashMap();
+        }
+
+        @Override
+        public Map createAuthorIfNotExistsFor(String authorMapper, String name) {
+            calls.add("createAuthor:" + authorMapper + ":" + name);
+            return new HashMap();
+        }
+    }
+
+    @Before
+    public void setUp() {
+        this.client = new RecordingClient();
+        this.batch = new BatchClient(client, 4, 0);
+    }
+
+    @After
+    public void tearDown() {
+        this.batch.shutdown();
+    }
+
+    @Test
+    public void every_item_is_called_and_reported() throws Exception {
+        List<String> padIds = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            padIds.add("pad-" + i);
+        }
+
+        BatchOperation op = batch.deletePads(padIds);
+        assertTrue(op.await(5, TimeUnit.SECONDS));
+
+        assertTrue(op.isDone());
+        assertEquals(100, op.getTotal());
+        assertEquals(100, op.getSucceeded());
+        assertEquals(0, op.getFailed());
+        assertEquals(100, op.getItems().size());
+        assertTrue(client.calls.contains("deletePad:pad-42"));
+    }
+
+    @Test
+    public void failures_do_not_abort_the_batch_and_can_be_exported() throws Exception {
+        BatchOperation op = batch.createPads(Arrays.asList("good-1", "bad-1", "good-2", "bad-2"));
+        op.await();
+
+        assertEquals(2, op.getSucceeded());
+        assertEquals(2, op.getFailed());
+        List<String> failed = op.getFailedKeys();
+        Collections.sort(failed);
+        assertEquals(Arrays.asList("bad-1", "bad-2"), failed);
+
+        StringBuilder export = new StringBuilder();
+        op.exportFailures(export);
+        assertTrue(export.toString().contains("bad-1\tpadID does already exist\n"));
+    }
+
+    @Test
+    public void group_pad_results_are_kept_per_item() throws Exception {
+        BatchOperation op = batch.createGroupPads("g.abc", Collections.singletonList("notes"));
+        op.await();
+
+        BatchOperation.Item item = op.getItems().get(0);
+        assertTrue(item.isSuccess());
+        assertEquals("notes", item.getKey());
+        assertEquals("g.abc$notes", item.getResult().get("padID"));
+    }
+
+    @Test
+    public void authors_are_created_with_and_without_names() throws Exception {
+        Map<String, String> mappers = new LinkedHashMap<>();
+        mappers.put("user-1", "Ada");
+        mappers.put("user-2", null);
+
+        batch.createAuthorsIfNotExistsFor(mappers).await();
+
+        assertTrue(client.calls.contains("createAuthor:user-1:Ada"));
+        assertTrue(client.calls.contains("createAuthor:user-2"));
+    }
+
+    @Test
+    public void calls_are_rate_limited() throws Exception {
+        BatchClient limited = new BatchClient(client, 4, 100);
+        try {
+            BatchOperation op = limited.deleteGroups(Arrays.asList("g.1", "g.2", "g.3", "g.4", "g.5",
+                    "g.6", "g.7", "g.8", "g.9", "g.10", "g.11"));
+            op.await();
+
+            // 11 calls spaced 10 ms apart take at least 100 ms
+            assertTrue("Elapsed: " + op.getElapsedMillis(), op.getElapsedMillis() >= 90);
+            assertTrue(op.getThroughput() > 0);
+        } finally {
+            limited.shutdown();
+        }
+    }
+
+    @Test
+    public void empty_batch_is_done_immediately() throws Exception {
+        BatchOperation op = batch.deleteGroups(Collections.<String>emptyList());
+
+        assertTrue(op.isDone());
+        assertEquals(0, op.getCompleted());
+    }
+}
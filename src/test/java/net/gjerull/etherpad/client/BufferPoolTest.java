@@ -0,0 +1,97 @@
+package net.gjerull.etherpad.client;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+
+import static org.junit.Assert.*;
+
+public class BufferPoolTest {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    @Test
+    public void released_buffers_are_reused() throws Exception {
+        BufferPool pool = new BufferPool(1024, 4096, 2);
+
+        byte[] first = pool.acquireBytes();
+        pool.release(first);
+        byte[] second = pool.acquireBytes();
+
+        assertSame(first, second);
+        assertEquals(1, pool.getHits());
+        assertEquals(1, pool.getMisses());
+        assertEquals(1024, pool.getReusedBytes());
+        assertEquals(1024, pool.getAllocatedBytes());
+    }
+
+    @Test
+    public void nested_users_get_their_own_buffers() throws Exception {
+        BufferPool pool = new BufferPool(1024, 4096, 2);
+
+        char[] outer = pool.acquireChars();
+        char[] inner = pool.acquireChars();
+
+        assertNotSame(outer, inner);
+        pool.release(inner);
+        pool.release(outer);
+        assertEquals(0, pool.getDiscarded());
+    }
+
+    @Test
+    public void oversized_and_surplus_buffers_are_discarded() throws Exception {
+        BufferPool pool = new BufferPool(1024, 4096, 2);
+
+        pool.release(new byte[8192]);
+        pool.release(new byte[1024]);
+        pool.release(new byte[1024]);
+        pool.release(new byte[1024]);
+        pool.release(new byte[16]);
+
+        assertEquals(2, pool.getDiscarded());
+        assertEquals(1024, pool.acquireBytes().length);
+        assertEquals(1024, pool.acquireBytes().length);
+        assertEquals(0, pool.getMisses());
+        pool.acquireBytes();
+        assertEquals(1, pool.getMisses());
+    }
+
+    @Test
+    public void read_grows_the_buffer_for_large_responses() throws Exception {
+        BufferPool pool = new BufferPool(1024, 4096, 2);
+        StringBuilder text = new StringBuilder();
+        while (text.length() < 10000) {
+            text.append("gå og gjøre et ærend ");
+        }
+        ClosingStream in = new ClosingStream(text.toString().getBytes(UTF_8));
+
+        assertEquals(text.toString(), pool.read(in, UTF_8));
+        assertTrue(in.closed);
+        // Grown to 16K, which is larger than the pool keeps
+        assertTrue(pool.getDiscarded() > 0);
+
+        assertEquals("{\"code\":0}", pool.read(new ClosingStream("{\"code\":0}".getBytes(UTF_8)), UTF_8));
+        assertTrue(pool.getHits() > 0);
+    }
+
+    private static class ClosingStream extends ByteArrayInputStream {
+        boolean closed;
+
+        ClosingStream(byte[] content) {
+            super(content);
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            // Short reads, like a socket
+            return super.read(b, off, Math.min(len, 700));
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.closed = true;
+        }
+    }
+}
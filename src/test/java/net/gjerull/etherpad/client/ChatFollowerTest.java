@@ -0,0 +1,140 @@
+package net.gjerull.etherpad.client;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.*;
+
+public class ChatFollowerTest {
+    private FakeEtherpadServer etherpad;
+    private EPLiteClient client;
+    private ChatFollower follower;
+    private String authorID;
+    private final List<String> received = new CopyOnWriteArrayList<>();
+    private final List<String> failures = new CopyOnWriteArrayList<>();
+
+    @Before
+    public void setUp() throws Exception {
+        this.etherpad = new FakeEtherpadServer("apikey");
+        this.client = new EPLiteClient(this.etherpad.getUrl(), "apikey");
+        this.authorID = (String) this.client.createAuthor("Ada").get("authorID");
+        this.follower = new ChatFollower(this.client, 2, 20, 4);
+        this.follower.addListener(new ChatListener() {
+            public void messagesReceived(String padId, long firstIndex, List<ChatHistory.Message> messages) {
+                for (int i = 0; i < messages.size(); i++) {
+                    received.add(padId + "#" + (firstIndex + i) + " " + messages.get(i).getText());
+                }
+            }
+
+            public void pollFailed(String padId, EPLiteException error) {
+                failures.add(padId + " " + error.getMessage());
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        this.follower.shutdown();
+        this.etherpad.stop();
+    }
+
+    @Test
+    public void only_messages_after_the_first_poll_are_delivered() throws Exception {
+        this.client.createPad("pad");
+        this.client.appendChatMessage("pad", "old", this.authorID, 1000L);
+        this.follower.follow("pad");
+        awaitHead("pad", 0);
+
+        for (int i = 0; i < 10; i++) {
+            this.client.appendChatMessage("pad", "new " + i, this.authorID, 2000L + i);
+        }
+        awaitHead("pad", 10);
+
+        assertEquals(10, this.received.size());
+        assertEquals("pad#1 new 0", this.received.get(0));
+        assertEquals("pad#10 new 9", this.received.get(9));
+        assertEquals(10, this.follower.getDelivered());
+    }
+
+    @Test
+    public void following_resumes_from_a_known_head() throws Exception {
+        this.client.createPad("pad");
+        for (int i = 0; i < 6; i++) {
+            this.client.appendChatMessage("pad", "message " + i, this.authorID, 1000L + i);
+        }
+        this.follower.follow("pad", 2);
+        awaitHead("pad", 5);
+
+        List<String> expected = new ArrayList<>();
+        for (int i = 3; i < 6; i++) {
+            expected.add("pad#" + i + " message " + i);
+        }
+        assertEquals(expected, this.received);
+    }
+
+    @Test
+    public void idle_pads_are_only_polled_for_their_head() throws Exception {
+        this.client.createPad("pad");
+        this.client.appendChatMessage("pad", "old", this.authorID, 1000L);
+        this.follower.follow("pad");
+        awaitHead("pad", 0);
+        Thread.sleep(100);
+
+        assertTrue(this.follower.getPolls() > 1);
+        assertEquals(0, this.follower.getFetches());
+        this.follower.unfollow("pad");
+        assertNull(this.follower.getLastSeenHead("pad"));
+        assertEquals(0, this.follower.getFollowedCount());
+    }
+
+    @Test
+    public void failed_polls_are_reported_and_retried() throws Exception {
+        this.client.createPad("pad");
+        this.etherpad.failNext("getChatHead", 2, "internal error");
+        this.follower.follow("pad", -1);
+        this.client.appendChatMessage("pad", "hello", this.authorID, 1000L);
+        awaitHead("pad", 0);
+
+        assertEquals(1, this.failures.size());
+        assertEquals("pad internal error", this.failures.get(0));
+        assertEquals("pad#0 hello", this.received.get(0));
+    }
+
+    @Test
+    public void a_failing_listener_does_not_repeat_messages_for_the_others() throws Exception {
+        this.follower.addListener(new ChatListener() {
+            public void messagesReceived(String padId, long firstIndex, List<ChatHistory.Message> messages) {
+                throw new IllegalStateException("listener failed");
+            }
+
+            public void pollFailed(String padId, EPLiteException error) {
+                throw new IllegalStateException("listener failed");
+            }
+        });
+        this.client.createPad("pad");
+        this.follower.follow("pad", -1);
+        for (int i = 0; i < 6; i++) {
+            this.client.appendChatMessage("pad", "message " + i, this.authorID, 1000L + i);
+        }
+        awaitHead("pad", 5);
+        Thread.sleep(100);
+
+        assertEquals(6, this.received.size());
+        assertEquals("pad#0 message 0", this.received.get(0));
+        assertEquals("pad#5 message 5", this.received.get(5));
+        assertEquals(6, this.follower.getDelivered());
+    }
+
+    private void awaitHead(String padId, long head) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!Long.valueOf(head).equals(this.follower.getLastSeenHead(padId))) {
+            assertTrue("Timed out waiting for head " + head, System.currentTimeMillis() < deadline);
+            Thread.sleep(5);
+        }
+    }
+}
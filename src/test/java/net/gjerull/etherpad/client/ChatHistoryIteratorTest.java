@@ -0,0 +1,108 @@
+package net.gjerull.etherpad.client;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.*;
+
+public class ChatHistoryIteratorTest {
+    private FakeEtherpadServer etherpad;
+    private EPLiteClient client;
+
+    @Before
+    public void setUp() throws Exception {
+        this.etherpad = new FakeEtherpadServer("apikey");
+        this.client = new EPLiteClient(this.etherpad.getUrl(), "apikey");
+        this.client.createPad("pad");
+        String authorID = (String) this.client.createAuthor("Ada").get("authorID");
+        for (int i = 0; i < 25; i++) {
+            this.client.appendChatMessage("pad", "message " + i, authorID, 1000L + i);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        this.etherpad.stop();
+    }
+
+    @Test
+    public void messages_are_read_in_windows_oldest_first() throws Exception {
+        long requests = this.etherpad.getRequestCount();
+        ChatHistoryIterator messages = new ChatHistoryIterator(this.client, "pad", 10, false);
+        List<String> texts = texts(messages);
+
+        assertEquals(25, texts.size());
+        assertEquals("message 0", texts.get(0));
+        assertEquals("message 24", texts.get(24));
+        assertEquals(24, messages.getLastIndex());
+        // getChatHead and three windows
+        assertEquals(requests + 4, this.etherpad.getRequestCount());
+    }
+
+    @Test
+    public void messages_are_read_in_windows_newest_first() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            ChatHistoryIterator messages = new ChatHistoryIterator(this.client, "pad", 7, true, executor);
+            assertEquals(24, messages.getHead());
+            List<String> texts = texts(messages);
+
+            assertEquals(25, texts.size());
+            assertEquals("message 24", texts.get(0));
+            assertEquals("message 0", texts.get(24));
+            assertEquals(0, messages.getLastIndex());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void the_next_window_is_fetched_while_one_is_read() throws Exception {
+        this.etherpad.setLatency("getChatHistory", 200);
+        ChatHistoryIterator messages = new ChatHistoryIterator(this.client, "pad", 20, false);
+        for (int i = 0; i < 20; i++) {
+            messages.next();
+        }
+        Thread.sleep(400);
+        long start = System.nanoTime();
+        assertEquals("message 20", messages.next().getText());
+        assertTrue((System.nanoTime() - start) < 150000000L);
+        messages.close();
+        assertFalse(messages.hasNext());
+    }
+
+    @Test
+    public void empty_chats_have_no_messages() throws Exception {
+        this.client.createPad("empty");
+        ChatHistoryIterator messages = new ChatHistoryIterator(this.client, "empty", 10, true);
+        assertEquals(-1, messages.getHead());
+        assertFalse(messages.hasNext());
+    }
+
+    @Test
+    public void failures_are_thrown_by_next() throws Exception {
+        this.etherpad.failNext("getChatHistory", 2, "internal error");
+        ChatHistoryIterator messages = new ChatHistoryIterator(this.client, "pad", 10, false);
+        try {
+            messages.next();
+            fail("Expected the failed window to be thrown");
+        } catch (EPLiteException e) {
+            assertEquals("internal error", e.getMessage());
+        }
+        assertFalse(messages.hasNext());
+    }
+
+    private static List<String> texts(ChatHistoryIterator messages) {
+        List<String> texts = new ArrayList<>();
+        while (messages.hasNext()) {
+            texts.add(messages.next().getText());
+        }
+        return texts;
+    }
+}
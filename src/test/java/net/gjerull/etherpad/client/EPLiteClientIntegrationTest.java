@@ -157,7 +157,7 @@ public class EPLiteClientIntegrationTest {
                 "{\"code\":0,\"message\":\"ok\",\"data\":{\"publicStatus\":true}}");
 
         mockRequest("setPassword",
-                new StringBody("password=integration&apikey=" + APIKEY + "&padID=g.9v9F9kaoGb6tNzTs%24integration-test-1"),
+                new StringBody("apikey=" + APIKEY + "&password=integration&padID=g.9v9F9kaoGb6tNzTs%24integration-test-1"),
                 "{\"code\":0,\"message\":\"ok\",\"data\":null}");
 
         mockRequest("isPasswordProtected",
@@ -308,9 +308,12 @@ public class EPLiteClientIntegrationTest {
         int sessionDuration = 8;
         long inNHours = ((new Date()).getTime() + (sessionDuration * 60L * 60L * 1000L)) / 1000L;
 
-        mockRequest("createSession",
-                new StringBody("apikey=" + APIKEY + "&groupID=g.8gG2mcJguOEo4std&validUntil=" + inNHours + "&authorID=a.kPrLhmVVGK3Y5j03"),
-                "{\"code\":0,\"message\":\"ok\",\"data\":{\"sessionID\":\"s.195787a420c128e5827bafa026a2d95a\"}}");
+        // The client computes its own "in N hours", which may be a second later
+        for (long second = inNHours; second <= inNHours + 1; second++) {
+            mockRequest("createSession",
+                    new StringBody("apikey=" + APIKEY + "&groupID=g.8gG2mcJguOEo4std&validUntil=" + second + "&authorID=a.kPrLhmVVGK3Y5j03"),
+                    "{\"code\":0,\"message\":\"ok\",\"data\":{\"sessionID\":\"s.195787a420c128e5827bafa026a2d95a\"}}");
+        }
 
         mockRequest("createSession",
                 new StringBody("apikey=" + APIKEY + "&groupID=g.8gG2mcJguOEo4std&validUntil=" + validUntil + "&authorID=a.kPrLhmVVGK3Y5j03"),
@@ -397,23 +400,29 @@ public class EPLiteClientIntegrationTest {
                 "{\"code\":0,\"message\":\"ok\",\"data\":{\"html\":\"<!DOCTYPE HTML><html><body>g&#229; og gj&#248;re et &#230;rend igjen<br><br></body></html>\"}}");
 
         mockRequest("getHTML",
-                new StringBody("rev=2&apikey=" + APIKEY + "&padID=integration-test-pad"),
+                new StringBody("apikey=" + APIKEY + "&rev=2&padID=integration-test-pad"),
                 "{\"code\":0,\"message\":\"ok\",\"data\":{\"html\":\"<!DOCTYPE HTML><html><body><br></body></html>\"}}");
 
         mockRequest("getText",
-                new StringBody("rev=2&apikey=" + APIKEY + "&padID=integration-test-pad"),
+                new StringBody("apikey=" + APIKEY + "&rev=2&padID=integration-test-pad"),
                 "{\"code\":0,\"message\":\"ok\",\"data\":{\"text\":\"\\n\"}}");
 
         mockRequest("getRevisionsCount",
                 new StringBody("apikey=" + APIKEY + "&padID=integration-test-pad"),
                 "{\"code\":0,\"message\":\"ok\",\"data\":{\"revisions\":3}}");
+        mockRequest("getRevisionsCount",
+                new StringBody("apikey=" + APIKEY + "&padID=integration-test-pad"),
+                "{\"code\":0,\"message\":\"ok\",\"data\":{\"revisions\":3}}");
+        mockRequest("getText",
+                new StringBody("apikey=" + APIKEY + "&rev=2&padID=integration-test-pad"),
+                "{\"code\":0,\"message\":\"ok\",\"data\":{\"text\":\"\\n\"}}");
 
         mockRequest("getRevisionChangeset",
                 new StringBody("apikey=" + APIKEY + "&padID=integration-test-pad"),
                 "{\"code\":0,\"message\":\"ok\",\"data\":\"Z:1>r|1+r$gå og gjøre et ærend igjen\\n\"}");
 
         mockRequest("getRevisionChangeset",
-                new StringBody("rev=2&apikey=" + APIKEY + "&padID=integration-test-pad"),
+                new StringBody("apikey=" + APIKEY + "&rev=2&padID=integration-test-pad"),
                 "{\"code\":0,\"message\":\"ok\",\"data\":\"Z:j<i|1-j|1+1$\\n\"}");
 
         mockRequest("createDiffHTML",
@@ -437,7 +446,7 @@ public class EPLiteClientIntegrationTest {
                 "{\"code\":0,\"message\":\"ok\",\"data\":null}");
 
         mockRequest("saveRevision",
-                new StringBody("rev=2&apikey=" + APIKEY + "&padID=integration-test-pad"),
+                new StringBody("apikey=" + APIKEY + "&rev=2&padID=integration-test-pad"),
                 "{\"code\":0,\"message\":\"ok\",\"data\":null}");
 
         mockRequest("getSavedRevisionsCount",
@@ -473,7 +482,7 @@ public class EPLiteClientIntegrationTest {
                 "{\"code\":0,\"message\":\"ok\",\"data\":{\"lastEdited\":1550291109893}}");
 
         mockRequest("sendClientsMessage",
-                new StringBody("msg=test+message&apikey=" + APIKEY + "&padID=integration-test-pad"),
+                new StringBody("apikey=" + APIKEY + "&msg=test+message&padID=integration-test-pad"),
                 "{\"code\":0,\"message\":\"ok\",\"data\":{}}");
 
         mockRequest("deletePad",
@@ -501,6 +510,8 @@ public class EPLiteClientIntegrationTest {
 
             long revisionCount = (long) client.getRevisionsCount(padID).get("revisions");
             assertEquals(3L, revisionCount);
+            assertEquals(3L, client.fetchRevisionsCount(padID).getRevisions());
+            assertEquals("\n", client.fetchText(padID, 2).getText());
 
             String revisionChangeset = client.getRevisionChangeset(padID);
             assertTrue(revisionChangeset, revisionChangeset.contains("gå og gjøre et ærend igjen"));
@@ -565,7 +576,7 @@ public class EPLiteClientIntegrationTest {
                 "{\"code\":0,\"message\":\"ok\",\"data\":null}");
 
         mockRequest("copyPad",
-                new StringBody("sourceID=integration-test-pad&apikey=" + APIKEY + "&force=false&destinationID=integration-test-pad-copy"),
+                new StringBody("apikey=" + APIKEY + "&sourceID=integration-test-pad&force=false&destinationID=integration-test-pad-copy"),
                 "{\"code\":0,\"message\":\"ok\",\"data\":{\"padID\":\"integration-test-pad-copy\"}}");
 
         mockRequest("getText",
@@ -573,7 +584,7 @@ public class EPLiteClientIntegrationTest {
                 "{\"code\":0,\"message\":\"ok\",\"data\":{\"text\":\"should be kept\\n\"}}");
 
         mockRequest("copyPad",
-                new StringBody("sourceID=integration-test-pad&apikey=" + APIKEY + "&force=false&destinationID=integration-move-pad-move"),
+                new StringBody("apikey=" + APIKEY + "&sourceID=integration-test-pad&force=false&destinationID=integration-move-pad-move"),
                 "{\"code\":0,\"message\":\"ok\",\"data\":{\"padID\":\"integration-move-pad-move\"}}");
 
         mockRequest("getText",
@@ -585,7 +596,7 @@ public class EPLiteClientIntegrationTest {
                 "{\"code\":0,\"message\":\"ok\",\"data\":null}");
 
         mockRequest("copyPad",
-                new StringBody("sourceID=integration-move-pad-move&apikey=" + APIKEY + "&force=true&destinationID=integration-test-pad-copy"),
+                new StringBody("apikey=" + APIKEY + "&sourceID=integration-move-pad-move&force=true&destinationID=integration-test-pad-copy"),
                 "{\"code\":0,\"message\":\"ok\",\"data\":{\"padID\":\"integration-test-pad-copy\"}}");
 
         mockRequest("getText",
@@ -593,7 +604,7 @@ public class EPLiteClientIntegrationTest {
                 "{\"code\":0,\"message\":\"ok\",\"data\":{\"text\":\"should be changed\\n\"}}");
 
         mockRequest("movePad",
-                new StringBody("sourceID=integration-move-pad-move&apikey=" + APIKEY + "&force=true&destinationID=integration-test-pad-copy"),
+                new StringBody("apikey=" + APIKEY + "&sourceID=integration-move-pad-move&force=true&destinationID=integration-test-pad-copy"),
                 "{\"code\":0,\"message\":\"ok\",\"data\":null}");
 
         mockRequest("getText",
@@ -672,6 +683,26 @@ public class EPLiteClientIntegrationTest {
         assertTrue(padIDs.contains(pad2));
     }
 
+    @Test
+    public void iterate_all_pads_and_groups() {
+        mockRequest("listAllPads",
+                new StringBody("apikey=" + APIKEY),
+                "{\"code\":0,\"message\":\"ok\",\"data\":{\"padIDs\":[\"g.F2Tl1IeT8UXipnEw$integration-test-1\",\"integration-test-pad\"]}}");
+
+        mockRequest("listAllGroups",
+                new StringBody("apikey=" + APIKEY),
+                "{\"code\":0,\"message\":\"ok\",\"data\":{\"groupIDs\":[]}}");
+
+        List<String> padIDs = new ArrayList<>();
+        IdIterator pads = client.iterateAllPads();
+        while (pads.hasNext()) {
+            padIDs.add(pads.next());
+        }
+        assertEquals(Arrays.asList("g.F2Tl1IeT8UXipnEw$integration-test-1", "integration-test-pad"), padIDs);
+
+        assertFalse(client.iterateAllGroups().hasNext());
+    }
+
     @Test
     public void create_pad_and_chat_about_it() {
         long time1 = System.currentTimeMillis() / 1000L;
@@ -713,6 +744,10 @@ public class EPLiteClientIntegrationTest {
                 new StringBody("apikey=" + APIKEY + "&padID=integration-test-pad-1"),
                 "{\"code\":0,\"message\":\"ok\",\"data\":{\"messages\":[{\"text\":\"hi from user1\",\"userId\":\"a.W3CerL3LH1xgvu3m\",\"time\":" + time1 + ",\"userName\":\"integration-author-1\"},{\"text\":\"hi from user2\",\"userId\":\"a.yUKBa4lV71Rmj8C8\",\"time\":" + time2 + ",\"userName\":\"integration-author-2\"},{\"text\":\"gå å gjør et ærend\",\"userId\":\"a.W3CerL3LH1xgvu3m\",\"time\":" + time2 + ",\"userName\":\"integration-author-1\"}]}}");
 
+        mockRequest("getChatHistory",
+                new StringBody("apikey=" + APIKEY + "&padID=integration-test-pad-1"),
+                "{\"code\":0,\"message\":\"ok\",\"data\":{\"messages\":[{\"text\":\"hi from user1\",\"userId\":\"a.W3CerL3LH1xgvu3m\",\"time\":" + time1 + ",\"userName\":\"integration-author-1\"},{\"text\":\"hi from user2\",\"userId\":\"a.yUKBa4lV71Rmj8C8\",\"time\":" + time2 + ",\"userName\":\"integration-author-2\"},{\"text\":\"gå å gjør et ærend\",\"userId\":\"a.W3CerL3LH1xgvu3m\",\"time\":" + time2 + ",\"userName\":\"integration-author-1\"}]}}");
+
         mockRequest("getChatHistory",
                 new StringBody("apikey=" + APIKEY + "&start=0&padID=integration-test-pad-1&end=1"),
                 "{\"code\":0,\"message\":\"ok\",\"data\":{\"messages\":[{\"text\":\"hi from user1\",\"userId\":\"a.W3CerL3LH1xgvu3m\",\"time\":" + time1 + ",\"userName\":\"integration-author-1\"},{\"text\":\"hi from user2\",\"userId\":\"a.yUKBa4lV71Rmj8C8\",\"time\":" + time2 + ",\"userName\":\"integration-author-2\"}]}}");
@@ -753,6 +788,11 @@ public class EPLiteClientIntegrationTest {
             assertEquals(3, chatHistory.size());
             assertEquals("gå å gjør et ærend", ((Map) chatHistory.get(2)).get("text"));
 
+            ChatHistory history = client.fetchChatHistory(padID);
+            assertEquals(3, history.size());
+            assertEquals("gå å gjør et ærend", history.get(2).getText());
+            assertEquals(time2, history.get(2).getTime());
+
             response = client.getChatHistory(padID, 0, 1);
             chatHistory = (List) response.get("messages");
             assertEquals(2, chatHistory.size());
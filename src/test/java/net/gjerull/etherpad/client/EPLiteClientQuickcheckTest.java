@@ -74,7 +74,7 @@ public class EPLiteClientQuickcheckTest {
                 "{\"code\":0,\"message\":\"ok\",\"data\":null}");
 
         mockRequest("copyPad",
-                new StringBody("sourceID=" + padId + "&apikey=" + APIKEY + "&force=false&destinationID=" + copyPadId),
+                new StringBody("apikey=" + APIKEY + "&sourceID=" + padId + "&force=false&destinationID=" + copyPadId),
                 "{\"code\":0,\"message\":\"ok\",\"data\":{\"padID\":\"" + copyPadId + "\"}}");
 
         mockRequest("getText",
@@ -82,7 +82,7 @@ public class EPLiteClientQuickcheckTest {
                 "{\"code\":0,\"message\":\"ok\",\"data\":{\"text\":\"" + keep + "\\n\"}}");
 
         mockRequest("copyPad",
-                new StringBody("sourceID=" + padId + "&apikey=" + APIKEY + "&force=false&destinationID=" + movePadId),
+                new StringBody("apikey=" + APIKEY + "&sourceID=" + padId + "&force=false&destinationID=" + movePadId),
                 "{\"code\":0,\"message\":\"ok\",\"data\":{\"padID\":\"" + movePadId + "\"}}");
 
         mockRequest("getText",
@@ -94,7 +94,7 @@ public class EPLiteClientQuickcheckTest {
                 "{\"code\":0,\"message\":\"ok\",\"data\":null}");
 
         mockRequest("copyPad",
-                new StringBody("sourceID=" + movePadId + "&apikey=" + APIKEY + "&force=true&destinationID=" + copyPadId),
+                new StringBody("apikey=" + APIKEY + "&sourceID=" + movePadId + "&force=true&destinationID=" + copyPadId),
                 "{\"code\":0,\"message\":\"ok\",\"data\":{\"padID\":\"" + copyPadId + "\"}}");
 
         mockRequest("getText",
@@ -102,7 +102,7 @@ public class EPLiteClientQuickcheckTest {
                 "{\"code\":0,\"message\":\"ok\",\"data\":{\"text\":\"" + change + "\\n\"}}");
 
         mockRequest("movePad",
-                new StringBody("sourceID=" + movePadId + "&apikey=" + APIKEY + "&force=true&destinationID=" + copyPadId),
+                new StringBody("apikey=" + APIKEY + "&sourceID=" + movePadId + "&force=true&destinationID=" + copyPadId),
                 "{\"code\":0,\"message\":\"ok\",\"data\":null}");
 
         mockRequest("getText",
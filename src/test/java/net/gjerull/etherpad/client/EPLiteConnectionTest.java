@@ -2,6 +2,8 @@ package net.gjerull.etherpad.client;
 
 import org.junit.Test;
 
+import java.net.URLEncoder;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
@@ -81,6 +83,26 @@ public class EPLiteConnectionTest {
         }
     }
 
+    @Test
+    public void invalid_encoding_only_fails_post_requests() throws Exception {
+        EPLiteConnection connection = new EPLiteConnection(
+                "http://example.com/", "apikey", API_VERSION, "UTF-123"
+        );
+        Map<String,Object> apiArgs = new TreeMap<>();
+        apiArgs.put("padID", "test");
+
+        String url = connection.getRequest("getText", apiArgs).getUrl().toString();
+        assertEquals("http://example.com/api/" + API_VERSION + "/getText?apikey=apikey&padID=test", url);
+
+        try {
+            connection.postRequest("getText", apiArgs);
+            fail("Expected '" + EPLiteException.class.getName() + "' to be thrown");
+        } catch (EPLiteException e) {
+            assertTrue("Unexpected Message: " + e.getMessage(),
+                    e.getMessage().startsWith("Unable to URLEncode using encoding"));
+        }
+    }
+
     @Test(expected = EPLiteException.class)
     public void api_url_need_to_be_absolute() throws Exception {
         EPLiteConnection connection = new EPLiteConnection(
@@ -227,4 +249,126 @@ public class EPLiteConnectionTest {
         Object response = connection.handleResponse(serverResponse);
         assertNull(response);
     }
+
+    @Test
+    public void api_errors_carry_the_code_and_no_stack_trace() throws Exception {
+        EPLiteConnection connection = new EPLiteConnection(
+                "http://example.com/", "apikey", API_VERSION, ENCODING
+        );
+        String serverResponse = String.format(RESPONSE_TEMPLATE, 1, "padID does not exist", null);
+
+        try {
+            connection.handleResponse(serverResponse);
+            fail("Expected '" + EPLiteInvalidParametersException.class.getName() + "' to be thrown");
+        } catch (EPLiteInvalidParametersException e) {
+            assertEquals(EPLiteConnection.CODE_INVALID_PARAMETERS, e.getCode());
+            assertEquals("padID does not exist", e.getMessage());
+            assertEquals(0, e.getStackTrace().length);
+        }
+    }
+
+    @Test
+    public void long_responses_are_truncated_in_messages() throws Exception {
+        EPLiteConnection connection = new EPLiteConnection(
+                "http://example.com/", "apikey", API_VERSION, ENCODING
+        );
+        StringBuilder html = new StringBuilder("<html><body>");
+        for (int i = 0; i < 1000; i++) {
+            html.append("<p>Some HTML</p>");
+        }
+        html.append("</body></html>");
+
+        try {
+            connection.handleResponse(html.toString());
+            fail("Expected '" + EPLiteException.class.getName() + "' to be thrown");
+        } catch (EPLiteException e) {
+            assertTrue("Message too long: " + e.getMessage().length(), e.getMessage().length() < 300);
+            assertTrue(e.getMessage().contains("(" + html.length() + " characters)"));
+        }
+    }
+
+    @Test
+    public void decode_response_returns_errors_as_results() throws Exception {
+        EPLiteConnection connection = new EPLiteConnection(
+                "http://example.com/", "apikey", API_VERSION, ENCODING
+        );
+
+        EPLiteResult<Object> error = connection.decodeResponse(
+                String.format(RESPONSE_TEMPLATE, 1, "padID does not exist", null));
+        assertFalse(error.isOk());
+        assertTrue(error.is(EPLiteConnection.CODE_INVALID_PARAMETERS, "padID does not exist"));
+        assertNull(error.getValue());
+        assertTrue(error.toException() instanceof EPLiteInvalidParametersException);
+
+        EPLiteResult<Object> ok = connection.decodeResponse(
+                String.format(RESPONSE_TEMPLATE, 0, "ok", "{\"revisions\": 3}"));
+        assertTrue(ok.isOk());
+        assertEquals(3L, ((Map) ok.getOrThrow()).get("revisions"));
+        assertNull(ok.toException());
+
+        EPLiteResult<Object> unparsable = connection.decodeResponse("<html></html>");
+        assertEquals(EPLiteConnection.CODE_CLIENT_ERROR, unparsable.getCode());
+        assertTrue(unparsable.getMessage().startsWith("Unable to parse JSON response ("));
+    }
+
+    @Test
+    public void unreachable_server_is_an_error_result() throws Exception {
+        EPLiteConnection connection = new EPLiteConnection(
+                "http://localhost:1", "apikey", API_VERSION, ENCODING
+        );
+
+        EPLiteResult<Object> result = connection.getResult("checkToken", new TreeMap<String, Object>());
+
+        assertEquals(EPLiteConnection.CODE_CLIENT_ERROR, result.getCode());
+        assertTrue("Unexpected Message: " + result.getMessage(),
+                result.getMessage().startsWith("Unable to connect to Etherpad Lite instance"));
+    }
+
+    @Test
+    public void query_string_does_not_change_the_arguments() throws Exception {
+        EPLiteConnection connection = new EPLiteConnection(
+                "http://example.com/", "apikey", API_VERSION, ENCODING
+        );
+        Map<String,Object> apiArgs = new LinkedHashMap<>();
+        apiArgs.put("rev", 27L);
+        apiArgs.put("padID", "g.oln5fzaE8qfv4gdE$test-1");
+
+        assertEquals("apikey=apikey&rev=27&padID=g.oln5fzaE8qfv4gdE%24test-1", connection.queryString(apiArgs, true));
+        assertEquals(2, apiArgs.size());
+        assertFalse(apiArgs.containsKey("apikey"));
+    }
+
+    @Test
+    public void form_encoding_matches_url_encoder() throws Exception {
+        String[] values = {"æøå", "a b+c&d=e%f", "emoji \uD83D\uDE00 end", "lone \uD800 surrogate", "~!*'()\t\n"};
+        for (String encoding : new String[] {"UTF-8", "ISO-8859-1"}) {
+            EPLiteConnection connection = new EPLiteConnection(
+                    "http://example.com/", "apikey", API_VERSION, encoding
+            );
+            for (String value : values) {
+                Map<String,Object> apiArgs = new TreeMap<>();
+                apiArgs.put("text", value);
+
+                assertEquals("apikey=apikey&text=" + URLEncoder.encode(value, encoding),
+                        connection.queryString(apiArgs, true));
+            }
+        }
+    }
+
+    @Test
+    public void get_request_url_is_built_from_the_endpoint() throws Exception {
+        EPLiteConnection connection = new EPLiteConnection(
+                "http://example.com:9001/etherpad/", "api key", API_VERSION, ENCODING
+        );
+        Map<String,Object> apiArgs = new LinkedHashMap<>();
+        apiArgs.put("padID", "g.oln5fzaE8qfv4gdE$test 1");
+        apiArgs.put("text", "æ%");
+        apiArgs.put("rev", -3);
+
+        String url = connection.getRequest("getText", apiArgs).getUrl().toString();
+
+        assertEquals("http://example.com:9001/etherpad/api/1.2.12/getText?apikey=api%20key"
+                + "&padID=g.oln5fzaE8qfv4gdE$test%201&text=%C3%A6%25&rev=-3", url);
+        assertSame(connection.endpoint("getText"), connection.endpoint("getText"));
+    }
 }
@@ -285,7 +285,7 @@ public class EPLiteGroupPadsTest extends ExecutionContext implements EPLiteGroup
     public void e_setPassword() {
         String padId = randomPad();
         mockRequest("setPassword",
-                new StringBody("password=password&apikey=" + APIKEY + "&padID=" + padId.replace("$", "%24")),
+                new StringBody("apikey=" + APIKEY + "&password=password&padID=" + padId.replace("$", "%24")),
                 "{\"code\":0,\"message\":\"ok\",\"data\":null}");
 
         this.client.setPassword(padId, "password");
@@ -0,0 +1,972 @@
+package net.gjerull.etherpad.client;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.json.simple.JSONValue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.Charset;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An Etherpad Lite HTTP API in memory, for tests and benchmarks that need a server which keeps
+ * state across calls and sustains load, without MockServer expectations or a real instance.<br />
+ * <br />
+ * Pads, revisions, groups, authors, sessions and chat behave like in Etherpad Lite, with the
+ * same error codes and messages, for every method of EPLiteClient. Latency and errors can be
+ * injected per method. The server listens on a free port of the loopback interface.<br />
+ * <br />
+ * Example:<br />
+ * <br />
+ * <code>
+ * FakeEtherpadServer etherpad = new FakeEtherpadServer("apikey");<br />
+ * EPLiteClient client = new EPLiteClient(etherpad.getUrl(), "apikey");<br />
+ * etherpad.setLatency("getText", 20);<br />
+ * etherpad.failNext("setText", 2, "internal error");<br />
+ * ...<br />
+ * etherpad.stop();
+ * </code>
+ */
+public class FakeEtherpadServer {
+    /**
+     * The text of new pads created without one.
+     */
+    public static final String DEFAULT_TEXT = "Welcome to Etherpad!\n\n"
+            + "This pad text is synchronized as you type, so that everyone viewing this page sees the same text.\n";
+
+    private static final String API_VERSION = "1.2.13";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final char[] ID_CHARS = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789".toCharArray();
+    private static final Random ID_RANDOM = new SecureRandom();
+
+    static {
+        // Without it the JDK server's small writes wait for delayed ACKs, about 40 ms a call
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    private final String apiKey;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final AtomicLong requests = new AtomicLong();
+
+    private final ConcurrentMap<String, Pad> pads = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Group> groups = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, String> groupMappers = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Author> authors = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, String> authorMappers = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Session> sessions = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, String> readOnlyIds = new ConcurrentHashMap<>();
+
+    private volatile long latencyMillis;
+    private final ConcurrentMap<String, Long> methodLatencyMillis = new ConcurrentHashMap<>();
+    private volatile double errorRate;
+    private final ConcurrentMap<String, Queue<ApiError>> failures = new ConcurrentHashMap<>();
+
+    /**
+     * Starts a server accepting the given API key, with two threads per processor.
+     *
+     * @param apiKey the API key
+     * @throws IOException if the server can't be started
+     */
+    public FakeEtherpadServer(String apiKey) throws IOException {
+        this(apiKey, 2 * Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Starts a server accepting the given API key.
+     *
+     * @param apiKey the API key
+     * @param threads the number of threads answering requests
+     * @throws IOException if the server can't be started
+     */
+    public FakeEtherpadServer(String apiKey, int threads) throws IOException {
+        this.apiKey = apiKey;
+        this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 1024);
+        this.server.createContext("/", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                respond(exchange);
+            }
+        });
+        this.executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "fake-etherpad");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.server.setExecutor(this.executor);
+        this.server.start();
+    }
+
+    /**
+     * Returns the url to give the client, without "/api".
+     *
+     * @return String
+     */
+    public String getUrl() {
+        return "http://localhost:" + this.server.getAddress().getPort();
+    }
+
+    /**
+     * Returns the number of requests answered since the server started.
+     *
+     * @return long
+     */
+    public long getRequestCount() {
+        return this.requests.get();
+    }
+
+    /**
+     * Delays every answer by the given time, on top of the latency of its method.
+     *
+     * @param millis the delay in milliseconds, 0 for none
+     */
+    public void setLatency(long millis) {
+        this.latencyMillis = millis;
+    }
+
+    /**
+     * Delays the answers to an API method by the given time.
+     *
+     * @param apiMethod the API method, e.g. "getText"
+     * @param millis the delay in milliseconds, 0 for none
+     */
+    public void setLatency(String apiMethod, long millis) {
+        if (millis > 0) {
+            this.methodLatencyMillis.put(apiMethod, millis);
+        } else {
+            this.methodLatencyMillis.remove(apiMethod);
+        }
+    }
+
+    /**
+     * Answers this share of the calls, picked at random, with code 2 "internal error" instead
+     * of running them.
+     *
+     * @param rate between 0.0 (never) and 1.0 (always)
+     */
+    public void setErrorRate(double rate) {
+        this.errorRate = rate;
+    }
+
+    /**
+     * Answers the next call of an API method with the given error instead of running it.
+     * Calling it several times queues the errors.
+     *
+     * @param apiMethod the API method, e.g. "getText"
+     * @param code the Etherpad response code, e.g. 1 for invalid parameters
+     * @param message the message
+     */
+    public void failNext(String apiMethod, int code, String message) {
+        Queue<ApiError> queue = this.failures.get(apiMethod);
+        if (queue == null) {
+            this.failures.putIfAbsent(apiMethod, new ConcurrentLinkedQueue<ApiError>());
+            queue = this.failures.get(apiMethod);
+        }
+        queue.add(new ApiError(code, message));
+    }
+
+    /**
+     * Forgets all pads, groups, authors and sessions and the injected latency and errors.
+     */
+    public void reset() {
+        this.pads.clear();
+        this.groups.clear();
+        this.groupMappers.clear();
+        this.authors.clear();
+        this.authorMappers.clear();
+        this.sessions.clear();
+        this.readOnlyIds.clear();
+        this.latencyMillis = 0;
+        this.methodLatencyMillis.clear();
+        this.errorRate = 0.0;
+        this.failures.clear();
+    }
+
+    public void stop() {
+        this.server.stop(0);
+        this.executor.shutdown();
+    }
+
+    private void respond(HttpExchange exchange) throws IOException {
+        this.requests.incrementAndGet();
+        Map<String, String> args = new HashMap<>();
+        parse(exchange.getRequestURI().getRawQuery(), args);
+        parse(new String(readFully(exchange.getRequestBody()), UTF_8), args);
+
+        String path = exchange.getRequestURI().getPath();
+        String body;
+        if (path.equals("/api") || path.equals("/api/")) {
+            body = "{\"currentVersion\":\"" + API_VERSION + "\"}";
+        } else if (path.startsWith("/api/") && path.indexOf('/', 5) > 0) {
+            String apiMethod = path.substring(path.lastIndexOf('/') + 1);
+            body = answer(apiMethod, args);
+        } else {
+            byte[] notFound = "Not Found".getBytes(UTF_8);
+            exchange.sendResponseHeaders(404, notFound.length);
+            exchange.getResponseBody().write(notFound);
+            exchange.close();
+            return;
+        }
+
+        byte[] bytes = body.getBytes(UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(200, bytes.length);
+        OutputStream out = exchange.getResponseBody();
+        out.write(bytes);
+        out.close();
+    }
+
+    private String answer(String apiMethod, Map<String, String> args) {
+        delay(apiMethod);
+        try {
+            if (!this.apiKey.equals(args.get("apikey"))) {
+                throw new ApiError(4, "no or wrong API Key");
+            }
+            Queue<ApiError> queue = this.failures.get(apiMethod);
+            ApiError failure = (queue != null) ? queue.poll() : null;
+            if (failure != null) {
+                throw failure;
+            }
+            if (this.errorRate > 0.0 && ThreadLocalRandom.current().nextDouble() < this.errorRate) {
+                throw new ApiError(2, "internal error");
+            }
+            return envelope(0, "ok", call(apiMethod, args));
+        } catch (ApiError error) {
+            return envelope(error.code, error.getMessage(), null);
+        } catch (RuntimeException e) {
+            return envelope(2, "internal error", null);
+        }
+    }
+
+    private void delay(String apiMethod) {
+        Long methodLatency = this.methodLatencyMillis.get(apiMethod);
+        long millis = this.latencyMillis + ((methodLatency != null) ? methodLatency : 0);
+        if (millis > 0) {
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private Object call(String apiMethod, Map<String, String> args) {
+        switch (apiMethod) {
+            // Groups
+            case "createGroup":
+                return data("groupID", newGroup().id);
+            case "createGroupIfNotExistsFor": {
+                String mapper = required(args, "groupMapper");
+                String groupID = this.groupMappers.get(mapper);
+                if (groupID == null || !this.groups.containsKey(groupID)) {
+                    groupID = newGroup().id;
+                    this.groupMappers.put(mapper, groupID);
+                }
+                return data("groupID", groupID);
+            }
+            case "deleteGroup": {
+                Group group = group(args.get("groupID"));
+                for (String padID : group.padIDs()) {
+                    deletePad(padID);
+                }
+                for (Iterator<Session> it = this.sessions.values().iterator(); it.hasNext();) {
+                    if (it.next().groupID.equals(group.id)) {
+                        it.remove();
+                    }
+                }
+                this.groups.remove(group.id);
+                this.groupMappers.values().removeAll(Collections.singleton(group.id));
+                return null;
+            }
+            case "listPads":
+                return data("padIDs", group(args.get("groupID")).padIDs());
+            case "createGroupPad": {
+                Group group = group(args.get("groupID"));
+                String padName = required(args, "padName");
+                Pad pad = createPad(group.id + "$" + padName, args.get("text"));
+                return data("padID", pad.id);
+            }
+            case "listAllGroups":
+                return data("groupIDs", new ArrayList<>(new TreeSet<>(this.groups.keySet())));
+
+            // Authors
+            case "createAuthor":
+                return data("authorID", newAuthor(args.get("name")).id);
+            case "createAuthorIfNotExistsFor": {
+                String mapper = required(args, "authorMapper");
+                String authorID = this.authorMappers.get(mapper);
+                Author author = (authorID != null) ? this.authors.get(authorID) : null;
+                if (author == null) {
+                    author = newAuthor(args.get("name"));
+                    this.authorMappers.put(mapper, author.id);
+                } else if (args.get("name") != null) {
+                    author.name = args.get("name");
+                }
+                return data("authorID", author.id);
+            }
+            case "listPadsOfAuthor": {
+                Author author = author(args.get("authorID"));
+                List<String> padIDs = new ArrayList<>();
+                for (Pad pad : this.pads.values()) {
+                    if (pad.hasAuthor(author.id)) {
+                        padIDs.add(pad.id);
+                    }
+                }
+                Collections.sort(padIDs);
+                return data("padIDs", padIDs);
+            }
+            case "getAuthorName":
+                return author(args.get("authorID")).name;
+
+            // Sessions
+            case "createSession": {
+                Group group = group(args.get("groupID"));
+                Author author = author(args.get("authorID"));
+                long validUntil = number(args, "validUntil");
+                if (validUntil < System.currentTimeMillis() / 1000) {
+                    throw new ApiError(1, "validUntil is in the past");
+                }
+                Session session = new Session(newId("s."), group.id, author.id, validUntil);
+                this.sessions.put(session.id, session);
+                return data("sessionID", session.id);
+            }
+            case "deleteSession":
+                this.sessions.remove(session(args.get("sessionID")).id);
+                return null;
+            case "getSessionInfo":
+                return session(args.get("sessionID")).toMap();
+            case "listSessionsOfGroup": {
+                String groupID = group(args.get("groupID")).id;
+                Map<String, Object> found = new LinkedHashMap<>();
+                for (Session session : this.sessions.values()) {
+                    if (session.groupID.equals(groupID)) {
+                        found.put(session.id, session.toMap());
+                    }
+                }
+                return found.isEmpty() ? null : found;
+            }
+            case "listSessionsOfAuthor": {
+                String authorID = author(args.get("authorID")).id;
+                Map<String, Object> found = new LinkedHashMap<>();
+                for (Session session : this.sessions.values()) {
+                    if (session.authorID.equals(authorID)) {
+                        found.put(session.id, session.toMap());
+                    }
+                }
+                return found.isEmpty() ? null : found;
+            }
+
+            // Pad content
+            case "getText": {
+                Pad pad = pad(args.get("padID"));
+                synchronized (pad) {
+                    return data("text", pad.text(revision(args, pad)));
+                }
+            }
+            case "setText": {
+                Pad pad = pad(args.get("padID"));
+                String text = required(args, "text");
+                synchronized (pad) {
+                    pad.setText(text, args.get("authorId"));
+                }
+                return null;
+            }
+            case "appendText": {
+                Pad pad = pad(args.get("padID"));
+                String text = required(args, "text");
+                synchronized (pad) {
+                    String current = pad.text(pad.head());
+                    pad.setText(current.substring(0, current.length() - 1) + text, args.get("authorId"));
+                }
+                return null;
+            }
+            case "getHTML": {
+                Pad pad = pad(args.get("padID"));
+                synchronized (pad) {
+                    return data("html", "<!DOCTYPE HTML><html><body>" + html(pad.text(revision(args, pad)))
+                            + "</body></html>");
+                }
+            }
+            case "setHTML": {
+                Pad pad = pad(args.get("padID"));
+                String html = required(args, "html");
+                synchronized (pad) {
+                    pad.setText(text(html), null);
+                }
+                return null;
+            }
+            case "getAttributePool": {
+                pad(args.get("padID"));
+                Map<String, Object> numToAttrib = new LinkedHashMap<>();
+                numToAttrib.put("0", list("author", ""));
+                Map<String, Object> pool = new LinkedHashMap<>();
+                pool.put("numToAttrib", numToAttrib);
+                pool.put("nextNum", 1);
+                return data("pool", pool);
+            }
+            case "getRevisionChangeset": {
+                Pad pad = pad(args.get("padID"));
+                synchronized (pad) {
+                    long rev = revision(args, pad);
+                    String before = (rev > 0) ? pad.text(rev - 1) : "\n";
+                    return changeset(before, pad.text(rev));
+                }
+            }
+            case "createDiffHTML": {
+                Pad pad = pad(args.get("padID"));
+                synchronized (pad) {
+                    long startRev = number(args, "startRev");
+                    long endRev = number(args, "endRev");
+                    if (startRev > pad.head() || endRev > pad.head()) {
+                        throw new ApiError(1, "rev is higher than the head revision of the pad");
+                    }
+                    Map<String, Object> diff = new LinkedHashMap<>();
+                    diff.put("html", "<style>\n</style>" + html(pad.text(endRev)));
+                    diff.put("authors", new ArrayList<>(pad.authors()));
+                    return diff;
+                }
+            }
+
+            // Chat
+            case "getChatHistory": {
+                Pad pad = pad(args.get("padID"));
+                synchronized (pad) {
+                    int head = pad.chat.size() - 1;
+                    long start = 0;
+                    long end = head;
+                    if (args.get("start") != null || args.get("end") != null) {
+                        start = number(args, "start");
+                        end = number(args, "end");
+                        if (start > end) {
+                            throw new ApiError(1, "start is higher than end");
+                        }
+                        if (start > head) {
+                            throw new ApiError(1, "start is higher than the current chatHead");
+                        }
+                        if (end > head) {
+                            throw new ApiError(1, "end is higher than the current chatHead");
+                        }
+                    }
+                    List<Object> messages = new ArrayList<>();
+                    for (long i = start; i <= end; i++) {
+                        messages.add(pad.chat.get((int) i).toMap());
+                    }
+                    return data("messages", messages);
+                }
+            }
+            case "getChatHead": {
+                Pad pad = pad(args.get("padID"));
+                synchronized (pad) {
+                    return data("chatHead", pad.chat.size() - 1);
+                }
+            }
+            case "appendChatMessage": {
+                Pad pad = pad(args.get("padID"));
+                String text = required(args, "text");
+                String authorID = required(args, "authorID");
+                long time = (args.get("time") != null) ? number(args, "time") : System.currentTimeMillis();
+                Author author = this.authors.get(authorID);
+                synchronized (pad) {
+                    pad.chat.add(new ChatMessage(text, authorID, time, (author != null) ? author.name : null));
+                    pad.authorIDs.add(authorID);
+                }
+                return null;
+            }
+
+            // Pads
+            case "listAllPads":
+                return data("padIDs", new ArrayList<>(new TreeSet<>(this.pads.keySet())));
+            case "createPad": {
+                String padID = required(args, "padID");
+                if (padID.indexOf('$') >= 0) {
+                    throw new ApiError(1, "createPad can't create group pads");
+                }
+                createPad(padID, args.get("text"));
+                return null;
+            }
+            case "getRevisionsCount": {
+                Pad pad = pad(args.get("padID"));
+                synchronized (pad) {
+                    return data("revisions", pad.head());
+                }
+            }
+            case "getSavedRevisionsCount": {
+                Pad pad = pad(args.get("padID"));
+                synchronized (pad) {
+                    return data("savedRevisions", pad.savedRevisions.size());
+                }
+            }
+            case "listSavedRevisions": {
+                Pad pad = pad(args.get("padID"));
+                synchronized (pad) {
+                    return data("savedRevisions", new ArrayList<>(pad.savedRevisions));
+                }
+            }
+            case "saveRevision": {
+                Pad pad = pad(args.get("padID"));
+                synchronized (pad) {
+                    pad.savedRevisions.add(revision(args, pad));
+                }
+                return null;
+            }
+            case "padUsersCount":
+                pad(args.get("padID"));
+                return data("padUsersCount", 0);
+            case "padUsers":
+                pad(args.get("padID"));
+                return data("padUsers", new ArrayList<>());
+            case "deletePad":
+                deletePad(pad(args.get("padID")).id);
+                return null;
+            case "copyPad":
+                copyPad(args);
+                return data("padID", args.get("destinationID"));
+            case "movePad":
+                copyPad(args);
+                deletePad(args.get("sourceID"));
+                return data("padID", args.get("destinationID"));
+            case "getReadOnlyID":
+                return data("readOnlyID", pad(args.get("padID")).readOnlyID);
+            case "getPadID": {
+                String padID = this.readOnlyIds.get(String.valueOf(args.get("roID")));
+                if (padID == null) {
+                    throw new ApiError(1, "padID does not exist");
+                }
+                return data("padID", padID);
+            }
+            case "setPublicStatus": {
+                Pad pad = groupPad(args.get("padID"), "publicStatus");
+                pad.publicStatus = Boolean.parseBoolean(required(args, "publicStatus"));
+                return null;
+            }
+            case "getPublicStatus":
+                return data("publicStatus", groupPad(args.get("padID"), "publicStatus").publicStatus);
+            case "setPassword":
+                groupPad(args.get("padID"), "password").password = args.get("password");
+                return null;
+            case "isPasswordProtected":
+                return data("isPasswordProtected", groupPad(args.get("padID"), "password").password != null);
+            case "listAuthorsOfPad": {
+                Pad pad = pad(args.get("padID"));
+                synchronized (pad) {
+                    return data("authorIDs", new ArrayList<>(pad.authors()));
+                }
+            }
+            case "getLastEdited": {
+                Pad pad = pad(args.get("padID"));
+                synchronized (pad) {
+                    return data("lastEdited", pad.revisions.get(pad.revisions.size() - 1).time);
+                }
+            }
+            case "sendClientsMessage":
+                pad(args.get("padID"));
+                return new LinkedHashMap<>();
+            case "checkToken":
+                return null;
+            default:
+                throw new ApiError(3, "no such function");
+        }
+    }
+
+    private Group newGroup() {
+        Group group = new Group(newId("g."));
+        this.groups.put(group.id, group);
+        return group;
+    }
+
+    private Author newAuthor(String name) {
+        Author author = new Author(newId("a."), name);
+        this.authors.put(author.id, author);
+        return author;
+    }
+
+    private Pad createPad(String padID, String text) {
+        Pad pad = new Pad(padID, newId("r."));
+        pad.setText((text != null) ? text : DEFAULT_TEXT, null);
+        if (this.pads.putIfAbsent(padID, pad) != null) {
+            throw new ApiError(1, "padID does already exist");
+        }
+        this.readOnlyIds.put(pad.readOnlyID, padID);
+        Group group = groupOf(padID);
+        if (group != null) {
+            group.padIDs.add(padID);
+        }
+        return pad;
+    }
+
+    private void deletePad(String padID) {
+        Pad pad = this.pads.remove(padID);
+        if (pad != null) {
+            this.readOnlyIds.remove(pad.readOnlyID);
+            Group group = groupOf(padID);
+            if (group != null) {
+                group.padIDs.remove(padID);
+            }
+        }
+    }
+
+    private void copyPad(Map<String, String> args) {
+        Pad source = pad(args.get("sourceID"));
+        String destinationID = required(args, "destinationID");
+        if (Boolean.parseBoolean(args.get("force"))) {
+            deletePad(destinationID);
+        } else if (this.pads.containsKey(destinationID)) {
+            throw new ApiError(1, "destinationID already exists");
+        }
+        int separator = destinationID.indexOf('$');
+        if (separator > 0 && !this.groups.containsKey(destinationID.substring(0, separator))) {
+            throw new ApiError(1, "groupID does not exist for destinationID");
+        }
+        Pad copy = createPad(destinationID, null);
+        synchronized (source) {
+            synchronized (copy) {
+                copy.revisions.clear();
+                copy.revisions.addAll(source.revisions);
+                copy.chat.addAll(source.chat);
+                copy.savedRevisions.addAll(source.savedRevisions);
+                copy.authorIDs.addAll(source.authorIDs);
+            }
+        }
+    }
+
+    private Group groupOf(String padID) {
+        int separator = padID.indexOf('$');
+        return (separator > 0) ? this.groups.get(padID.substring(0, separator)) : null;
+    }
+
+    private Pad pad(String padID) {
+        Pad pad = (padID != null) ? this.pads.get(padID) : null;
+        if (pad == null) {
+            throw new ApiError(1, "padID does not exist");
+        }
+        return pad;
+    }
+
+    private Pad groupPad(String padID, String what) {
+        Pad pad = pad(padID);
+        if (padID.indexOf('$') < 0) {
+            throw new ApiError(1, "You can only get/set the " + what + " of pads that belong to a group");
+        }
+        return pad;
+    }
+
+    private Group group(String groupID) {
+        Group group = (groupID != null) ? this.groups.get(groupID) : null;
+        if (group == null) {
+            throw new ApiError(1, "groupID does not exist");
+        }
+        return group;
+    }
+
+    private Author author(String authorID) {
+        Author author = (authorID != null) ? this.authors.get(authorID) : null;
+        if (author == null) {
+            throw new ApiError(1, "authorID does not exist");
+        }
+        return author;
+    }
+
+    private Session session(String sessionID) {
+        Session session = (sessionID != null) ? this.sessions.get(sessionID) : null;
+        if (session == null) {
+            throw new ApiError(1, "sessionID does not exist");
+        }
+        return session;
+    }
+
+    private static long revision(Map<String, String> args, Pad pad) {
+        if (args.get("rev") == null) {
+            return pad.head();
+        }
+        long rev = number(args, "rev");
+        if (rev < 0) {
+            throw new ApiError(1, "rev is a negative number");
+        }
+        if (rev > pad.head()) {
+            throw new ApiError(1, "rev is higher than the head revision of the pad");
+        }
+        return rev;
+    }
+
+    private static String required(Map<String, String> args, String name) {
+        String value = args.get(name);
+        if (value == null) {
+            throw new ApiError(1, name + " is not a string");
+        }
+        return value;
+    }
+
+    private static long number(Map<String, String> args, String name) {
+        try {
+            return Long.parseLong(String.valueOf(args.get(name)));
+        } catch (NumberFormatException e) {
+            throw new ApiError(1, name + " is not a number");
+        }
+    }
+
+    private static Map<String, Object> data(String key, Object value) {
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put(key, value);
+        return data;
+    }
+
+    private static List<Object> list(Object... items) {
+        List<Object> list = new ArrayList<>();
+        Collections.addAll(list, items);
+        return list;
+    }
+
+    private static String envelope(int code, String message, Object data) {
+        return "{\"code\":" + code + ",\"message\":" + JSONValue.toJSONString(message)
+                + ",\"data\":" + JSONValue.toJSONString(data) + "}";
+    }
+
+    /**
+     * Renders pad text the way Etherpad exports it, a line break per line.
+     */
+    private static String html(String text) {
+        StringBuilder html = new StringBuilder(text.length() + 32);
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '\n':
+                    html.append("<br>");
+                    break;
+                case '<':
+                    html.append("&lt;");
+                    break;
+                case '>':
+                    html.append("&gt;");
+                    break;
+                case '&':
+                    html.append("&amp;");
+                    break;
+                case '"':
+                    html.append("&quot;");
+                    break;
+                default:
+                    html.append(c);
+            }
+        }
+        return html.toString();
+    }
+
+    /**
+     * Imports HTML as plain text: block ends and line breaks become new lines, other tags are dropped.
+     */
+    private static String text(String html) {
+        String text = html.replaceAll("(?i)<br\\s*/?>|</(p|div|li|h[1-6])>", "\n").replaceAll("<[^>]*>", "");
+        return text.replace("&lt;", "<").replace("&gt;", ">").replace("&quot;", "\"").replace("&nbsp;", " ")
+                .replace("&amp;", "&");
+    }
+
+    /**
+     * Returns a changeset replacing all of the old text with the new one.
+     */
+    private static String changeset(String before, String after) {
+        int difference = after.length() - before.length();
+        return "Z:" + Integer.toString(before.length(), 36) + ((difference >= 0) ? ">" : "<")
+                + Integer.toString(Math.abs(difference), 36) + "-" + Integer.toString(before.length() - 1, 36)
+                + "+" + Integer.toString(after.length() - 1, 36) + "$" + after.substring(0, after.length() - 1);
+    }
+
+    private static String newId(String prefix) {
+        char[] id = new char[16];
+        for (int i = 0; i < id.length; i++) {
+            id[i] = ID_CHARS[ID_RANDOM.nextInt(ID_CHARS.length)];
+        }
+        return prefix + new String(id);
+    }
+
+    private static void parse(String encoded, Map<String, String> args) throws IOException {
+        if (encoded == null || encoded.isEmpty()) {
+            return;
+        }
+        for (String pair : encoded.split("&")) {
+            int separator = pair.indexOf('=');
+            if (separator > 0) {
+                args.put(URLDecoder.decode(pair.substring(0, separator), "UTF-8"),
+                        URLDecoder.decode(pair.substring(separator + 1), "UTF-8"));
+            }
+        }
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * An error answer; thrown by the methods and turned into the response.
+     */
+    private static final class ApiError extends RuntimeException {
+        final int code;
+
+        ApiError(int code, String message) {
+            super(message);
+            this.code = code;
+        }
+
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            // Thrown for every failed call, the stack trace would only cost time
+            return this;
+        }
+    }
+
+    private static final class Revision {
+        final String text;
+        final String authorID;
+        final long time;
+
+        Revision(String text, String authorID, long time) {
+            this.text = text;
+            this.authorID = authorID;
+            this.time = time;
+        }
+    }
+
+    /**
+     * A pad; callers synchronize on it for the revisions and chat.
+     */
+    private static final class Pad {
+        final String id;
+        final String readOnlyID;
+        final List<Revision> revisions = new ArrayList<>();
+        final List<ChatMessage> chat = new ArrayList<>();
+        final List<Long> savedRevisions = new ArrayList<>();
+        final Set<String> authorIDs = new LinkedHashSet<>();
+        volatile boolean publicStatus;
+        volatile String password;
+
+        Pad(String id, String readOnlyID) {
+            this.id = id;
+            this.readOnlyID = readOnlyID;
+        }
+
+        long head() {
+            return this.revisions.size() - 1;
+        }
+
+        String text(long rev) {
+            return this.revisions.get((int) rev).text;
+        }
+
+        void setText(String text, String authorID) {
+            // Etherpad keeps a new line at the end of every pad
+            this.revisions.add(new Revision(text.endsWith("\n") ? text : text + "\n", authorID,
+                    System.currentTimeMillis()));
+            if (authorID != null) {
+                this.authorIDs.add(authorID);
+            }
+        }
+
+        synchronized boolean hasAuthor(String authorID) {
+            return this.authorIDs.contains(authorID);
+        }
+
+        Set<String> authors() {
+            return this.authorIDs;
+        }
+    }
+
+    private static final class ChatMessage {
+        final String text;
+        final String userId;
+        final long time;
+        final String userName;
+
+        ChatMessage(String text, String userId, long time, String userName) {
+            this.text = text;
+            this.userId = userId;
+            this.time = time;
+            this.userName = userName;
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> message = new LinkedHashMap<>();
+            message.put("text", this.text);
+            message.put("userId", this.userId);
+            message.put("time", this.time);
+            message.put("userName", this.userName);
+            return message;
+        }
+    }
+
+    private static final class Group {
+        final String id;
+        final Set<String> padIDs = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+        Group(String id) {
+            this.id = id;
+        }
+
+        List<String> padIDs() {
+            return new ArrayList<>(new TreeSet<>(this.padIDs));
+        }
+    }
+
+    private static final class Author {
+        final String id;
+        volatile String name;
+
+        Author(String id, String name) {
+            this.id = id;
+            this.name = name;
+        }
+    }
+
+    private static final class Session {
+        final String id;
+        final String groupID;
+        final String authorID;
+        final long validUntil;
+
+        Session(String id, String groupID, String authorID, long validUntil) {
+            this.id = id;
+            this.groupID = groupID;
+            this.authorID = authorID;
+            this.validUntil = validUntil;
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> session = new LinkedHashMap<>();
+            session.put("groupID", this.groupID);
+            session.put("authorID", this.authorID);
+            session.put("validUntil", this.validUntil);
+            return session;
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package net.gjerull.etherpad.client;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+public class FakeEtherpadServerTest {
+    private FakeEtherpadServer etherpad;
+    private EPLiteClient client;
+
+    @Before
+    public void setUp() throws Exception {
+        this.etherpad = new FakeEtherpadServer("apikey");
+        this.client = new EPLiteClient(this.etherpad.getUrl(), "apikey");
+    }
+
+    @After
+    public void tearDown() {
+        this.etherpad.stop();
+    }
+
+    @Test
+    public void pads_keep_their_revisions() throws Exception {
+        this.client.createPad("pad", "first");
+        this.client.setText("pad", "second");
+        this.client.appendText("pad", " and third");
+
+        assertEquals("second and third\n", this.client.getText("pad").get("text"));
+        assertEquals("first\n", this.client.getText("pad", 0).get("text"));
+        assertEquals(2L, this.client.getRevisionsCount("pad").get("revisions"));
+        assertEquals("<!DOCTYPE HTML><html><body>second and third<br></body></html>",
+                this.client.getHTML("pad").get("html"));
+        assertTrue(this.client.tryCreatePad("pad").is(1, "padID does already exist"));
+        assertTrue(this.client.tryGetText("missing").is(1, "padID does not exist"));
+
+        String readOnlyID = (String) this.client.getReadOnlyID("pad").get("readOnlyID");
+        assertEquals("pad", this.client.getPadID(readOnlyID).get("padID"));
+        this.client.copyPad("pad", "copy");
+        assertEquals("second and third\n", this.client.getText("copy").get("text"));
+        this.client.deletePad("pad");
+        assertEquals(Arrays.asList("copy"), this.client.listAllPads().get("padIDs"));
+    }
+
+    @Test
+    public void groups_own_their_pads_and_sessions() throws Exception {
+        String groupID = (String) this.client.createGroupIfNotExistsFor("mapper").get("groupID");
+        assertEquals(groupID, this.client.createGroupIfNotExistsFor("mapper").get("groupID"));
+        String authorID = (String) this.client.createAuthorIfNotExistsFor("user", "Ada").get("authorID");
+        assertEquals("Ada", this.client.getAuthorName(authorID));
+
+        String padID = (String) this.client.createGroupPad(groupID, "notes").get("padID");
+        assertEquals(groupID + "$notes", padID);
+        assertEquals(FakeEtherpadServer.DEFAULT_TEXT, this.client.getText(padID).get("text"));
+        this.client.setPublicStatus(padID, true);
+        assertEquals(true, this.client.getPublicStatus(padID).get("publicStatus"));
+        this.client.setPassword(padID, "secret");
+        assertEquals(true, this.client.isPasswordProtected(padID).get("isPasswordProtected"));
+
+        String sessionID = (String) this.client.createSession(groupID, authorID, 60).get("sessionID");
+        assertEquals(authorID, this.client.getSessionInfo(sessionID).get("authorID"));
+        assertTrue(this.client.listSessionsOfGroup(groupID).containsKey(sessionID));
+
+        this.client.deleteGroup(groupID);
+        assertTrue(this.client.tryGetText(padID).is(1, "padID does not exist"));
+        assertTrue(this.client.listSessionsOfAuthor(authorID).isEmpty());
+        assertTrue(this.client.tryCreateGroupPad(groupID, "notes").is(1, "groupID does not exist"));
+    }
+
+    @Test
+    public void chat_messages_are_kept_in_order() throws Exception {
+        this.client.createPad("pad");
+        String authorID = (String) this.client.createAuthor("Ada").get("authorID");
+        this.client.appendChatMessage("pad", "hello", authorID, 1000L);
+        this.client.appendChatMessage("pad", "world", authorID, 2000L);
+
+        ChatHistory history = this.client.fetchChatHistory("pad");
+        assertEquals(2, history.getMessages().size());
+        assertEquals("world", history.getMessages().get(1).getText());
+        assertEquals("Ada", history.getMessages().get(1).getUserName());
+        assertEquals(1L, this.client.getChatHead("pad").get("chatHead"));
+        assertEquals(1, ((List) this.client.getChatHistory("pad", 1, 1).get("messages")).size());
+        assertEquals(Arrays.asList(authorID), this.client.listAuthorsOfPad("pad").get("authorIDs"));
+        assertEquals(Arrays.asList("pad"), this.client.listPadsOfAuthor(authorID).get("padIDs"));
+    }
+
+    @Test
+    public void errors_and_latency_can_be_injected() throws Exception {
+        this.client.createPad("pad");
+        this.etherpad.failNext("getText", 2, "internal error");
+        assertTrue(this.client.tryGetText("pad").is(2, "internal error"));
+        assertTrue(this.client.tryGetText("pad").isOk());
+
+        this.etherpad.setErrorRate(1.0);
+        assertEquals(2, this.client.tryGetRevisionsCount("pad").getCode());
+        this.etherpad.setErrorRate(0.0);
+
+        this.etherpad.setLatency("getText", 50);
+        long start = System.nanoTime();
+        this.client.getText("pad");
+        assertTrue((System.nanoTime() - start) >= 50000000L);
+
+        try {
+            new EPLiteClient(this.etherpad.getUrl(), "wrong").getText("pad");
+            fail("Expected a wrong API key to be refused");
+        } catch (EPLiteInvalidApiKeyException e) {
+            assertEquals("no or wrong API Key", e.getMessage());
+        }
+    }
+
+    @Test
+    public void concurrent_calls_all_succeed() throws Exception {
+        final int threads = 8;
+        final int callsPerThread = 250;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Void>> results = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                final String padID = "pad-" + t;
+                results.add(executor.submit(new Callable<Void>() {
+                    public Void call() {
+                        client.createPad(padID, "");
+                        for (int i = 0; i < callsPerThread; i++) {
+                            client.appendText(padID, "x");
+                            client.getText(padID);
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> result : results) {
+                result.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        for (int t = 0; t < threads; t++) {
+            Map text = this.client.getText("pad-" + t);
+            assertEquals(callsPerThread + 1, ((String) text.get("text")).length());
+        }
+        assertTrue(this.etherpad.getRequestCount() >= threads * (2 * callsPerThread + 1));
+    }
+}
@@ -0,0 +1,75 @@
+package net.gjerull.etherpad.client;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class IdIteratorTest {
+
+    @Test
+    public void iterates_over_the_ids_in_the_response() throws Exception {
+        IdIterator ids = iterator("{\"code\":0,\"message\":\"ok\",\"data\":{\"padIDs\":[\"a\",\"g.x$b\",\"c\"]}}");
+
+        assertEquals(Arrays.asList("a", "g.x$b", "c"), drain(ids));
+        assertFalse(ids.hasNext());
+    }
+
+    @Test
+    public void other_fields_and_a_trailing_code_are_read() throws Exception {
+        IdIterator ids = iterator("{\"data\":{\"other\":{\"n\":[1,2]},\"padIDs\":[\"a\"]},\"message\":\"ok\",\"code\":0}");
+
+        assertEquals(Arrays.asList("a"), drain(ids));
+    }
+
+    @Test
+    public void missing_array_gives_no_ids() throws Exception {
+        assertFalse(iterator("{\"code\":0,\"message\":\"ok\",\"data\":null}").hasNext());
+        assertFalse(iterator("{\"code\":0,\"message\":\"ok\",\"data\":{\"padIDs\":[]}}").hasNext());
+    }
+
+    @Test
+    public void error_code_throws_with_the_message() throws Exception {
+        try {
+            iterator("{\"code\":1,\"message\":\"groupID does not exist\",\"data\":null}");
+            fail("Expected '" + EPLiteException.class.getName() + "' to be thrown");
+        } catch (EPLiteException e) {
+            assertEquals("groupID does not exist", e.getMessage());
+        }
+    }
+
+    @Test
+    public void unparsable_response_throws() throws Exception {
+        try {
+            iterator("<html><body>Bad gateway</body></html>");
+            fail("Expected '" + EPLiteException.class.getName() + "' to be thrown");
+        } catch (EPLiteException e) {
+            assertTrue("Unexpected Message: " + e.getMessage(),
+                    e.getMessage().startsWith("Unable to parse JSON response ("));
+        }
+    }
+
+    @Test
+    public void closing_early_stops_the_iteration() throws Exception {
+        IdIterator ids = iterator("{\"code\":0,\"message\":\"ok\",\"data\":{\"padIDs\":[\"a\",\"b\"]}}");
+
+        assertEquals("a", ids.next());
+        ids.close();
+        assertFalse(ids.hasNext());
+    }
+
+    private static IdIterator iterator(String response) {
+        return new IdIterator(new JsonReader(response), "padIDs");
+    }
+
+    private static List<String> drain(IdIterator ids) {
+        List<String> result = new ArrayList<>();
+        while (ids.hasNext()) {
+            result.add(ids.next());
+        }
+        return result;
+    }
+}
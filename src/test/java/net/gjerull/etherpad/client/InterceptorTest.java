@@ -0,0 +1,174 @@
+package net.gjerull.etherpad.client;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class InterceptorTest {
+    private HttpServer etherpad;
+    private EPLiteClient client;
+    private final List<String> traceparents = Collections.synchronizedList(new ArrayList<String>());
+    private volatile String response = "{\"code\":0,\"message\":\"ok\",\"data\":{\"text\":\"hello\"}}";
+
+    @Before
+    public void setUp() throws Exception {
+        this.etherpad = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        this.etherpad.createContext("/", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                traceparents.add(String.valueOf(exchange.getRequestHeaders().getFirst("traceparent")));
+                byte[] body = response.getBytes(Charset.forName("UTF-8"));
+                exchange.sendResponseHeaders(200, body.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(body);
+                out.close();
+            }
+        });
+        this.etherpad.start();
+        this.client = new EPLiteClient("http://localhost:" + this.etherpad.getAddress().getPort(), "apikey");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        this.etherpad.stop(0);
+    }
+
+    @Test
+    public void interceptors_are_called_around_calls() throws Exception {
+        final List<String> calls = new ArrayList<>();
+        for (final String name : Arrays.asList("outer", "inner")) {
+            this.client.addInterceptor(new EPLiteInterceptor() {
+                public void before(EPLiteCall call) {
+                    calls.add(name + ".before " + call.getApiMethod() + " " + call.getArguments());
+                    call.setAttribute(name, "started");
+                }
+
+                public void after(EPLiteCall call) {
+                    calls.add(name + ".after " + call.getCode() + " " + call.getAttribute(name));
+                }
+
+                public void error(EPLiteCall call, EPLiteException error) {
+                    calls.add(name + ".error " + call.getCode() + " " + error.getMessage());
+                }
+            });
+        }
+
+        this.client.getText("pad");
+        this.response = "{\"code\":1,\"message\":\"padID does not exist\",\"data\":null}";
+        assertFalse(this.client.tryGetText("pad").isOk());
+
+        assertEquals(Arrays.asList(
+                "outer.before getText {padID=pad}", "inner.before getText {padID=pad}",
+                "inner.after 0 started", "outer.after 0 started",
+                "outer.before getText {padID=pad}", "inner.before getText {padID=pad}",
+                "inner.error 1 padID does not exist", "outer.error 1 padID does not exist"), calls);
+    }
+
+    @Test
+    public void headers_are_sent_with_get_and_post_requests() throws Exception {
+        TraceContext parent = TraceContext.parse("00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01");
+        this.client.addInterceptor(new TracingInterceptor());
+
+        TraceContext.Scope scope = parent.makeCurrent();
+        try {
+            this.client.getText("pad");
+            this.client.setText("pad", "text");
+        } finally {
+            scope.close();
+        }
+        this.client.getText("pad");
+
+        assertEquals(3, this.traceparents.size());
+        for (String traceparent : this.traceparents.subList(0, 2)) {
+            TraceContext sent = TraceContext.parse(traceparent);
+            assertEquals(parent.getTraceId(), sent.getTraceId());
+            assertNotEquals(parent.getSpanId(), sent.getSpanId());
+            assertTrue(sent.isSampled());
+        }
+        assertEquals("null", this.traceparents.get(2));
+        assertNull(TraceContext.current());
+    }
+
+    @Test
+    public void contexts_follow_tasks_to_other_threads() throws Exception {
+        final TraceContext parent = TraceContext.newRoot();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Callable<TraceContext> current = new Callable<TraceContext>() {
+                public TraceContext call() {
+                    return TraceContext.current();
+                }
+            };
+            TraceContext.Scope scope = parent.makeCurrent();
+            Callable<TraceContext> wrapped;
+            try {
+                wrapped = TraceContext.wrap(current);
+            } finally {
+                scope.close();
+            }
+            assertSame(current, TraceContext.wrap(current));
+            assertSame(parent, executor.submit(wrapped).get());
+            assertNull(executor.submit(current).get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void batches_belong_to_the_trace_of_the_caller() throws Exception {
+        TraceContext parent = TraceContext.newRoot();
+        this.client.addInterceptor(new TracingInterceptor());
+        BatchClient batch = new BatchClient(this.client, 2, 100);
+
+        TraceContext.Scope scope = parent.makeCurrent();
+        BatchOperation operation;
+        try {
+            operation = batch.deletePads(Arrays.asList("a", "b", "c"));
+        } finally {
+            scope.close();
+        }
+        assertTrue(operation.await(10, TimeUnit.SECONDS));
+        batch.shutdown();
+
+        assertEquals(3, this.traceparents.size());
+        for (String traceparent : this.traceparents) {
+            assertEquals(parent.getTraceId(), TraceContext.parse(traceparent).getTraceId());
+        }
+    }
+
+    @Test
+    public void traceparent_headers_are_validated() throws Exception {
+        TraceContext context = TraceContext.parse(
+                " 00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-00", "vendor=value");
+        assertEquals("4bf92f3577b34da6a3ce929d0e0e4736", context.getTraceId());
+        assertEquals("00f067aa0ba902b7", context.getSpanId());
+        assertFalse(context.isSampled());
+        assertEquals("vendor=value", context.newChild().getTraceState());
+        assertEquals("00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-00", context.toTraceparent());
+
+        assertNotNull(TraceContext.parse("01-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01-later"));
+        assertNull(TraceContext.parse("00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01-later"));
+        assertNull(TraceContext.parse("ff-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01"));
+        assertNull(TraceContext.parse("00-00000000000000000000000000000000-00f067aa0ba902b7-01"));
+        assertNull(TraceContext.parse("00-4BF92F3577B34DA6A3CE929D0E0E4736-00f067aa0ba902b7-01"));
+        assertNull(TraceContext.parse("00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7"));
+        assertNull(TraceContext.parse(null));
+    }
+}
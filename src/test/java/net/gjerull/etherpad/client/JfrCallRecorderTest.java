@@ -0,0 +1,80 @@
+package net.gjerull.etherpad.client;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class JfrCallRecorderTest {
+    private static final String EVENT = "net.gjerull.etherpad.ApiCall";
+
+    @Test
+    public void nothing_is_recorded_without_a_recording() throws Exception {
+        assertTrue(CallRecorder.INSTANCE instanceof JfrCallRecorder);
+        assertNull(CallRecorder.INSTANCE.begin());
+    }
+
+    @Test
+    public void calls_are_recorded_with_their_phases() throws Exception {
+        HttpServer etherpad = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        etherpad.createContext("/", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                byte[] body = "{\"code\":0,\"message\":\"ok\",\"data\":{\"text\":\"hello\"}}"
+                        .getBytes(Charset.forName("UTF-8"));
+                exchange.sendResponseHeaders(200, body.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(body);
+                out.close();
+            }
+        });
+        etherpad.start();
+        File file = File.createTempFile("etherpad", ".jfr");
+        try {
+            String url = "http://localhost:" + etherpad.getAddress().getPort();
+            EPLiteClient client = new EPLiteClient(url, "apikey");
+            Recording recording = new Recording();
+            recording.enable(EVENT);
+            recording.start();
+            client.getText("g.pad");
+            client.fetchText("g.pad");
+            recording.stop();
+            recording.dump(file.toPath());
+            recording.close();
+
+            List<RecordedEvent> events = new ArrayList<>();
+            for (RecordedEvent event : RecordingFile.readAllEvents(file.toPath())) {
+                if (event.getEventType().getName().equals(EVENT)) {
+                    events.add(event);
+                }
+            }
+            assertEquals(2, events.size());
+            for (RecordedEvent event : events) {
+                assertEquals("getText", event.getString("apiMethod"));
+                assertEquals("g.pad", event.getString("target"));
+                assertEquals(url, event.getString("endpoint"));
+                assertEquals(0, event.getInt("code"));
+                assertTrue(event.getLong("requestBytes") > 0);
+                assertTrue(event.getLong("responseBytes") > 0);
+                assertTrue(event.getDuration("connect").toNanos() > 0);
+                assertTrue(event.getDuration("firstByte").toNanos() > 0);
+                assertTrue(event.getDuration("parse").toNanos() > 0);
+            }
+        } finally {
+            etherpad.stop(0);
+            file.delete();
+        }
+    }
+}
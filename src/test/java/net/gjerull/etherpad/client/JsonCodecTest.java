@@ -0,0 +1,84 @@
+package net.gjerull.etherpad.client;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.junit.Test;
+
+import java.text.ParseException;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class JsonCodecTest {
+    private static final String[] RESPONSES = {
+        "{\"code\":0,\"message\":\"ok\",\"data\":null}",
+        "{\"code\":0,\"message\":\"ok\",\"data\":{\"padIDs\":[\"g.F2Tl1IeT8UXipnEw$integration-test-1\",\"integration-test-pad\"]}}",
+        "{\"code\":0,\"message\":\"ok\",\"data\":{\"html\":\"<!DOCTYPE HTML><html><body>g\\u00e5 og gj\\u00f8re et \\u00e6rend<br><br></body></html>\"}}",
+        "{\"code\":0,\"message\":\"ok\",\"data\":{\"messages\":[{\"text\":\"hi \\\"there\\\"\",\"userId\":\"a.kPrLhmVVGK3Y5j03\",\"time\":1508587574000,\"userName\":null}]}}",
+        "{\"code\":0,\"message\":\"ok\",\"data\":{\"revisions\":27,\"publicStatus\":true,\"passwordProtection\":false,\"ratio\":-1.5e3}}",
+        "{\"code\":1,\"message\":\"padID does not exist\",\"data\":null}",
+        "  [ 1 , -2 , 3.25 , \"x\" , { } , [ ] ]  ",
+    };
+
+    @Test
+    public void default_codec_decodes_like_json_simple() throws Exception {
+        JsonCodec expected = new JsonSimpleCodec();
+        for (String response : RESPONSES) {
+            assertEquals(response, expected.decode(response), DefaultJsonCodec.INSTANCE.decode(response));
+        }
+    }
+
+    @Test
+    public void default_codec_keeps_the_json_simple_types() throws Exception {
+        Map response = (Map) DefaultJsonCodec.INSTANCE.decode(RESPONSES[1]);
+
+        assertTrue(response instanceof JSONObject);
+        assertTrue(((Map) response.get("data")).get("padIDs") instanceof JSONArray);
+        assertEquals(Long.class, response.get("code").getClass());
+    }
+
+    @Test
+    public void both_codecs_reject_invalid_json() throws Exception {
+        for (JsonCodec codec : new JsonCodec[] {DefaultJsonCodec.INSTANCE, new JsonSimpleCodec()}) {
+            for (String invalid : new String[] {"<html></html>", "{\"code\":0", "[1,]x"}) {
+                try {
+                    codec.decode(invalid);
+                    fail("Expected '" + ParseException.class.getName() + "' for " + invalid);
+                } catch (ParseException e) {
+                    assertTrue(e.getErrorOffset() >= 0);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void connection_decodes_with_the_given_codec() throws Exception {
+        EPLiteConnection connection = new EPLiteConnection("http://example.com/", "apikey", "1.2.13",
+                "UTF-8", new JsonCodec() {
+                    public Object decode(String json) {
+                        JSONObject response = new JSONObject();
+                        response.put("code", 0L);
+                        response.put("data", json.length());
+                        return response;
+                    }
+                });
+
+        assertEquals(4, connection.handleResponse("null"));
+    }
+
+    @Test
+    public void large_arrays_are_decoded() throws Exception {
+        StringBuilder json = new StringBuilder("{\"code\":0,\"message\":\"ok\",\"data\":{\"padIDs\":[");
+        for (int i = 0; i < 50000; i++) {
+            json.append(i == 0 ? "" : ",").append("\"g.F2Tl1IeT8UXipnEw$pad-").append(i).append('"');
+        }
+        json.append("]}}");
+
+        Map response = (Map) DefaultJsonCodec.INSTANCE.decode(json.toString());
+        List padIDs = (List) ((Map) response.get("data")).get("padIDs");
+
+        assertEquals(50000, padIDs.size());
+        assertEquals("g.F2Tl1IeT8UXipnEw$pad-49999", padIDs.get(49999));
+    }
+}
@@ -0,0 +1,102 @@
+package net.gjerull.etherpad.client;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class JsonReaderTest {
+
+    @Test
+    public void reads_an_api_response_token_by_token() throws Exception {
+        JsonReader reader = new JsonReader(
+                "{\"code\": 0, \"message\": \"ok\", \"data\": {\"text\": \"line 1\\nline \\u00e6\", \"rev\": -12, \"ok\": true, \"none\": null, \"pi\": 3.14}}");
+
+        reader.beginObject();
+        assertEquals("code", reader.nextName());
+        assertEquals(0L, reader.nextLong());
+        assertEquals("message", reader.nextName());
+        assertEquals("ok", reader.nextString());
+        assertEquals("data", reader.nextName());
+        reader.beginObject();
+        assertEquals("text", reader.nextName());
+        assertEquals("line 1\nline æ", reader.nextString());
+        assertEquals("rev", reader.nextName());
+        assertEquals(Long.valueOf(-12), reader.nextNumber());
+        assertEquals("ok", reader.nextName());
+        assertTrue(reader.nextBoolean());
+        assertEquals("none", reader.nextName());
+        reader.nextNull();
+        assertEquals("pi", reader.nextName());
+        assertEquals(Double.valueOf(3.14), reader.nextNumber());
+        assertFalse(reader.hasNext());
+        reader.endObject();
+        reader.endObject();
+        assertEquals(JsonReader.END_DOCUMENT, reader.peek());
+        reader.close();
+    }
+
+    @Test
+    public void strings_spanning_the_read_buffer_are_joined() throws Exception {
+        StringBuilder longText = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            longText.append("ab\\\"");
+        }
+        JsonReader reader = new JsonReader(new StringReader("[\"" + longText + "\", 1]"));
+
+        reader.beginArray();
+        String value = reader.nextString();
+        assertEquals(15000, value.length());
+        assertTrue(value.startsWith("ab\"ab\""));
+        assertEquals(1L, reader.nextLong());
+        reader.endArray();
+        reader.close();
+    }
+
+    @Test
+    public void skips_nested_values() throws Exception {
+        JsonReader reader = new JsonReader("{\"skip\": {\"a\": [1, {\"b\": \"}\"}], \"c\": false}, \"keep\": [\"x\", \"y\"]}");
+        List<String> kept = new ArrayList<>();
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (reader.nextNameEquals("keep")) {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    kept.add(reader.nextString());
+                }
+                reader.endArray();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        assertEquals(Arrays.asList("x", "y"), kept);
+    }
+
+    @Test
+    public void rejects_malformed_input() throws Exception {
+        assertMalformed("<html><body>Some HTML</body></html>");
+        assertMalformed("{\"code\" 0}");
+        assertMalformed("[1 2]");
+        assertMalformed("{\"text\": \"unterminated");
+        assertMalformed("{} {}");
+    }
+
+    private static void assertMalformed(String json) throws IOException {
+        JsonReader reader = new JsonReader(json);
+        try {
+            reader.skipValue();
+            reader.peek();
+            fail("Expected '" + JsonReader.MalformedJsonException.class.getName() + "' for " + json);
+        } catch (JsonReader.MalformedJsonException e) {
+            assertTrue(e.getOffset() >= 0);
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package net.gjerull.etherpad.client;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+public class MapperCacheTest {
+    private FakeEtherpadServer etherpad;
+    private EPLiteClient client;
+    private File file;
+
+    @Before
+    public void setUp() throws Exception {
+        this.etherpad = new FakeEtherpadServer("apikey");
+        this.client = new EPLiteClient(this.etherpad.getUrl(), "apikey");
+        this.file = File.createTempFile("mappers", ".txt");
+        this.file.delete();
+    }
+
+    @After
+    public void tearDown() {
+        this.etherpad.stop();
+        this.file.delete();
+    }
+
+    @Test
+    public void mappers_are_looked_up_once() throws Exception {
+        MapperCache mappers = new MapperCache(this.client);
+        String groupID = mappers.getGroupID("course 1");
+        long requests = this.etherpad.getRequestCount();
+        assertEquals(groupID, mappers.getGroupID("course 1"));
+        assertEquals(groupID, this.client.createGroupIfNotExistsFor("course 1").get("groupID"));
+        assertEquals(requests + 1, this.etherpad.getRequestCount());
+
+        String authorID = mappers.getAuthorID("user 1", "Ada");
+        assertEquals(authorID, mappers.getAuthorID("user 1", "Ada"));
+        assertEquals("Ada", this.client.getAuthorName(authorID));
+        assertEquals(2, mappers.getCalls());
+        assertEquals(2, mappers.getHits());
+    }
+
+    @Test
+    public void mappings_are_read_back_from_the_file() throws Exception {
+        MapperCache first = new MapperCache(this.client, this.file);
+        String groupID = first.getGroupID("course 1");
+        String authorID = first.getAuthorID("user\n1 é", null);
+        first.getGroupID("course 2");
+        first.forgetGroup("course 2");
+        first.close();
+
+        long requests = this.etherpad.getRequestCount();
+        MapperCache second = new MapperCache(this.client, this.file);
+        assertEquals(groupID, second.getGroupID("course 1"));
+        assertEquals(authorID, second.getAuthorID("user\n1 é", null));
+        assertEquals(requests, this.etherpad.getRequestCount());
+
+        second.getGroupID("course 2");
+        assertEquals(requests + 1, this.etherpad.getRequestCount());
+        second.close();
+    }
+
+    @Test
+    public void a_line_cut_short_is_skipped() throws Exception {
+        OutputStream out = new FileOutputStream(this.file);
+        out.write("group course+1 g.complete\ngroup course+2 g.cut".getBytes(Charset.forName("UTF-8")));
+        out.close();
+
+        MapperCache first = new MapperCache(this.client, this.file);
+        assertEquals("g.complete", first.getGroupID("course 1"));
+        String groupID = first.getGroupID("course 2");
+        assertNotEquals("g.cut", groupID);
+        first.close();
+
+        MapperCache second = new MapperCache(this.client, this.file);
+        assertEquals(groupID, second.getGroupID("course 2"));
+        assertEquals(0, second.getCalls());
+        second.close();
+    }
+
+    @Test
+    public void corrupt_lines_are_skipped() throws Exception {
+        OutputStream out = new FileOutputStream(this.file);
+        out.write("group course%ZZ1 g.corrupt\ngarbage\ngroup course+1 g.complete\n"
+                .getBytes(Charset.forName("UTF-8")));
+        out.close();
+
+        MapperCache mappers = new MapperCache(this.client, this.file);
+        assertEquals("g.complete", mappers.getGroupID("course 1"));
+        assertEquals(0, mappers.getCalls());
+        mappers.close();
+    }
+
+    @Test
+    public void forgotten_mappers_are_compacted_away() throws Exception {
+        MapperCache first = new MapperCache(this.client, this.file);
+        String groupID = first.getGroupID("course 1");
+        for (int i = 2; i < 10; i++) {
+            first.getGroupID("course " + i);
+            first.forgetGroup("course " + i);
+        }
+        first.close();
+        assertEquals(17, lines(this.file).size());
+
+        MapperCache second = new MapperCache(this.client, this.file);
+        second.close();
+        assertEquals(Arrays.asList("group course+1 " + groupID), lines(this.file));
+        assertFalse(new File(this.file.getPath() + ".tmp").exists());
+
+        MapperCache third = new MapperCache(this.client, this.file);
+        assertEquals(groupID, third.getGroupID("course 1"));
+        assertEquals(0, third.getCalls());
+        third.close();
+    }
+
+    @Test
+    public void concurrent_misses_make_one_call() throws Exception {
+        final MapperCache mappers = new MapperCache(this.client);
+        this.etherpad.setLatency("createAuthorIfNotExistsFor", 100);
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                results.add(executor.submit(new Callable<String>() {
+                    public String call() throws Exception {
+                        start.await();
+                        return mappers.getAuthorID("user 1", "Ada");
+                    }
+                }));
+            }
+            start.countDown();
+            Set<String> authorIDs = new HashSet<>();
+            for (Future<String> result : results) {
+                authorIDs.add(result.get());
+            }
+            assertEquals(1, authorIDs.size());
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(1, mappers.getCalls());
+        assertEquals(15, mappers.getHits());
+    }
+
+    @Test
+    public void failed_lookups_are_tried_again() throws Exception {
+        MapperCache mappers = new MapperCache(this.client);
+        this.etherpad.failNext("createGroupIfNotExistsFor", 2, "internal error");
+        try {
+            mappers.getGroupID("course 1");
+            fail("Expected the failed call to be thrown");
+        } catch (EPLiteException e) {
+            assertEquals("internal error", e.getMessage());
+        }
+        assertNotNull(mappers.getGroupID("course 1"));
+        assertEquals(2, mappers.getCalls());
+    }
+
+    private static List<String> lines(File file) throws Exception {
+        return Files.readAllLines(file.toPath(), Charset.forName("UTF-8"));
+    }
+}
@@ -0,0 +1,172 @@
+package net.gjerull.etherpad.client;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.Test;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class MetricsTest {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    @Test
+    public void histogram_buckets_cover_their_values() throws Exception {
+        for (long value = 0; value < 1L << 20; value += 1 + value / 7) {
+            int index = LatencyHistogram.index(value);
+            assertTrue(value <= LatencyHistogram.highestValue(index));
+            if (index > 0) {
+                assertTrue(value > LatencyHistogram.highestValue(index - 1));
+            }
+            // Within about 6% of the value
+            assertTrue(LatencyHistogram.highestValue(index) - value <= Math.max(1, value / 16));
+        }
+    }
+
+    @Test
+    public void histogram_percentiles() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int millis = 1; millis <= 100; millis++) {
+            histogram.record(TimeUnit.MILLISECONDS.toNanos(millis));
+        }
+
+        assertEquals(100, histogram.getCount());
+        assertEquals(100, histogram.getMax(TimeUnit.MILLISECONDS));
+        assertEquals(5050, histogram.getSum(TimeUnit.MILLISECONDS));
+        assertEquals(50, histogram.getValueAtPercentile(50) / 1e6, 50 * 0.07);
+        assertEquals(99, histogram.getValueAtPercentile(99) / 1e6, 99 * 0.07);
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(100), histogram.getValueAtPercentile(100));
+        assertEquals(10, histogram.getCountAtOrBelow(TimeUnit.MILLISECONDS.toNanos(10)), 1);
+        assertEquals(0, new LatencyHistogram().getValueAtPercentile(99));
+    }
+
+    @Test
+    public void registry_counts_calls_by_code() throws Exception {
+        HttpServer etherpad = startEtherpad(
+                "{\"code\":0,\"message\":\"ok\",\"data\":{\"text\":\"hello\"}}",
+                "{\"code\":1,\"message\":\"padID does not exist\",\"data\":null}");
+        try {
+            String url = "http://localhost:" + etherpad.getAddress().getPort();
+            MetricsRegistry metrics = new MetricsRegistry();
+            EPLiteClient client = new EPLiteClient(url, "apikey");
+            client.setMetricsListener(metrics);
+
+            client.getText("g.pad");
+            assertFalse(client.tryGetText("g.pad").isOk());
+
+            MethodMetrics getText = metrics.get(url, "getText");
+            assertEquals(2, getText.getCalls());
+            assertEquals(1, getText.getErrors());
+            assertEquals(Long.valueOf(1), getText.getCallsByCode().get(EPLiteConnection.CODE_OK));
+            assertEquals(Long.valueOf(1), getText.getCallsByCode().get(1));
+            assertEquals(2, getText.getLatency().getCount());
+            assertEquals(0, getText.getInFlight());
+            assertTrue(getText.getRequestBytes() > 2 * "/api/1.2.12/getText?apikey=apikey".length());
+            assertTrue(getText.getResponseBytes() > 100);
+        } finally {
+            etherpad.stop(0);
+        }
+    }
+
+    @Test
+    public void streamed_ids_are_counted_by_the_code_in_the_response() throws Exception {
+        HttpServer etherpad = startEtherpad(
+                "{\"code\":0,\"message\":\"ok\",\"data\":{\"padIDs\":[\"a\",\"b\"]}}",
+                "{\"code\":4,\"message\":\"no or wrong API Key\",\"data\":null}");
+        try {
+            String url = "http://localhost:" + etherpad.getAddress().getPort();
+            MetricsRegistry metrics = new MetricsRegistry();
+            EPLiteClient client = new EPLiteClient(url, "apikey");
+            client.setMetricsListener(metrics);
+
+            IdIterator padIds = client.iterateAllPads();
+            assertEquals("a", padIds.next());
+            padIds.close();
+            try {
+                client.iterateAllPads();
+                fail("Expected the wrong API key to be thrown");
+            } catch (EPLiteException e) {
+                assertEquals("no or wrong API Key", e.getMessage());
+            }
+
+            MethodMetrics listAllPads = metrics.get(url, "listAllPads");
+            assertEquals(2, listAllPads.getCalls());
+            assertEquals(1, listAllPads.getErrors());
+            assertEquals(Long.valueOf(1), listAllPads.getCallsByCode().get(EPLiteConnection.CODE_OK));
+            assertEquals(Long.valueOf(1), listAllPads.getCallsByCode().get(EPLiteConnection.CODE_INVALID_API_KEY));
+            assertEquals(0, listAllPads.getInFlight());
+        } finally {
+            etherpad.stop(0);
+        }
+    }
+
+    @Test
+    public void failed_connections_count_as_client_errors() throws Exception {
+        MetricsRegistry metrics = new MetricsRegistry();
+        EPLiteClient client = new EPLiteClient("http://localhost:1", "apikey");
+        client.setMetricsListener(metrics);
+
+        assertFalse(client.tryGetText("g.pad").isOk());
+
+        MethodMetrics getText = metrics.get("http://localhost:1", "getText");
+        assertEquals(Long.valueOf(1), getText.getCallsByCode().get(EPLiteConnection.CODE_CLIENT_ERROR));
+        assertEquals(0, getText.getInFlight());
+    }
+
+    @Test
+    public void exporter_serves_the_prometheus_format() throws Exception {
+        MetricsRegistry metrics = new MetricsRegistry();
+        metrics.callStarted("http://etherpad", "getText");
+        metrics.callFinished("http://etherpad", "getText", 0, TimeUnit.MILLISECONDS.toNanos(3), 40, 60);
+        metrics.callStarted("http://etherpad", "createPad");
+
+        PrometheusExporter exporter = new PrometheusExporter(metrics, new InetSocketAddress("localhost", 0));
+        String text;
+        try {
+            InputStream in = new URL("http://localhost:" + exporter.getPort() + "/metrics").openStream();
+            text = new Scanner(in, "UTF-8").useDelimiter("\\A").next();
+            in.close();
+        } finally {
+            exporter.stop();
+        }
+
+        String labels = "endpoint=\"http://etherpad\",method=\"getText\"";
+        assertTrue(text.contains("# TYPE etherpad_client_request_duration_seconds histogram\n"));
+        assertTrue(text.contains("etherpad_client_request_duration_seconds_bucket{" + labels + ",le=\"0.0025\"} 0\n"));
+        assertTrue(text.contains("etherpad_client_request_duration_seconds_bucket{" + labels + ",le=\"0.005\"} 1\n"));
+        assertTrue(text.contains("etherpad_client_request_duration_seconds_bucket{" + labels + ",le=\"+Inf\"} 1\n"));
+        assertTrue(text.contains("etherpad_client_request_duration_seconds_count{" + labels + "} 1\n"));
+        assertTrue(text.contains("etherpad_client_requests_total{" + labels + ",code=\"0\"} 1\n"));
+        assertTrue(text.contains("etherpad_client_request_bytes_total{" + labels + "} 40\n"));
+        assertTrue(text.contains("etherpad_client_response_bytes_total{" + labels + "} 60\n"));
+        assertTrue(text.contains("etherpad_client_requests_in_flight{endpoint=\"http://etherpad\",method=\"createPad\"} 1\n"));
+    }
+
+    /**
+     * Starts a server answering the given responses in turn, the last one repeatedly.
+     */
+    private static HttpServer startEtherpad(final String... responses) throws Exception {
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            private int calls;
+
+            public void handle(HttpExchange exchange) throws java.io.IOException {
+                byte[] body = responses[Math.min(this.calls++, responses.length - 1)].getBytes(UTF_8);
+                exchange.sendResponseHeaders(200, body.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(body);
+                out.close();
+            }
+        });
+        server.start();
+        return server;
+    }
+}
@@ -0,0 +1,238 @@
+package net.gjerull.etherpad.client;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.Assert.*;
+
+public class PadExistenceCacheTest {
+    private FakePadsClient client;
+    private PadExistenceCache cache;
+
+    private static class FakePadsClient extends EPLiteClient {
+        final Set<String> pads = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        int revisionCountCalls;
+
+        FakePadsClient() {
+            super("http://localhost:9001", "apikey");
+        }
+
+        @Override
+        public IdIterator iterateAllPads() {
+            StringBuilder json = new StringBuilder("{\"code\":0,\"message\":\"ok\",\"data\":{\"padIDs\":[");
+            String separator = "";
+            for (String pad : pads) {
+                json.append(separator).append('"').append(pad).append('"');
+                separator = ",";
+            }
+            json.append("]}}");
+            return new IdIterator(new JsonReader(json.toString()), "padIDs");
+        }
+
+        @Override
+        public EPLiteResult<Map> tryGetRevisionsCount(String padId) {
+            revisionCountCalls++;
+            if (!pads.contains(padId)) {
+                return EPLiteResult.error(EPLiteConnection.CODE_INVALID_PARAMETERS, "padID does not exist");
+            }
+            Map<String, Object> result = new HashMap<>();
+            result.put("revisions", 0L);
+            return EPLiteResult.<Map>ok(result);
+        }
+
+        @Override
+        public void createPad(String padId) {
+            pads.add(padId);
+        }
+
+        @Override
+        public Map createGroupPad(String groupID, String padName) {
+            pads.add(groupID + "$" + padName);
+            return new HashMap();
+        }
+
+        @Override
+        public void deletePad(String padId) {
+            pads.remove(padId);
+        }
+
+        @Override
+        public void movePad(String sourcePadId, String destinationPadId, boolean force) {
+            pads.remove(sourcePadId);
+            pads.add(destinationPadId);
+        }
+    }
+
+    @Before
+    public void setUp() {
+        this.client = new FakePadsClient();
+        for (int i = 0; i < 1000; i++) {
+            client.pads.add("pad-" + i);
+        }
+        this.cache = new PadExistenceCache(client, 1000, 0.001, 60000);
+    }
+
+    @Test
+    public void unknown_pads_are_answered_without_the_server() throws Exception {
+        cache.refresh();
+
+        int missing = 0;
+        for (int i = 0; i < 1000; i++) {
+            if (!cache.padExists("other-" + i)) {
+                missing++;
+            }
+        }
+
+        assertEquals(1000, missing);
+        assertEquals(cache.getServerChecks(), client.revisionCountCalls);
+        assertTrue("Server checks: " + cache.getServerChecks(), cache.getServerChecks() < 20);
+    }
+
+    @Test
+    public void known_pads_are_confirmed_by_the_server() throws Exception {
+        cache.refresh();
+
+        assertTrue(cache.padExists("pad-1"));
+        assertEquals(1, client.revisionCountCalls);
+
+        cache.setVerifyPositives(false);
+        assertTrue(cache.padExists("pad-2"));
+        assertEquals(1, client.revisionCountCalls);
+    }
+
+    @Test
+    public void misses_from_the_server_are_cached() throws Exception {
+        cache.refresh();
+        client.pads.remove("pad-5");
+
+        assertFalse(cache.padExists("pad-5"));
+        assertFalse(cache.padExists("pad-5"));
+
+        assertEquals(1, client.revisionCountCalls);
+        assertEquals(1, cache.getNegativeHits());
+    }
+
+    @Test
+    public void writes_update_the_cache() throws Exception {
+        cache.refresh();
+        cache.setVerifyPositives(false);
+
+        cache.createPad("new-pad");
+        cache.createGroupPad("g.abc", "notes");
+        cache.deletePad("pad-1");
+        cache.movePad("pad-2", "moved-pad", false);
+
+        assertTrue(cache.padExists("new-pad"));
+        assertTrue(cache.padExists("g.abc$notes"));
+        assertTrue(cache.padExists("moved-pad"));
+        assertFalse(cache.padExists("pad-1"));
+        assertFalse(cache.padExists("pad-2"));
+        assertEquals(0, client.revisionCountCalls);
+    }
+
+    @Test
+    public void pads_created_during_a_refresh_are_kept() throws Exception {
+        cache.refresh();
+        cache.setVerifyPositives(false);
+        final Iterator<String> listing = new ArrayList<>(client.pads).iterator();
+
+        cache.refresh(new Iterator<String>() {
+            public boolean hasNext() {
+                return listing.hasNext();
+            }
+
+            public String next() {
+                if (!listing.hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                String padId = listing.next();
+                if (padId.equals("pad-500")) {
+                    cache.createPad("created-while-listing");
+                }
+                return padId;
+            }
+
+            public void remove() {
+                throw new UnsupportedOperationException("remove");
+            }
+        });
+
+        assertTrue(cache.padExists("created-while-listing"));
+        assertEquals(0, client.revisionCountCalls);
+    }
+
+    @Test
+    public void misses_are_confirmed_once_the_filter_is_too_old() throws Exception {
+        cache.refresh();
+        client.pads.add("created-elsewhere");
+        assertFalse(cache.padExists("created-elsewhere"));
+        assertEquals(0, client.revisionCountCalls);
+
+        cache.setMaxFilterAge(10);
+        Thread.sleep(20);
+        assertTrue(cache.padExists("created-elsewhere"));
+        assertEquals(1, client.revisionCountCalls);
+    }
+
+    @Test
+    public void pads_written_with_the_bare_client_are_tracked() throws Exception {
+        FakeEtherpadServer etherpad = new FakeEtherpadServer("apikey");
+        EPLiteClient bare = new EPLiteClient(etherpad.getUrl(), "apikey");
+        PadExistenceCache pads = new PadExistenceCache(bare, 1000, 0.001, 60000);
+        BatchClient batch = new BatchClient(bare, 2, 0);
+        try {
+            bare.createPad("existing");
+            pads.refresh();
+            pads.setMaxFilterAge(0);
+
+            bare.createPad("created");
+            String groupID = (String) bare.createGroup().get("groupID");
+            bare.createGroupPad(groupID, "notes");
+            bare.copyPad("existing", "copied");
+            batch.createPads(Arrays.asList("batch-1", "batch-2")).await();
+            bare.deletePad("existing");
+
+            for (String padId : Arrays.asList("created", groupID + "$notes", "copied", "batch-1", "batch-2")) {
+                assertTrue(padId, pads.padExists(padId));
+            }
+            assertFalse(pads.padExists("existing"));
+
+            pads.close();
+            bare.createPad("after-close");
+            assertFalse(pads.padExists("after-close"));
+        } finally {
+            batch.shutdown();
+            etherpad.stop();
+        }
+    }
+
+    @Test
+    public void every_check_goes_to_the_server_before_refresh() throws Exception {
+        assertTrue(cache.padExists("pad-1"));
+        assertFalse(cache.padExists("other"));
+
+        assertEquals(2, client.revisionCountCalls);
+    }
+
+    @Test(expected = EPLiteException.class)
+    public void other_errors_are_thrown() throws Exception {
+        PadExistenceCache failing = new PadExistenceCache(new FakePadsClient() {
+            @Override
+            public EPLiteResult<Map> tryGetRevisionsCount(String padId) {
+                return EPLiteResult.error(EPLiteConnection.CODE_INVALID_API_KEY, "no or wrong API Key");
+            }
+        }, 10, 0.01, 1000);
+
+        failing.padExists("pad");
+    }
+}
@@ -0,0 +1,140 @@
+package net.gjerull.etherpad.client;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.Assert.*;
+
+public class PadIdIndexTest {
+    private static final String GROUP_1 = "g.oln5fzaE8qfv4gdE";
+    private static final String GROUP_2 = "g.9v9F9kaoGb6tNzTs";
+
+    @Test
+    public void contains_every_id_it_was_built_from() throws Exception {
+        List<String> padIds = randomPadIds(2000);
+        PadIdIndex index = PadIdIndex.build(padIds.iterator());
+
+        assertEquals(new TreeSet<>(padIds).size(), index.size());
+        for (String padId : padIds) {
+            assertTrue(padId, index.contains(padId));
+        }
+        assertFalse(index.contains(GROUP_1 + "$missing"));
+        assertFalse(index.contains(""));
+        assertFalse(index.contains("zzz"));
+    }
+
+    @Test
+    public void iterates_in_sorted_order() throws Exception {
+        List<String> padIds = randomPadIds(500);
+        PadIdIndex index = PadIdIndex.build(padIds.iterator());
+
+        assertEquals(new ArrayList<>(new TreeSet<>(padIds)), drain(index.iterator()));
+    }
+
+    @Test
+    public void lists_the_pads_of_a_group() throws Exception {
+        PadIdIndex index = PadIdIndex.build(Arrays.asList(
+                GROUP_2 + "$b", "plain-pad", GROUP_1 + "$notes", GROUP_1 + "$agenda", GROUP_2 + "$a",
+                GROUP_1 + "x$not-in-group").iterator());
+
+        assertEquals(Arrays.asList(GROUP_1 + "$agenda", GROUP_1 + "$notes"), index.padsOfGroup(GROUP_1));
+        assertEquals(Arrays.asList(GROUP_2 + "$a", GROUP_2 + "$b"), index.padsOfGroup(GROUP_2));
+        assertEquals(Collections.<String>emptyList(), index.padsOfGroup("g.nothing"));
+    }
+
+    @Test
+    public void added_and_removed_ids_are_visible_before_and_after_compaction() throws Exception {
+        PadIdIndex index = PadIdIndex.build(Arrays.asList(GROUP_1 + "$a", GROUP_1 + "$c", "pad").iterator());
+
+        index.add(GROUP_1 + "$b");
+        index.remove(GROUP_1 + "$c");
+        index.remove("not-there");
+
+        assertTrue(index.contains(GROUP_1 + "$b"));
+        assertFalse(index.contains(GROUP_1 + "$c"));
+        assertEquals(3, index.size());
+        assertEquals(Arrays.asList(GROUP_1 + "$a", GROUP_1 + "$b"), index.padsOfGroup(GROUP_1));
+
+        index.compact();
+
+        assertEquals(Arrays.asList(GROUP_1 + "$a", GROUP_1 + "$b", "pad"), drain(index.iterator()));
+        assertEquals(3, index.size());
+    }
+
+    @Test
+    public void refresh_applies_only_the_differences() throws Exception {
+        PadIdIndex index = PadIdIndex.build(Arrays.asList("a", "b", "c").iterator());
+        index.add("d");
+
+        index.refresh(Arrays.asList("e", "c", "a").iterator());
+
+        assertEquals(Arrays.asList("a", "c", "e"), drain(index.iterator()));
+        assertFalse(index.contains("b"));
+        assertFalse(index.contains("d"));
+        assertEquals(3, index.size());
+    }
+
+    @Test
+    public void non_ascii_ids_round_trip() throws Exception {
+        List<String> padIds = Arrays.asList("gå-til-møte", "gå-til-måne", "日本語のパッド", "😀-pad");
+        PadIdIndex index = PadIdIndex.build(padIds.iterator());
+
+        for (String padId : padIds) {
+            assertTrue(padId, index.contains(padId));
+        }
+        assertEquals(new ArrayList<>(new TreeSet<>(padIds)), drain(index.iterator()));
+    }
+
+    @Test
+    public void empty_index() throws Exception {
+        PadIdIndex index = PadIdIndex.build(Collections.<String>emptyList().iterator());
+
+        assertEquals(0, index.size());
+        assertFalse(index.contains("pad"));
+        assertFalse(index.iterator().hasNext());
+    }
+
+    @Test
+    public void group_pads_take_less_memory_than_strings() throws Exception {
+        List<String> padIds = randomPadIds(10000);
+        PadIdIndex index = PadIdIndex.build(padIds.iterator());
+
+        long stringBytes = 0;
+        for (String padId : new TreeSet<>(padIds)) {
+            stringBytes += 40 + 2L * padId.length();
+        }
+        assertTrue(index.estimatedBytes() + " vs " + stringBytes, index.estimatedBytes() * 3 < stringBytes);
+    }
+
+    private static List<String> randomPadIds(int count) {
+        Random random = new Random(42);
+        List<String> groups = new ArrayList<>();
+        for (int i = 0; i < count / 20 + 1; i++) {
+            StringBuilder group = new StringBuilder("g.");
+            for (int j = 0; j < 16; j++) {
+                group.append((char) ('a' + random.nextInt(26)));
+            }
+            groups.add(group.toString());
+        }
+        List<String> padIds = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            padIds.add(groups.get(random.nextInt(groups.size())) + "$pad-" + random.nextInt(100));
+        }
+        return padIds;
+    }
+
+    private static List<String> drain(Iterator<String> it) {
+        List<String> result = new ArrayList<>();
+        while (it.hasNext()) {
+            result.add(it.next());
+        }
+        return result;
+    }
+}
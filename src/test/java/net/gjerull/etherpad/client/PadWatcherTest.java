@@ -0,0 +1,142 @@
+package net.gjerull.etherpad.client;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.*;
+
+public class PadWatcherTest {
+    private FakeEtherpadServer etherpad;
+    private EPLiteClient client;
+    private PadWatcher watcher;
+    private final List<String> changed = new CopyOnWriteArrayList<>();
+    private final List<String> failures = new CopyOnWriteArrayList<>();
+
+    @Before
+    public void setUp() throws Exception {
+        this.etherpad = new FakeEtherpadServer("apikey");
+        this.client = new EPLiteClient(this.etherpad.getUrl(), "apikey");
+        this.client.createPad("pad");
+        this.watcher = new PadWatcher(this.client, 2, 0, 20, 160);
+        this.watcher.addListener(new PadActivityListener() {
+            public void padChanged(String padId, long lastEdited, int userCount) {
+                changed.add(padId);
+            }
+
+            public void pollFailed(String padId, EPLiteException error) {
+                failures.add(padId + " " + error.getMessage());
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        this.watcher.shutdown();
+        this.etherpad.stop();
+    }
+
+    @Test
+    public void idle_pads_back_off_and_edited_pads_speed_up() throws Exception {
+        this.watcher.watch("pad");
+        await("pad", 160);
+        assertTrue(this.changed.isEmpty());
+
+        Thread.sleep(5);
+        this.client.setText("pad", "edited");
+        long deadline = System.currentTimeMillis() + 5000;
+        while (this.changed.isEmpty()) {
+            assertTrue("Timed out waiting for the edit", System.currentTimeMillis() < deadline);
+            Thread.sleep(5);
+        }
+        assertEquals("pad", this.changed.get(0));
+        assertEquals(1, this.watcher.getChanges());
+        assertTrue(this.watcher.getIntervalMillis("pad") < 160);
+    }
+
+    @Test
+    public void a_failing_listener_does_not_keep_the_change_from_the_others() throws Exception {
+        final List<String> afterFailing = new CopyOnWriteArrayList<>();
+        PadWatcher slow = new PadWatcher(this.client, 2, 0, 100, 400);
+        slow.addListener(new PadActivityListener() {
+            public void padChanged(String padId, long lastEdited, int userCount) {
+                throw new IllegalStateException("listener failure");
+            }
+
+            public void pollFailed(String padId, EPLiteException error) {
+            }
+        });
+        slow.addListener(new PadActivityListener() {
+            public void padChanged(String padId, long lastEdited, int userCount) {
+                afterFailing.add(padId);
+            }
+
+            public void pollFailed(String padId, EPLiteException error) {
+            }
+        });
+        try {
+            slow.watch("pad");
+            await(slow, "pad", 400);
+
+            Thread.sleep(5);
+            this.client.setText("pad", "edited");
+            long deadline = System.currentTimeMillis() + 5000;
+            while (afterFailing.isEmpty()) {
+                assertTrue("Timed out waiting for the edit", System.currentTimeMillis() < deadline);
+                Thread.sleep(5);
+            }
+            assertEquals("pad", afterFailing.get(0));
+            assertEquals(1, slow.getChanges());
+            // The failure doesn't count as an idle poll: the pad is polled at the shortest interval again
+            await(slow, "pad", 100);
+        } finally {
+            slow.shutdown();
+        }
+    }
+
+    @Test
+    public void polls_share_the_request_budget() throws Exception {
+        PadWatcher limited = new PadWatcher(this.client, 4, 40, 10, 10);
+        try {
+            for (int i = 0; i < 50; i++) {
+                limited.watch("pad");
+                limited.watch("pad-" + i);
+            }
+            assertEquals(51, limited.getWatchedCount());
+            Thread.sleep(500);
+            // Two requests a poll at 40 requests a second, with a little slack for the first permit
+            assertTrue(limited.getPolls() + " polls", limited.getPolls() <= 12);
+        } finally {
+            limited.shutdown();
+        }
+    }
+
+    @Test
+    public void failed_polls_are_reported_and_backed_off() throws Exception {
+        this.watcher.watch("missing");
+        await("missing", 160);
+        assertFalse(this.failures.isEmpty());
+        assertEquals("missing padID does not exist", this.failures.get(0));
+
+        this.watcher.unwatch("missing");
+        assertNull(this.watcher.getIntervalMillis("missing"));
+        int failed = this.failures.size();
+        Thread.sleep(400);
+        assertTrue(this.failures.size() <= failed + 1);
+    }
+
+    private void await(String padId, long intervalMillis) throws InterruptedException {
+        await(this.watcher, padId, intervalMillis);
+    }
+
+    private static void await(PadWatcher watcher, String padId, long intervalMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (watcher.getIntervalMillis(padId) != intervalMillis) {
+            assertTrue("Timed out waiting for interval " + intervalMillis, System.currentTimeMillis() < deadline);
+            Thread.sleep(5);
+        }
+    }
+}
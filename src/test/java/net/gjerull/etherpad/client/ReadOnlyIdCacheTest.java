@@ -0,0 +1,148 @@
+package net.gjerull.etherpad.client;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+public class ReadOnlyIdCacheTest {
+    private FakeEtherpadServer etherpad;
+    private EPLiteClient client;
+    private ReadOnlyIdCache cache;
+
+    @Before
+    public void setUp() throws Exception {
+        this.etherpad = new FakeEtherpadServer("apikey");
+        this.client = new EPLiteClient(this.etherpad.getUrl(), "apikey");
+        this.cache = new ReadOnlyIdCache(this.client, 1000);
+        this.client.createPad("pad");
+    }
+
+    @After
+    public void tearDown() {
+        this.etherpad.stop();
+    }
+
+    @Test
+    public void mappings_answer_both_directions() throws Exception {
+        String readOnlyId = this.cache.getReadOnlyID("pad");
+        long requests = this.etherpad.getRequestCount();
+        assertEquals(readOnlyId, this.cache.getReadOnlyID("pad"));
+        assertEquals("pad", this.cache.getPadID(readOnlyId));
+        assertEquals(requests, this.etherpad.getRequestCount());
+
+        this.client.createPad("other");
+        String otherReadOnlyId = (String) this.client.getReadOnlyID("other").get("readOnlyID");
+        assertEquals("other", this.cache.getPadID(otherReadOnlyId));
+        assertEquals(otherReadOnlyId, this.cache.getReadOnlyID("other"));
+        assertEquals(3, this.cache.getHits());
+        assertEquals(2, this.cache.getMisses());
+    }
+
+    @Test
+    public void deleted_and_moved_pads_are_forgotten() throws Exception {
+        String readOnlyId = this.cache.getReadOnlyID("pad");
+        this.cache.deletePad("pad");
+        try {
+            this.cache.getPadID(readOnlyId);
+            fail("Expected the read only id of a deleted pad to be unknown");
+        } catch (EPLiteException e) {
+            assertEquals("padID does not exist", e.getMessage());
+        }
+
+        this.client.createPad("source");
+        this.client.createPad("destination");
+        String destinationReadOnlyId = this.cache.getReadOnlyID("destination");
+        this.cache.getReadOnlyID("source");
+        this.cache.movePad("source", "destination", true);
+        long misses = this.cache.getMisses();
+        assertNotEquals(destinationReadOnlyId, this.cache.getReadOnlyID("destination"));
+        assertEquals(misses + 1, this.cache.getMisses());
+    }
+
+    @Test
+    public void groups_can_be_prefetched() throws Exception {
+        String groupID = (String) this.client.createGroup().get("groupID");
+        for (int i = 0; i < 5; i++) {
+            this.client.createGroupPad(groupID, "pad-" + i);
+        }
+        this.cache.getReadOnlyID(groupID + "$pad-0");
+
+        assertEquals(4, this.cache.prefetchGroup(groupID));
+        long requests = this.etherpad.getRequestCount();
+        for (int i = 0; i < 5; i++) {
+            String readOnlyId = this.cache.getReadOnlyID(groupID + "$pad-" + i);
+            assertEquals(groupID + "$pad-" + i, this.cache.getPadID(readOnlyId));
+        }
+        assertEquals(requests, this.etherpad.getRequestCount());
+        assertEquals(0, this.cache.prefetchGroup(groupID));
+    }
+
+    @Test
+    public void lookups_racing_a_deletion_do_not_bring_the_pad_back() throws Exception {
+        final CountDownLatch looking = new CountDownLatch(1);
+        final CountDownLatch deleted = new CountDownLatch(1);
+        EPLiteClient slowClient = new EPLiteClient(this.etherpad.getUrl(), "apikey") {
+            @Override
+            public Map getReadOnlyID(String padId) {
+                Map response = super.getReadOnlyID(padId);
+                looking.countDown();
+                try {
+                    deleted.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return response;
+            }
+        };
+        final ReadOnlyIdCache racing = new ReadOnlyIdCache(slowClient, 1000);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<String> lookup = executor.submit(new Callable<String>() {
+                public String call() {
+                    return racing.getReadOnlyID("pad");
+                }
+            });
+            looking.await();
+            racing.deletePad("pad");
+            deleted.countDown();
+            String staleReadOnlyId = lookup.get();
+
+            this.client.createPad("pad");
+            try {
+                racing.getPadID(staleReadOnlyId);
+                fail("Expected the read only id of the deleted pad to be unknown");
+            } catch (EPLiteException e) {
+                assertEquals("padID does not exist", e.getMessage());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void the_least_recently_used_pads_are_evicted() throws Exception {
+        ReadOnlyIdCache small = new ReadOnlyIdCache(this.client, 2);
+        this.client.createPad("second");
+        this.client.createPad("third");
+        String readOnlyId = small.getReadOnlyID("pad");
+        small.getReadOnlyID("second");
+        small.getPadID(readOnlyId);
+        small.getReadOnlyID("third");
+
+        long misses = small.getMisses();
+        assertEquals(readOnlyId, small.getReadOnlyID("pad"));
+        small.getReadOnlyID("third");
+        assertEquals(misses, small.getMisses());
+        small.getReadOnlyID("second");
+        assertEquals(misses + 1, small.getMisses());
+    }
+}
@@ -0,0 +1,128 @@
+package net.gjerull.etherpad.client;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+public class SessionManagerTest {
+    private FakeEtherpadServer etherpad;
+    private EPLiteClient client;
+    private String groupID;
+    private String authorID;
+
+    @Before
+    public void setUp() throws Exception {
+        this.etherpad = new FakeEtherpadServer("apikey");
+        this.client = new EPLiteClient(this.etherpad.getUrl(), "apikey");
+        this.groupID = (String) this.client.createGroup().get("groupID");
+        this.authorID = (String) this.client.createAuthor("Ada").get("authorID");
+    }
+
+    @After
+    public void tearDown() {
+        this.etherpad.stop();
+    }
+
+    @Test
+    public void sessions_are_reused_until_they_expire_soon() throws Exception {
+        SessionManager sessions = new SessionManager(this.client, 3600, 600);
+        String sessionID = sessions.getSessionID(this.groupID, this.authorID);
+        assertEquals(sessionID, sessions.getSessionID(this.groupID, this.authorID));
+        assertEquals(1, this.client.listSessionsOfGroup(this.groupID).size());
+        assertEquals(1, sessions.getCreated());
+        assertEquals(1, sessions.getHits());
+
+        String otherAuthorID = (String) this.client.createAuthor("Grace").get("authorID");
+        assertNotEquals(sessionID, sessions.getSessionID(this.groupID, otherAuthorID));
+
+        SessionManager shortSessions = new SessionManager(this.client, 2, 1);
+        String first = shortSessions.getSessionID(this.groupID, this.authorID);
+        Thread.sleep(2000);
+        assertNotEquals(first, shortSessions.getSessionID(this.groupID, this.authorID));
+    }
+
+    @Test
+    public void session_info_is_answered_from_the_cache() throws Exception {
+        SessionManager sessions = new SessionManager(this.client, 3600, 600);
+        String sessionID = sessions.getSessionID(this.groupID, this.authorID);
+
+        Map info = sessions.getSessionInfo(sessionID);
+        Map fromServer = this.client.getSessionInfo(sessionID);
+        assertEquals(fromServer.get("groupID"), info.get("groupID"));
+        assertEquals(fromServer.get("authorID"), info.get("authorID"));
+        assertEquals(fromServer.get("validUntil"), info.get("validUntil"));
+        assertEquals(1, sessions.getInfoHits());
+
+        String otherID = (String) this.client.createSession(this.groupID, this.authorID, 1).get("sessionID");
+        assertEquals(this.authorID, sessions.getSessionInfo(otherID).get("authorID"));
+        assertEquals(1, sessions.getInfoHits());
+    }
+
+    @Test
+    public void concurrent_logins_create_one_session() throws Exception {
+        final SessionManager sessions = new SessionManager(this.client, 3600, 600);
+        this.etherpad.setLatency("createSession", 100);
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                results.add(executor.submit(new Callable<String>() {
+                    public String call() throws Exception {
+                        start.await();
+                        return sessions.getSessionID(groupID, authorID);
+                    }
+                }));
+            }
+            start.countDown();
+            Set<String> sessionIDs = new HashSet<>();
+            for (Future<String> result : results) {
+                sessionIDs.add(result.get());
+            }
+            assertEquals(1, sessionIDs.size());
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(1, sessions.getCreated());
+        assertEquals(1, this.client.listSessionsOfGroup(this.groupID).size());
+    }
+
+    @Test
+    public void failures_are_not_cached() throws Exception {
+        SessionManager sessions = new SessionManager(this.client, 3600, 600);
+        this.etherpad.failNext("createSession", 2, "internal error");
+        try {
+            sessions.getSessionID(this.groupID, this.authorID);
+            fail("Expected the failed createSession to be thrown");
+        } catch (EPLiteException e) {
+            assertEquals("internal error", e.getMessage());
+        }
+        assertNotNull(sessions.getSessionID(this.groupID, this.authorID));
+        assertEquals(1, sessions.getCreated());
+    }
+
+    @Test
+    public void deleted_sessions_are_not_handed_out() throws Exception {
+        SessionManager sessions = new SessionManager(this.client, 3600, 600);
+        String sessionID = sessions.getSessionID(this.groupID, this.authorID);
+        sessions.deleteSession(sessionID);
+
+        String next = sessions.getSessionID(this.groupID, this.authorID);
+        assertNotEquals(sessionID, next);
+        assertEquals(1, this.client.listSessionsOfGroup(this.groupID).size());
+        assertTrue(this.client.listSessionsOfGroup(this.groupID).containsKey(next));
+    }
+}
@@ -0,0 +1,94 @@
+package net.gjerull.etherpad.client;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class SessionReaperTest {
+    private FakeEtherpadServer etherpad;
+    private EPLiteClient client;
+    private SessionReaper reaper;
+    private final List<String> groupIDs = new ArrayList<>();
+    private final Set<String> validSessionIDs = new HashSet<>();
+
+    @Before
+    public void setUp() throws Exception {
+        this.etherpad = new FakeEtherpadServer("apikey");
+        this.client = new EPLiteClient(this.etherpad.getUrl(), "apikey");
+        this.reaper = new SessionReaper(this.client, 4, 0, 2);
+
+        // Etherpad refuses sessions that are already expired, so some expire in a second
+        String authorID = (String) this.client.createAuthor("Ada").get("authorID");
+        long now = System.currentTimeMillis() / 1000L;
+        for (int g = 0; g < 3; g++) {
+            String groupID = (String) this.client.createGroup().get("groupID");
+            this.groupIDs.add(groupID);
+            for (int s = 0; s < 4; s++) {
+                this.client.createSession(groupID, authorID, now + 1);
+            }
+            this.validSessionIDs.add((String) this.client.createSession(groupID, authorID, now + 3600)
+                    .get("sessionID"));
+        }
+        Thread.sleep(1100);
+    }
+
+    @After
+    public void tearDown() {
+        this.reaper.shutdown();
+        this.etherpad.stop();
+    }
+
+    @Test
+    public void runs_work_through_the_groups_from_the_checkpoint() throws Exception {
+        SessionReaper.Report first = this.reaper.runOnce();
+        assertEquals(2, first.getGroupsScanned());
+        assertEquals(10, first.getSessionsScanned());
+        assertEquals(8, first.getSessionsExpired());
+        assertEquals(8, first.getSessionsDeleted());
+        assertFalse(first.isPassComplete());
+        assertNotNull(this.reaper.getCheckpoint());
+
+        SessionReaper.Report second = this.reaper.runOnce();
+        assertEquals(1, second.getGroupsScanned());
+        assertEquals(4, second.getSessionsDeleted());
+        assertTrue(second.isPassComplete());
+        assertNull(this.reaper.getCheckpoint());
+        assertEquals(12, this.reaper.getTotalDeleted());
+        assertEquals(15, this.reaper.getTotalScanned());
+
+        Set<String> remaining = new HashSet<>();
+        for (String groupID : this.groupIDs) {
+            remaining.addAll(this.client.listSessionsOfGroup(groupID).keySet());
+        }
+        assertEquals(this.validSessionIDs, remaining);
+    }
+
+    @Test
+    public void failed_groups_are_reported_and_skipped() throws Exception {
+        this.reaper.setCheckpoint(null);
+        this.etherpad.failNext("listSessionsOfGroup", 2, "internal error");
+        SessionReaper.Report report = this.reaper.runOnce();
+        assertEquals(1, report.getGroupFailures());
+        assertEquals(1, report.getGroupsScanned());
+        assertEquals(4, report.getSessionsDeleted());
+    }
+
+    @Test
+    public void scheduled_runs_delete_all_expired_sessions() throws Exception {
+        this.reaper.start(10, TimeUnit.MILLISECONDS);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (this.reaper.getTotalDeleted() < 12 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(12, this.reaper.getTotalDeleted());
+        assertTrue(this.reaper.getLastReport().toString().contains("deleted"));
+    }
+}
@@ -0,0 +1,127 @@
+package net.gjerull.etherpad.client;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+public class TextAppenderTest {
+    private FakeEtherpadServer etherpad;
+    private EPLiteClient client;
+
+    @Before
+    public void setUp() throws Exception {
+        this.etherpad = new FakeEtherpadServer("apikey");
+        this.client = new EPLiteClient(this.etherpad.getUrl(), "apikey");
+        this.client.createPad("pad", "");
+        this.client.createPad("other", "");
+    }
+
+    @After
+    public void tearDown() {
+        this.etherpad.stop();
+    }
+
+    @Test
+    public void appends_within_the_window_are_sent_as_one_call() throws Exception {
+        TextAppender appender = new TextAppender(this.client, 100, 100000);
+        long requests = this.etherpad.getRequestCount();
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 20; i++) {
+            appender.append("pad", "line " + i + "\n");
+            expected.append("line ").append(i).append('\n');
+        }
+        Thread.sleep(300);
+
+        assertEquals(requests + 1, this.etherpad.getRequestCount());
+        assertEquals(expected.toString(), text("pad"));
+        assertEquals(20, appender.getAppends());
+        assertEquals(1, appender.getCalls());
+        assertEquals(19, appender.getCombined());
+        appender.close();
+    }
+
+    @Test
+    public void full_buffers_are_sent_at_once_in_order() throws Exception {
+        final TextAppender appender = new TextAppender(this.client, 60000, 50);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            List<Future<String>> expected = new ArrayList<>();
+            for (final String padId : new String[] {"pad", "other"}) {
+                expected.add(executor.submit(new Callable<String>() {
+                    public String call() {
+                        StringBuilder text = new StringBuilder();
+                        for (int i = 0; i < 100; i++) {
+                            appender.append(padId, i + ",");
+                            text.append(i).append(',');
+                        }
+                        return text.toString();
+                    }
+                }));
+            }
+            String pad = expected.get(0).get();
+            String other = expected.get(1).get();
+            assertTrue(appender.getCalls() > 1);
+            appender.close();
+
+            assertEquals(pad + "\n", text("pad"));
+            assertEquals(other + "\n", text("other"));
+            assertEquals(200, appender.getCombined() + appender.getCalls());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void failed_background_flushes_are_thrown_by_the_next_append() throws Exception {
+        TextAppender appender = new TextAppender(this.client, 10, 100000);
+        this.etherpad.failNext("appendText", 2, "internal error");
+        appender.append("pad", "lost");
+        Thread.sleep(200);
+        try {
+            appender.append("pad", "kept");
+            fail("Expected the failed flush to be thrown");
+        } catch (EPLiteException e) {
+            assertEquals("Appending to pad failed: internal error", e.getMessage());
+        }
+        appender.append("pad", "kept");
+        appender.close();
+        assertEquals("kept\n", text("pad"));
+
+        try {
+            appender.append("pad", "late");
+            fail("Expected appends after close to be rejected");
+        } catch (IllegalStateException e) {
+            assertEquals("TextAppender is closed", e.getMessage());
+        }
+    }
+
+    @Test
+    public void buffers_of_idle_pads_are_dropped_after_their_flush() throws Exception {
+        TextAppender appender = new TextAppender(this.client, 10, 100000);
+        appender.append("pad", "first ");
+        appender.append("other", "first");
+        assertEquals(2, appender.getBufferedPads());
+        Thread.sleep(200);
+        assertEquals(0, appender.getBufferedPads());
+
+        appender.append("pad", "second");
+        appender.flush("pad");
+        assertEquals(0, appender.getBufferedPads());
+        appender.close();
+        assertEquals("first second\n", text("pad"));
+        assertEquals("first\n", text("other"));
+    }
+
+    private String text(String padId) {
+        return (String) this.client.getText(padId).get("text");
+    }
+}
@@ -0,0 +1,109 @@
+package net.gjerull.etherpad.client;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TypedResponseTest {
+
+    @Test
+    public void pad_text_is_decoded_from_the_response() throws Exception {
+        PadText text = new PadText(ResponseData.parse(
+                "{\"code\":0,\"message\":\"ok\",\"data\":{\"text\":\"g\\u00e5 og gj\\u00f8re et \\u00e6rend\\n\"}}"));
+
+        assertEquals("gå og gjøre et ærend\n", text.getText());
+        assertSame(text.getText(), text.getText());
+    }
+
+    @Test
+    public void numbers_are_primitives() throws Exception {
+        RevisionCount count = new RevisionCount(ResponseData.parse(
+                "{\"data\" : { \"revisions\" : 27 }, \"message\":\"ok\", \"code\":0}"));
+
+        assertEquals(27L, count.getRevisions());
+        assertEquals("{ \"revisions\" : 27 }", count.getRawData());
+    }
+
+    @Test
+    public void session_info_fields_are_decoded() throws Exception {
+        SessionInfo session = new SessionInfo(ResponseData.parse(
+                "{\"code\":0,\"message\":\"ok\",\"data\":{\"groupID\":\"g.8gG2mcJguOEo4std\",\"authorID\":\"a.kPrLhmVVGK3Y5j03\",\"validUntil\":1508587574}}"));
+
+        assertEquals(1508587574L, session.getValidUntil());
+        assertEquals("a.kPrLhmVVGK3Y5j03", session.getAuthorID());
+        assertEquals("g.8gG2mcJguOEo4std", session.getGroupID());
+    }
+
+    @Test
+    public void pad_list_is_iterated_and_counted() throws Exception {
+        PadList pads = new PadList(ResponseData.parse(
+                "{\"code\":0,\"message\":\"ok\",\"data\":{\"padIDs\":[\"g.x$a\",\"b\",\"c\"]}}"));
+
+        assertEquals(3, pads.size());
+        List<String> iterated = new ArrayList<>();
+        for (String padID : pads) {
+            iterated.add(padID);
+        }
+        assertEquals(Arrays.asList("g.x$a", "b", "c"), iterated);
+        assertEquals(iterated, pads.getPadIDs());
+    }
+
+    @Test
+    public void missing_data_gives_empty_values() throws Exception {
+        PadList pads = new PadList(ResponseData.parse("{\"code\":0,\"message\":\"ok\",\"data\":null}"));
+        assertEquals(0, pads.size());
+        assertFalse(pads.iterator().hasNext());
+        assertNull(pads.getRawData());
+
+        PadText text = new PadText(ResponseData.parse("{\"code\":0,\"message\":\"ok\",\"data\":{}}"));
+        assertNull(text.getText());
+    }
+
+    @Test
+    public void chat_messages_are_decoded_when_read() throws Exception {
+        ChatHistory history = new ChatHistory(ResponseData.parse(
+                "{\"code\":0,\"message\":\"ok\",\"data\":{\"messages\":["
+                        + "{\"text\":\"foo\",\"userId\":\"a.foo\",\"time\":1359199533759,\"userName\":\"test\"},"
+                        + "{\"text\":\"bar\",\"userId\":\"a.foo\",\"time\":1359199534622,\"userName\":null}]}}"));
+
+        assertEquals(2, history.size());
+        ChatHistory.Message second = history.get(1);
+        assertEquals("bar", second.getText());
+        assertEquals(1359199534622L, second.getTime());
+        assertNull(second.getUserName());
+        assertSame(second, history.get(1));
+        assertEquals("test", history.getMessages().get(0).getUserName());
+        try {
+            history.get(2);
+            fail("Expected '" + IndexOutOfBoundsException.class.getName() + "' to be thrown");
+        } catch (IndexOutOfBoundsException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void error_responses_throw_typed_exceptions() throws Exception {
+        try {
+            ResponseData.parse("{\"code\":1,\"message\":\"padID does not exist\",\"data\":null}");
+            fail("Expected '" + EPLiteInvalidParametersException.class.getName() + "' to be thrown");
+        } catch (EPLiteInvalidParametersException e) {
+            assertEquals("padID does not exist", e.getMessage());
+        }
+        try {
+            ResponseData.parse("{\"message\":\"ok\",\"data\":null}");
+            fail("Expected '" + EPLiteException.class.getName() + "' to be thrown");
+        } catch (EPLiteException e) {
+            assertTrue(e.getMessage().startsWith("An unexpected response from the server: "));
+        }
+        try {
+            ResponseData.parse("<html></html>");
+            fail("Expected '" + EPLiteException.class.getName() + "' to be thrown");
+        } catch (EPLiteException e) {
+            assertEquals("Unable to parse JSON response (<html></html>)", e.getMessage());
+        }
+    }
+}